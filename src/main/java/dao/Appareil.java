@@ -3,6 +3,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.TableGenerator;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,7 +18,9 @@ import lombok.NoArgsConstructor;
 
 public class Appareil {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "appareil_gen")
+	@TableGenerator(name = "appareil_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "Appareil", allocationSize = 50)
 	private int idAppareil;
 	private String imei;
 	private String marque;
@@ -0,0 +1,38 @@
+package dao;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.TableGenerator;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Point de contrôle du journal d'une caisse : solde après l'écriture numero, à la date
+ * de cette écriture. Le numéro 0 est l'ouverture du journal (solde initial de la caisse).
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Immutable
+@Data
+@Builder
+public class ArreteCaisse {
+	@Id
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "arrete_caisse_gen")
+	@TableGenerator(name = "arrete_caisse_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "ArreteCaisse", allocationSize = 50)
+	private long idArrete;
+	private int idCaisse;
+	private long numero;
+	private LocalDateTime date;
+	private double solde;
+}
@@ -7,6 +7,8 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
+import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,10 +22,17 @@ import lombok.NoArgsConstructor;
 @Builder
 public class Caisse {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "caisse_gen")
+	@TableGenerator(name = "caisse_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "Caisse", allocationSize = 50)
 	private int idCaisse;
 	private double soldeActuel;
 	private LocalDateTime dernierMouvement;
+	// Incrémentée à chaque mouvement : une modification faite sur une caisse périmée est refusée
+	@Version
+	private long version;
+	// Numéro de la dernière écriture du journal (EcritureCaisse), incrémenté avec le solde
+	private long nombreEcritures;
 	
 	@OneToOne
 	@JoinColumn(name = "idBoutique")
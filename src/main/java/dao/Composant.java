@@ -3,6 +3,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.TableGenerator;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,12 +18,18 @@ import lombok.NoArgsConstructor;
 
 public class Composant {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "composant_gen")
+	@TableGenerator(name = "composant_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "Composant", allocationSize = 50)
 	private int idComposant;
 	private String nom;
 	private double prix;
+	// Quantité disponible, hors pièces réservées
 	private int quantite;
-	
+	// Pièces réservées pour des réparations, pas encore consommées
+	private int quantiteReservee;
+	// Seuil de réapprovisionnement : alerte dès que quantite <= seuil (0 = pas de suivi)
+	private int seuilReapprovisionnement;
 
 }
 
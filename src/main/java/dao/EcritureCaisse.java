@@ -0,0 +1,48 @@
+package dao;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.TableGenerator;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ligne du journal d'une caisse : un mouvement de solde, jamais modifié ni supprimé.
+ * Les écritures d'une caisse sont numérotées sans trou (numero = 1, 2, 3...) dans
+ * l'ordre où leurs UPDATE ont été appliqués ; soldeApres est le solde obtenu.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Immutable
+@Data
+@Builder
+public class EcritureCaisse {
+	public static final String ORIGINE_EMPRUNT = "EMPRUNT";
+	public static final String ORIGINE_REPARATION = "REPARATION";
+	public static final String ORIGINE_AJUSTEMENT = "AJUSTEMENT";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "ecriture_caisse_gen")
+	@TableGenerator(name = "ecriture_caisse_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "EcritureCaisse", allocationSize = 50)
+	private long idEcriture;
+	private int idCaisse;
+	private long numero;
+	private LocalDateTime date;
+	// Positif pour une entrée, négatif pour une sortie
+	private double montant;
+	private double soldeApres;
+	// EMPRUNT, REPARATION ou AJUSTEMENT, et identifiant de l'objet à l'origine du mouvement (0 si aucun)
+	private String origine;
+	private int idOrigine;
+}
@@ -17,7 +17,9 @@ import lombok.NoArgsConstructor;
 @Builder
 public class Emprunt {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "emprunt_gen")
+	@TableGenerator(name = "emprunt_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "Emprunt", allocationSize = 50)
 	private int idEmprunt;
 	private LocalDateTime date;
 	private double montant;
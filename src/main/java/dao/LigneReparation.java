@@ -0,0 +1,46 @@
+package dao;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.TableGenerator;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pièce posée sur une réparation : composant, quantité, et nom et prix unitaire relevés
+ * au moment de l'ajout (un changement de prix du composant ne modifie pas les réparations
+ * déjà facturées). Une ligne n'est jamais modifiée : elle est ajoutée ou retirée, et
+ * Reparation.prixTotal suit ces ajouts et retraits.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Immutable
+@Data
+@Builder
+public class LigneReparation {
+	@Id
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "ligne_reparation_gen")
+	@TableGenerator(name = "ligne_reparation_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "LigneReparation", allocationSize = 50)
+	private int idLigne;
+	private int idReparation;
+	private int idComposant;
+	private String nomComposant;
+	private int quantite;
+	private double prixUnitaire;
+	private LocalDateTime dateAjout;
+
+	public double getMontant() {
+		return quantite * prixUnitaire;
+	}
+}
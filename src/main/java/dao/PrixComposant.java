@@ -0,0 +1,42 @@
+package dao;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.TableGenerator;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Historique des prix d'un composant : un enregistrement par prix appliqué, valable de
+ * dateEffet jusqu'au suivant. Jamais modifié ni supprimé, y compris avec le composant,
+ * pour pouvoir rechiffrer les réparations passées. Le prix est conservé en centimes.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Immutable
+@Data
+@Builder
+public class PrixComposant {
+	@Id
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "prix_composant_gen")
+	@TableGenerator(name = "prix_composant_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "PrixComposant", allocationSize = 50)
+	private int idPrix;
+	private int idComposant;
+	private LocalDateTime dateEffet;
+	private long centimes;
+
+	public double getPrix() {
+		return centimes / 100.0;
+	}
+}
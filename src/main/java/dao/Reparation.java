@@ -2,29 +2,61 @@ package dao;
 import java.time.LocalDateTime;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.TableGenerator;
+
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.JoinFormula;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
 @Data
 @Builder
-
+// UPDATE limité aux colonnes modifiées : modifer ne réécrit pas prixTotal, tenu à jour par incréments
+@DynamicUpdate
 public class Reparation {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "reparation_gen")
+	@TableGenerator(name = "reparation_gen", table = "id_generateurs", pkColumnName = "sequence_name",
+		valueColumnName = "next_val", pkColumnValue = "Reparation", allocationSize = 50)
 	private int idReparation;
 	
+	// Les identifiants restent la source des écritures ; les associations ci-dessous
+	// sont en lecture seule, chargées à la demande ou par les requêtes *AvecDetails.
+	// 0 signifie "non renseigné" (réparation sans réparateur...) : NULLIF en fait une association nulle
 	private int idAppareil;
 	private int idBoutique;
 	private int idReparateur;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinFormula("NULLIF(idAppareil, 0)")
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	private Appareil appareil;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinFormula("NULLIF(idBoutique, 0)")
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	private Boutique boutique;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinFormula("NULLIF(idReparateur, 0)")
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	private Reparateur reparateur;
 	
 	private String codeSuivi;
 	private LocalDateTime dateDepot;
@@ -34,5 +66,3 @@ public class Reparation {
 	
 
 }
-
-
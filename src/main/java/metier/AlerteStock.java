@@ -0,0 +1,24 @@
+package metier;
+
+import lombok.Value;
+
+/**
+ * État de stock d'un composant suivi (seuil de réapprovisionnement > 0) : la marge est
+ * la quantité disponible moins le seuil, le composant est en alerte dès qu'elle est
+ * nulle ou négative.
+ */
+@Value
+public class AlerteStock {
+	private int idComposant;
+	private String nom;
+	private int quantite;
+	private int seuil;
+
+	public int getMarge() {
+		return quantite - seuil;
+	}
+
+	public boolean isEnAlerte() {
+		return getMarge() <= 0;
+	}
+}
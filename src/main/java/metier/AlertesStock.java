@@ -0,0 +1,190 @@
+package metier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Index en mémoire des composants suivis (seuil de réapprovisionnement > 0), trié par
+ * marge (quantité disponible moins seuil) puis par identifiant, partagé par toutes les
+ * instances de GestionComposant et GestionReparation du processus. Les composants dont
+ * la marge est inférieure à une valeur sont le début de l'ensemble trié : les lister
+ * coûte O(log n + k) pour k résultats, sans parcourir le catalogue.
+ * Chaque mouvement de stock fait par ce processus met l'index à jour juste avant son
+ * commit, quand la ligne du composant est encore verrouillée : deux mouvements du même
+ * composant s'y inscrivent dans l'ordre où la base les a appliqués. Un commit qui échoue
+ * ensuite force une relecture complète, faite aussi toutes les
+ * fastrepair.stock.alertes_resync_ms pour rattraper les mouvements d'un autre poste.
+ */
+final class AlertesStock {
+
+    private static final Comparator<AlerteStock> PAR_MARGE =
+        Comparator.comparingInt(AlerteStock::getMarge).thenComparingInt(AlerteStock::getIdComposant);
+
+    // Modification qui ne porte que sur la quantité (mouvement de stock)
+    private static final int SEUIL_INCHANGE = -1;
+
+    private static final TreeSet<AlerteStock> ENTREES = new TreeSet<>(PAR_MARGE);
+    private static final Map<Integer, AlerteStock> PAR_COMPOSANT = new HashMap<>();
+    // Un seul chargement à la fois ; les lectures continuent sur l'index courant pendant ce temps
+    private static final Object CHARGEMENT = new Object();
+
+    private static boolean charge;
+    private static long prochaineRelecture;
+    // Modifications reçues pendant une relecture, rejouées sur l'index relu (null hors relecture)
+    private static List<AlerteStock> enAttente;
+
+    private AlertesStock() {
+    }
+
+    /**
+     * Vrai si l'index n'a jamais été chargé ou si sa relecture périodique est due.
+     */
+    static boolean aRelire() {
+        synchronized (ENTREES) {
+            return !charge || System.currentTimeMillis() >= prochaineRelecture;
+        }
+    }
+
+    /**
+     * Relit les composants suivis et remplace l'index, si aucun autre appel ne l'a fait entre-temps.
+     */
+    static void charger(EntityManager em) {
+        synchronized (CHARGEMENT) {
+            if (!aRelire()) {
+                return;
+            }
+            synchronized (ENTREES) {
+                enAttente = new ArrayList<>();
+            }
+            List<AlerteStock> lus = new ArrayList<>();
+            try {
+                List<Object[]> lignes = em.createQuery(
+                    "SELECT c.idComposant, c.nom, c.quantite, c.seuilReapprovisionnement FROM Composant c "
+                    + "WHERE c.seuilReapprovisionnement > 0", Object[].class)
+                    .getResultList();
+                for (Object[] ligne : lignes) {
+                    lus.add(new AlerteStock((Integer) ligne[0], (String) ligne[1], (Integer) ligne[2], (Integer) ligne[3]));
+                }
+            } catch (RuntimeException e) {
+                synchronized (ENTREES) {
+                    enAttente = null;
+                }
+                throw e;
+            }
+            synchronized (ENTREES) {
+                ENTREES.clear();
+                PAR_COMPOSANT.clear();
+                for (AlerteStock entree : lus) {
+                    placer(entree.getIdComposant(), entree);
+                }
+                // Commits postérieurs à la lecture : l'état qu'ils décrivent est le plus récent
+                for (AlerteStock modification : enAttente) {
+                    appliquer(modification);
+                }
+                enAttente = null;
+                charge = true;
+                long duree = PersistenceManager.getDureeIndexAlertesStockMs();
+                prochaineRelecture = duree > 0 ? System.currentTimeMillis() + duree : Long.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Composants dont la marge est inférieure ou égale à margeMax, la plus faible d'abord.
+     */
+    static List<AlerteStock> sousMarge(int margeMax) {
+        synchronized (ENTREES) {
+            AlerteStock borne = new AlerteStock(Integer.MAX_VALUE, null, margeMax, 0);
+            return new ArrayList<>(ENTREES.headSet(borne, true));
+        }
+    }
+
+    /**
+     * État indexé d'un composant, null s'il n'est pas suivi ou si l'index n'est pas chargé.
+     */
+    static AlerteStock rechercher(int idComposant) {
+        synchronized (ENTREES) {
+            return PAR_COMPOSANT.get(idComposant);
+        }
+    }
+
+    /**
+     * Quantité disponible d'un composant après un mouvement, appelé avant le commit ;
+     * sans effet si le composant n'est pas suivi.
+     */
+    static void quantiteModifiee(int idComposant, int quantite) {
+        synchronized (ENTREES) {
+            enregistrer(new AlerteStock(idComposant, null, quantite, SEUIL_INCHANGE));
+        }
+    }
+
+    /**
+     * Nom, quantité ou seuil d'un composant après un ajout ou une modification ; un seuil
+     * nul ou négatif retire le composant de l'index.
+     */
+    static void composantModifie(int idComposant, String nom, int quantite, int seuil) {
+        synchronized (ENTREES) {
+            enregistrer(new AlerteStock(idComposant, nom, quantite, Math.max(seuil, 0)));
+        }
+    }
+
+    static void composantSupprime(int idComposant) {
+        composantModifie(idComposant, null, 0, 0);
+    }
+
+    /**
+     * Force une relecture complète au prochain appel : une transaction qui avait déjà
+     * mis l'index à jour a été annulée.
+     */
+    static void invalider() {
+        synchronized (ENTREES) {
+            prochaineRelecture = 0;
+        }
+    }
+
+    static void vider() {
+        synchronized (ENTREES) {
+            ENTREES.clear();
+            PAR_COMPOSANT.clear();
+            charge = false;
+        }
+    }
+
+    private static void enregistrer(AlerteStock modification) {
+        if (enAttente != null) {
+            enAttente.add(modification);
+        }
+        if (charge) {
+            appliquer(modification);
+        }
+    }
+
+    private static void appliquer(AlerteStock modification) {
+        int idComposant = modification.getIdComposant();
+        if (modification.getSeuil() != SEUIL_INCHANGE) {
+            placer(idComposant, modification.getSeuil() > 0 ? modification : null);
+            return;
+        }
+        AlerteStock actuelle = PAR_COMPOSANT.get(idComposant);
+        if (actuelle != null) {
+            placer(idComposant, new AlerteStock(idComposant, actuelle.getNom(), modification.getQuantite(), actuelle.getSeuil()));
+        }
+    }
+
+    // La marge fait partie de la clé de tri : retirer l'ancienne entrée avant d'insérer la nouvelle
+    private static void placer(int idComposant, AlerteStock entree) {
+        AlerteStock ancienne = entree != null ? PAR_COMPOSANT.put(idComposant, entree) : PAR_COMPOSANT.remove(idComposant);
+        if (ancienne != null) {
+            ENTREES.remove(ancienne);
+        }
+        if (entree != null) {
+            ENTREES.add(entree);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package metier;
+
+import lombok.Value;
+
+/**
+ * Résultat d'une connexion réussie : rôle (SessionUtilisateur.ADMIN, REPARATEUR
+ * ou PROPRIETAIRE), identifiant de la personne (0 pour l'administrateur) et email.
+ */
+@Value
+public class Authentification {
+	private String role;
+	private int idPersonne;
+	private String email;
+}
@@ -0,0 +1,97 @@
+package metier;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import dao.Reparation;
+
+/**
+ * Cache LRU borné des dernières réparations consultées par code de suivi, partagé
+ * par toutes les instances de GestionReparation du processus. Les entrées sont des
+ * copies détachées : un appelant qui modifie l'objet reçu n'altère pas le cache.
+ * Une entrée est retirée dès que la réparation est modifiée ou supprimée par ce
+ * processus, et expire après fastrepair.suivi.cache_ttl_ms pour borner le retard
+ * sur les modifications faites depuis un autre poste.
+ */
+final class CacheCodesSuivi {
+
+    private static final Map<String, Entree> ENTREES = new LinkedHashMap<String, Entree>(256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entree> eldest) {
+            return size() > PersistenceManager.getTailleCacheCodesSuivi();
+        }
+    };
+
+    private CacheCodesSuivi() {
+    }
+
+    static Reparation lire(String codeSuivi) {
+        synchronized (ENTREES) {
+            Entree entree = ENTREES.get(cle(codeSuivi));
+            if (entree == null) {
+                return null;
+            }
+            if (entree.expiration < System.currentTimeMillis()) {
+                ENTREES.remove(cle(codeSuivi));
+                return null;
+            }
+            return copier(entree.reparation);
+        }
+    }
+
+    static void memoriser(Reparation reparation) {
+        if (reparation == null || reparation.getCodeSuivi() == null || PersistenceManager.getTailleCacheCodesSuivi() <= 0) {
+            return;
+        }
+        Entree entree = new Entree(copier(reparation), System.currentTimeMillis() + PersistenceManager.getDureeCacheCodesSuiviMs());
+        synchronized (ENTREES) {
+            ENTREES.put(cle(reparation.getCodeSuivi()), entree);
+        }
+    }
+
+    static void invalider(String codeSuivi) {
+        if (codeSuivi == null) {
+            return;
+        }
+        synchronized (ENTREES) {
+            ENTREES.remove(cle(codeSuivi));
+        }
+    }
+
+    static void vider() {
+        synchronized (ENTREES) {
+            ENTREES.clear();
+        }
+    }
+
+    // Même règle que la collation MySQL de la colonne : comparaison insensible à la casse
+    private static String cle(String codeSuivi) {
+        return codeSuivi.trim().toUpperCase();
+    }
+
+    private static Reparation copier(Reparation reparation) {
+        return Reparation.builder()
+            .idReparation(reparation.getIdReparation())
+            .idAppareil(reparation.getIdAppareil())
+            .idBoutique(reparation.getIdBoutique())
+            .idReparateur(reparation.getIdReparateur())
+            .codeSuivi(reparation.getCodeSuivi())
+            .dateDepot(reparation.getDateDepot())
+            .etat(reparation.getEtat())
+            .commentaire(reparation.getCommentaire())
+            .prixTotal(reparation.getPrixTotal())
+            .build();
+    }
+
+    private static final class Entree {
+        private final Reparation reparation;
+        private final long expiration;
+
+        private Entree(Reparation reparation, long expiration) {
+            this.reparation = reparation;
+            this.expiration = expiration;
+        }
+    }
+}
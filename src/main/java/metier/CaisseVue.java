@@ -0,0 +1,17 @@
+package metier;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+/**
+ * Ligne de tableau pour une caisse : l'identifiant de la boutique (0 si aucune)
+ * remplace l'entité Boutique et son propriétaire.
+ */
+@Value
+public class CaisseVue {
+	private int idCaisse;
+	private int idBoutique;
+	private double soldeActuel;
+	private LocalDateTime dernierMouvement;
+}
@@ -0,0 +1,53 @@
+package metier;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Critères combinables de recherche des emprunts ; un critère null est ignoré.
+ */
+@Value
+@Builder(toBuilder = true)
+public class EmpruntCriteria {
+	private Integer idCaisse;
+	private Integer idReparateur;
+	private String type;
+	private LocalDateTime debut;
+	private LocalDateTime fin;
+	private Double montantMin;
+	private Double montantMax;
+
+	@Builder.Default
+	private Tri tri = Tri.ID;
+	private boolean decroissant;
+	private int offset;
+	// 0 = sans limite
+	private int limite;
+
+	public enum Tri {
+		ID("idEmprunt"), DATE("date"), MONTANT("montant");
+
+		private final String champ;
+
+		Tri(String champ) {
+			this.champ = champ;
+		}
+
+		String getChamp() {
+			return champ;
+		}
+	}
+
+	RequeteCriteres versRequete() {
+		return new RequeteCriteres("Emprunt", "e", "idEmprunt")
+			.egal("caisse.idCaisse", idCaisse)
+			.egal("reparateur.id", idReparateur)
+			.egal("type", type)
+			.auMoins("date", debut)
+			.avant("date", fin)
+			.auMoins("montant", montantMin)
+			.auPlus("montant", montantMax);
+	}
+}
@@ -0,0 +1,17 @@
+package metier;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+/**
+ * Ligne de tableau pour un emprunt, sans charger la caisse ni le réparateur associés.
+ */
+@Value
+public class EmpruntVue {
+	private int idEmprunt;
+	private LocalDateTime date;
+	private double montant;
+	private String type;
+	private String commentaire;
+}
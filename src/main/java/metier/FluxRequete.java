@@ -0,0 +1,61 @@
+package metier;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.TypedQuery;
+
+/**
+ * Parcours d'une requête JPQL en flux, sans matérialiser la liste des résultats.
+ * Chaque flux possède son propre EntityManager et sa propre connexion, ouverts
+ * jusqu'à la fermeture du flux : il doit être utilisé dans un try-with-resources.
+ * Le contexte de persistance est vidé toutes les getTailleFetch() lignes, les
+ * entités déjà consommées deviennent donc détachées (lecture seule).
+ */
+final class FluxRequete {
+
+    private FluxRequete() {
+    }
+
+    static <T> Stream<T> ouvrir(String jpql, Class<T> type, Map<String, Object> parametres) {
+        int tailleFetch = PersistenceManager.getTailleFetch();
+        EntityManager em = PersistenceManager.creerEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            // La transaction garde la même connexion pendant tout le parcours du curseur
+            tx.begin();
+            TypedQuery<T> query = em.createQuery(jpql, type);
+            parametres.forEach(query::setParameter);
+            query.setHint("org.hibernate.fetchSize", tailleFetch);
+            query.setHint("org.hibernate.readOnly", true);
+            query.setHint("org.hibernate.cacheMode", "IGNORE");
+
+            AtomicLong lues = new AtomicLong();
+            return query.getResultStream()
+                .peek(entite -> {
+                    if (lues.incrementAndGet() % tailleFetch == 0) {
+                        em.clear();
+                    }
+                })
+                .onClose(() -> fermer(em, tx));
+        } catch (RuntimeException e) {
+            fermer(em, tx);
+            throw e;
+        }
+    }
+
+    private static void fermer(EntityManager em, EntityTransaction tx) {
+        try {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+        } finally {
+            if (em.isOpen()) {
+                em.close();
+            }
+        }
+    }
+}
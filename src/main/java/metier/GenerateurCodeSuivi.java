@@ -0,0 +1,248 @@
+package metier;
+
+import java.security.SecureRandom;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.hibernate.query.NativeQuery;
+
+/**
+ * Génère les codes de suivi remis aux clients, par exemple "K7PD-3XQ9M" :
+ * 8 caractères base 32 (alphabet de Crockford, sans I, L, O ni U) et un caractère
+ * de contrôle Luhn mod 32 qui détecte les fautes de frappe sans requête.
+ *
+ * Chaque code chiffre un numéro unique sur 40 bits par une permutation de Feistel
+ * dont la clé est tirée au hasard une fois par base : deux numéros différents
+ * donnent toujours deux codes différents, et les codes ne se suivent pas.
+ * Les numéros sont réservés par blocs dans id_generateurs (une transaction par bloc),
+ * puis distribués depuis la mémoire ; plusieurs postes peuvent générer en parallèle.
+ */
+public final class GenerateurCodeSuivi {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final int BASE = 32;
+    private static final int LONGUEUR = 8;
+    private static final int BITS = 40;
+    private static final long MASQUE_DEMI = (1L << (BITS / 2)) - 1;
+    private static final int TOURS = 4;
+
+    private static final String SEQUENCE = "CodeSuivi";
+    private static final String SEQUENCE_CLE = "CodeSuiviCle";
+
+    private static volatile GenerateurCodeSuivi instance;
+
+    private final long[] clesTours = new long[TOURS];
+    private final ReservationBlocs reservation;
+    private final int tailleBloc;
+    private long prochain;
+    private long finBloc;
+
+    /**
+     * Source des blocs de numéros : retourne le premier numéro d'un bloc libre de la taille demandée.
+     */
+    interface ReservationBlocs {
+        long reserver(int taille);
+    }
+
+    GenerateurCodeSuivi(long cle, int tailleBloc, ReservationBlocs reservation) {
+        long etat = cle;
+        for (int i = 0; i < TOURS; i++) {
+            etat = melanger(etat + 0x9E3779B97F4A7C15L);
+            clesTours[i] = etat;
+        }
+        this.tailleBloc = tailleBloc;
+        this.reservation = reservation;
+    }
+
+    public static GenerateurCodeSuivi getInstance() {
+        GenerateurCodeSuivi courant = instance;
+        if (courant == null) {
+            synchronized (GenerateurCodeSuivi.class) {
+                courant = instance;
+                if (courant == null) {
+                    courant = new GenerateurCodeSuivi(lireCle(),
+                        PersistenceManager.getTailleBlocCodesSuivi(),
+                        GenerateurCodeSuivi::reserverEnBase);
+                    instance = courant;
+                }
+            }
+        }
+        return courant;
+    }
+
+    /**
+     * Nouveau code de suivi, formaté "XXXX-XXXXX".
+     */
+    public String generer() {
+        long numero;
+        synchronized (this) {
+            if (prochain >= finBloc) {
+                prochain = reservation.reserver(tailleBloc);
+                finBloc = prochain + tailleBloc;
+            }
+            numero = prochain++;
+        }
+        if (numero >= (1L << BITS)) {
+            throw new IllegalStateException("Espace des codes de suivi épuisé");
+        }
+        return formater(permuter(numero));
+    }
+
+    /**
+     * Vérifie la forme et le caractère de contrôle d'un code saisi (tirets, casse et
+     * confusions O/0, I/L/1 tolérés), sans accès à la base.
+     */
+    public static boolean estValide(String code) {
+        if (!aLaFormeGeneree(code)) {
+            return false;
+        }
+        String normalise = normaliser(code);
+        return controle(normalise.substring(0, LONGUEUR)) == normalise.charAt(LONGUEUR);
+    }
+
+    /**
+     * Vrai si le code saisi a la forme d'un code généré (9 caractères de l'alphabet, tirets
+     * et confusions tolérés), que son caractère de contrôle soit juste ou non. Des codes
+     * saisis avant le générateur peuvent aussi avoir cette forme ("REP-000123").
+     */
+    public static boolean aLaFormeGeneree(String code) {
+        String normalise = normaliser(code);
+        if (normalise == null || normalise.length() != LONGUEUR + 1) {
+            return false;
+        }
+        for (int i = 0; i < normalise.length(); i++) {
+            if (ALPHABET.indexOf(normalise.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forme canonique "XXXX-XXXXX" d'un code saisi, ou null s'il est invalide.
+     */
+    public static String canonique(String code) {
+        if (!estValide(code)) {
+            return null;
+        }
+        String normalise = normaliser(code);
+        return normalise.substring(0, 4) + "-" + normalise.substring(4);
+    }
+
+    private static String normaliser(String code) {
+        if (code == null) {
+            return null;
+        }
+        StringBuilder resultat = new StringBuilder(code.length());
+        for (char c : code.trim().toUpperCase().toCharArray()) {
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            resultat.append(c == 'O' ? '0' : (c == 'I' || c == 'L') ? '1' : c);
+        }
+        return resultat.toString();
+    }
+
+    // Réseau de Feistel équilibré sur 2 x 20 bits : bijection de [0, 2^40[
+    private long permuter(long numero) {
+        long gauche = numero >>> (BITS / 2);
+        long droite = numero & MASQUE_DEMI;
+        for (int i = 0; i < TOURS; i++) {
+            long suivant = gauche ^ (melanger(droite ^ clesTours[i]) & MASQUE_DEMI);
+            gauche = droite;
+            droite = suivant;
+        }
+        return (gauche << (BITS / 2)) | droite;
+    }
+
+    private static long melanger(long valeur) {
+        valeur = (valeur ^ (valeur >>> 33)) * 0xFF51AFD7ED558CCDL;
+        valeur = (valeur ^ (valeur >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return valeur ^ (valeur >>> 33);
+    }
+
+    private static String formater(long valeur) {
+        char[] caracteres = new char[LONGUEUR];
+        for (int i = LONGUEUR - 1; i >= 0; i--) {
+            caracteres[i] = ALPHABET.charAt((int) (valeur & (BASE - 1)));
+            valeur >>>= 5;
+        }
+        String corps = new String(caracteres);
+        return corps.substring(0, 4) + "-" + corps.substring(4) + controle(corps);
+    }
+
+    // Luhn mod 32 : détecte toute erreur sur un caractère et la plupart des inversions
+    private static char controle(String corps) {
+        int facteur = 2;
+        int somme = 0;
+        for (int i = corps.length() - 1; i >= 0; i--) {
+            int produit = facteur * ALPHABET.indexOf(corps.charAt(i));
+            somme += produit / BASE + produit % BASE;
+            facteur = facteur == 2 ? 1 : 2;
+        }
+        return ALPHABET.charAt((BASE - somme % BASE) % BASE);
+    }
+
+    /**
+     * La clé de permutation est commune à tous les postes (sinon deux postes pourraient
+     * produire le même code) : elle est tirée une seule fois et conservée en base.
+     */
+    private static long lireCle() {
+        EntityManager em = PersistenceManager.creerEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            ecriture(em, "INSERT IGNORE INTO id_generateurs (sequence_name, next_val) VALUES (?, ?)")
+                .setParameter(1, SEQUENCE_CLE)
+                .setParameter(2, new SecureRandom().nextLong() & Long.MAX_VALUE)
+                .executeUpdate();
+            Number cle = (Number) em.createNativeQuery("SELECT next_val FROM id_generateurs WHERE sequence_name = ?")
+                .setParameter(1, SEQUENCE_CLE)
+                .getSingleResult();
+            tx.commit();
+            return cle.longValue();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw new IllegalStateException("Impossible de lire la clé des codes de suivi", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // id_generateurs n'est pas une entité : sans cet espace déclaré, Hibernate viderait
+    // toutes les régions du cache de second niveau à chaque bloc réservé
+    private static NativeQuery<?> ecriture(EntityManager em, String sql) {
+        return em.createNativeQuery(sql).unwrap(NativeQuery.class).addSynchronizedQuerySpace("id_generateurs");
+    }
+
+    private static long reserverEnBase(int taille) {
+        EntityManager em = PersistenceManager.creerEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            ecriture(em, "INSERT IGNORE INTO id_generateurs (sequence_name, next_val) VALUES (?, 0)")
+                .setParameter(1, SEQUENCE)
+                .executeUpdate();
+            Number debut = (Number) em.createNativeQuery(
+                    "SELECT next_val FROM id_generateurs WHERE sequence_name = ? FOR UPDATE")
+                .setParameter(1, SEQUENCE)
+                .getSingleResult();
+            ecriture(em, "UPDATE id_generateurs SET next_val = next_val + ? WHERE sequence_name = ?")
+                .setParameter(1, taille)
+                .setParameter(2, SEQUENCE)
+                .executeUpdate();
+            tx.commit();
+            return debut.longValue();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw new IllegalStateException("Impossible de réserver un bloc de codes de suivi", e);
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -1,11 +1,13 @@
-﻿package metier;
+package metier;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
 import dao.Appareil;
@@ -16,21 +18,10 @@ import exception.InvalidParameterException;
 
 public class GestionAppareil implements IGestionAppareil {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private final EntityManagerFactory emf;
 
     public GestionAppareil() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
-
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -44,6 +35,7 @@ public class GestionAppareil implements IGestionAppareil {
 			e.printStackTrace();
 		}
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -75,6 +67,74 @@ public class GestionAppareil implements IGestionAppareil {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout de l'appareil", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Appareil> appareils) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (appareils == null) {
+            throw new InvalidParameterException("La liste des appareils ne peut pas être null");
+        }
+        if (appareils.isEmpty()) {
+            return;
+        }
+
+        // L'IMEI doit rester unique, y compris à l'intérieur du lot
+        Set<String> imeis = new HashSet<>();
+        for (Appareil appareil : appareils) {
+            if (appareil == null) {
+                throw new InvalidParameterException("L'appareil ne peut pas être null");
+            }
+            if (appareil.getImei() != null && !appareil.getImei().trim().isEmpty()
+                    && !imeis.add(appareil.getImei())) {
+                throw new DuplicateEntityException("L'IMEI " + appareil.getImei() + " apparaît plusieurs fois dans le lot");
+            }
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            List<String> aVerifier = new ArrayList<>(imeis);
+            for (int i = 0; i < aVerifier.size(); i += 1000) {
+                TypedQuery<String> query = em.createQuery(
+                    "SELECT a.imei FROM Appareil a WHERE a.imei IN :imeis", String.class);
+                query.setParameter("imeis", aVerifier.subList(i, Math.min(i + 1000, aVerifier.size())));
+                List<String> existants = query.getResultList();
+                if (!existants.isEmpty()) {
+                    throw new DuplicateEntityException("Un appareil avec l'IMEI " + existants.get(0) + " existe déjà");
+                }
+            }
+
+            int compteur = 0;
+            for (Appareil appareil : appareils) {
+                em.persist(appareil);
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+
+        } catch (DuplicateEntityException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des appareils", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -89,6 +149,7 @@ public class GestionAppareil implements IGestionAppareil {
 			e.printStackTrace();
 		}
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -113,11 +174,14 @@ public class GestionAppareil implements IGestionAppareil {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification de l'appareil", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -141,18 +205,15 @@ public class GestionAppareil implements IGestionAppareil {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression de l'appareil", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Appareil rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
-            // S'assurer que l'EntityManager est ouvert
-            if (!em.isOpen()) {
-                this.em = emf.createEntityManager();
-            }
-            // Rafraîchir le cache
-            em.clear();
             Appareil result = em.find(Appareil.class, id);
             if (result != null) {
                 System.out.println("Appareil trouvé - ID: " + result.getIdAppareil() + ", IMEI: " + result.getImei());
@@ -164,18 +225,15 @@ public class GestionAppareil implements IGestionAppareil {
             System.err.println("Erreur dans rechercher(): " + e.getMessage());
             e.printStackTrace();
             throw new DatabaseException("Erreur lors de la recherche de l'appareil: " + e.getMessage(), e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Appareil> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
-            // S'assurer que l'EntityManager est ouvert
-            if (!em.isOpen()) {
-                this.em = emf.createEntityManager();
-            }
-            // Rafraîchir le cache pour avoir les dernières données
-            em.clear();
             TypedQuery<Appareil> query = em.createQuery("SELECT a FROM Appareil a", Appareil.class);
             List<Appareil> result = query.getResultList();
             System.out.println("Nombre d'appareils trouvés: " + result.size());
@@ -184,6 +242,8 @@ public class GestionAppareil implements IGestionAppareil {
             System.err.println("Erreur dans lister(): " + e.getMessage());
             e.printStackTrace();
             throw new DatabaseException("Erreur lors du listage des appareils: " + e.getMessage(), e);
+        } finally {
+            em.close();
         }
     }
 
@@ -193,6 +253,7 @@ public class GestionAppareil implements IGestionAppareil {
             throw new InvalidParameterException("L'IMEI ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Appareil> query = em.createQuery(
                 "SELECT a FROM Appareil a WHERE LOWER(a.imei) LIKE LOWER(:imei)", Appareil.class);
@@ -200,6 +261,8 @@ public class GestionAppareil implements IGestionAppareil {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des appareils par IMEI", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -209,6 +272,7 @@ public class GestionAppareil implements IGestionAppareil {
             throw new InvalidParameterException("La marque ne peut pas être null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Appareil> query = em.createQuery(
                 "SELECT a FROM Appareil a WHERE LOWER(a.marque) LIKE LOWER(:marque)", Appareil.class);
@@ -216,6 +280,8 @@ public class GestionAppareil implements IGestionAppareil {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des appareils par marque", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -225,6 +291,7 @@ public class GestionAppareil implements IGestionAppareil {
             throw new InvalidParameterException("Le modÃ¨le ne peut pas être null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Appareil> query = em.createQuery(
                 "SELECT a FROM Appareil a WHERE LOWER(a.modele) LIKE LOWER(:modele)", Appareil.class);
@@ -232,6 +299,8 @@ public class GestionAppareil implements IGestionAppareil {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des appareils par modéle", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -241,6 +310,7 @@ public class GestionAppareil implements IGestionAppareil {
             throw new InvalidParameterException("Le type d'appareil ne peut pas être null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Appareil> query = em.createQuery(
                 "SELECT a FROM Appareil a WHERE LOWER(a.typeAppareil) LIKE LOWER(:typeAppareil)", Appareil.class);
@@ -248,6 +318,8 @@ public class GestionAppareil implements IGestionAppareil {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des appareils par type", e);
+        } finally {
+            em.close();
         }
     }
 }
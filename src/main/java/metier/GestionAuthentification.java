@@ -0,0 +1,181 @@
+package metier;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.hibernate.query.NativeQuery;
+
+import dao.Proprietaire;
+import dao.Reparateur;
+import exception.DatabaseException;
+
+/**
+ * Connexion des réparateurs, propriétaires et de l'administrateur.
+ *
+ * Le compte est trouvé en une seule requête sur les tables Reparateur et Proprietaire
+ * de la hiérarchie Personne (UNION ALL, chaque branche sur l'index de son email ; les
+ * emails sont enregistrés en minuscules). Le mot de passe est vérifié contre une
+ * empreinte PBKDF2 (cf. MotDePasse) ; un mot de passe encore en clair est haché à la
+ * première connexion réussie. Les emails inconnus sont mémorisés quelques secondes
+ * (fastrepair.auth.cache_negatif_ms) pour ne pas interroger la base à chaque essai.
+ *
+ * Le service ne garde pas d'EntityManager : il peut être partagé entre plusieurs postes.
+ */
+public class GestionAuthentification implements IGestionAuthentification {
+
+    private static final String RECHERCHE_COMPTE =
+        "SELECT 'REPARATEUR', r.id, r.mdp FROM Reparateur r WHERE r.email = ?1 "
+        + "UNION ALL SELECT 'PROPRIETAIRE', p.id, p.mdp FROM Proprietaire p WHERE p.email = ?1";
+
+    private static final int TAILLE_MAX_CACHE_NEGATIF = 10_000;
+
+    private final Map<String, Long> emailsInconnus = new ConcurrentHashMap<>();
+    private volatile long generationCache = SessionUtilisateur.generation();
+
+    @Override
+    public Authentification authentifier(String email, String motDePasse) throws DatabaseException {
+        return authentifier(email, motDePasse, null);
+    }
+
+    @Override
+    public Authentification authentifier(String email, String motDePasse, String role) throws DatabaseException {
+        String emailNormalise = normaliserEmail(email);
+        if (emailNormalise == null || motDePasse == null || motDePasse.isEmpty()) {
+            return null;
+        }
+        String roleDemande = role != null ? role.toUpperCase(Locale.ROOT) : null;
+
+        if (emailNormalise.equals(normaliserEmail(PersistenceManager.getEmailAdmin()))) {
+            if (roleDemande != null && !SessionUtilisateur.ADMIN.equals(roleDemande)) {
+                return null;
+            }
+            boolean valide = MotDePasse.verifier(motDePasse, PersistenceManager.getMotDePasseAdmin());
+            return valide ? new Authentification(SessionUtilisateur.ADMIN, 0, emailNormalise) : null;
+        }
+        if (SessionUtilisateur.ADMIN.equals(roleDemande) || estInconnu(emailNormalise)) {
+            MotDePasse.verifier(motDePasse, Leurre.EMPREINTE);
+            return null;
+        }
+
+        List<Object[]> comptes = rechercherComptes(emailNormalise);
+        if (comptes.isEmpty()) {
+            memoriserInconnu(emailNormalise);
+            MotDePasse.verifier(motDePasse, Leurre.EMPREINTE);
+            return null;
+        }
+
+        for (Object[] compte : comptes) {
+            String roleCompte = (String) compte[0];
+            int id = ((Number) compte[1]).intValue();
+            String stocke = (String) compte[2];
+            if (roleDemande != null && !roleDemande.equals(roleCompte)) {
+                continue;
+            }
+            if (MotDePasse.verifier(motDePasse, stocke)) {
+                int iterations = PersistenceManager.getIterationsMotDePasse();
+                if (MotDePasse.doitEtreRehache(stocke, iterations)) {
+                    remplacerEmpreinte(roleCompte, id, MotDePasse.hacher(motDePasse, iterations));
+                }
+                return new Authentification(roleCompte, id, emailNormalise);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void viderCacheNegatif() {
+        emailsInconnus.clear();
+    }
+
+    /**
+     * Forme enregistrée d'un email (sans espaces, en minuscules), ou null s'il est vide.
+     */
+    static String normaliserEmail(String email) {
+        if (email == null || email.trim().isEmpty()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> rechercherComptes(String email) throws DatabaseException {
+        EntityManager em = PersistenceManager.creerEntityManager();
+        try {
+            return em.createNativeQuery(RECHERCHE_COMPTE)
+                .setParameter(1, email)
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la recherche du compte " + email, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Mise à niveau transparente : clair -> empreinte, ou empreinte moins coûteuse que la configuration
+    private void remplacerEmpreinte(String role, int id, String empreinte) {
+        Class<?> entite = SessionUtilisateur.REPARATEUR.equals(role) ? Reparateur.class : Proprietaire.class;
+        EntityManager em = PersistenceManager.creerEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            // Requête native déclarée sur l'entité : Hibernate n'invalide que sa région du cache, pas toutes
+            em.createNativeQuery("UPDATE " + entite.getSimpleName() + " SET mdp = ?1 WHERE id = ?2")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(entite)
+                .setParameter(1, empreinte)
+                .setParameter(2, id)
+                .executeUpdate();
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            // La connexion reste valide ; la mise à niveau sera retentée à la prochaine
+            System.err.println("AUTH - Mise à niveau du mot de passe impossible pour " + role + " " + id + ": " + e.getMessage());
+        } finally {
+            em.close();
+        }
+    }
+
+    private boolean estInconnu(String email) {
+        long generation = SessionUtilisateur.generation();
+        if (generation != generationCache) {
+            // Un réparateur ou un propriétaire a pu être créé ou modifié depuis
+            emailsInconnus.clear();
+            generationCache = generation;
+            return false;
+        }
+        Long expiration = emailsInconnus.get(email);
+        if (expiration == null) {
+            return false;
+        }
+        if (expiration < System.currentTimeMillis()) {
+            emailsInconnus.remove(email, expiration);
+            return false;
+        }
+        return true;
+    }
+
+    private void memoriserInconnu(String email) {
+        long duree = PersistenceManager.getDureeCacheAuthentificationNegatifMs();
+        if (duree <= 0) {
+            return;
+        }
+        if (emailsInconnus.size() >= TAILLE_MAX_CACHE_NEGATIF) {
+            emailsInconnus.clear();
+        }
+        emailsInconnus.put(email, System.currentTimeMillis() + duree);
+    }
+
+    // Empreinte vérifiée pour un email inconnu : même durée de réponse que pour un compte existant.
+    // Calculée au premier refus (chargement de la classe) et non à la construction du service,
+    // créé par l'écran de connexion sur l'EDT avant la fin du démarrage d'Hibernate
+    private static final class Leurre {
+        static final String EMPREINTE = MotDePasse.hacher("leurre");
+    }
+}
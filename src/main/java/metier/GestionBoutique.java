@@ -1,11 +1,10 @@
-﻿package metier;
+package metier;
 
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
 import dao.Boutique;
@@ -16,21 +15,10 @@ import exception.InvalidParameterException;
 
 public class GestionBoutique implements IGestionBoutique {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private final EntityManagerFactory emf;
 
     public GestionBoutique() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
-
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -44,6 +32,7 @@ public class GestionBoutique implements IGestionBoutique {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -66,8 +55,10 @@ public class GestionBoutique implements IGestionBoutique {
                 .build();
 
             em.persist(caisse);
+            MouvementsCaisse.ouvrirJournal(em, caisse);
 
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (DuplicateEntityException e) {
             if (tx != null && tx.isActive()) {
@@ -79,6 +70,65 @@ public class GestionBoutique implements IGestionBoutique {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout de la boutique", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Boutique> boutiques) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (boutiques == null) {
+            throw new InvalidParameterException("La liste des boutiques ne peut pas être null");
+        }
+        if (boutiques.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            int compteur = 0;
+            for (Boutique boutique : boutiques) {
+                if (boutique == null) {
+                    throw new InvalidParameterException("La boutique ne peut pas être null");
+                }
+                em.persist(boutique);
+
+                // Comme pour ajouter(), chaque boutique reçoit sa caisse
+                dao.Caisse caisse = dao.Caisse.builder()
+                    .soldeActuel(0.0)
+                    .dernierMouvement(java.time.LocalDateTime.now())
+                    .boutique(boutique)
+                    .build();
+                em.persist(caisse);
+                MouvementsCaisse.ouvrirJournal(em, caisse);
+
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+            SessionUtilisateur.signalerModification();
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des boutiques", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -93,6 +143,7 @@ public class GestionBoutique implements IGestionBoutique {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -111,6 +162,7 @@ public class GestionBoutique implements IGestionBoutique {
 
             em.merge(existingBoutique);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -122,11 +174,14 @@ public class GestionBoutique implements IGestionBoutique {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification de la boutique", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -139,6 +194,7 @@ public class GestionBoutique implements IGestionBoutique {
 
             em.remove(boutique);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -150,25 +206,36 @@ public class GestionBoutique implements IGestionBoutique {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression de la boutique", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Boutique rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Boutique.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche de la boutique", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Boutique> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Boutique> query = em.createQuery("SELECT b FROM Boutique b", Boutique.class);
+            // Données de référence : résultat conservé dans le cache de requêtes,
+            // invalidé automatiquement dès qu'une écriture touche la table
+            query.setHint("org.hibernate.cacheable", true);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des boutiques", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -178,6 +245,7 @@ public class GestionBoutique implements IGestionBoutique {
             throw new InvalidParameterException("Le nom ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Boutique> query = em.createQuery(
                 "SELECT b FROM Boutique b WHERE LOWER(b.nom) LIKE LOWER(:nom)", Boutique.class);
@@ -185,6 +253,8 @@ public class GestionBoutique implements IGestionBoutique {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des boutiques par nom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -194,6 +264,7 @@ public class GestionBoutique implements IGestionBoutique {
             throw new InvalidParameterException("L'adresse ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Boutique> query = em.createQuery(
                 "SELECT b FROM Boutique b WHERE LOWER(b.adresse) LIKE LOWER(:adresse)", Boutique.class);
@@ -201,6 +272,8 @@ public class GestionBoutique implements IGestionBoutique {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des boutiques par adresse", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -210,6 +283,7 @@ public class GestionBoutique implements IGestionBoutique {
             throw new InvalidParameterException("Le numÃ©ro de tÃ©lÃ©phone doit Ãªtre positif");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Boutique> query = em.createQuery(
                 "SELECT b FROM Boutique b WHERE b.numTel = :numTel", Boutique.class);
@@ -217,6 +291,8 @@ public class GestionBoutique implements IGestionBoutique {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des boutiques par numÃ©ro de tÃ©lÃ©phone", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -226,6 +302,7 @@ public class GestionBoutique implements IGestionBoutique {
             throw new InvalidParameterException("Le numÃ©ro P doit Ãªtre positif");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Boutique> query = em.createQuery(
                 "SELECT b FROM Boutique b WHERE b.numP = :numP", Boutique.class);
@@ -233,6 +310,27 @@ public class GestionBoutique implements IGestionBoutique {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des boutiques par numÃ©ro P", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Boutique> listerParProprietaire(int idProprietaire) throws InvalidParameterException, DatabaseException {
+        if (idProprietaire <= 0) {
+            throw new InvalidParameterException("L'identifiant du propriétaire doit être positif");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Boutique> query = em.createQuery(
+                "SELECT b FROM Boutique b WHERE b.proprietaire.id = :idProprietaire ORDER BY b.idBoutique", Boutique.class);
+            query.setParameter("idProprietaire", idProprietaire);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des boutiques du propriétaire", e);
+        } finally {
+            em.close();
         }
     }
 }
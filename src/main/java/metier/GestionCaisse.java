@@ -1,15 +1,21 @@
-﻿package metier;
+package metier;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.TypedQuery;
 
+import dao.ArreteCaisse;
 import dao.Caisse;
+import dao.EcritureCaisse;
 import exception.DatabaseException;
 import exception.DuplicateEntityException;
 import exception.EntityNotFoundException;
@@ -17,21 +23,18 @@ import exception.InvalidParameterException;
 
 public class GestionCaisse implements IGestionCaisse {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    // Projection des seules colonnes affichées dans les tableaux
+    private static final String SELECT_VUE = "SELECT NEW metier.CaisseVue(c.idCaisse, COALESCE(b.idBoutique, 0), c.soldeActuel, c.dernierMouvement) "
+        + "FROM Caisse c LEFT JOIN c.boutique b";
 
-    public GestionCaisse() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
+    private static final int TAILLE_LISTE_IN = 1000;
+    // Écart toléré entre montants en double (un demi-centime)
+    private static final double TOLERANCE_MONTANT = 0.005;
 
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+    private final EntityManagerFactory emf;
+
+    public GestionCaisse() {
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -45,6 +48,7 @@ public class GestionCaisse implements IGestionCaisse {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -56,13 +60,65 @@ public class GestionCaisse implements IGestionCaisse {
             }
 
             em.persist(caisse);
+            MouvementsCaisse.ouvrirJournal(em, caisse);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (Exception e) {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout de la caisse", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Caisse> caisses) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (caisses == null) {
+            throw new InvalidParameterException("La liste des caisses ne peut pas être null");
+        }
+        if (caisses.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            int compteur = 0;
+            for (Caisse caisse : caisses) {
+                if (caisse == null) {
+                    throw new InvalidParameterException("La caisse ne peut pas être null");
+                }
+                em.persist(caisse);
+                MouvementsCaisse.ouvrirJournal(em, caisse);
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+            SessionUtilisateur.signalerModification();
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des caisses", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -77,32 +133,54 @@ public class GestionCaisse implements IGestionCaisse {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
             tx.begin();
 
+            // Valeurs saisies et version sur laquelle elles ont été faites
+            double solde = caisse.getSoldeActuel();
+            LocalDateTime dernierMouvement = caisse.getDernierMouvement();
+            long versionLue = caisse.getVersion();
+
             Caisse existingCaisse = em.find(Caisse.class, caisse.getIdCaisse());
             if (existingCaisse == null) {
                 throw new EntityNotFoundException("Caisse avec l'ID " + caisse.getIdCaisse() + " non trouvÃ©e");
             }
+            if (existingCaisse.getVersion() != versionLue) {
+                // Un mouvement a eu lieu depuis la lecture : ne pas écraser le solde qu'il a produit
+                throw new OptimisticLockException("Caisse " + caisse.getIdCaisse() + " modifiée depuis sa lecture");
+            }
 
-            existingCaisse.setSoldeActuel(caisse.getSoldeActuel());
-            existingCaisse.setDernierMouvement(caisse.getDernierMouvement());
-
-            em.merge(existingCaisse);
+            double ecart = solde - existingCaisse.getSoldeActuel();
+            if (ecart != 0) {
+                // Un solde saisi est une écriture d'ajustement du journal, datée par la base
+                MouvementsCaisse.appliquer(em, existingCaisse.getIdCaisse(), ecart, false,
+                    EcritureCaisse.ORIGINE_AJUSTEMENT, 0);
+            } else {
+                existingCaisse.setDernierMouvement(dernierMouvement);
+                em.merge(existingCaisse);
+            }
+            // Solde et date seulement : la caisse reste rattachée à sa boutique, les sessions n'ont rien à relire
             tx.commit();
 
         } catch (Exception e) {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
+            if (MouvementsCaisse.estConflitTransitoire(e)) {
+                throw new DatabaseException("La caisse a été modifiée par un autre poste entre-temps ; rechargez-la avant de la modifier", e);
+            }
             throw new DatabaseException("Erreur lors de la modification de la caisse", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -115,6 +193,7 @@ public class GestionCaisse implements IGestionCaisse {
 
             em.remove(caisse);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -126,30 +205,181 @@ public class GestionCaisse implements IGestionCaisse {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression de la caisse", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public double encaisser(int idCaisse, double montant, int idReparation) throws InvalidParameterException, DatabaseException {
+        if (!(montant > 0) || Double.isInfinite(montant)) {
+            throw new InvalidParameterException("Le montant doit être positif");
+        }
+        Caisse caisse = MouvementsCaisse.executer(
+            emTx -> MouvementsCaisse.appliquer(emTx, idCaisse, montant, false,
+                EcritureCaisse.ORIGINE_REPARATION, idReparation),
+            "Erreur lors de l'encaissement sur la caisse " + idCaisse);
+        return caisse.getSoldeActuel();
+    }
+
+    @Override
+    public double soldeAu(int idCaisse, LocalDateTime instant) throws InvalidParameterException, DatabaseException {
+        if (instant == null) {
+            throw new InvalidParameterException("La date ne peut pas être null");
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            return solde(em, idCaisse, instant, true);
+        } catch (InvalidParameterException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du calcul du solde de la caisse " + idCaisse + " au " + instant, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<EcritureCaisse> listerEcritures(int idCaisse, LocalDateTime debut, LocalDateTime fin)
+            throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période doit avoir un début et une fin, dans cet ordre");
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ecrituresEntre(em, idCaisse, debut, fin);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage du journal de la caisse " + idCaisse, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public RapprochementCaisse rapprocher(int idCaisse, LocalDate jour) throws InvalidParameterException, DatabaseException {
+        if (jour == null) {
+            throw new InvalidParameterException("Le jour ne peut pas être null");
+        }
+        LocalDateTime debut = jour.atStartOfDay();
+        LocalDateTime fin = jour.plusDays(1).atStartOfDay();
+        EntityManager em = emf.createEntityManager();
+        try {
+            Caisse caisse = em.find(Caisse.class, idCaisse);
+            if (caisse == null) {
+                throw new InvalidParameterException("Caisse introuvable");
+            }
+
+            List<String> anomalies = new ArrayList<>();
+            ArreteCaisse ouverture = dernierArrete(em, idCaisse, debut, false);
+            double soldeOuverture;
+            long numeroPrecedent;
+            if (ouverture != null) {
+                soldeOuverture = solde(em, idCaisse, debut, false);
+                numeroPrecedent = dernierNumeroAvant(em, idCaisse, debut, ouverture);
+            } else {
+                // Journal ouvert pendant la journée : partir de son arrêté d'ouverture
+                ouverture = premierArrete(em, idCaisse);
+                if (ouverture == null || !ouverture.getDate().isBefore(fin)) {
+                    throw new InvalidParameterException("Le journal de la caisse " + idCaisse + " ne couvre pas le " + jour);
+                }
+                soldeOuverture = ouverture.getSolde();
+                numeroPrecedent = ouverture.getNumero();
+            }
+
+            // Écritures du jour seulement (index caisse + date) : chaînage des numéros et des soldes
+            List<EcritureCaisse> ecritures = ecrituresEntre(em, idCaisse, debut, fin);
+            double entrees = 0;
+            double sorties = 0;
+            double soldeCourant = soldeOuverture;
+            double empruntsJournal = 0;
+            for (EcritureCaisse ecriture : ecritures) {
+                if (ecriture.getNumero() != numeroPrecedent + 1) {
+                    anomalies.add("Écriture n° " + (numeroPrecedent + 1) + " manquante avant la n° " + ecriture.getNumero());
+                }
+                soldeCourant += ecriture.getMontant();
+                if (Math.abs(soldeCourant - ecriture.getSoldeApres()) > TOLERANCE_MONTANT) {
+                    anomalies.add(String.format("Écriture n° %d : solde %.2f attendu, %.2f enregistré",
+                        ecriture.getNumero(), soldeCourant, ecriture.getSoldeApres()));
+                    soldeCourant = ecriture.getSoldeApres();
+                }
+                if (ecriture.getMontant() >= 0) {
+                    entrees += ecriture.getMontant();
+                } else {
+                    sorties -= ecriture.getMontant();
+                }
+                if (EcritureCaisse.ORIGINE_EMPRUNT.equals(ecriture.getOrigine())) {
+                    empruntsJournal += ecriture.getMontant();
+                }
+                numeroPrecedent = ecriture.getNumero();
+            }
+
+            // Les emprunts saisis ce jour-là doivent tous figurer au journal
+            double empruntsSaisis = ((Number) em.createQuery(
+                "SELECT COALESCE(SUM(CASE WHEN e.type IN ('Ajout de fonds', 'Dépôt') THEN e.montant "
+                + "WHEN e.type IN ('Retrait de fonds', 'Prêt') THEN -e.montant ELSE 0 END), 0) "
+                + "FROM Emprunt e WHERE e.caisse.idCaisse = :id AND e.date >= :debut AND e.date < :fin")
+                .setParameter("id", idCaisse)
+                .setParameter("debut", debut.isAfter(ouverture.getDate()) ? debut : ouverture.getDate())
+                .setParameter("fin", fin)
+                .getSingleResult()).doubleValue();
+            if (Math.abs(empruntsSaisis - empruntsJournal) > TOLERANCE_MONTANT) {
+                anomalies.add(String.format("Emprunts du jour : %.2f saisis, %.2f au journal", empruntsSaisis, empruntsJournal));
+            }
+
+            // Dernière journée du journal : la clôture doit être le solde actuel de la caisse
+            if (numeroPrecedent == caisse.getNombreEcritures()
+                    && Math.abs(soldeCourant - caisse.getSoldeActuel()) > TOLERANCE_MONTANT) {
+                anomalies.add(String.format("Solde de clôture %.2f différent du solde actuel %.2f",
+                    soldeCourant, caisse.getSoldeActuel()));
+            }
+
+            return RapprochementCaisse.builder()
+                .idCaisse(idCaisse)
+                .jour(jour)
+                .soldeOuverture(soldeOuverture)
+                .entrees(entrees)
+                .sorties(sorties)
+                .soldeCloture(soldeCourant)
+                .nombreEcritures(ecritures.size())
+                .anomalies(anomalies)
+                .build();
+        } catch (InvalidParameterException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du rapprochement de la caisse " + idCaisse + " du " + jour, e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Caisse rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Caisse.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche de la caisse", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Caisse> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Caisse> query = em.createQuery("SELECT c FROM Caisse c", Caisse.class);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des caisses", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Caisse> filtrerParSoldeActuel(double soldeActuel) throws InvalidParameterException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Caisse> query = em.createQuery(
                 "SELECT c FROM Caisse c WHERE c.soldeActuel = :soldeActuel", Caisse.class);
@@ -157,6 +387,8 @@ public class GestionCaisse implements IGestionCaisse {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des caisses par solde actuel", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -166,6 +398,7 @@ public class GestionCaisse implements IGestionCaisse {
             throw new InvalidParameterException("Le dernier mouvement ne peut pas Ãªtre null");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Caisse> query = em.createQuery(
                 "SELECT c FROM Caisse c WHERE c.dernierMouvement = :dernierMouvement", Caisse.class);
@@ -173,6 +406,8 @@ public class GestionCaisse implements IGestionCaisse {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des caisses par dernier mouvement", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -182,6 +417,7 @@ public class GestionCaisse implements IGestionCaisse {
             return false;
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Long> query = em.createQuery(
                 "SELECT COUNT(c) FROM Caisse c WHERE c.boutique.idBoutique = :idBoutique", Long.class);
@@ -190,11 +426,191 @@ public class GestionCaisse implements IGestionCaisse {
             return count > 0;
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la vérification de l'existence d'une caisse pour la boutique " + idBoutique, e);
+        } finally {
+            em.close();
         }
     }
-}
 
+    @Override
+    public List<CaisseVue> listerVues() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(SELECT_VUE + " ORDER BY c.idCaisse", CaisseVue.class).getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des caisses", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<CaisseVue> listerVuesParProprietaire(int idProprietaire) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<CaisseVue> query = em.createQuery(
+                SELECT_VUE + " WHERE b.proprietaire.id = :idProprietaire ORDER BY c.idCaisse", CaisseVue.class);
+            query.setParameter("idProprietaire", idProprietaire);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des caisses du propriétaire", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Page<Caisse> filtrerParPeriodeDernierMouvement(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Intervalle [debut, fin[ : un seul parcours de l'index sur dernierMouvement
+            String condition = " WHERE c.dernierMouvement >= :debut AND c.dernierMouvement < :fin";
+            TypedQuery<Caisse> query = em.createQuery(
+                "SELECT c FROM Caisse c" + condition + " ORDER BY c.dernierMouvement, c.idCaisse", Caisse.class);
+            query.setParameter("debut", debut);
+            query.setParameter("fin", fin);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+
+            TypedQuery<Long> total = em.createQuery("SELECT COUNT(c) FROM Caisse c" + condition, Long.class);
+            total.setParameter("debut", debut);
+            total.setParameter("fin", fin);
+            return new Page<>(query.getResultList(), offset, limite, total.getSingleResult());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du filtrage des caisses par période", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Caisse rechercherCaisseParBoutique(int idBoutique) throws DatabaseException {
+        if (idBoutique <= 0) {
+            return null;
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Caisse> query = em.createQuery(
+                "SELECT c FROM Caisse c WHERE c.boutique.idBoutique = :idBoutique", Caisse.class);
+            query.setParameter("idBoutique", idBoutique);
+            List<Caisse> resultat = query.getResultList();
+            return resultat.isEmpty() ? null : resultat.get(0);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la recherche de la caisse de la boutique " + idBoutique, e);
+        } finally {
+            em.close();
+        }
+    }
 
+    @Override
+    public List<Caisse> listerParBoutiques(Collection<Integer> idsBoutiques) throws InvalidParameterException, DatabaseException {
+        if (idsBoutiques == null) {
+            throw new InvalidParameterException("La liste des boutiques ne peut pas être null");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Liste IN sur l'index de idBoutique, par tranches de TAILLE_LISTE_IN identifiants
+            List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(idsBoutiques));
+            List<Caisse> resultat = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i += TAILLE_LISTE_IN) {
+                TypedQuery<Caisse> query = em.createQuery(
+                    "SELECT c FROM Caisse c WHERE c.boutique.idBoutique IN :ids ORDER BY c.idCaisse", Caisse.class);
+                query.setParameter("ids", ids.subList(i, Math.min(i + TAILLE_LISTE_IN, ids.size())));
+                resultat.addAll(query.getResultList());
+            }
+            return resultat;
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des caisses par boutiques", e);
+        } finally {
+            em.close();
+        }
+    }
 
+    @Override
+    public List<Caisse> listerParProprietaire(int idProprietaire) throws InvalidParameterException, DatabaseException {
+        if (idProprietaire <= 0) {
+            throw new InvalidParameterException("L'identifiant du propriétaire doit être positif");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Caisse> query = em.createQuery(
+                "SELECT c FROM Caisse c JOIN c.boutique b WHERE b.proprietaire.id = :idProprietaire ORDER BY c.idCaisse", Caisse.class);
+            query.setParameter("idProprietaire", idProprietaire);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des caisses du propriétaire", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Solde au dernier arrêté antérieur, plus les écritures qui le suivent jusqu'à l'instant :
+    // au plus fastrepair.caisse.intervalle_arretes écritures (les dates suivent les numéros)
+    private double solde(EntityManager em, int idCaisse, LocalDateTime instant, boolean inclus) throws InvalidParameterException {
+        ArreteCaisse arrete = dernierArrete(em, idCaisse, instant, inclus);
+        if (arrete == null) {
+            throw new InvalidParameterException("Le journal de la caisse " + idCaisse + " ne remonte pas au " + instant);
+        }
+        Number ecarts = (Number) em.createQuery(
+            "SELECT COALESCE(SUM(e.montant), 0) FROM EcritureCaisse e WHERE e.idCaisse = :id "
+            + "AND e.date >= :depuis AND e.date " + (inclus ? "<=" : "<") + " :instant AND e.numero > :numero")
+            .setParameter("id", idCaisse)
+            .setParameter("depuis", arrete.getDate())
+            .setParameter("instant", instant)
+            .setParameter("numero", arrete.getNumero())
+            .getSingleResult();
+        return arrete.getSolde() + ecarts.doubleValue();
+    }
+
+    private ArreteCaisse dernierArrete(EntityManager em, int idCaisse, LocalDateTime instant, boolean inclus) {
+        List<ArreteCaisse> arretes = em.createQuery(
+            "SELECT a FROM ArreteCaisse a WHERE a.idCaisse = :id AND a.date " + (inclus ? "<=" : "<") + " :instant "
+            + "ORDER BY a.date DESC, a.numero DESC", ArreteCaisse.class)
+            .setParameter("id", idCaisse)
+            .setParameter("instant", instant)
+            .setMaxResults(1)
+            .getResultList();
+        return arretes.isEmpty() ? null : arretes.get(0);
+    }
+
+    private ArreteCaisse premierArrete(EntityManager em, int idCaisse) {
+        List<ArreteCaisse> arretes = em.createQuery(
+            "SELECT a FROM ArreteCaisse a WHERE a.idCaisse = :id ORDER BY a.numero", ArreteCaisse.class)
+            .setParameter("id", idCaisse)
+            .setMaxResults(1)
+            .getResultList();
+        return arretes.isEmpty() ? null : arretes.get(0);
+    }
+
+    // Numéro de la dernière écriture antérieure à l'instant (celui de l'arrêté s'il n'y en a pas depuis)
+    private long dernierNumeroAvant(EntityManager em, int idCaisse, LocalDateTime instant, ArreteCaisse arrete) {
+        Number numero = (Number) em.createQuery(
+            "SELECT MAX(e.numero) FROM EcritureCaisse e WHERE e.idCaisse = :id "
+            + "AND e.date >= :depuis AND e.date < :instant AND e.numero > :numero")
+            .setParameter("id", idCaisse)
+            .setParameter("depuis", arrete.getDate())
+            .setParameter("instant", instant)
+            .setParameter("numero", arrete.getNumero())
+            .getSingleResult();
+        return numero != null ? numero.longValue() : arrete.getNumero();
+    }
+
+    private List<EcritureCaisse> ecrituresEntre(EntityManager em, int idCaisse, LocalDateTime debut, LocalDateTime fin) {
+        return em.createQuery(
+            "SELECT e FROM EcritureCaisse e WHERE e.idCaisse = :id AND e.date >= :debut AND e.date < :fin "
+            + "ORDER BY e.numero", EcritureCaisse.class)
+            .setParameter("id", idCaisse)
+            .setParameter("debut", debut)
+            .setParameter("fin", fin)
+            .getResultList();
+    }
+}
@@ -1,11 +1,10 @@
-﻿package metier;
+package metier;
 
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
 import dao.Client;
@@ -16,21 +15,10 @@ import exception.InvalidParameterException;
 
 public class GestionClient implements IGestionClient {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private final EntityManagerFactory emf;
 
     public GestionClient() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
-
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -44,6 +32,7 @@ public class GestionClient implements IGestionClient {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -63,6 +52,54 @@ public class GestionClient implements IGestionClient {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout du client", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Client> clients) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (clients == null) {
+            throw new InvalidParameterException("La liste des clients ne peut pas être null");
+        }
+        if (clients.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            int compteur = 0;
+            for (Client client : clients) {
+                if (client == null) {
+                    throw new InvalidParameterException("Le client ne peut pas être null");
+                }
+                em.persist(client);
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des clients", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -77,6 +114,7 @@ public class GestionClient implements IGestionClient {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -101,11 +139,14 @@ public class GestionClient implements IGestionClient {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification du client", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -129,25 +170,33 @@ public class GestionClient implements IGestionClient {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression du client", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Client rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Client.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche du client", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Client> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Client> query = em.createQuery("SELECT c FROM Client c", Client.class);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des clients", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -157,6 +206,7 @@ public class GestionClient implements IGestionClient {
             throw new InvalidParameterException("Le nom ne peut pas être null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Client> query = em.createQuery(
                 "SELECT c FROM Client c WHERE LOWER(c.nom) LIKE LOWER(:nom)", Client.class);
@@ -164,6 +214,8 @@ public class GestionClient implements IGestionClient {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des clients par nom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -173,6 +225,7 @@ public class GestionClient implements IGestionClient {
             throw new InvalidParameterException("Le prénom ne peut pas être null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Client> query = em.createQuery(
                 "SELECT c FROM Client c WHERE LOWER(c.prenom) LIKE LOWER(:prenom)", Client.class);
@@ -180,6 +233,8 @@ public class GestionClient implements IGestionClient {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des clients par prénom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -189,6 +244,7 @@ public class GestionClient implements IGestionClient {
             throw new InvalidParameterException("L'adresse ne peut pas être null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Client> query = em.createQuery(
                 "SELECT c FROM Client c WHERE LOWER(c.adresse) LIKE LOWER(:adresse)", Client.class);
@@ -196,6 +252,8 @@ public class GestionClient implements IGestionClient {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des clients par adresse", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -205,6 +263,7 @@ public class GestionClient implements IGestionClient {
             throw new InvalidParameterException("Le numéro de téléphone doit être positif");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Client> query = em.createQuery(
                 "SELECT c FROM Client c WHERE c.telephone = :telephone", Client.class);
@@ -212,6 +271,8 @@ public class GestionClient implements IGestionClient {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des clients par téléphone", e);
+        } finally {
+            em.close();
         }
     }
 }
@@ -1,36 +1,33 @@
-﻿package metier;
+package metier;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 
 import dao.Composant;
+import dao.PrixComposant;
 import exception.DatabaseException;
 import exception.DuplicateEntityException;
 import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
+import metier.MouvementsStock.Mouvement;
 
 public class GestionComposant implements IGestionComposant {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private final EntityManagerFactory emf;
 
     public GestionComposant() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
-
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -44,6 +41,7 @@ public class GestionComposant implements IGestionComposant {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -55,7 +53,11 @@ public class GestionComposant implements IGestionComposant {
             }
 
             em.persist(composant);
+            PrixComposant prix = HistoriquesPrix.enregistrer(em, composant.getIdComposant(), LocalDateTime.now(), composant.getPrix());
             tx.commit();
+            AlertesStock.composantModifie(composant.getIdComposant(), composant.getNom(),
+                composant.getQuantite(), composant.getSeuilReapprovisionnement());
+            HistoriquesPrix.prixModifie(prix.getIdComposant(), prix.getDateEffet(), prix.getCentimes());
 
         } catch (DuplicateEntityException e) {
             if (tx != null && tx.isActive()) {
@@ -67,6 +69,62 @@ public class GestionComposant implements IGestionComposant {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout du composant", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Composant> composants) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (composants == null) {
+            throw new InvalidParameterException("La liste des composants ne peut pas être null");
+        }
+        if (composants.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            int compteur = 0;
+            LocalDateTime maintenant = LocalDateTime.now();
+            for (Composant composant : composants) {
+                if (composant == null) {
+                    throw new InvalidParameterException("Le composant ne peut pas être null");
+                }
+                em.persist(composant);
+                HistoriquesPrix.enregistrer(em, composant.getIdComposant(), maintenant, composant.getPrix());
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+            for (Composant composant : composants) {
+                if (composant.getSeuilReapprovisionnement() > 0) {
+                    AlertesStock.composantModifie(composant.getIdComposant(), composant.getNom(),
+                        composant.getQuantite(), composant.getSeuilReapprovisionnement());
+                }
+            }
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des composants", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -81,22 +139,36 @@ public class GestionComposant implements IGestionComposant {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
             tx.begin();
 
-            Composant existingComposant = em.find(Composant.class, composant.getIdComposant());
+            // Ligne verrouillée : la quantité relue pour l'index des alertes est celle qui sera validée
+            Composant existingComposant = em.find(Composant.class, composant.getIdComposant(), LockModeType.PESSIMISTIC_WRITE);
             if (existingComposant == null) {
                 throw new EntityNotFoundException("Composant avec l'ID " + composant.getIdComposant() + " non trouvÃ©");
             }
 
+            // Nouveau prix ajouté à l'historique : les réparations passées restent chiffrables à leur date
+            PrixComposant prix = null;
+            if (HistoriquesPrix.centimes(existingComposant.getPrix()) != HistoriquesPrix.centimes(composant.getPrix())) {
+                prix = HistoriquesPrix.enregistrer(em, existingComposant.getIdComposant(), LocalDateTime.now(), composant.getPrix());
+            }
             existingComposant.setNom(composant.getNom());
             existingComposant.setPrix(composant.getPrix());
-            existingComposant.setQuantite(composant.getQuantite());
+            // Quantités et seuil ne sont pas repris de l'appelant (copie peut-être ancienne) :
+            // le stock bouge par les mouvements (ajusterStock...), le seuil par definirSeuil
 
             em.merge(existingComposant);
+            em.flush();
+            AlertesStock.composantModifie(existingComposant.getIdComposant(), existingComposant.getNom(),
+                existingComposant.getQuantite(), existingComposant.getSeuilReapprovisionnement());
             tx.commit();
+            if (prix != null) {
+                HistoriquesPrix.prixModifie(prix.getIdComposant(), prix.getDateEffet(), prix.getCentimes());
+            }
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -107,12 +179,16 @@ public class GestionComposant implements IGestionComposant {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
+            AlertesStock.invalider();
             throw new DatabaseException("Erreur lors de la modification du composant", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -125,6 +201,7 @@ public class GestionComposant implements IGestionComposant {
 
             em.remove(composant);
             tx.commit();
+            AlertesStock.composantSupprime(id);
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -136,25 +213,33 @@ public class GestionComposant implements IGestionComposant {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression du composant", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Composant rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Composant.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche du composant", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Composant> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Composant> query = em.createQuery("SELECT c FROM Composant c", Composant.class);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des composants", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -164,6 +249,7 @@ public class GestionComposant implements IGestionComposant {
             throw new InvalidParameterException("Le nom ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Composant> query = em.createQuery(
                 "SELECT c FROM Composant c WHERE LOWER(c.nom) LIKE LOWER(:nom)", Composant.class);
@@ -171,6 +257,8 @@ public class GestionComposant implements IGestionComposant {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des composants par nom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -180,6 +268,7 @@ public class GestionComposant implements IGestionComposant {
             throw new InvalidParameterException("Le prix ne peut pas Ãªtre nÃ©gatif");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Composant> query = em.createQuery(
                 "SELECT c FROM Composant c WHERE c.prix = :prix", Composant.class);
@@ -187,6 +276,8 @@ public class GestionComposant implements IGestionComposant {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des composants par prix", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -196,6 +287,7 @@ public class GestionComposant implements IGestionComposant {
             throw new InvalidParameterException("La quantitÃ© ne peut pas Ãªtre nÃ©gative");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Composant> query = em.createQuery(
                 "SELECT c FROM Composant c WHERE c.quantite = :quantite", Composant.class);
@@ -203,12 +295,239 @@ public class GestionComposant implements IGestionComposant {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des composants par quantitÃ©", e);
+        } finally {
+            em.close();
         }
     }
-}
 
+    @Override
+    public List<Composant> listerDisponibles() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("SELECT c FROM Composant c WHERE c.quantite > 0 ORDER BY c.nom", Composant.class)
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des composants disponibles", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void reserver(int idComposant, int quantite) throws InvalidParameterException, DatabaseException {
+        mouvementerStock(quantiteUnique(idComposant, quantite), Mouvement.RESERVATION, "Erreur lors de la réservation du composant " + idComposant);
+    }
+
+    @Override
+    public void consommer(int idComposant, int quantite) throws InvalidParameterException, DatabaseException {
+        mouvementerStock(quantiteUnique(idComposant, quantite), Mouvement.CONSOMMATION, "Erreur lors de la consommation du composant " + idComposant);
+    }
+
+    @Override
+    public void liberer(int idComposant, int quantite) throws InvalidParameterException, DatabaseException {
+        mouvementerStock(quantiteUnique(idComposant, quantite), Mouvement.LIBERATION, "Erreur lors de la libération du composant " + idComposant);
+    }
+
+    @Override
+    public void reserverEnLot(Map<Integer, Integer> quantitesParComposant) throws InvalidParameterException, DatabaseException {
+        if (quantitesParComposant == null) {
+            throw new InvalidParameterException("La liste des pièces ne peut pas être null");
+        }
+        Map<Integer, Integer> quantites = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entree : quantitesParComposant.entrySet()) {
+            if (entree.getKey() == null || entree.getValue() == null || entree.getValue() <= 0) {
+                throw new InvalidParameterException("Chaque pièce doit avoir un composant et une quantité positive");
+            }
+            quantites.put(entree.getKey(), entree.getValue());
+        }
+        if (quantites.isEmpty()) {
+            return;
+        }
+        mouvementerStock(quantites, Mouvement.RESERVATION, "Erreur lors de la réservation des pièces");
+    }
+
+    @Override
+    public void ajusterStock(int idComposant, int delta) throws InvalidParameterException, DatabaseException {
+        if (delta == 0) {
+            throw new InvalidParameterException("L'ajustement de stock ne peut pas être nul");
+        }
+        Map<Integer, Integer> quantites = new TreeMap<>();
+        quantites.put(idComposant, delta);
+        mouvementerStock(quantites, Mouvement.AJUSTEMENT, "Erreur lors de l'ajustement du stock du composant " + idComposant);
+    }
+
+    private static Map<Integer, Integer> quantiteUnique(int idComposant, int quantite) throws InvalidParameterException {
+        if (quantite <= 0) {
+            throw new InvalidParameterException("La quantité doit être positive");
+        }
+        Map<Integer, Integer> quantites = new TreeMap<>();
+        quantites.put(idComposant, quantite);
+        return quantites;
+    }
+
+    // Une transaction pour toutes les lignes, mises à jour dans l'ordre des identifiants :
+    // deux lots qui se recouvrent verrouillent les composants dans le même ordre, sans interblocage
+    private void mouvementerStock(Map<Integer, Integer> quantites, Mouvement mouvement, String messageErreur)
+            throws InvalidParameterException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            Map<Integer, Integer> disponibles = new TreeMap<>();
+            for (Map.Entry<Integer, Integer> entree : quantites.entrySet()) {
+                disponibles.put(entree.getKey(), MouvementsStock.appliquer(em, mouvement, entree.getKey(), entree.getValue()));
+            }
+            // Lignes encore verrouillées : l'index reçoit les quantités dans l'ordre des commits
+            for (Map.Entry<Integer, Integer> disponible : disponibles.entrySet()) {
+                AlertesStock.quantiteModifiee(disponible.getKey(), disponible.getValue());
+            }
+            tx.commit();
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            AlertesStock.invalider();
+            throw new DatabaseException(messageErreur, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void definirSeuil(int idComposant, int seuil) throws EntityNotFoundException, InvalidParameterException, DatabaseException {
+        if (seuil < 0) {
+            throw new InvalidParameterException("Le seuil ne peut pas être négatif");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            // UPDATE ciblé : la quantité n'est pas réécrite, un mouvement concurrent n'est pas écrasé
+            int lignes = em.createQuery("UPDATE Composant c SET c.seuilReapprovisionnement = :seuil WHERE c.idComposant = :id")
+                .setParameter("seuil", seuil)
+                .setParameter("id", idComposant)
+                .executeUpdate();
+            if (lignes == 0) {
+                throw new EntityNotFoundException("Composant avec l'ID " + idComposant + " non trouvé");
+            }
+            Object[] etat = em.createQuery("SELECT c.nom, c.quantite FROM Composant c WHERE c.idComposant = :id", Object[].class)
+                .setParameter("id", idComposant)
+                .getSingleResult();
+            AlertesStock.composantModifie(idComposant, (String) etat[0], (Integer) etat[1], seuil);
+            tx.commit();
+
+        } catch (EntityNotFoundException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            AlertesStock.invalider();
+            throw new DatabaseException("Erreur lors de la définition du seuil du composant " + idComposant, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<AlerteStock> listerAlertes() throws DatabaseException {
+        return listerSousMarge(0);
+    }
+
+    @Override
+    public List<AlerteStock> listerSousMarge(int marge) throws DatabaseException {
+        chargerAlertes();
+        return AlertesStock.sousMarge(marge);
+    }
 
+    @Override
+    public AlerteStock rechercherAlerte(int idComposant) throws DatabaseException {
+        chargerAlertes();
+        return AlertesStock.rechercher(idComposant);
+    }
 
+    @Override
+    public RapportImport importerCsv(Reader source) throws InvalidParameterException, DatabaseException {
+        if (source == null) {
+            throw new InvalidParameterException("Le fichier à importer ne peut pas être null");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        try {
+            return new ImportComposants(em, PersistenceManager.getTailleLotImport()).importer(source);
+        } catch (IOException e) {
+            throw new InvalidParameterException("Lecture du fichier impossible : " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw new DatabaseException("Erreur lors de l'import des composants", e);
+        } finally {
+            em.close();
+        }
+    }
 
+    @Override
+    public double prixAu(int idComposant, LocalDateTime date) throws InvalidParameterException, DatabaseException {
+        if (date == null) {
+            throw new InvalidParameterException("La date ne peut pas être null");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        long centimes;
+        try {
+            List<Integer> ids = new ArrayList<>();
+            ids.add(idComposant);
+            centimes = HistoriquesPrix.charger(em, ids).get(idComposant).centimesAu(date);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la lecture de l'historique des prix du composant " + idComposant, e);
+        } finally {
+            em.close();
+        }
+        if (centimes == HistoriquesPrix.INCONNU) {
+            throw new InvalidParameterException("Aucun prix connu pour le composant " + idComposant);
+        }
+        return centimes / 100.0;
+    }
+
+    @Override
+    public List<PrixComposant> listerHistoriquePrix(int idComposant) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(
+                "SELECT p FROM PrixComposant p WHERE p.idComposant = :id ORDER BY p.dateEffet, p.idPrix", PrixComposant.class)
+                .setParameter("id", idComposant)
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage de l'historique des prix du composant " + idComposant, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // L'index n'est relu qu'au premier appel puis toutes les fastrepair.stock.alertes_resync_ms
+    private void chargerAlertes() throws DatabaseException {
+        if (!AlertesStock.aRelire()) {
+            return;
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            AlertesStock.charger(em);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du chargement des alertes de stock", e);
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package metier;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 
+import dao.EcritureCaisse;
 import dao.Emprunt;
 import exception.DatabaseException;
 import exception.DuplicateEntityException;
@@ -17,21 +27,16 @@ import exception.InvalidParameterException;
 
 public class GestionEmprunt implements IGestionEmprunt {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private static final String TYPE_AJOUT_FONDS = "Ajout de fonds";
+    private static final String TYPE_RETRAIT_FONDS = "Retrait de fonds";
 
-    public GestionEmprunt() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
+    // Projection des seules colonnes affichées dans les tableaux
+    private static final String SELECT_VUE = "SELECT NEW metier.EmpruntVue(e.idEmprunt, e.date, e.montant, e.type, e.commentaire) FROM Emprunt e";
 
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+    private final EntityManagerFactory emf;
+
+    public GestionEmprunt() {
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -45,6 +50,7 @@ public class GestionEmprunt implements IGestionEmprunt {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -55,27 +61,101 @@ public class GestionEmprunt implements IGestionEmprunt {
                 throw new DuplicateEntityException("Un emprunt avec l'ID " + emprunt.getIdEmprunt() + " existe dÃ©jÃ ");
             }
 
-            // Si l'emprunt est lié à une caisse, mettre à jour le solde de la caisse
-            if (emprunt.getCaisse() != null) {
-                dao.Caisse caisse = emprunt.getCaisse();
-                double nouveauSolde = caisse.getSoldeActuel();
-
-                // Selon le type d'emprunt, ajuster le solde
-                if ("Ajout de fonds".equals(emprunt.getType()) || "Dépôt".equals(emprunt.getType())) {
-                    nouveauSolde += emprunt.getMontant();
-                } else if ("Retrait de fonds".equals(emprunt.getType()) || "Prêt".equals(emprunt.getType())) {
-                    nouveauSolde -= emprunt.getMontant();
+            // Si l'emprunt est lié à une caisse, mettre à jour son solde en base (UPDATE atomique)
+            // avant d'insérer l'emprunt, puis l'inscrire au journal de la caisse avec son identifiant
+            dao.Caisse caisse = emprunt.getCaisse() != null
+                ? caisseExistante(em, emprunt.getCaisse().getIdCaisse()) : null;
+            emprunt.setCaisse(caisse);
+            if (caisse != null) {
+                MouvementsCaisse.appliquerAvantOrigine(em, caisse.getIdCaisse(), variationSolde(emprunt), false,
+                    EcritureCaisse.ORIGINE_EMPRUNT, () -> {
+                        em.persist(emprunt);
+                        return emprunt.getIdEmprunt();
+                    });
+            } else {
+                em.persist(emprunt);
+            }
+            tx.commit();
+
+        } catch (DuplicateEntityException | InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout de l'emprunt", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Emprunt> emprunts) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (emprunts == null) {
+            throw new InvalidParameterException("La liste des emprunts ne peut pas être null");
+        }
+        if (emprunts.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            // Caisses verrouillées avant les INSERT (dans l'ordre des identifiants, pour ne pas
+            // s'interbloquer avec un autre lot) : les clés étrangères des emprunts n'y prennent
+            // pas de verrou partagé que la mise à jour du solde devrait ensuite convertir
+            Set<Integer> caisses = new TreeSet<>();
+            for (Emprunt emprunt : emprunts) {
+                if (emprunt == null) {
+                    throw new InvalidParameterException("L'emprunt ne peut pas être null");
+                }
+                if (emprunt.getCaisse() != null) {
+                    caisses.add(emprunt.getCaisse().getIdCaisse());
                 }
+            }
+            for (Integer idCaisse : caisses) {
+                if (em.find(dao.Caisse.class, idCaisse, LockModeType.PESSIMISTIC_WRITE) == null) {
+                    throw new InvalidParameterException("Caisse introuvable");
+                }
+            }
 
-                caisse.setSoldeActuel(nouveauSolde);
-                caisse.setDernierMouvement(java.time.LocalDateTime.now());
-                em.merge(caisse);
+            // Écritures regroupées par caisse, appliquées en une seule mise à jour par caisse
+            Map<Integer, List<EcritureCaisse>> ecritures = new TreeMap<>();
+            int compteur = 0;
+            for (Emprunt emprunt : emprunts) {
+                if (emprunt.getCaisse() != null) {
+                    emprunt.setCaisse(caisseExistante(em, emprunt.getCaisse().getIdCaisse()));
+                }
+
+                em.persist(emprunt);
+                if (emprunt.getCaisse() != null) {
+                    ecritures.computeIfAbsent(emprunt.getCaisse().getIdCaisse(), id -> new ArrayList<>())
+                        .add(EcritureCaisse.builder()
+                            .montant(variationSolde(emprunt))
+                            .origine(EcritureCaisse.ORIGINE_EMPRUNT)
+                            .idOrigine(emprunt.getIdEmprunt())
+                            .build());
+                }
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+            for (Map.Entry<Integer, List<EcritureCaisse>> ecrituresCaisse : ecritures.entrySet()) {
+                MouvementsCaisse.appliquer(em, ecrituresCaisse.getKey(), ecrituresCaisse.getValue(), false);
             }
 
-            em.persist(emprunt);
             tx.commit();
 
-        } catch (DuplicateEntityException e) {
+        } catch (InvalidParameterException e) {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
@@ -84,7 +164,9 @@ public class GestionEmprunt implements IGestionEmprunt {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
-            throw new DatabaseException("Erreur lors de l'ajout de l'emprunt", e);
+            throw new DatabaseException("Erreur lors de l'ajout en lot des emprunts", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -99,6 +181,7 @@ public class GestionEmprunt implements IGestionEmprunt {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -108,6 +191,10 @@ public class GestionEmprunt implements IGestionEmprunt {
             if (existingEmprunt == null) {
                 throw new EntityNotFoundException("Emprunt avec l'ID " + emprunt.getIdEmprunt() + " non trouvÃ©");
             }
+            if (existingEmprunt.getCaisse() != null && modifieLeMouvement(existingEmprunt, emprunt)) {
+                throw new InvalidParameterException("Emprunt déjà inscrit au journal de la caisse : seul le commentaire "
+                    + "peut être modifié, saisir un emprunt inverse pour corriger le montant");
+            }
 
             existingEmprunt.setDate(emprunt.getDate());
             existingEmprunt.setMontant(emprunt.getMontant());
@@ -117,7 +204,7 @@ public class GestionEmprunt implements IGestionEmprunt {
             em.merge(existingEmprunt);
             tx.commit();
 
-        } catch (EntityNotFoundException e) {
+        } catch (EntityNotFoundException | InvalidParameterException e) {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
@@ -127,11 +214,14 @@ public class GestionEmprunt implements IGestionEmprunt {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification de l'emprunt", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
-    public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+    public void supprimer(int id) throws EntityNotFoundException, DatabaseException, InvalidParameterException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -141,11 +231,16 @@ public class GestionEmprunt implements IGestionEmprunt {
             if (emprunt == null) {
                 throw new EntityNotFoundException("Emprunt avec l'ID " + id + " non trouvÃ©");
             }
+            // L'écriture de caisse (immuable) garde idOrigine : elle ne doit pas pointer vers un emprunt disparu
+            if (emprunt.getCaisse() != null) {
+                throw new InvalidParameterException("Emprunt déjà inscrit au journal de la caisse : "
+                    + "saisir un emprunt inverse pour l'annuler");
+            }
 
             em.remove(emprunt);
             tx.commit();
 
-        } catch (EntityNotFoundException e) {
+        } catch (EntityNotFoundException | InvalidParameterException e) {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
@@ -155,25 +250,33 @@ public class GestionEmprunt implements IGestionEmprunt {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression de l'emprunt", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Emprunt rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Emprunt.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche de l'emprunt", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Emprunt> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Emprunt> query = em.createQuery("SELECT e FROM Emprunt e", Emprunt.class);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des emprunts", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -183,6 +286,7 @@ public class GestionEmprunt implements IGestionEmprunt {
             throw new InvalidParameterException("La date ne peut pas Ãªtre null");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Emprunt> query = em.createQuery(
                 "SELECT e FROM Emprunt e WHERE e.date = :date", Emprunt.class);
@@ -190,11 +294,14 @@ public class GestionEmprunt implements IGestionEmprunt {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des emprunts par date", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Emprunt> filtrerParMontant(double montant) throws InvalidParameterException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Emprunt> query = em.createQuery(
                 "SELECT e FROM Emprunt e WHERE e.montant = :montant", Emprunt.class);
@@ -202,6 +309,8 @@ public class GestionEmprunt implements IGestionEmprunt {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des emprunts par montant", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -211,6 +320,7 @@ public class GestionEmprunt implements IGestionEmprunt {
             throw new InvalidParameterException("Le type ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Emprunt> query = em.createQuery(
                 "SELECT e FROM Emprunt e WHERE LOWER(e.type) LIKE LOWER(:type)", Emprunt.class);
@@ -218,6 +328,8 @@ public class GestionEmprunt implements IGestionEmprunt {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des emprunts par type", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -227,6 +339,7 @@ public class GestionEmprunt implements IGestionEmprunt {
             throw new InvalidParameterException("Le commentaire ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Emprunt> query = em.createQuery(
                 "SELECT e FROM Emprunt e WHERE LOWER(e.commentaire) LIKE LOWER(:commentaire)", Emprunt.class);
@@ -234,131 +347,369 @@ public class GestionEmprunt implements IGestionEmprunt {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des emprunts par commentaire", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void ajouterFondsCaisse(int idCaisse, int idReparateur, double montant, String commentaire)
             throws DuplicateEntityException, DatabaseException, InvalidParameterException {
-        if (montant <= 0) {
-            throw new InvalidParameterException("Le montant doit être positif");
-        }
+        verifierMontant(montant);
+        mouvementerFonds(idCaisse, idReparateur, montant, TYPE_AJOUT_FONDS,
+            commentaire != null ? commentaire : "Ajout de fonds par réparateur",
+            "Erreur lors de l'ajout de fonds à la caisse");
+    }
 
-        try {
-            // Récupérer la caisse et le réparateur
-            dao.Caisse caisse = em.find(dao.Caisse.class, idCaisse);
-            if (caisse == null) {
-                throw new InvalidParameterException("Caisse introuvable");
-            }
+    @Override
+    public void retirerFondsCaisse(int idCaisse, int idReparateur, double montant, String commentaire)
+            throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        verifierMontant(montant);
+        mouvementerFonds(idCaisse, idReparateur, -montant, TYPE_RETRAIT_FONDS,
+            commentaire != null ? commentaire : "Retrait de fonds par réparateur",
+            "Erreur lors du retrait de fonds de la caisse");
+    }
 
-            dao.Reparateur reparateur = em.find(dao.Reparateur.class, idReparateur);
+    /**
+     * Mouvement de fonds et emprunt correspondant dans une même transaction : le solde
+     * est modifié par un UPDATE conditionnel (refusé si la caisse ne couvre pas un retrait),
+     * l'emprunt n'est enregistré que si ce mouvement a eu lieu.
+     */
+    private void mouvementerFonds(int idCaisse, int idReparateur, double delta, String type, String commentaire,
+            String messageErreur)
+            throws DatabaseException, InvalidParameterException {
+        dao.Caisse caisse = MouvementsCaisse.executer(emTx -> {
+            dao.Reparateur reparateur = emTx.find(dao.Reparateur.class, idReparateur);
             if (reparateur == null) {
                 throw new InvalidParameterException("Réparateur introuvable");
             }
-
-            // Mettre à jour le solde de la caisse
-            double ancienSolde = caisse.getSoldeActuel();
-            double nouveauSolde = ancienSolde + montant;
-            caisse.setSoldeActuel(nouveauSolde);
-            caisse.setDernierMouvement(java.time.LocalDateTime.now());
-
-            System.out.println("GESTION_EMPUNT - Ajout fonds: Caisse " + caisse.getIdCaisse() +
-                             " | Ancien solde: " + ancienSolde + "€ | Montant: +" + montant +
-                             "€ | Nouveau solde: " + nouveauSolde + "€");
-
-            // Créer l'emprunt d'ajout de fonds
             Emprunt emprunt = Emprunt.builder()
-                .date(java.time.LocalDateTime.now())
-                .montant(montant)
-                .type("Ajout de fonds")
-                .commentaire(commentaire != null ? commentaire : "Ajout de fonds par réparateur")
-                .caisse(caisse)
+                .date(LocalDateTime.now())
+                .montant(Math.abs(delta))
+                .type(type)
+                .commentaire(commentaire)
+                .caisse(caisseExistante(emTx, idCaisse))
                 .reparateur(reparateur)
                 .build();
+            return MouvementsCaisse.appliquerAvantOrigine(emTx, idCaisse, delta, delta < 0,
+                EcritureCaisse.ORIGINE_EMPRUNT, () -> {
+                    emTx.persist(emprunt);
+                    return emprunt.getIdEmprunt();
+                });
+        }, messageErreur);
+
+        System.out.println("GESTION_EMPUNT - " + type + ": Caisse " + idCaisse
+            + " | Montant: " + (delta > 0 ? "+" : "") + delta + "€ | Nouveau solde: " + caisse.getSoldeActuel() + "€");
+    }
 
-            ajouter(emprunt);
+    // Caisse vérifiée avant le mouvement : un identifiant inconnu n'est pas un solde insuffisant
+    private static dao.Caisse caisseExistante(EntityManager em, int idCaisse) throws InvalidParameterException {
+        dao.Caisse caisse = em.find(dao.Caisse.class, idCaisse);
+        if (caisse == null) {
+            throw new InvalidParameterException("Caisse introuvable");
+        }
+        return caisse;
+    }
 
-        } catch (InvalidParameterException e) {
-            throw e;
+    private static void verifierMontant(double montant) throws InvalidParameterException {
+        if (!(montant > 0) || Double.isInfinite(montant)) {
+            throw new InvalidParameterException("Le montant doit être positif");
+        }
+    }
+
+    // Un emprunt inscrit au journal ne change plus de montant, de sens, de date ni de caisse :
+    // le solde et le rapprochement du jour reposent sur l'écriture déjà passée
+    private static boolean modifieLeMouvement(Emprunt existant, Emprunt modifie) {
+        return Double.compare(existant.getMontant(), modifie.getMontant()) != 0
+            || !Objects.equals(existant.getType(), modifie.getType())
+            || !Objects.equals(existant.getDate(), modifie.getDate())
+            || modifie.getCaisse() != null && modifie.getCaisse().getIdCaisse() != existant.getCaisse().getIdCaisse();
+    }
+
+    // Sens du mouvement de caisse selon le type d'emprunt (0 pour un type inconnu)
+    private static double variationSolde(Emprunt emprunt) {
+        if (TYPE_AJOUT_FONDS.equals(emprunt.getType()) || "Dépôt".equals(emprunt.getType())) {
+            return emprunt.getMontant();
+        } else if (TYPE_RETRAIT_FONDS.equals(emprunt.getType()) || "Prêt".equals(emprunt.getType())) {
+            return -emprunt.getMontant();
+        }
+        return 0;
+    }
+
+    @Override
+    public List<Emprunt> listerEmpruntsParCaisse(int idCaisse) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Emprunt> query = em.createQuery(
+                "SELECT e FROM Emprunt e WHERE e.caisse.idCaisse = :idCaisse ORDER BY e.date DESC", Emprunt.class);
+            query.setParameter("idCaisse", idCaisse);
+            return query.getResultList();
         } catch (Exception e) {
-            throw new DatabaseException("Erreur lors de l'ajout de fonds à la caisse", e);
+            throw new DatabaseException("Erreur lors du listage des emprunts par caisse", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
-    public void retirerFondsCaisse(int idCaisse, int idReparateur, double montant, String commentaire)
-            throws DuplicateEntityException, DatabaseException, InvalidParameterException {
-        if (montant <= 0) {
-            throw new InvalidParameterException("Le montant doit être positif");
+    public List<Emprunt> listerEmpruntsParReparateur(int idReparateur) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Emprunt> query = em.createQuery(
+                "SELECT e FROM Emprunt e WHERE e.reparateur.id = :idReparateur ORDER BY e.date DESC", Emprunt.class);
+            query.setParameter("idReparateur", idReparateur);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des emprunts par réparateur", e);
+        } finally {
+            em.close();
         }
+    }
 
+    @Override
+    public Page<Emprunt> listerPage(int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
         try {
-            // Récupérer la caisse et le réparateur
-            dao.Caisse caisse = em.find(dao.Caisse.class, idCaisse);
-            if (caisse == null) {
-                throw new InvalidParameterException("Caisse introuvable");
-            }
+            TypedQuery<Emprunt> query = em.createQuery(
+                "SELECT e FROM Emprunt e ORDER BY e.idEmprunt", Emprunt.class);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+            return new Page<>(query.getResultList(), offset, limite, compter(em));
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage paginé des emprunts", e);
+        } finally {
+            em.close();
+        }
+    }
 
-            dao.Reparateur reparateur = em.find(dao.Reparateur.class, idReparateur);
-            if (reparateur == null) {
-                throw new InvalidParameterException("Réparateur introuvable");
-            }
+    @Override
+    public long compter() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return compter(em);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du comptage des emprunts", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Total des pages lu dans le contexte de persistance de la page, sans ouvrir une seconde connexion
+    private static long compter(EntityManager em) {
+        return em.createQuery("SELECT COUNT(e) FROM Emprunt e", Long.class).getSingleResult();
+    }
+
+    @Override
+    public List<Emprunt> listerApres(int dernierId, int limite) throws InvalidParameterException, DatabaseException {
+        if (limite <= 0) {
+            throw new InvalidParameterException("La limite doit être positive");
+        }
 
-            // Vérifier que la caisse a suffisamment de fonds
-            if (caisse.getSoldeActuel() < montant) {
-                throw new InvalidParameterException("Solde insuffisant dans la caisse");
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Curseur sur la clé primaire : coût constant quelle que soit la position dans la table
+            TypedQuery<Emprunt> query = em.createQuery(
+                "SELECT e FROM Emprunt e WHERE e.idEmprunt > :dernierId ORDER BY e.idEmprunt", Emprunt.class);
+            query.setParameter("dernierId", dernierId);
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des emprunts par curseur", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Emprunt> listerApresDate(LocalDateTime derniereDate, int dernierId, int limite) throws InvalidParameterException, DatabaseException {
+        if (limite <= 0) {
+            throw new InvalidParameterException("La limite doit être positive");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Curseur sur (date, idEmprunt) ; derniereDate null = première page.
+            // Les lignes sans date ne sont pas parcourues par ce curseur.
+            TypedQuery<Emprunt> query;
+            if (derniereDate == null) {
+                query = em.createQuery(
+                    "SELECT e FROM Emprunt e WHERE e.date IS NOT NULL ORDER BY e.date, e.idEmprunt", Emprunt.class);
+            } else {
+                query = em.createQuery(
+                    "SELECT e FROM Emprunt e WHERE e.date > :date OR (e.date = :date AND e.idEmprunt > :dernierId) "
+                    + "ORDER BY e.date, e.idEmprunt", Emprunt.class);
+                query.setParameter("date", derniereDate);
+                query.setParameter("dernierId", dernierId);
             }
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des emprunts par date", e);
+        } finally {
+            em.close();
+        }
+    }
 
-            // Mettre à jour le solde de la caisse
-            double ancienSolde = caisse.getSoldeActuel();
-            double nouveauSolde = ancienSolde - montant;
-            caisse.setSoldeActuel(nouveauSolde);
-            caisse.setDernierMouvement(java.time.LocalDateTime.now());
+    @Override
+    public Stream<Emprunt> streamer() throws DatabaseException {
+        try {
+            return FluxRequete.ouvrir("SELECT e FROM Emprunt e ORDER BY e.idEmprunt", Emprunt.class, Collections.emptyMap());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de l'ouverture du flux des emprunts", e);
+        }
+    }
 
-            System.out.println("GESTION_EMPUNT - Retrait fonds: Caisse " + caisse.getIdCaisse() +
-                             " | Ancien solde: " + ancienSolde + "€ | Montant: -" + montant +
-                             "€ | Nouveau solde: " + nouveauSolde + "€");
+    @Override
+    public Stream<Emprunt> streamerParPeriode(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
 
-            // Créer l'emprunt de retrait de fonds
-            Emprunt emprunt = Emprunt.builder()
-                .date(java.time.LocalDateTime.now())
-                .montant(montant)
-                .type("Retrait de fonds")
-                .commentaire(commentaire != null ? commentaire : "Retrait de fonds par réparateur")
-                .caisse(caisse)
-                .reparateur(reparateur)
-                .build();
+        try {
+            Map<String, Object> parametres = new HashMap<>();
+            parametres.put("debut", debut);
+            parametres.put("fin", fin);
+            return FluxRequete.ouvrir(
+                "SELECT e FROM Emprunt e WHERE e.date >= :debut AND e.date < :fin ORDER BY e.date, e.idEmprunt",
+                Emprunt.class, parametres);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de l'ouverture du flux des emprunts par période", e);
+        }
+    }
 
-            ajouter(emprunt);
+    @Override
+    public List<EmpruntVue> listerVues() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(SELECT_VUE + " ORDER BY e.idEmprunt", EmpruntVue.class).getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des emprunts", e);
+        } finally {
+            em.close();
+        }
+    }
 
-        } catch (InvalidParameterException e) {
-            throw e;
+    @Override
+    public Page<EmpruntVue> listerVuesPage(int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<EmpruntVue> query = em.createQuery(SELECT_VUE + " ORDER BY e.idEmprunt", EmpruntVue.class);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+            return new Page<>(query.getResultList(), offset, limite, compter(em));
         } catch (Exception e) {
-            throw new DatabaseException("Erreur lors du retrait de fonds de la caisse", e);
+            throw new DatabaseException("Erreur lors du listage paginé des emprunts", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
-    public List<Emprunt> listerEmpruntsParCaisse(int idCaisse) throws DatabaseException {
+    public Page<Emprunt> filtrerParPeriode(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
         try {
+            // Intervalle [debut, fin[ : un seul parcours de l'index sur date
+            String condition = " WHERE e.date >= :debut AND e.date < :fin";
             TypedQuery<Emprunt> query = em.createQuery(
-                "SELECT e FROM Emprunt e WHERE e.caisse.idCaisse = :idCaisse ORDER BY e.date DESC", Emprunt.class);
-            query.setParameter("idCaisse", idCaisse);
-            return query.getResultList();
+                "SELECT e FROM Emprunt e" + condition + " ORDER BY e.date, e.idEmprunt", Emprunt.class);
+            query.setParameter("debut", debut);
+            query.setParameter("fin", fin);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+
+            TypedQuery<Long> total = em.createQuery("SELECT COUNT(e) FROM Emprunt e" + condition, Long.class);
+            total.setParameter("debut", debut);
+            total.setParameter("fin", fin);
+            return new Page<>(query.getResultList(), offset, limite, total.getSingleResult());
         } catch (Exception e) {
-            throw new DatabaseException("Erreur lors du listage des emprunts par caisse", e);
+            throw new DatabaseException("Erreur lors du filtrage des emprunts par période", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
-    public List<Emprunt> listerEmpruntsParReparateur(int idReparateur) throws DatabaseException {
+    public Page<Emprunt> filtrerParMontantEntre(double minimum, double maximum, int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (minimum > maximum) {
+            throw new InvalidParameterException("Le minimum ne peut pas dépasser le maximum");
+        }
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
         try {
+            String condition = " WHERE e.montant BETWEEN :minimum AND :maximum";
             TypedQuery<Emprunt> query = em.createQuery(
-                "SELECT e FROM Emprunt e WHERE e.reparateur.id = :idReparateur ORDER BY e.date DESC", Emprunt.class);
-            query.setParameter("idReparateur", idReparateur);
-            return query.getResultList();
+                "SELECT e FROM Emprunt e" + condition + " ORDER BY e.date, e.idEmprunt", Emprunt.class);
+            query.setParameter("minimum", minimum);
+            query.setParameter("maximum", maximum);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+
+            TypedQuery<Long> total = em.createQuery("SELECT COUNT(e) FROM Emprunt e" + condition, Long.class);
+            total.setParameter("minimum", minimum);
+            total.setParameter("maximum", maximum);
+            return new Page<>(query.getResultList(), offset, limite, total.getSingleResult());
         } catch (Exception e) {
-            throw new DatabaseException("Erreur lors du listage des emprunts par réparateur", e);
+            throw new DatabaseException("Erreur lors du filtrage des emprunts par montant", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Emprunt> rechercherParCriteres(EmpruntCriteria criteres) throws InvalidParameterException, DatabaseException {
+        verifierCriteres(criteres);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            return criteres.versRequete()
+                .creer(em, Emprunt.class, criteres.getTri().getChamp(), criteres.isDecroissant(),
+                    criteres.getOffset(), criteres.getLimite())
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la recherche multicritère des emprunts", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public long compterParCriteres(EmpruntCriteria criteres) throws InvalidParameterException, DatabaseException {
+        verifierCriteres(criteres);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            return criteres.versRequete().creerComptage(em).getSingleResult();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du comptage multicritère des emprunts", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    private void verifierCriteres(EmpruntCriteria criteres) throws InvalidParameterException {
+        if (criteres == null) {
+            throw new InvalidParameterException("Les critères ne peuvent pas être null");
+        }
+        if (criteres.getOffset() < 0 || criteres.getLimite() < 0) {
+            throw new InvalidParameterException("Pagination invalide : offset et limite doivent être positifs");
         }
     }
 }
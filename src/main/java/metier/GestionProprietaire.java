@@ -1,11 +1,10 @@
-﻿package metier;
+package metier;
 
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
 import dao.Proprietaire;
@@ -16,21 +15,10 @@ import exception.InvalidParameterException;
 
 public class GestionProprietaire implements IGestionProprietaire {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private final EntityManagerFactory emf;
 
     public GestionProprietaire() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
-
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -44,6 +32,7 @@ public class GestionProprietaire implements IGestionProprietaire {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -54,8 +43,10 @@ public class GestionProprietaire implements IGestionProprietaire {
                 throw new DuplicateEntityException("Un propriÃ©taire avec l'ID " + proprietaire.getId() + " existe dÃ©jÃ ");
             }
 
+            preparerIdentifiants(proprietaire);
             em.persist(proprietaire);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (DuplicateEntityException e) {
             if (tx != null && tx.isActive()) {
@@ -67,6 +58,56 @@ public class GestionProprietaire implements IGestionProprietaire {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout du propriétaire", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Proprietaire> proprietaires) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (proprietaires == null) {
+            throw new InvalidParameterException("La liste des propriétaires ne peut pas être null");
+        }
+        if (proprietaires.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            int compteur = 0;
+            for (Proprietaire proprietaire : proprietaires) {
+                if (proprietaire == null) {
+                    throw new InvalidParameterException("Le propriétaire ne peut pas être null");
+                }
+                preparerIdentifiants(proprietaire);
+                em.persist(proprietaire);
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+            SessionUtilisateur.signalerModification();
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des propriétaires", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -81,6 +122,7 @@ public class GestionProprietaire implements IGestionProprietaire {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -93,11 +135,12 @@ public class GestionProprietaire implements IGestionProprietaire {
 
             existingProprietaire.setNom(proprietaire.getNom());
             existingProprietaire.setPrenom(proprietaire.getPrenom());
-            existingProprietaire.setEmail(proprietaire.getEmail());
-            existingProprietaire.setMdp(proprietaire.getMdp());
+            existingProprietaire.setEmail(GestionAuthentification.normaliserEmail(proprietaire.getEmail()));
+            existingProprietaire.setMdp(MotDePasse.hacherSiNecessaire(proprietaire.getMdp()));
 
             em.merge(existingProprietaire);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -109,11 +152,14 @@ public class GestionProprietaire implements IGestionProprietaire {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification du propriétaire", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -126,6 +172,7 @@ public class GestionProprietaire implements IGestionProprietaire {
 
             em.remove(proprietaire);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -137,25 +184,36 @@ public class GestionProprietaire implements IGestionProprietaire {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression du propriÃ©taire", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Proprietaire rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Proprietaire.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche du propriÃ©taire", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Proprietaire> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Proprietaire> query = em.createQuery("SELECT p FROM Proprietaire p", Proprietaire.class);
+            // Données de référence : résultat conservé dans le cache de requêtes,
+            // invalidé automatiquement dès qu'une écriture touche la table
+            query.setHint("org.hibernate.cacheable", true);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des propriÃ©taires", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -165,6 +223,7 @@ public class GestionProprietaire implements IGestionProprietaire {
             throw new InvalidParameterException("Le nom ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Proprietaire> query = em.createQuery(
                 "SELECT p FROM Proprietaire p WHERE LOWER(p.nom) LIKE LOWER(:nom)", Proprietaire.class);
@@ -172,6 +231,8 @@ public class GestionProprietaire implements IGestionProprietaire {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des propriÃ©taires par nom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -181,6 +242,7 @@ public class GestionProprietaire implements IGestionProprietaire {
             throw new InvalidParameterException("Le prÃ©nom ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Proprietaire> query = em.createQuery(
                 "SELECT p FROM Proprietaire p WHERE LOWER(p.prenom) LIKE LOWER(:prenom)", Proprietaire.class);
@@ -188,6 +250,8 @@ public class GestionProprietaire implements IGestionProprietaire {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des propriÃ©taires par prÃ©nom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -197,6 +261,7 @@ public class GestionProprietaire implements IGestionProprietaire {
             throw new InvalidParameterException("L'email ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Proprietaire> query = em.createQuery(
                 "SELECT p FROM Proprietaire p WHERE LOWER(p.email) LIKE LOWER(:email)", Proprietaire.class);
@@ -204,22 +269,8 @@ public class GestionProprietaire implements IGestionProprietaire {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des propriÃ©taires par email", e);
-        }
-    }
-
-    @Override
-    public List<Proprietaire> filtrerParMdp(String mdp) throws InvalidParameterException, DatabaseException {
-        if (mdp == null || mdp.trim().isEmpty()) {
-            throw new InvalidParameterException("Le mot de passe ne peut pas Ãªtre null ou vide");
-        }
-
-        try {
-            TypedQuery<Proprietaire> query = em.createQuery(
-                "SELECT p FROM Proprietaire p WHERE p.mdp = :mdp", Proprietaire.class);
-            query.setParameter("mdp", mdp);
-            return query.getResultList();
-        } catch (Exception e) {
-            throw new DatabaseException("Erreur lors du filtrage des propriÃ©taires par mot de passe", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -229,20 +280,24 @@ public class GestionProprietaire implements IGestionProprietaire {
             return null;
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Proprietaire> query = em.createQuery(
-                "SELECT p FROM Proprietaire p WHERE LOWER(p.email) = LOWER(:email)", Proprietaire.class);
-            query.setParameter("email", email.trim());
+                "SELECT p FROM Proprietaire p WHERE p.email = :email", Proprietaire.class);
+            // Emails enregistrés normalisés : égalité simple, servie par l'index sur email
+            query.setParameter("email", GestionAuthentification.normaliserEmail(email));
             java.util.List<Proprietaire> result = query.getResultList();
             return result.isEmpty() ? null : result.get(0);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche du propriÃ©taire par email", e);
+        } finally {
+            em.close();
         }
     }
-}
-
-
-
-
-
 
+    // Email normalisé (recherche par index, cf. GestionAuthentification) et mot de passe haché
+    private static void preparerIdentifiants(Proprietaire proprietaire) {
+        proprietaire.setEmail(GestionAuthentification.normaliserEmail(proprietaire.getEmail()));
+        proprietaire.setMdp(MotDePasse.hacherSiNecessaire(proprietaire.getMdp()));
+    }
+}
@@ -1,12 +1,15 @@
-﻿package metier;
+package metier;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
 import dao.Recu;
@@ -17,21 +20,10 @@ import exception.InvalidParameterException;
 
 public class GestionRecu implements IGestionRecu {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private final EntityManagerFactory emf;
 
     public GestionRecu() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
-
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -45,6 +37,7 @@ public class GestionRecu implements IGestionRecu {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -68,6 +61,54 @@ public class GestionRecu implements IGestionRecu {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout du reçu", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Recu> recus) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (recus == null) {
+            throw new InvalidParameterException("La liste des reçus ne peut pas être null");
+        }
+        if (recus.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            int compteur = 0;
+            for (Recu recu : recus) {
+                if (recu == null) {
+                    throw new InvalidParameterException("Le reçu ne peut pas être null");
+                }
+                em.persist(recu);
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des reçus", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -82,6 +123,7 @@ public class GestionRecu implements IGestionRecu {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -108,11 +150,14 @@ public class GestionRecu implements IGestionRecu {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification du reÃ§u", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -136,25 +181,33 @@ public class GestionRecu implements IGestionRecu {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression du reÃ§u", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Recu rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Recu.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche du reÃ§u", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Recu> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Recu> query = em.createQuery("SELECT r FROM Recu r", Recu.class);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des reÃ§us", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -164,6 +217,7 @@ public class GestionRecu implements IGestionRecu {
             throw new InvalidParameterException("La date ne peut pas Ãªtre null");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Recu> query = em.createQuery(
                 "SELECT r FROM Recu r WHERE r.date = :date", Recu.class);
@@ -171,11 +225,14 @@ public class GestionRecu implements IGestionRecu {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des reÃ§us par date", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Recu> filtrerParMontant(double montant) throws InvalidParameterException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Recu> query = em.createQuery(
                 "SELECT r FROM Recu r WHERE r.montant = :montant", Recu.class);
@@ -183,6 +240,224 @@ public class GestionRecu implements IGestionRecu {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des reÃ§us par montant", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Page<Recu> listerPage(int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Recu> query = em.createQuery(
+                "SELECT r FROM Recu r ORDER BY r.idRecu", Recu.class);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+            return new Page<>(query.getResultList(), offset, limite, compter(em));
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage paginé des reçus", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public long compter() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return compter(em);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du comptage des reçus", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Total des pages lu dans le contexte de persistance de la page, sans ouvrir une seconde connexion
+    private static long compter(EntityManager em) {
+        return em.createQuery("SELECT COUNT(r) FROM Recu r", Long.class).getSingleResult();
+    }
+
+    @Override
+    public List<Recu> listerApres(int dernierId, int limite) throws InvalidParameterException, DatabaseException {
+        if (limite <= 0) {
+            throw new InvalidParameterException("La limite doit être positive");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Curseur sur la clé primaire : coût constant quelle que soit la position dans la table
+            TypedQuery<Recu> query = em.createQuery(
+                "SELECT r FROM Recu r WHERE r.idRecu > :dernierId ORDER BY r.idRecu", Recu.class);
+            query.setParameter("dernierId", dernierId);
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des reçus par curseur", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Recu> listerApresDate(LocalDateTime derniereDate, int dernierId, int limite) throws InvalidParameterException, DatabaseException {
+        if (limite <= 0) {
+            throw new InvalidParameterException("La limite doit être positive");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Curseur sur (date, idRecu) ; derniereDate null = première page.
+            // Les lignes sans date ne sont pas parcourues par ce curseur.
+            TypedQuery<Recu> query;
+            if (derniereDate == null) {
+                query = em.createQuery(
+                    "SELECT r FROM Recu r WHERE r.date IS NOT NULL ORDER BY r.date, r.idRecu", Recu.class);
+            } else {
+                query = em.createQuery(
+                    "SELECT r FROM Recu r WHERE r.date > :date OR (r.date = :date AND r.idRecu > :dernierId) "
+                    + "ORDER BY r.date, r.idRecu", Recu.class);
+                query.setParameter("date", derniereDate);
+                query.setParameter("dernierId", dernierId);
+            }
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des reçus par date", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Stream<Recu> streamer() throws DatabaseException {
+        try {
+            return FluxRequete.ouvrir("SELECT r FROM Recu r ORDER BY r.idRecu", Recu.class, Collections.emptyMap());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de l'ouverture du flux des reçus", e);
+        }
+    }
+
+    @Override
+    public Stream<Recu> streamerParPeriode(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
+
+        try {
+            Map<String, Object> parametres = new HashMap<>();
+            parametres.put("debut", debut);
+            parametres.put("fin", fin);
+            return FluxRequete.ouvrir(
+                "SELECT r FROM Recu r WHERE r.date >= :debut AND r.date < :fin ORDER BY r.date, r.idRecu",
+                Recu.class, parametres);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de l'ouverture du flux des reçus par période", e);
+        }
+    }
+
+    @Override
+    public Page<Recu> filtrerParPeriode(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Intervalle [debut, fin[ : un seul parcours de l'index sur date
+            String condition = " WHERE r.date >= :debut AND r.date < :fin";
+            TypedQuery<Recu> query = em.createQuery(
+                "SELECT r FROM Recu r" + condition + " ORDER BY r.date, r.idRecu", Recu.class);
+            query.setParameter("debut", debut);
+            query.setParameter("fin", fin);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+
+            TypedQuery<Long> total = em.createQuery("SELECT COUNT(r) FROM Recu r" + condition, Long.class);
+            total.setParameter("debut", debut);
+            total.setParameter("fin", fin);
+            return new Page<>(query.getResultList(), offset, limite, total.getSingleResult());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du filtrage des reçus par période", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Page<Recu> filtrerParMontantEntre(double minimum, double maximum, int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (minimum > maximum) {
+            throw new InvalidParameterException("Le minimum ne peut pas dépasser le maximum");
+        }
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            String condition = " WHERE r.montant BETWEEN :minimum AND :maximum";
+            TypedQuery<Recu> query = em.createQuery(
+                "SELECT r FROM Recu r" + condition + " ORDER BY r.date, r.idRecu", Recu.class);
+            query.setParameter("minimum", minimum);
+            query.setParameter("maximum", maximum);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+
+            TypedQuery<Long> total = em.createQuery("SELECT COUNT(r) FROM Recu r" + condition, Long.class);
+            total.setParameter("minimum", minimum);
+            total.setParameter("maximum", maximum);
+            return new Page<>(query.getResultList(), offset, limite, total.getSingleResult());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du filtrage des reçus par montant", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Recu> rechercherParCriteres(RecuCriteria criteres) throws InvalidParameterException, DatabaseException {
+        verifierCriteres(criteres);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            return criteres.versRequete()
+                .creer(em, Recu.class, criteres.getTri().getChamp(), criteres.isDecroissant(),
+                    criteres.getOffset(), criteres.getLimite())
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la recherche multicritère des reçus", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public long compterParCriteres(RecuCriteria criteres) throws InvalidParameterException, DatabaseException {
+        verifierCriteres(criteres);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            return criteres.versRequete().creerComptage(em).getSingleResult();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du comptage multicritère des reçus", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    private void verifierCriteres(RecuCriteria criteres) throws InvalidParameterException {
+        if (criteres == null) {
+            throw new InvalidParameterException("Les critères ne peuvent pas être null");
+        }
+        if (criteres.getOffset() < 0 || criteres.getLimite() < 0) {
+            throw new InvalidParameterException("Pagination invalide : offset et limite doivent être positifs");
         }
     }
 }
@@ -1,11 +1,13 @@
-﻿package metier;
+package metier;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
 import dao.Reparateur;
@@ -16,21 +18,12 @@ import exception.InvalidParameterException;
 
 public class GestionReparateur implements IGestionReparateur {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    private static final int TAILLE_LISTE_IN = 1000;
 
-    public GestionReparateur() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
+    private final EntityManagerFactory emf;
 
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+    public GestionReparateur() {
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -44,6 +37,7 @@ public class GestionReparateur implements IGestionReparateur {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -54,8 +48,10 @@ public class GestionReparateur implements IGestionReparateur {
                 throw new DuplicateEntityException("Un rÃ©parateur avec l'ID " + reparateur.getId() + " existe dÃ©jÃ ");
             }
 
+            preparerIdentifiants(reparateur);
             em.persist(reparateur);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (DuplicateEntityException e) {
             if (tx != null && tx.isActive()) {
@@ -67,6 +63,56 @@ public class GestionReparateur implements IGestionReparateur {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout du rÃ©parateur", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Reparateur> reparateurs) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (reparateurs == null) {
+            throw new InvalidParameterException("La liste des réparateurs ne peut pas être null");
+        }
+        if (reparateurs.isEmpty()) {
+            return;
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            int compteur = 0;
+            for (Reparateur reparateur : reparateurs) {
+                if (reparateur == null) {
+                    throw new InvalidParameterException("Le réparateur ne peut pas être null");
+                }
+                preparerIdentifiants(reparateur);
+                em.persist(reparateur);
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+            SessionUtilisateur.signalerModification();
+
+        } catch (InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des réparateurs", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -81,6 +127,7 @@ public class GestionReparateur implements IGestionReparateur {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -93,12 +140,13 @@ public class GestionReparateur implements IGestionReparateur {
 
             existingReparateur.setNom(reparateur.getNom());
             existingReparateur.setPrenom(reparateur.getPrenom());
-            existingReparateur.setEmail(reparateur.getEmail());
-            existingReparateur.setMdp(reparateur.getMdp());
+            existingReparateur.setEmail(GestionAuthentification.normaliserEmail(reparateur.getEmail()));
+            existingReparateur.setMdp(MotDePasse.hacherSiNecessaire(reparateur.getMdp()));
             existingReparateur.setPourcentageGain(reparateur.getPourcentageGain());
 
             em.merge(existingReparateur);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -110,11 +158,14 @@ public class GestionReparateur implements IGestionReparateur {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification du rÃ©parateur", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -127,6 +178,7 @@ public class GestionReparateur implements IGestionReparateur {
 
             em.remove(reparateur);
             tx.commit();
+            SessionUtilisateur.signalerModification();
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -138,25 +190,36 @@ public class GestionReparateur implements IGestionReparateur {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression du rÃ©parateur", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Reparateur rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Reparateur.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche du rÃ©parateur", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Reparateur> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparateur> query = em.createQuery("SELECT r FROM Reparateur r", Reparateur.class);
+            // Données de référence : résultat conservé dans le cache de requêtes,
+            // invalidé automatiquement dès qu'une écriture touche la table
+            query.setHint("org.hibernate.cacheable", true);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des rÃ©parateurs", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -166,6 +229,7 @@ public class GestionReparateur implements IGestionReparateur {
             throw new InvalidParameterException("Le nom ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparateur> query = em.createQuery(
                 "SELECT r FROM Reparateur r WHERE LOWER(r.nom) LIKE LOWER(:nom)", Reparateur.class);
@@ -173,6 +237,8 @@ public class GestionReparateur implements IGestionReparateur {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parateurs par nom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -182,6 +248,7 @@ public class GestionReparateur implements IGestionReparateur {
             throw new InvalidParameterException("Le prÃ©nom ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparateur> query = em.createQuery(
                 "SELECT r FROM Reparateur r WHERE LOWER(r.prenom) LIKE LOWER(:prenom)", Reparateur.class);
@@ -189,6 +256,8 @@ public class GestionReparateur implements IGestionReparateur {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parateurs par prÃ©nom", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -198,6 +267,7 @@ public class GestionReparateur implements IGestionReparateur {
             throw new InvalidParameterException("L'email ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparateur> query = em.createQuery(
                 "SELECT r FROM Reparateur r WHERE LOWER(r.email) LIKE LOWER(:email)", Reparateur.class);
@@ -205,22 +275,8 @@ public class GestionReparateur implements IGestionReparateur {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parateurs par email", e);
-        }
-    }
-
-    @Override
-    public List<Reparateur> filtrerParMdp(String mdp) throws InvalidParameterException, DatabaseException {
-        if (mdp == null || mdp.trim().isEmpty()) {
-            throw new InvalidParameterException("Le mot de passe ne peut pas Ãªtre null ou vide");
-        }
-
-        try {
-            TypedQuery<Reparateur> query = em.createQuery(
-                "SELECT r FROM Reparateur r WHERE r.mdp = :mdp", Reparateur.class);
-            query.setParameter("mdp", mdp);
-            return query.getResultList();
-        } catch (Exception e) {
-            throw new DatabaseException("Erreur lors du filtrage des rÃ©parateurs par mot de passe", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -230,6 +286,7 @@ public class GestionReparateur implements IGestionReparateur {
             throw new InvalidParameterException("Le pourcentage de gain ne peut pas Ãªtre nÃ©gatif");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparateur> query = em.createQuery(
                 "SELECT r FROM Reparateur r WHERE r.pourcentageGain = :pourcentageGain", Reparateur.class);
@@ -237,6 +294,8 @@ public class GestionReparateur implements IGestionReparateur {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parateurs par pourcentage de gain", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -246,21 +305,68 @@ public class GestionReparateur implements IGestionReparateur {
             return null;
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparateur> query = em.createQuery(
-                "SELECT r FROM Reparateur r WHERE LOWER(r.email) = LOWER(:email)", Reparateur.class);
-            query.setParameter("email", email.trim());
+                "SELECT r FROM Reparateur r WHERE r.email = :email", Reparateur.class);
+            // Emails enregistrés normalisés : égalité simple, servie par l'index sur email
+            query.setParameter("email", GestionAuthentification.normaliserEmail(email));
             java.util.List<Reparateur> result = query.getResultList();
             return result.isEmpty() ? null : result.get(0);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche du rÃ©parateur par email", e);
+        } finally {
+            em.close();
         }
     }
-}
-
-
 
+    @Override
+    public List<Reparateur> listerParBoutique(int idBoutique) throws InvalidParameterException, DatabaseException {
+        if (idBoutique <= 0) {
+            throw new InvalidParameterException("L'identifiant de la boutique doit être positif");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Reparateur> query = em.createQuery(
+                "SELECT r FROM Reparateur r WHERE r.boutique.idBoutique = :idBoutique ORDER BY r.id", Reparateur.class);
+            query.setParameter("idBoutique", idBoutique);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparateurs de la boutique", e);
+        } finally {
+            em.close();
+        }
+    }
 
+    @Override
+    public List<Reparateur> listerParBoutiques(Collection<Integer> idsBoutiques) throws InvalidParameterException, DatabaseException {
+        if (idsBoutiques == null) {
+            throw new InvalidParameterException("La liste des boutiques ne peut pas être null");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Liste IN sur l'index de idBoutique, par tranches de TAILLE_LISTE_IN identifiants
+            List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(idsBoutiques));
+            List<Reparateur> resultat = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i += TAILLE_LISTE_IN) {
+                TypedQuery<Reparateur> query = em.createQuery(
+                    "SELECT r FROM Reparateur r WHERE r.boutique.idBoutique IN :ids ORDER BY r.id", Reparateur.class);
+                query.setParameter("ids", ids.subList(i, Math.min(i + TAILLE_LISTE_IN, ids.size())));
+                resultat.addAll(query.getResultList());
+            }
+            return resultat;
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparateurs par boutiques", e);
+        } finally {
+            em.close();
+        }
+    }
 
+    // Email normalisé (recherche par index, cf. GestionAuthentification) et mot de passe haché
+    private static void preparerIdentifiants(Reparateur reparateur) {
+        reparateur.setEmail(GestionAuthentification.normaliserEmail(reparateur.getEmail()));
+        reparateur.setMdp(MotDePasse.hacherSiNecessaire(reparateur.getMdp()));
+    }
+}
@@ -1,37 +1,51 @@
-﻿package metier;
+package metier;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 
+import dao.Appareil;
+import dao.Boutique;
+import dao.Composant;
+import dao.LigneReparation;
+import dao.Reparateur;
 import dao.Reparation;
 import exception.DatabaseException;
 import exception.DuplicateEntityException;
 import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
+import metier.MouvementsStock.Mouvement;
 
 public class GestionReparation implements IGestionReparation {
 
-    private EntityManagerFactory emf;
-    private EntityManager em;
+    // Projection des seules colonnes affichées dans les tableaux
+    private static final String SELECT_VUE = "SELECT NEW metier.ReparationVue(r.idReparation, r.idAppareil, r.idBoutique, r.idReparateur, "
+        + "r.codeSuivi, r.dateDepot, r.etat, r.prixTotal) FROM Reparation r";
+    // Appareil, boutique et réparateur chargés dans la même requête (jointures externes :
+    // une réparation sans réparateur reste listée)
+    private static final String SELECT_DETAILS = "SELECT r FROM Reparation r LEFT JOIN FETCH r.appareil "
+        + "LEFT JOIN FETCH r.boutique b LEFT JOIN FETCH r.reparateur";
 
-    public GestionReparation() {
-        this.emf = Persistence.createEntityManagerFactory("FastRepairPU");
-        this.em = emf.createEntityManager();
-    }
+    private static final int TAILLE_LISTE_IN = 1000;
 
-    public void close() {
-        if (em != null && em.isOpen()) {
-            em.close();
-        }
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+    private final EntityManagerFactory emf;
+
+    public GestionReparation() {
+        this.emf = PersistenceManager.getEntityManagerFactory();
     }
 
     @Override
@@ -45,6 +59,7 @@ public class GestionReparation implements IGestionReparation {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -62,6 +77,12 @@ public class GestionReparation implements IGestionReparation {
                 }
             }
 
+            attribuerCodeSuivi(reparation);
+            if (codeSuiviExiste(em, reparation.getCodeSuivi(), 0)) {
+                throw new DuplicateEntityException("Le code de suivi " + reparation.getCodeSuivi() + " est déjà utilisé");
+            }
+
+            lierAssociations(em, reparation);
             em.persist(reparation);
             tx.commit();
 
@@ -75,11 +96,96 @@ public class GestionReparation implements IGestionReparation {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de l'ajout de la rÃ©paration", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajouterEnLot(List<Reparation> reparations) throws DuplicateEntityException, DatabaseException, InvalidParameterException {
+        if (reparations == null) {
+            throw new InvalidParameterException("La liste des réparations ne peut pas être null");
+        }
+        if (reparations.isEmpty()) {
+            return;
+        }
+
+        // Un appareil ne peut avoir qu'une réparation et un code de suivi n'est attribué qu'une fois,
+        // y compris à l'intérieur du lot
+        Set<Integer> idsAppareils = new HashSet<>();
+        Set<String> codesSuivi = new HashSet<>();
+        for (Reparation reparation : reparations) {
+            if (reparation == null) {
+                throw new InvalidParameterException("La réparation ne peut pas être null");
+            }
+            if (reparation.getIdAppareil() > 0 && !idsAppareils.add(reparation.getIdAppareil())) {
+                throw new DuplicateEntityException("L'appareil ID " + reparation.getIdAppareil() + " apparaît plusieurs fois dans le lot");
+            }
+            attribuerCodeSuivi(reparation);
+            if (!codesSuivi.add(reparation.getCodeSuivi().toUpperCase())) {
+                throw new DuplicateEntityException("Le code de suivi " + reparation.getCodeSuivi() + " apparaît plusieurs fois dans le lot");
+            }
+        }
+
+        int tailleLot = PersistenceManager.getTailleLot();
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            List<Integer> aVerifier = new ArrayList<>(idsAppareils);
+            for (int i = 0; i < aVerifier.size(); i += 1000) {
+                TypedQuery<Integer> query = em.createQuery(
+                    "SELECT r.idAppareil FROM Reparation r WHERE r.idAppareil IN :ids", Integer.class);
+                query.setParameter("ids", aVerifier.subList(i, Math.min(i + 1000, aVerifier.size())));
+                List<Integer> existants = query.getResultList();
+                if (!existants.isEmpty()) {
+                    throw new DuplicateEntityException("Une réparation pour l'appareil ID " + existants.get(0) + " existe déjà");
+                }
+            }
+
+            List<String> codesAVerifier = new ArrayList<>(codesSuivi);
+            for (int i = 0; i < codesAVerifier.size(); i += 1000) {
+                TypedQuery<String> query = em.createQuery(
+                    "SELECT r.codeSuivi FROM Reparation r WHERE r.codeSuivi IN :codes", String.class);
+                query.setParameter("codes", codesAVerifier.subList(i, Math.min(i + 1000, codesAVerifier.size())));
+                List<String> existants = query.getResultList();
+                if (!existants.isEmpty()) {
+                    throw new DuplicateEntityException("Le code de suivi " + existants.get(0) + " est déjà utilisé");
+                }
+            }
+
+            int compteur = 0;
+            for (Reparation reparation : reparations) {
+                lierAssociations(em, reparation);
+                em.persist(reparation);
+                if (++compteur % tailleLot == 0) {
+                    // Envoyer le lot d'INSERT et libérer le contexte de persistance
+                    em.flush();
+                    em.clear();
+                }
+            }
+
+            tx.commit();
+
+        } catch (DuplicateEntityException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajout en lot des réparations", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
-    public void modifer(Reparation reparation) throws EntityNotFoundException, DatabaseException, InvalidParameterException {
+    public void modifer(Reparation reparation) throws EntityNotFoundException, DuplicateEntityException, DatabaseException, InvalidParameterException {
         try {
             if (reparation == null) {
                 throw new InvalidParameterException("La réparation ne peut pas être null");
@@ -89,6 +195,7 @@ public class GestionReparation implements IGestionReparation {
             e.printStackTrace();
         }
 
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -99,6 +206,12 @@ public class GestionReparation implements IGestionReparation {
                 throw new EntityNotFoundException("Réparation avec l'ID " + reparation.getIdReparation() + " non trouvée");
             }
 
+            normaliserCodeSuivi(reparation);
+            if (reparation.getCodeSuivi() != null && codeSuiviExiste(em, reparation.getCodeSuivi(), reparation.getIdReparation())) {
+                throw new DuplicateEntityException("Le code de suivi " + reparation.getCodeSuivi() + " est déjà utilisé");
+            }
+            String ancienCode = existingReparation.getCodeSuivi();
+
             // Mettre à jour les attributs
             existingReparation.setIdAppareil(reparation.getIdAppareil());
             existingReparation.setIdBoutique(reparation.getIdBoutique());
@@ -107,12 +220,16 @@ public class GestionReparation implements IGestionReparation {
             existingReparation.setDateDepot(reparation.getDateDepot());
             existingReparation.setEtat(reparation.getEtat());
             existingReparation.setCommentaire(reparation.getCommentaire());
-            existingReparation.setPrixTotal(reparation.getPrixTotal());
+            // prixTotal n'est pas repris de l'appelant (copie peut-être ancienne) : il ne
+            // bouge que par les lignes de pièces et ajusterPrixTotal
+            lierAssociations(em, existingReparation);
 
             em.merge(existingReparation);
             tx.commit();
+            CacheCodesSuivi.invalider(ancienCode);
+            CacheCodesSuivi.invalider(existingReparation.getCodeSuivi());
 
-        } catch (EntityNotFoundException e) {
+        } catch (EntityNotFoundException | DuplicateEntityException e) {
             if (tx != null && tx.isActive()) {
                 tx.rollback();
             }
@@ -122,11 +239,14 @@ public class GestionReparation implements IGestionReparation {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la modification de la rÃ©paration", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public void supprimer(int id) throws EntityNotFoundException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = null;
         try {
             tx = em.getTransaction();
@@ -137,8 +257,13 @@ public class GestionReparation implements IGestionReparation {
                 throw new EntityNotFoundException("Réparation avec l'ID " + id + " non trouvée");
             }
 
+            // Les pièces posées restent sorties du stock : seule la nomenclature disparaît avec la réparation
+            em.createQuery("DELETE FROM LigneReparation l WHERE l.idReparation = :id")
+                .setParameter("id", id)
+                .executeUpdate();
             em.remove(reparation);
             tx.commit();
+            CacheCodesSuivi.invalider(reparation.getCodeSuivi());
 
         } catch (EntityNotFoundException e) {
             if (tx != null && tx.isActive()) {
@@ -150,25 +275,33 @@ public class GestionReparation implements IGestionReparation {
                 tx.rollback();
             }
             throw new DatabaseException("Erreur lors de la suppression de la rÃ©paration", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public Reparation rechercher(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             return em.find(Reparation.class, id);
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors de la recherche de la rÃ©paration", e);
+        } finally {
+            em.close();
         }
     }
 
     @Override
     public List<Reparation> lister() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparation> query = em.createQuery("SELECT r FROM Reparation r", Reparation.class);
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du listage des rÃ©parations", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -178,6 +311,7 @@ public class GestionReparation implements IGestionReparation {
             throw new InvalidParameterException("Le code de suivi ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparation> query = em.createQuery(
                 "SELECT r FROM Reparation r WHERE LOWER(r.codeSuivi) LIKE LOWER(:codeSuivi)", Reparation.class);
@@ -185,6 +319,60 @@ public class GestionReparation implements IGestionReparation {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parations par code de suivi", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Reparation rechercherParCodeSuivi(String codeSuivi) throws InvalidParameterException, DatabaseException {
+        if (codeSuivi == null || codeSuivi.trim().isEmpty()) {
+            throw new InvalidParameterException("Le code de suivi ne peut pas être vide");
+        }
+
+        // Code généré : cherché sous sa forme canonique (casse, tiret, O/0 et I/L/1 tolérés) ;
+        // les anciens codes saisis à la main sont cherchés tels quels. Certains ont la forme
+        // d'un code généré ("REP-000123" donne 9 caractères de l'alphabet) : si le caractère
+        // de contrôle ne correspond pas, le code saisi est cherché une fois tel quel avant
+        // d'être refusé comme faute de frappe
+        String saisi = codeSuivi.trim();
+        String canonique = GenerateurCodeSuivi.canonique(saisi);
+        if (canonique == null && GenerateurCodeSuivi.aLaFormeGeneree(saisi)) {
+            Reparation ancien = chercherParCodeSuivi(saisi);
+            if (ancien == null) {
+                throw new InvalidParameterException("Code de suivi invalide : vérifiez la saisie");
+            }
+            return ancien;
+        }
+
+        Reparation reparation = chercherParCodeSuivi(canonique != null ? canonique : saisi);
+        if (reparation == null && canonique != null && !canonique.equals(saisi)) {
+            reparation = chercherParCodeSuivi(saisi);
+        }
+        return reparation;
+    }
+
+    private Reparation chercherParCodeSuivi(String codeSuivi) throws DatabaseException {
+        Reparation enCache = CacheCodesSuivi.lire(codeSuivi);
+        if (enCache != null) {
+            return enCache;
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Reparation> query = em.createQuery(
+                "SELECT r FROM Reparation r WHERE r.codeSuivi = :codeSuivi", Reparation.class);
+            query.setParameter("codeSuivi", codeSuivi);
+            List<Reparation> resultat = query.getResultList();
+            if (resultat.isEmpty()) {
+                return null;
+            }
+            CacheCodesSuivi.memoriser(resultat.get(0));
+            return resultat.get(0);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la recherche de la réparation par code de suivi", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -194,6 +382,7 @@ public class GestionReparation implements IGestionReparation {
             throw new InvalidParameterException("La date de dÃ©pÃ´t ne peut pas Ãªtre null");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparation> query = em.createQuery(
                 "SELECT r FROM Reparation r WHERE r.dateDepot = :dateDepot", Reparation.class);
@@ -201,6 +390,8 @@ public class GestionReparation implements IGestionReparation {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parations par date de dÃ©pÃ´t", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -210,6 +401,7 @@ public class GestionReparation implements IGestionReparation {
             throw new InvalidParameterException("L'Ã©tat ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparation> query = em.createQuery(
                 "SELECT r FROM Reparation r WHERE LOWER(r.etat) LIKE LOWER(:etat)", Reparation.class);
@@ -217,6 +409,8 @@ public class GestionReparation implements IGestionReparation {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parations par Ã©tat", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -226,6 +420,7 @@ public class GestionReparation implements IGestionReparation {
             throw new InvalidParameterException("Le commentaire ne peut pas Ãªtre null ou vide");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparation> query = em.createQuery(
                 "SELECT r FROM Reparation r WHERE LOWER(r.commentaire) LIKE LOWER(:commentaire)", Reparation.class);
@@ -233,6 +428,8 @@ public class GestionReparation implements IGestionReparation {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parations par commentaire", e);
+        } finally {
+            em.close();
         }
     }
 
@@ -242,6 +439,7 @@ public class GestionReparation implements IGestionReparation {
             throw new InvalidParameterException("Le prix total ne peut pas Ãªtre nÃ©gatif");
         }
 
+        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Reparation> query = em.createQuery(
                 "SELECT r FROM Reparation r WHERE r.prixTotal = :prixTotal", Reparation.class);
@@ -249,13 +447,581 @@ public class GestionReparation implements IGestionReparation {
             return query.getResultList();
         } catch (Exception e) {
             throw new DatabaseException("Erreur lors du filtrage des rÃ©parations par prix total", e);
+        } finally {
+            em.close();
         }
     }
-}
 
+    @Override
+    public Page<Reparation> listerPage(int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Reparation> query = em.createQuery(
+                "SELECT r FROM Reparation r ORDER BY r.idReparation", Reparation.class);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+            return new Page<>(query.getResultList(), offset, limite, compter(em));
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage paginé des réparations", e);
+        } finally {
+            em.close();
+        }
+    }
 
+    @Override
+    public long compter() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return compter(em);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du comptage des réparations", e);
+        } finally {
+            em.close();
+        }
+    }
 
+    // Total des pages lu dans le contexte de persistance de la page, sans ouvrir une seconde connexion
+    private static long compter(EntityManager em) {
+        return em.createQuery("SELECT COUNT(r) FROM Reparation r", Long.class).getSingleResult();
+    }
 
+    @Override
+    public List<Reparation> listerApres(int dernierId, int limite) throws InvalidParameterException, DatabaseException {
+        if (limite <= 0) {
+            throw new InvalidParameterException("La limite doit être positive");
+        }
 
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Curseur sur la clé primaire : coût constant quelle que soit la position dans la table
+            TypedQuery<Reparation> query = em.createQuery(
+                "SELECT r FROM Reparation r WHERE r.idReparation > :dernierId ORDER BY r.idReparation", Reparation.class);
+            query.setParameter("dernierId", dernierId);
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparations par curseur", e);
+        } finally {
+            em.close();
+        }
+    }
 
+    @Override
+    public List<Reparation> listerApresDate(LocalDateTime derniereDate, int dernierId, int limite) throws InvalidParameterException, DatabaseException {
+        if (limite <= 0) {
+            throw new InvalidParameterException("La limite doit être positive");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Curseur sur (dateDepot, idReparation) ; derniereDate null = première page.
+            // Les lignes sans date de dépôt ne sont pas parcourues par ce curseur.
+            TypedQuery<Reparation> query;
+            if (derniereDate == null) {
+                query = em.createQuery(
+                    "SELECT r FROM Reparation r WHERE r.dateDepot IS NOT NULL ORDER BY r.dateDepot, r.idReparation", Reparation.class);
+            } else {
+                query = em.createQuery(
+                    "SELECT r FROM Reparation r WHERE r.dateDepot > :date OR (r.dateDepot = :date AND r.idReparation > :dernierId) "
+                    + "ORDER BY r.dateDepot, r.idReparation", Reparation.class);
+                query.setParameter("date", derniereDate);
+                query.setParameter("dernierId", dernierId);
+            }
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparations par date", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Stream<Reparation> streamer() throws DatabaseException {
+        try {
+            return FluxRequete.ouvrir("SELECT r FROM Reparation r ORDER BY r.idReparation", Reparation.class, Collections.emptyMap());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de l'ouverture du flux des réparations", e);
+        }
+    }
+
+    @Override
+    public Stream<Reparation> streamerParPeriode(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
+
+        try {
+            Map<String, Object> parametres = new HashMap<>();
+            parametres.put("debut", debut);
+            parametres.put("fin", fin);
+            return FluxRequete.ouvrir(
+                "SELECT r FROM Reparation r WHERE r.dateDepot >= :debut AND r.dateDepot < :fin ORDER BY r.dateDepot, r.idReparation",
+                Reparation.class, parametres);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de l'ouverture du flux des réparations par période", e);
+        }
+    }
+
+    @Override
+    public Page<ReparationVue> listerVuesPage(int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<ReparationVue> query = em.createQuery(SELECT_VUE + " ORDER BY r.idReparation", ReparationVue.class);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+            return new Page<>(query.getResultList(), offset, limite, compter(em));
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage paginé des réparations", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Page<Reparation> filtrerParPeriodeDepot(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Intervalle [debut, fin[ : un seul parcours de l'index sur dateDepot
+            String condition = " WHERE r.dateDepot >= :debut AND r.dateDepot < :fin";
+            TypedQuery<Reparation> query = em.createQuery(
+                "SELECT r FROM Reparation r" + condition + " ORDER BY r.dateDepot, r.idReparation", Reparation.class);
+            query.setParameter("debut", debut);
+            query.setParameter("fin", fin);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+
+            TypedQuery<Long> total = em.createQuery("SELECT COUNT(r) FROM Reparation r" + condition, Long.class);
+            total.setParameter("debut", debut);
+            total.setParameter("fin", fin);
+            return new Page<>(query.getResultList(), offset, limite, total.getSingleResult());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du filtrage des réparations par période", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Page<Reparation> filtrerParPrixTotalEntre(double minimum, double maximum, int offset, int limite) throws InvalidParameterException, DatabaseException {
+        if (minimum > maximum) {
+            throw new InvalidParameterException("Le minimum ne peut pas dépasser le maximum");
+        }
+        if (offset < 0 || limite <= 0) {
+            throw new InvalidParameterException("Pagination invalide : offset >= 0 et limite > 0 attendus");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            String condition = " WHERE r.prixTotal BETWEEN :minimum AND :maximum";
+            TypedQuery<Reparation> query = em.createQuery(
+                "SELECT r FROM Reparation r" + condition + " ORDER BY r.dateDepot, r.idReparation", Reparation.class);
+            query.setParameter("minimum", minimum);
+            query.setParameter("maximum", maximum);
+            query.setFirstResult(offset);
+            query.setMaxResults(limite);
+
+            TypedQuery<Long> total = em.createQuery("SELECT COUNT(r) FROM Reparation r" + condition, Long.class);
+            total.setParameter("minimum", minimum);
+            total.setParameter("maximum", maximum);
+            return new Page<>(query.getResultList(), offset, limite, total.getSingleResult());
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du filtrage des réparations par prix total", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Reparation> rechercherParCriteres(ReparationCriteria criteres) throws InvalidParameterException, DatabaseException {
+        verifierCriteres(criteres);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            return criteres.versRequete()
+                .creer(em, Reparation.class, criteres.getTri().getChamp(), criteres.isDecroissant(),
+                    criteres.getOffset(), criteres.getLimite())
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la recherche multicritère des réparations", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public long compterParCriteres(ReparationCriteria criteres) throws InvalidParameterException, DatabaseException {
+        verifierCriteres(criteres);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            return criteres.versRequete().creerComptage(em).getSingleResult();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du comptage multicritère des réparations", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Reparation> listerAvecDetails() throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(SELECT_DETAILS + " ORDER BY r.idReparation", Reparation.class)
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage détaillé des réparations", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Reparation rechercherAvecDetails(int id) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Reparation> resultats = em.createQuery(SELECT_DETAILS + " WHERE r.idReparation = :id", Reparation.class)
+                .setParameter("id", id)
+                .getResultList();
+            return resultats.isEmpty() ? null : resultats.get(0);
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors de la recherche détaillée de la réparation", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Reparation> listerParProprietaireAvecDetails(int idProprietaire) throws InvalidParameterException, DatabaseException {
+        if (idProprietaire <= 0) {
+            throw new InvalidParameterException("L'identifiant du propriétaire doit être positif");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(SELECT_DETAILS + " WHERE b.proprietaire.id = :idProprietaire ORDER BY r.idReparation", Reparation.class)
+                .setParameter("idProprietaire", idProprietaire)
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparations du propriétaire", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Reparation> listerParBoutique(int idBoutique) throws InvalidParameterException, DatabaseException {
+        if (idBoutique <= 0) {
+            throw new InvalidParameterException("L'identifiant de la boutique doit être positif");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Reparation> query = em.createQuery(
+                "SELECT r FROM Reparation r WHERE r.idBoutique = :idBoutique ORDER BY r.dateDepot DESC, r.idReparation DESC", Reparation.class);
+            query.setParameter("idBoutique", idBoutique);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparations de la boutique", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Reparation> listerParBoutiques(Collection<Integer> idsBoutiques) throws InvalidParameterException, DatabaseException {
+        if (idsBoutiques == null) {
+            throw new InvalidParameterException("La liste des boutiques ne peut pas être null");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            // Liste IN sur l'index (idBoutique, dateDepot), par tranches de TAILLE_LISTE_IN identifiants
+            List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(idsBoutiques));
+            List<Reparation> resultat = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i += TAILLE_LISTE_IN) {
+                TypedQuery<Reparation> query = em.createQuery(
+                    "SELECT r FROM Reparation r WHERE r.idBoutique IN :ids ORDER BY r.idReparation", Reparation.class);
+                query.setParameter("ids", ids.subList(i, Math.min(i + TAILLE_LISTE_IN, ids.size())));
+                resultat.addAll(query.getResultList());
+            }
+            return resultat;
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparations par boutiques", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Reparation> listerParProprietaire(int idProprietaire) throws InvalidParameterException, DatabaseException {
+        if (idProprietaire <= 0) {
+            throw new InvalidParameterException("L'identifiant du propriétaire doit être positif");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Reparation> query = em.createQuery(
+                "SELECT r FROM Reparation r JOIN r.boutique b WHERE b.proprietaire.id = :idProprietaire ORDER BY r.idReparation", Reparation.class);
+            query.setParameter("idProprietaire", idProprietaire);
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des réparations du propriétaire", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public LigneReparation ajouterLigne(int idReparation, int idComposant, int quantite)
+            throws EntityNotFoundException, InvalidParameterException, DatabaseException {
+        if (quantite <= 0) {
+            throw new InvalidParameterException("La quantité doit être positive");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            // Stock d'abord : le composant reste verrouillé jusqu'au commit, prix et quantité relevés sont ceux appliqués
+            int disponible = MouvementsStock.appliquer(em, Mouvement.SORTIE, idComposant, quantite);
+            Composant composant = em.find(Composant.class, idComposant);
+            LigneReparation ligne = LigneReparation.builder()
+                .idReparation(idReparation)
+                .idComposant(idComposant)
+                .nomComposant(composant.getNom())
+                .quantite(quantite)
+                .prixUnitaire(composant.getPrix())
+                .dateAjout(LocalDateTime.now())
+                .build();
+            String codeSuivi = ajouterAuPrixTotal(em, idReparation, ligne.getMontant());
+            em.persist(ligne);
+            // Composant encore verrouillé : l'index reçoit les quantités dans l'ordre des commits
+            AlertesStock.quantiteModifiee(idComposant, disponible);
+            tx.commit();
+            CacheCodesSuivi.invalider(codeSuivi);
+            return ligne;
+
+        } catch (EntityNotFoundException | InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            AlertesStock.invalider();
+            throw new DatabaseException("Erreur lors de l'ajout d'une pièce à la réparation " + idReparation, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void supprimerLigne(int idLigne) throws EntityNotFoundException, InvalidParameterException, DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+
+            LigneReparation ligne = em.find(LigneReparation.class, idLigne);
+            // Suppression conditionnelle : retirée deux fois (deux postes), la ligne ne rend ses pièces qu'une fois
+            if (ligne == null || em.createQuery("DELETE FROM LigneReparation l WHERE l.idLigne = :id")
+                    .setParameter("id", idLigne)
+                    .executeUpdate() == 0) {
+                throw new EntityNotFoundException("Ligne de réparation avec l'ID " + idLigne + " non trouvée");
+            }
+            int disponible = -1;
+            if (em.find(Composant.class, ligne.getIdComposant()) != null) {
+                disponible = MouvementsStock.appliquer(em, Mouvement.RETOUR, ligne.getIdComposant(), ligne.getQuantite());
+            }
+            String codeSuivi = ajouterAuPrixTotal(em, ligne.getIdReparation(), -ligne.getMontant());
+            if (disponible >= 0) {
+                AlertesStock.quantiteModifiee(ligne.getIdComposant(), disponible);
+            }
+            tx.commit();
+            CacheCodesSuivi.invalider(codeSuivi);
+
+        } catch (EntityNotFoundException | InvalidParameterException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            AlertesStock.invalider();
+            throw new DatabaseException("Erreur lors du retrait de la ligne de réparation " + idLigne, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void ajusterPrixTotal(int idReparation, double delta) throws EntityNotFoundException, InvalidParameterException, DatabaseException {
+        if (Double.isNaN(delta) || Double.isInfinite(delta)) {
+            throw new InvalidParameterException("L'ajustement du prix doit être un nombre");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = null;
+        try {
+            tx = em.getTransaction();
+            tx.begin();
+            String codeSuivi = ajouterAuPrixTotal(em, idReparation, delta);
+            tx.commit();
+            CacheCodesSuivi.invalider(codeSuivi);
+
+        } catch (EntityNotFoundException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw new DatabaseException("Erreur lors de l'ajustement du prix de la réparation " + idReparation, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<LigneReparation> listerLignes(int idReparation) throws DatabaseException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(
+                "SELECT l FROM LigneReparation l WHERE l.idReparation = :id ORDER BY l.idLigne", LigneReparation.class)
+                .setParameter("id", idReparation)
+                .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du listage des pièces de la réparation " + idReparation, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public Map<Integer, Double> chiffrerPieces(Collection<Integer> idsReparations, LocalDateTime date)
+            throws InvalidParameterException, DatabaseException {
+        if (idsReparations == null) {
+            throw new InvalidParameterException("La liste des réparations ne peut pas être null");
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(idsReparations));
+            Map<Integer, Long> centimesParReparation = new LinkedHashMap<>();
+            for (Integer id : ids) {
+                centimesParReparation.put(id, 0L);
+            }
+            // Par tranche : une requête pour les lignes, une par bloc d'historiques pas encore en mémoire
+            for (int i = 0; i < ids.size(); i += TAILLE_LISTE_IN) {
+                List<Object[]> lignes = em.createQuery(
+                    "SELECT l.idReparation, l.idComposant, l.quantite, l.dateAjout, l.prixUnitaire "
+                    + "FROM LigneReparation l WHERE l.idReparation IN :ids", Object[].class)
+                    .setParameter("ids", ids.subList(i, Math.min(i + TAILLE_LISTE_IN, ids.size())))
+                    .getResultList();
+                Set<Integer> composants = new HashSet<>();
+                for (Object[] ligne : lignes) {
+                    composants.add((Integer) ligne[1]);
+                }
+                Map<Integer, HistoriquesPrix.Serie> historiques = HistoriquesPrix.charger(em, composants);
+                for (Object[] ligne : lignes) {
+                    LocalDateTime dateChiffrage = date != null ? date : (LocalDateTime) ligne[3];
+                    long centimes = dateChiffrage != null
+                        ? historiques.get((Integer) ligne[1]).centimesAu(dateChiffrage) : HistoriquesPrix.INCONNU;
+                    // Sans historique (ou sans date d'ajout) : prix relevé sur la ligne
+                    if (centimes == HistoriquesPrix.INCONNU) {
+                        centimes = HistoriquesPrix.centimes((Double) ligne[4]);
+                    }
+                    centimesParReparation.merge((Integer) ligne[0], centimes * (Integer) ligne[2], Long::sum);
+                }
+            }
+            Map<Integer, Double> montants = new LinkedHashMap<>();
+            centimesParReparation.forEach((id, centimes) -> montants.put(id, centimes / 100.0));
+            return montants;
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du chiffrage des pièces des réparations", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    private void verifierCriteres(ReparationCriteria criteres) throws InvalidParameterException {
+        if (criteres == null) {
+            throw new InvalidParameterException("Les critères ne peuvent pas être null");
+        }
+        if (criteres.getOffset() < 0 || criteres.getLimite() < 0) {
+            throw new InvalidParameterException("Pagination invalide : offset et limite doivent être positifs");
+        }
+    }
+
+    // Les associations en lecture seule suivent les identifiants, pour que les entités
+    // restées dans le contexte de persistance ne gardent pas l'ancien appareil/boutique
+    private void lierAssociations(EntityManager em, Reparation reparation) {
+        reparation.setAppareil(reparation.getIdAppareil() > 0 ? em.getReference(Appareil.class, reparation.getIdAppareil()) : null);
+        reparation.setBoutique(reparation.getIdBoutique() > 0 ? em.getReference(Boutique.class, reparation.getIdBoutique()) : null);
+        reparation.setReparateur(reparation.getIdReparateur() > 0 ? em.getReference(Reparateur.class, reparation.getIdReparateur()) : null);
+    }
+
+    // Un code vide est enregistré NULL : l'index unique accepte plusieurs NULL, pas plusieurs chaînes vides
+    private void normaliserCodeSuivi(Reparation reparation) {
+        if (reparation.getCodeSuivi() != null) {
+            String code = reparation.getCodeSuivi().trim();
+            reparation.setCodeSuivi(code.isEmpty() ? null : code);
+        }
+    }
+
+    // Une réparation créée sans code reçoit un code généré (cf. GenerateurCodeSuivi)
+    private void attribuerCodeSuivi(Reparation reparation) {
+        normaliserCodeSuivi(reparation);
+        if (reparation.getCodeSuivi() == null) {
+            reparation.setCodeSuivi(GenerateurCodeSuivi.getInstance().generer());
+        }
+    }
+
+    private boolean codeSuiviExiste(EntityManager em, String codeSuivi, int idExclu) {
+        TypedQuery<Long> query = em.createQuery(
+            "SELECT COUNT(r) FROM Reparation r WHERE r.codeSuivi = :codeSuivi AND r.idReparation <> :idExclu", Long.class);
+        query.setParameter("codeSuivi", codeSuivi);
+        query.setParameter("idExclu", idExclu);
+        return query.getSingleResult() > 0;
+    }
+
+    // Prix total mis à jour en base (prixTotal + delta), sans relire ni réécrire la réparation ;
+    // retourne son code de suivi pour invalider le cache
+    private static String ajouterAuPrixTotal(EntityManager em, int idReparation, double delta) throws EntityNotFoundException {
+        int lignes = em.createQuery("UPDATE Reparation r SET r.prixTotal = r.prixTotal + :delta WHERE r.idReparation = :id")
+            .setParameter("delta", delta)
+            .setParameter("id", idReparation)
+            .executeUpdate();
+        if (lignes == 0) {
+            throw new EntityNotFoundException("Réparation avec l'ID " + idReparation + " non trouvée");
+        }
+        return em.createQuery("SELECT r.codeSuivi FROM Reparation r WHERE r.idReparation = :id", String.class)
+            .setParameter("id", idReparation)
+            .getSingleResult();
+    }
+}
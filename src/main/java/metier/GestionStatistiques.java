@@ -0,0 +1,246 @@
+package metier;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import exception.DatabaseException;
+import exception.InvalidParameterException;
+
+/**
+ * Statistiques des tableaux de bord, calculées en base (COUNT, SUM, GROUP BY)
+ * au lieu de charger les tables complètes. Les résultats peuvent être gardés
+ * quelques secondes en mémoire (fastrepair.statistiques.ttl_ms, 0 = pas de cache)
+ * pour que l'ouverture répétée d'un tableau de bord ne relance pas les requêtes.
+ */
+public class GestionStatistiques implements IGestionStatistiques {
+
+    private final EntityManagerFactory emf;
+
+    private final long dureeCacheMs;
+    private final Map<String, Entree> cache = new ConcurrentHashMap<>();
+
+    public GestionStatistiques() {
+        this(PersistenceManager.getDureeCacheStatistiquesMs());
+    }
+
+    public GestionStatistiques(long dureeCacheMs) {
+        this.emf = PersistenceManager.getEntityManagerFactory();
+        this.dureeCacheMs = Math.max(0, dureeCacheMs);
+    }
+
+    @Override
+    public long compterAppareils() throws DatabaseException {
+        return compter("Appareil", "appareils");
+    }
+
+    @Override
+    public long compterReparations() throws DatabaseException {
+        return compter("Reparation", "réparations");
+    }
+
+    @Override
+    public long compterReparateurs() throws DatabaseException {
+        return compter("Reparateur", "réparateurs");
+    }
+
+    @Override
+    public long compterProprietaires() throws DatabaseException {
+        return compter("Proprietaire", "propriétaires");
+    }
+
+    @Override
+    public long compterBoutiques() throws DatabaseException {
+        return compter("Boutique", "boutiques");
+    }
+
+    @Override
+    public long compterRecus() throws DatabaseException {
+        return compter("Recu", "reçus");
+    }
+
+    @Override
+    public long compterEmprunts() throws DatabaseException {
+        return compter("Emprunt", "emprunts");
+    }
+
+    @Override
+    public double soldeTotalCaisses() throws DatabaseException {
+        return sommer("SELECT COALESCE(SUM(c.soldeActuel), 0) FROM Caisse c", "du solde des caisses");
+    }
+
+    @Override
+    public double totalRecus() throws DatabaseException {
+        return sommer("SELECT COALESCE(SUM(r.montant), 0) FROM Recu r", "du total des reçus");
+    }
+
+    @Override
+    public double totalEmprunts() throws DatabaseException {
+        return sommer("SELECT COALESCE(SUM(e.montant), 0) FROM Emprunt e", "du total des emprunts");
+    }
+
+    @Override
+    public List<StatistiqueGroupe> reparationsParBoutique() throws DatabaseException {
+        return enCache("reparationsParBoutique", "Erreur lors du regroupement des réparations par boutique", em ->
+            grouper(em.createQuery(
+                "SELECT r.idBoutique, COUNT(r), COALESCE(SUM(r.prixTotal), 0) FROM Reparation r "
+                + "GROUP BY r.idBoutique ORDER BY r.idBoutique", Object[].class)));
+    }
+
+    @Override
+    public List<StatistiqueGroupe> reparationsParBoutiqueProprietaire(int idProprietaire) throws DatabaseException {
+        return enCache("reparationsParBoutiqueProprietaire:" + idProprietaire,
+            "Erreur lors du regroupement des réparations du propriétaire", em -> {
+                TypedQuery<Object[]> query = em.createQuery(
+                    "SELECT r.idBoutique, COUNT(r), COALESCE(SUM(r.prixTotal), 0) FROM Reparation r "
+                    + "WHERE r.idBoutique IN (SELECT b.idBoutique FROM Boutique b WHERE b.proprietaire.id = :idProprietaire) "
+                    + "GROUP BY r.idBoutique ORDER BY r.idBoutique", Object[].class);
+                query.setParameter("idProprietaire", idProprietaire);
+                return grouper(query);
+            });
+    }
+
+    @Override
+    public List<StatistiqueGroupe> reparationsParEtat() throws DatabaseException {
+        return enCache("reparationsParEtat", "Erreur lors du regroupement des réparations par état", em ->
+            grouper(em.createQuery(
+                "SELECT r.etat, COUNT(r), COALESCE(SUM(r.prixTotal), 0) FROM Reparation r "
+                + "GROUP BY r.etat ORDER BY r.etat", Object[].class)));
+    }
+
+    @Override
+    public List<StatistiqueGroupe> reparationsParEtatReparateur(int idReparateur) throws DatabaseException {
+        return enCache("reparationsParEtatReparateur:" + idReparateur,
+            "Erreur lors du regroupement des réparations du réparateur", em -> {
+                TypedQuery<Object[]> query = em.createQuery(
+                    "SELECT r.etat, COUNT(r), COALESCE(SUM(r.prixTotal), 0) FROM Reparation r "
+                    + "WHERE r.idReparateur = :idReparateur GROUP BY r.etat ORDER BY r.etat", Object[].class);
+                query.setParameter("idReparateur", idReparateur);
+                return grouper(query);
+            });
+    }
+
+    @Override
+    public Map<Integer, Long> compterReparateursParBoutique() throws DatabaseException {
+        return enCache("compterReparateursParBoutique", "Erreur lors du comptage des réparateurs par boutique", em -> {
+            Map<Integer, Long> resultat = new LinkedHashMap<>();
+            for (Object[] ligne : em.createQuery(
+                    "SELECT r.boutique.idBoutique, COUNT(r) FROM Reparateur r "
+                    + "WHERE r.boutique IS NOT NULL GROUP BY r.boutique.idBoutique", Object[].class).getResultList()) {
+                resultat.put(((Number) ligne[0]).intValue(), ((Number) ligne[1]).longValue());
+            }
+            return Collections.unmodifiableMap(resultat);
+        });
+    }
+
+    @Override
+    public List<StatistiqueGroupe> reparationsParMois(LocalDateTime debut, LocalDateTime fin)
+            throws InvalidParameterException, DatabaseException {
+        return parMois("Reparation", "dateDepot", "prixTotal", debut, fin, "réparations");
+    }
+
+    @Override
+    public List<StatistiqueGroupe> recusParMois(LocalDateTime debut, LocalDateTime fin)
+            throws InvalidParameterException, DatabaseException {
+        return parMois("Recu", "date", "montant", debut, fin, "reçus");
+    }
+
+    @Override
+    public List<StatistiqueGroupe> empruntsParMois(LocalDateTime debut, LocalDateTime fin)
+            throws InvalidParameterException, DatabaseException {
+        return parMois("Emprunt", "date", "montant", debut, fin, "emprunts");
+    }
+
+    @Override
+    public void viderCache() {
+        cache.clear();
+    }
+
+    private long compter(String entite, String libelle) throws DatabaseException {
+        return enCache("compter:" + entite, "Erreur lors du comptage des " + libelle, em ->
+            em.createQuery("SELECT COUNT(x) FROM " + entite + " x", Long.class).getSingleResult());
+    }
+
+    private double sommer(String jpql, String libelle) throws DatabaseException {
+        return enCache(jpql, "Erreur lors du calcul " + libelle, em ->
+            em.createQuery(jpql, Number.class).getSingleResult().doubleValue());
+    }
+
+    private List<StatistiqueGroupe> parMois(String entite, String champDate, String champMontant,
+            LocalDateTime debut, LocalDateTime fin, String libelle) throws InvalidParameterException, DatabaseException {
+        if (debut == null || fin == null || fin.isBefore(debut)) {
+            throw new InvalidParameterException("La période est invalide");
+        }
+
+        String annee = "YEAR(x." + champDate + ")";
+        String mois = "MONTH(x." + champDate + ")";
+        return enCache("parMois:" + entite + ":" + debut + ":" + fin, "Erreur lors du regroupement mensuel des " + libelle, em -> {
+            TypedQuery<Object[]> query = em.createQuery(
+                "SELECT " + annee + ", " + mois + ", COUNT(x), COALESCE(SUM(x." + champMontant + "), 0) "
+                + "FROM " + entite + " x WHERE x." + champDate + " >= :debut AND x." + champDate + " < :fin "
+                + "GROUP BY " + annee + ", " + mois + " ORDER BY " + annee + ", " + mois, Object[].class);
+            query.setParameter("debut", debut);
+            query.setParameter("fin", fin);
+            List<StatistiqueGroupe> resultat = new ArrayList<>();
+            for (Object[] ligne : query.getResultList()) {
+                String cle = String.format("%04d-%02d", ((Number) ligne[0]).intValue(), ((Number) ligne[1]).intValue());
+                resultat.add(new StatistiqueGroupe(cle, ((Number) ligne[2]).longValue(), ((Number) ligne[3]).doubleValue()));
+            }
+            return Collections.unmodifiableList(resultat);
+        });
+    }
+
+    private List<StatistiqueGroupe> grouper(TypedQuery<Object[]> query) {
+        List<StatistiqueGroupe> resultat = new ArrayList<>();
+        for (Object[] ligne : query.getResultList()) {
+            resultat.add(new StatistiqueGroupe(String.valueOf(ligne[0]),
+                ((Number) ligne[1]).longValue(), ((Number) ligne[2]).doubleValue()));
+        }
+        return Collections.unmodifiableList(resultat);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T enCache(String cle, String messageErreur, Function<EntityManager, T> calcul) throws DatabaseException {
+        long maintenant = System.currentTimeMillis();
+        if (dureeCacheMs > 0) {
+            Entree entree = cache.get(cle);
+            if (entree != null && entree.expiration > maintenant) {
+                return (T) entree.valeur;
+            }
+        }
+
+        // Contexte de persistance ouvert seulement si la valeur n'est pas en cache, fermé aussitôt
+        T valeur;
+        EntityManager em = emf.createEntityManager();
+        try {
+            valeur = calcul.apply(em);
+        } catch (Exception e) {
+            throw new DatabaseException(messageErreur, e);
+        } finally {
+            em.close();
+        }
+        if (dureeCacheMs > 0) {
+            cache.put(cle, new Entree(valeur, maintenant + dureeCacheMs));
+        }
+        return valeur;
+    }
+
+    private static final class Entree {
+        private final Object valeur;
+        private final long expiration;
+
+        private Entree(Object valeur, long expiration) {
+            this.valeur = valeur;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package metier;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import dao.PrixComposant;
+
+/**
+ * Historiques des prix des composants gardés en mémoire, partagés par toutes les
+ * instances de GestionComposant et GestionReparation du processus. Chaque historique est
+ * une paire de tableaux primitifs (instant du changement, prix en centimes) triés par
+ * date : un prix à une date est une recherche dichotomique, sans objet par changement.
+ * Un historique est chargé à la première demande, avec ceux des autres composants
+ * demandés en même temps (une requête IN par bloc de composants), puis relu après
+ * fastrepair.prix.historique_ttl_ms pour rattraper les changements faits depuis un
+ * autre poste ; au-delà de fastrepair.prix.historique_taille composants, les moins
+ * récemment consultés sont relâchés.
+ */
+final class HistoriquesPrix {
+
+    /** Prix retourné pour un composant sans historique. */
+    static final long INCONNU = -1;
+
+    private static final int COMPOSANTS_PAR_REQUETE = 1000;
+
+    private static final Map<Integer, Serie> SERIES = new LinkedHashMap<Integer, Serie>(1024, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Serie> eldest) {
+            return size() > PersistenceManager.getTailleHistoriquesPrix();
+        }
+    };
+
+    // Composants dont le prix a changé pendant une lecture en cours : la série lue peut ne
+    // pas contenir ce changement, elle sert à l'appelant mais n'est pas gardée
+    private static final Set<Integer> MODIFIES_PENDANT_LECTURE = new HashSet<>();
+    private static int lecturesEnCours;
+
+    /**
+     * Historique d'un composant, jamais modifié une fois construit : un changement de prix
+     * produit une nouvelle série.
+     */
+    static final class Serie {
+        private final long[] instants;
+        private final long[] centimes;
+        private final long expiration;
+
+        private Serie(long[] instants, long[] centimes, long expiration) {
+            this.instants = instants;
+            this.centimes = centimes;
+            this.expiration = expiration;
+        }
+
+        /**
+         * Prix en vigueur à la date : celui du dernier changement à cette date ou avant ;
+         * avant le premier changement connu, le premier prix. INCONNU si la série est vide.
+         */
+        long centimesAu(LocalDateTime date) {
+            if (instants.length == 0) {
+                return INCONNU;
+            }
+            long instant = instant(date);
+            // Premier indice dont l'instant dépasse la date : le prix en vigueur est le précédent
+            int bas = 0;
+            int haut = instants.length;
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                if (instants[milieu] <= instant) {
+                    bas = milieu + 1;
+                } else {
+                    haut = milieu;
+                }
+            }
+            return centimes[Math.max(bas - 1, 0)];
+        }
+
+        // Insertion à sa place chronologique : deux postes peuvent valider leurs changements dans le désordre
+        private Serie avec(long instant, long prix) {
+            int position = instants.length;
+            while (position > 0 && instants[position - 1] > instant) {
+                position--;
+            }
+            long[] nouveauxInstants = new long[instants.length + 1];
+            long[] nouveauxCentimes = new long[centimes.length + 1];
+            System.arraycopy(instants, 0, nouveauxInstants, 0, position);
+            System.arraycopy(centimes, 0, nouveauxCentimes, 0, position);
+            nouveauxInstants[position] = instant;
+            nouveauxCentimes[position] = prix;
+            System.arraycopy(instants, position, nouveauxInstants, position + 1, instants.length - position);
+            System.arraycopy(centimes, position, nouveauxCentimes, position + 1, centimes.length - position);
+            return new Serie(nouveauxInstants, nouveauxCentimes, expiration);
+        }
+    }
+
+    private HistoriquesPrix() {
+    }
+
+    /**
+     * Historiques des composants demandés, chargés depuis la base pour ceux qui ne sont pas
+     * en mémoire ou dont la relecture est due. La table retournée reste valable même si le
+     * cache relâche ensuite certains historiques.
+     */
+    static Map<Integer, Serie> charger(EntityManager em, Collection<Integer> idsComposants) {
+        Map<Integer, Serie> series = new HashMap<>();
+        List<Integer> aLire = new ArrayList<>();
+        long maintenant = System.currentTimeMillis();
+        synchronized (SERIES) {
+            for (Integer idComposant : idsComposants) {
+                Serie serie = SERIES.get(idComposant);
+                if (serie != null && serie.expiration > maintenant) {
+                    series.put(idComposant, serie);
+                } else if (!series.containsKey(idComposant)) {
+                    series.put(idComposant, null);
+                    aLire.add(idComposant);
+                }
+            }
+        }
+        if (aLire.isEmpty()) {
+            return series;
+        }
+        synchronized (SERIES) {
+            lecturesEnCours++;
+        }
+        try {
+            for (int debut = 0; debut < aLire.size(); debut += COMPOSANTS_PAR_REQUETE) {
+                List<Integer> bloc = aLire.subList(debut, Math.min(debut + COMPOSANTS_PAR_REQUETE, aLire.size()));
+                Map<Integer, Serie> lues = lire(em, bloc);
+                synchronized (SERIES) {
+                    for (Map.Entry<Integer, Serie> lue : lues.entrySet()) {
+                        if (!MODIFIES_PENDANT_LECTURE.contains(lue.getKey())) {
+                            SERIES.put(lue.getKey(), lue.getValue());
+                        }
+                    }
+                }
+                series.putAll(lues);
+            }
+        } finally {
+            synchronized (SERIES) {
+                if (--lecturesEnCours == 0) {
+                    MODIFIES_PENDANT_LECTURE.clear();
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Changement de prix validé par ce processus ; sans effet si l'historique du composant
+     * n'est pas en mémoire (il sera lu avec ce changement).
+     */
+    static void prixModifie(int idComposant, LocalDateTime dateEffet, long centimes) {
+        synchronized (SERIES) {
+            Serie serie = SERIES.get(idComposant);
+            if (serie != null) {
+                SERIES.put(idComposant, serie.avec(instant(dateEffet), centimes));
+            }
+            // Une relecture en cours (série absente ou expirée) a pu lire la base avant ce
+            // commit : elle ne doit pas remplacer la série à jour ci-dessus
+            if (lecturesEnCours > 0) {
+                MODIFIES_PENDANT_LECTURE.add(idComposant);
+            }
+        }
+    }
+
+    static void vider() {
+        synchronized (SERIES) {
+            SERIES.clear();
+        }
+    }
+
+    /**
+     * Ajoute un prix à l'historique dans la transaction courante ; à signaler par
+     * prixModifie après le commit.
+     */
+    static PrixComposant enregistrer(EntityManager em, int idComposant, LocalDateTime dateEffet, double prix) {
+        PrixComposant changement = PrixComposant.builder()
+            .idComposant(idComposant)
+            .dateEffet(dateEffet)
+            .centimes(centimes(prix))
+            .build();
+        em.persist(changement);
+        return changement;
+    }
+
+    static long centimes(double prix) {
+        return Math.round(prix * 100);
+    }
+
+    // Un composant sans aucun changement en base reçoit une série vide : il n'est pas relu à chaque demande
+    private static Map<Integer, Serie> lire(EntityManager em, List<Integer> idsComposants) {
+        long expiration = System.currentTimeMillis() + PersistenceManager.getDureeHistoriquesPrixMs();
+        Map<Integer, Serie> series = new HashMap<>();
+        long[] instants = new long[16];
+        long[] centimes = new long[16];
+        int taille = 0;
+        int courant = -1;
+        List<Object[]> lignes = em.createQuery(
+            "SELECT p.idComposant, p.dateEffet, p.centimes FROM PrixComposant p WHERE p.idComposant IN :ids "
+            + "ORDER BY p.idComposant, p.dateEffet, p.idPrix", Object[].class)
+            .setParameter("ids", idsComposants)
+            .getResultList();
+        for (Object[] ligne : lignes) {
+            int idComposant = (Integer) ligne[0];
+            if (idComposant != courant) {
+                if (courant >= 0) {
+                    series.put(courant, new Serie(Arrays.copyOf(instants, taille), Arrays.copyOf(centimes, taille), expiration));
+                }
+                courant = idComposant;
+                taille = 0;
+            }
+            if (taille == instants.length) {
+                instants = Arrays.copyOf(instants, taille * 2);
+                centimes = Arrays.copyOf(centimes, taille * 2);
+            }
+            instants[taille] = instant((LocalDateTime) ligne[1]);
+            centimes[taille] = (Long) ligne[2];
+            taille++;
+        }
+        if (courant >= 0) {
+            series.put(courant, new Serie(Arrays.copyOf(instants, taille), Arrays.copyOf(centimes, taille), expiration));
+        }
+        Serie vide = new Serie(new long[0], new long[0], expiration);
+        for (Integer idComposant : idsComposants) {
+            series.putIfAbsent(idComposant, vide);
+        }
+        return series;
+    }
+
+    // Dates locales de l'application, comparées entre elles : l'UTC ne sert que d'encodage
+    private static long instant(LocalDateTime date) {
+        return date.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
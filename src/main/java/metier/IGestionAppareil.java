@@ -1,4 +1,4 @@
-﻿package metier;
+package metier;
 
 import java.util.List;
 
@@ -11,6 +11,7 @@ import exception.InvalidParameterException;
 
 public interface IGestionAppareil {
 	public void ajouter(Appareil p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Appareil> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Appareil p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Appareil rechercher(int id) throws DatabaseException;
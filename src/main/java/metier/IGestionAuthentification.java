@@ -0,0 +1,12 @@
+package metier;
+
+import exception.DatabaseException;
+
+public interface IGestionAuthentification {
+	// Connexion : rôle déterminé par le compte trouvé, null si email ou mot de passe incorrect
+	public Authentification authentifier(String email, String motDePasse) throws DatabaseException;
+	// Idem, en ne retenant que le rôle demandé (null = tous)
+	public Authentification authentifier(String email, String motDePasse, String role) throws DatabaseException;
+
+	public void viderCacheNegatif();
+}
@@ -1,4 +1,4 @@
-﻿package metier;
+package metier;
 
 import java.util.List;
 
@@ -12,6 +12,7 @@ import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
 public interface IGestionBoutique {
 	public void ajouter(Boutique p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Boutique> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Boutique p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Boutique rechercher(int id) throws DatabaseException;
@@ -23,6 +24,9 @@ public interface IGestionBoutique {
 	public List<Boutique> filtrerParNumTel(int numTel) throws InvalidParameterException, DatabaseException;
 	public List<Boutique> filtrerParNumP(int numP) throws InvalidParameterException, DatabaseException;
 
+	// Boutiques d'un propriétaire (index de la clé étrangère idProprietaire)
+	public List<Boutique> listerParProprietaire(int idProprietaire) throws InvalidParameterException, DatabaseException;
+
 }
 
 
@@ -1,9 +1,12 @@
-﻿package metier;
+package metier;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import dao.Caisse;
+import dao.EcritureCaisse;
 
 
 import exception.DatabaseException;
@@ -12,6 +15,7 @@ import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
 public interface IGestionCaisse {
 	public void ajouter(Caisse p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Caisse> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Caisse p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Caisse rechercher(int id) throws DatabaseException;
@@ -21,9 +25,29 @@ public interface IGestionCaisse {
 	public List<Caisse> filtrerParSoldeActuel(double soldeActuel) throws InvalidParameterException, DatabaseException;
 	public List<Caisse> filtrerParDernierMouvement(LocalDateTime dernierMouvement) throws InvalidParameterException, DatabaseException;
 
+	// Encaissement atomique d'une réparation (UPDATE en base, sans écraser un mouvement concurrent) ; retourne le nouveau solde
+	public double encaisser(int idCaisse, double montant, int idReparation) throws InvalidParameterException, DatabaseException;
+
+	// Journal des mouvements : solde à une date passée, écritures d'une période, rapprochement d'une journée
+	public double soldeAu(int idCaisse, LocalDateTime instant) throws InvalidParameterException, DatabaseException;
+	public List<EcritureCaisse> listerEcritures(int idCaisse, LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException;
+	public RapprochementCaisse rapprocher(int idCaisse, LocalDate jour) throws InvalidParameterException, DatabaseException;
+
 	// Vérifications spécifiques
 	public boolean caisseExistePourBoutique(int idBoutique) throws DatabaseException;
 
+	// Lignes de tableau (projection des colonnes affichées)
+	public List<CaisseVue> listerVues() throws DatabaseException;
+	public List<CaisseVue> listerVuesParProprietaire(int idProprietaire) throws DatabaseException;
+
+	// Filtres par intervalle (index sur les dates et montants), paginés et triés par date
+	public Page<Caisse> filtrerParPeriodeDernierMouvement(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Caisses d'une boutique, d'un ensemble de boutiques ou d'un propriétaire
+	public Caisse rechercherCaisseParBoutique(int idBoutique) throws DatabaseException;
+	public List<Caisse> listerParBoutiques(Collection<Integer> idsBoutiques) throws InvalidParameterException, DatabaseException;
+	public List<Caisse> listerParProprietaire(int idProprietaire) throws InvalidParameterException, DatabaseException;
+
 }
 
 
@@ -1,4 +1,4 @@
-﻿package metier;
+package metier;
 
 import java.util.List;
 
@@ -10,6 +10,7 @@ import exception.InvalidParameterException;
 
 public interface IGestionClient {
 	public void ajouter(Client p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Client> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Client p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Client rechercher(int id) throws DatabaseException;
@@ -1,8 +1,12 @@
-﻿package metier;
+package metier;
 
+import java.io.Reader;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import dao.Composant;
+import dao.PrixComposant;
 
 
 import exception.DatabaseException;
@@ -11,6 +15,7 @@ import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
 public interface IGestionComposant {
 	public void ajouter(Composant p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Composant> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Composant p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Composant rechercher(int id) throws DatabaseException;
@@ -21,6 +26,33 @@ public interface IGestionComposant {
 	public List<Composant> filtrerParPrix(double prix) throws InvalidParameterException, DatabaseException;
 	public List<Composant> filtrerParQuantite(int quantite) throws InvalidParameterException, DatabaseException;
 
+	// Composants en stock (quantité disponible > 0), triés par nom
+	public List<Composant> listerDisponibles() throws DatabaseException;
+
+	// Mouvements de stock atomiques (UPDATE conditionnel en base) ; refusés si la quantité ne suffit pas
+	public void reserver(int idComposant, int quantite) throws InvalidParameterException, DatabaseException;
+	public void consommer(int idComposant, int quantite) throws InvalidParameterException, DatabaseException;
+	public void liberer(int idComposant, int quantite) throws InvalidParameterException, DatabaseException;
+	// Correction d'inventaire (delta signé : réception, casse, comptage) ; modifer ne touche pas aux quantités
+	public void ajusterStock(int idComposant, int delta) throws InvalidParameterException, DatabaseException;
+	// Réservation d'une liste de pièces (idComposant -> quantité) en une transaction : tout ou rien
+	public void reserverEnLot(Map<Integer, Integer> quantitesParComposant) throws InvalidParameterException, DatabaseException;
+
+	// Alertes de réapprovisionnement (index en mémoire trié par marge = quantité - seuil), la plus urgente d'abord
+	public void definirSeuil(int idComposant, int seuil) throws EntityNotFoundException, InvalidParameterException, DatabaseException;
+	public List<AlerteStock> listerAlertes() throws DatabaseException;
+	public List<AlerteStock> listerSousMarge(int marge) throws DatabaseException;
+	// État d'un composant suivi (null s'il n'a pas de seuil)
+	public AlerteStock rechercherAlerte(int idComposant) throws DatabaseException;
+
+	// Import d'un tarif fournisseur CSV (nom, prix[, quantite, seuil]) : mise à jour par nom ou création, par lots ;
+	// les lignes invalides sont écartées et détaillées dans le rapport sans interrompre l'import
+	public RapportImport importerCsv(Reader source) throws InvalidParameterException, DatabaseException;
+
+	// Historique des prix (ajout seul, chaque changement de prix y est inscrit) : prix en vigueur à une date, changements successifs
+	public double prixAu(int idComposant, LocalDateTime date) throws InvalidParameterException, DatabaseException;
+	public List<PrixComposant> listerHistoriquePrix(int idComposant) throws DatabaseException;
+
 }
 
 
@@ -1,7 +1,8 @@
-﻿package metier;
+package metier;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 import dao.Emprunt;
 
@@ -11,8 +12,10 @@ import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
 public interface IGestionEmprunt {
 	public void ajouter(Emprunt p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Emprunt> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	// Un emprunt inscrit au journal d'une caisse n'est ni supprimé ni modifié (hors commentaire) : InvalidParameterException
 	public void modifer(Emprunt p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
-	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
+	public void supprimer(int id) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public Emprunt rechercher(int id) throws DatabaseException;
 	public List<Emprunt> lister() throws DatabaseException;
 
@@ -30,6 +33,28 @@ public interface IGestionEmprunt {
 	public List<Emprunt> listerEmpruntsParCaisse(int idCaisse) throws DatabaseException;
 	public List<Emprunt> listerEmpruntsParReparateur(int idReparateur) throws DatabaseException;
 
+	// Pagination (offset) et curseurs (keyset) pour les gros volumes
+	public Page<Emprunt> listerPage(int offset, int limite) throws InvalidParameterException, DatabaseException;
+	public long compter() throws DatabaseException;
+	public List<Emprunt> listerApres(int dernierId, int limite) throws InvalidParameterException, DatabaseException;
+	public List<Emprunt> listerApresDate(LocalDateTime derniereDate, int dernierId, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Parcours en flux (curseur serveur) pour les exports et traitements de masse ; à fermer après usage
+	public Stream<Emprunt> streamer() throws DatabaseException;
+	public Stream<Emprunt> streamerParPeriode(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException;
+
+	// Lignes de tableau (projection des colonnes affichées)
+	public List<EmpruntVue> listerVues() throws DatabaseException;
+	public Page<EmpruntVue> listerVuesPage(int offset, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Filtres par intervalle (index sur les dates et montants), paginés et triés par date
+	public Page<Emprunt> filtrerParPeriode(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException;
+	public Page<Emprunt> filtrerParMontantEntre(double minimum, double maximum, int offset, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Recherche multicritère (une seule requête paramétrée, triée et limitée)
+	public List<Emprunt> rechercherParCriteres(EmpruntCriteria criteres) throws InvalidParameterException, DatabaseException;
+	public long compterParCriteres(EmpruntCriteria criteres) throws InvalidParameterException, DatabaseException;
+
 }
 
 
@@ -1,4 +1,4 @@
-﻿package metier;
+package metier;
 
 import java.util.List;
 
@@ -10,6 +10,7 @@ import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
 public interface IGestionProprietaire {
 	public void ajouter(Proprietaire p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Proprietaire> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Proprietaire p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Proprietaire rechercher(int id) throws DatabaseException;
@@ -19,7 +20,6 @@ public interface IGestionProprietaire {
 	public List<Proprietaire> filtrerParNom(String nom) throws InvalidParameterException, DatabaseException;
 	public List<Proprietaire> filtrerParPrenom(String prenom) throws InvalidParameterException, DatabaseException;
 	public List<Proprietaire> filtrerParEmail(String email) throws InvalidParameterException, DatabaseException;
-	public List<Proprietaire> filtrerParMdp(String mdp) throws InvalidParameterException, DatabaseException;
 
 	// Authentification
 	public Proprietaire rechercherParEmail(String email) throws DatabaseException;
@@ -1,7 +1,8 @@
-﻿package metier;
+package metier;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 import dao.Recu;
 
@@ -11,6 +12,7 @@ import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
 public interface IGestionRecu {
 	public void ajouter(Recu p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Recu> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Recu p) throws EntityNotFoundException, DatabaseException, InvalidParameterException, Exception;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Recu rechercher(int id) throws DatabaseException;
@@ -20,6 +22,24 @@ public interface IGestionRecu {
 	public List<Recu> filtrerParDate(LocalDateTime date) throws InvalidParameterException, DatabaseException;
 	public List<Recu> filtrerParMontant(double montant) throws InvalidParameterException, DatabaseException;
 
+	// Pagination (offset) et curseurs (keyset) pour les gros volumes
+	public Page<Recu> listerPage(int offset, int limite) throws InvalidParameterException, DatabaseException;
+	public long compter() throws DatabaseException;
+	public List<Recu> listerApres(int dernierId, int limite) throws InvalidParameterException, DatabaseException;
+	public List<Recu> listerApresDate(LocalDateTime derniereDate, int dernierId, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Parcours en flux (curseur serveur) pour les exports et traitements de masse ; à fermer après usage
+	public Stream<Recu> streamer() throws DatabaseException;
+	public Stream<Recu> streamerParPeriode(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException;
+
+	// Filtres par intervalle (index sur les dates et montants), paginés et triés par date
+	public Page<Recu> filtrerParPeriode(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException;
+	public Page<Recu> filtrerParMontantEntre(double minimum, double maximum, int offset, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Recherche multicritère (une seule requête paramétrée, triée et limitée)
+	public List<Recu> rechercherParCriteres(RecuCriteria criteres) throws InvalidParameterException, DatabaseException;
+	public long compterParCriteres(RecuCriteria criteres) throws InvalidParameterException, DatabaseException;
+
 }
 
 
@@ -1,5 +1,6 @@
-﻿package metier;
+package metier;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -11,6 +12,7 @@ import exception.EntityNotFoundException;
 import exception.InvalidParameterException;
 public interface IGestionReparateur {
 	public void ajouter(Reparateur p) throws DuplicateEntityException, DatabaseException, InvalidParameterException, Exception;
+	public void ajouterEnLot(List<Reparateur> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void modifer(Reparateur p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Reparateur rechercher(int id) throws DatabaseException;
@@ -20,12 +22,15 @@ public interface IGestionReparateur {
 	public List<Reparateur> filtrerParNom(String nom) throws InvalidParameterException, DatabaseException;
 	public List<Reparateur> filtrerParPrenom(String prenom) throws InvalidParameterException, DatabaseException;
 	public List<Reparateur> filtrerParEmail(String email) throws InvalidParameterException, DatabaseException;
-	public List<Reparateur> filtrerParMdp(String mdp) throws InvalidParameterException, DatabaseException;
 	public List<Reparateur> filtrerParPourcentageGain(double pourcentageGain) throws InvalidParameterException, DatabaseException;
 
 	// Authentification
 	public Reparateur rechercherParEmail(String email) throws DatabaseException;
 
+	// Réparateurs assignés à une boutique ou à un ensemble de boutiques
+	public List<Reparateur> listerParBoutique(int idBoutique) throws InvalidParameterException, DatabaseException;
+	public List<Reparateur> listerParBoutiques(Collection<Integer> idsBoutiques) throws InvalidParameterException, DatabaseException;
+
 }
 
 
@@ -1,8 +1,12 @@
-﻿package metier;
+package metier;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
+import dao.LigneReparation;
 import dao.Reparation;
 import exception.DatabaseException;
 import exception.DuplicateEntityException;
@@ -11,18 +15,64 @@ import exception.InvalidParameterException;
 
 public interface IGestionReparation {
 	public void ajouter(Reparation p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
-	public void modifer(Reparation p) throws EntityNotFoundException, DatabaseException, InvalidParameterException;
+	public void ajouterEnLot(List<Reparation> p) throws DuplicateEntityException, DatabaseException, InvalidParameterException;
+	public void modifer(Reparation p) throws EntityNotFoundException, DuplicateEntityException, DatabaseException, InvalidParameterException;
 	public void supprimer(int id) throws EntityNotFoundException, DatabaseException;
 	public Reparation rechercher(int id) throws DatabaseException;
 	public List<Reparation> lister() throws DatabaseException;
 
 	// Filtrage par attributs
 	public List<Reparation> filtrerParCodeSuivi(String codeSuivi) throws InvalidParameterException, DatabaseException;
+	// Recherche exacte (index unique) servie par un cache LRU des codes récemment consultés ; null si inconnu.
+	// Un code généré est accepté avec fautes de casse, tiret ou O/0, I/L/1 ; InvalidParameterException si son caractère de contrôle
+	// est faux et qu'aucun ancien code ne correspond exactement à la saisie
+	public Reparation rechercherParCodeSuivi(String codeSuivi) throws InvalidParameterException, DatabaseException;
 	public List<Reparation> filtrerParDateDepot(LocalDateTime dateDepot) throws InvalidParameterException, DatabaseException;
 	public List<Reparation> filtrerParEtat(String etat) throws InvalidParameterException, DatabaseException;
 	public List<Reparation> filtrerParCommentaire(String commentaire) throws InvalidParameterException, DatabaseException;
 	public List<Reparation> filtrerParPrixTotal(double prixTotal) throws InvalidParameterException, DatabaseException;
 
-}
+	// Pagination (offset) et curseurs (keyset) pour les gros volumes
+	public Page<Reparation> listerPage(int offset, int limite) throws InvalidParameterException, DatabaseException;
+	public long compter() throws DatabaseException;
+	public List<Reparation> listerApres(int dernierId, int limite) throws InvalidParameterException, DatabaseException;
+	public List<Reparation> listerApresDate(LocalDateTime derniereDate, int dernierId, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Parcours en flux (curseur serveur) pour les exports et traitements de masse ; à fermer après usage
+	public Stream<Reparation> streamer() throws DatabaseException;
+	public Stream<Reparation> streamerParPeriode(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException;
+
+	// Lignes de tableau (projection des colonnes affichées)
+	public Page<ReparationVue> listerVuesPage(int offset, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Filtres par intervalle (index sur les dates et montants), paginés et triés par date
+	public Page<Reparation> filtrerParPeriodeDepot(LocalDateTime debut, LocalDateTime fin, int offset, int limite) throws InvalidParameterException, DatabaseException;
+	public Page<Reparation> filtrerParPrixTotalEntre(double minimum, double maximum, int offset, int limite) throws InvalidParameterException, DatabaseException;
+
+	// Recherche multicritère (une seule requête paramétrée, triée et limitée)
+	public List<Reparation> rechercherParCriteres(ReparationCriteria criteres) throws InvalidParameterException, DatabaseException;
+	public long compterParCriteres(ReparationCriteria criteres) throws InvalidParameterException, DatabaseException;
 
+	// Réparations avec appareil, boutique et réparateur chargés en une seule requête
+	public List<Reparation> listerAvecDetails() throws DatabaseException;
+	public Reparation rechercherAvecDetails(int id) throws DatabaseException;
+	public List<Reparation> listerParProprietaireAvecDetails(int idProprietaire) throws InvalidParameterException, DatabaseException;
 
+	// Réparations d'une boutique, d'un ensemble de boutiques ou d'un propriétaire (index idBoutique, dateDepot)
+	public List<Reparation> listerParBoutique(int idBoutique) throws InvalidParameterException, DatabaseException;
+	public List<Reparation> listerParBoutiques(Collection<Integer> idsBoutiques) throws InvalidParameterException, DatabaseException;
+	public List<Reparation> listerParProprietaire(int idProprietaire) throws InvalidParameterException, DatabaseException;
+
+	// Pièces posées (nomenclature) : le stock du composant et le prix total de la réparation
+	// sont mis à jour dans la même transaction que la ligne
+	public LigneReparation ajouterLigne(int idReparation, int idComposant, int quantite) throws EntityNotFoundException, InvalidParameterException, DatabaseException;
+	public void supprimerLigne(int idLigne) throws EntityNotFoundException, InvalidParameterException, DatabaseException;
+	public List<LigneReparation> listerLignes(int idReparation) throws DatabaseException;
+	// Ajustement manuel (main-d'œuvre, remise...) ajouté au prix total en base ; modifer ne touche pas au prix total
+	public void ajusterPrixTotal(int idReparation, double delta) throws EntityNotFoundException, InvalidParameterException, DatabaseException;
+
+	// Coût des pièces de chaque réparation (idReparation -> montant) d'après l'historique des prix :
+	// au prix en vigueur à la date donnée, ou à la date d'ajout de chaque pièce si date est null
+	public Map<Integer, Double> chiffrerPieces(Collection<Integer> idsReparations, LocalDateTime date) throws InvalidParameterException, DatabaseException;
+
+}
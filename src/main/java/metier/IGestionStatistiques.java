@@ -0,0 +1,36 @@
+package metier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import exception.DatabaseException;
+import exception.InvalidParameterException;
+
+public interface IGestionStatistiques {
+	// Comptages
+	public long compterAppareils() throws DatabaseException;
+	public long compterReparations() throws DatabaseException;
+	public long compterReparateurs() throws DatabaseException;
+	public long compterProprietaires() throws DatabaseException;
+	public long compterBoutiques() throws DatabaseException;
+	public long compterRecus() throws DatabaseException;
+	public long compterEmprunts() throws DatabaseException;
+
+	// Sommes
+	public double soldeTotalCaisses() throws DatabaseException;
+	public double totalRecus() throws DatabaseException;
+	public double totalEmprunts() throws DatabaseException;
+
+	// Regroupements par boutique, état et période
+	public List<StatistiqueGroupe> reparationsParBoutique() throws DatabaseException;
+	public List<StatistiqueGroupe> reparationsParBoutiqueProprietaire(int idProprietaire) throws DatabaseException;
+	public List<StatistiqueGroupe> reparationsParEtat() throws DatabaseException;
+	public List<StatistiqueGroupe> reparationsParEtatReparateur(int idReparateur) throws DatabaseException;
+	public Map<Integer, Long> compterReparateursParBoutique() throws DatabaseException;
+	public List<StatistiqueGroupe> reparationsParMois(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException;
+	public List<StatistiqueGroupe> recusParMois(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException;
+	public List<StatistiqueGroupe> empruntsParMois(LocalDateTime debut, LocalDateTime fin) throws InvalidParameterException, DatabaseException;
+
+	public void viderCache();
+}
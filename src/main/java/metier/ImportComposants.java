@@ -0,0 +1,383 @@
+package metier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+
+import dao.Composant;
+import dao.PrixComposant;
+import exception.DatabaseException;
+import exception.InvalidParameterException;
+
+/**
+ * Import d'un tarif fournisseur (CSV) dans le catalogue de composants, lu ligne à ligne :
+ * la mémoire utilisée ne dépend que de la taille d'un lot, pas de celle du fichier.
+ * Le composant est retrouvé par son nom (clé naturelle, sans tenir compte de la casse ni des accents) :
+ * mis à jour s'il existe, créé sinon. Chaque lot de fastrepair.import.taille_lot lignes
+ * est écrit en une transaction après une seule requête de recherche des noms ; si elle
+ * échoue, le lot est rejoué ligne par ligne pour n'écarter que les lignes fautives.
+ *
+ * Format : une ligne d'en-tête (nom, prix, et facultativement quantite, seuil), séparateur
+ * « ; », « , » ou tabulation, valeurs éventuellement entre guillemets, décimales avec
+ * point ou virgule. Une colonne absente ou une cellule vide laisse la valeur en place
+ * (0 pour un nouveau composant). Un prix nouveau ou modifié est ajouté à l'historique des prix.
+ */
+final class ImportComposants {
+
+    static final int ERREURS_DETAILLEES_MAX = 1000;
+    private static final int LONGUEUR_NOM_MAX = 255;
+
+    private final EntityManager em;
+    private final int tailleLot;
+
+    private char separateur;
+    private int colonneNom = -1;
+    private int colonnePrix = -1;
+    private int colonneQuantite = -1;
+    private int colonneSeuil = -1;
+    private int colonnesRequises;
+
+    private long lignesLues;
+    private long ajoutes;
+    private long modifies;
+    private long nombreErreurs;
+    private final List<String> erreurs = new ArrayList<>();
+
+    // Ligne du fichier validée, en attente d'écriture avec son lot
+    private static final class Ligne {
+        final long numero;
+        final String nom;
+        final double prix;
+        final Integer quantite;
+        final Integer seuil;
+
+        Ligne(long numero, String nom, double prix, Integer quantite, Integer seuil) {
+            this.numero = numero;
+            this.nom = nom;
+            this.prix = prix;
+            this.quantite = quantite;
+            this.seuil = seuil;
+        }
+    }
+
+    ImportComposants(EntityManager em, int tailleLot) {
+        this.em = em;
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Lit tout le fichier et retourne le bilan ; les lots déjà validés restent en base si
+     * l'import est interrompu.
+     *
+     * @throws InvalidParameterException en-tête absent ou sans colonne nom/prix
+     * @throws DatabaseException         un lot rejoué ligne par ligne échoue en entier (base indisponible)
+     */
+    RapportImport importer(Reader source) throws IOException, InvalidParameterException, DatabaseException {
+        long debut = System.currentTimeMillis();
+        BufferedReader lecteur = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+
+        long numero = 0;
+        String texte;
+        while ((texte = lecteur.readLine()) != null) {
+            numero++;
+            if (!texte.trim().isEmpty()) {
+                lireEntete(texte);
+                break;
+            }
+        }
+        if (colonneNom < 0) {
+            throw new InvalidParameterException("Fichier vide : une ligne d'en-tête (nom, prix...) est attendue");
+        }
+
+        List<Ligne> lot = new ArrayList<>(tailleLot);
+        while ((texte = lecteur.readLine()) != null) {
+            numero++;
+            if (texte.trim().isEmpty()) {
+                continue;
+            }
+            lignesLues++;
+            Ligne ligne = lireLigne(numero, texte);
+            if (ligne != null) {
+                lot.add(ligne);
+            }
+            if (lot.size() >= tailleLot) {
+                traiterLot(lot);
+                lot.clear();
+            }
+        }
+        if (!lot.isEmpty()) {
+            traiterLot(lot);
+        }
+
+        return RapportImport.builder()
+            .lignesLues(lignesLues)
+            .ajoutes(ajoutes)
+            .modifies(modifies)
+            .nombreErreurs(nombreErreurs)
+            .erreurs(Collections.unmodifiableList(erreurs))
+            .dureeMs(System.currentTimeMillis() - debut)
+            .build();
+    }
+
+    private void lireEntete(String texte) throws InvalidParameterException {
+        if (texte.charAt(0) == '\uFEFF') {
+            texte = texte.substring(1);
+        }
+        separateur = texte.indexOf(';') >= 0 ? ';' : texte.indexOf('\t') >= 0 ? '\t' : ',';
+        List<String> colonnes = decouper(texte);
+        for (int i = 0; colonnes != null && i < colonnes.size(); i++) {
+            switch (normaliserEntete(colonnes.get(i))) {
+                case "nom":
+                    colonneNom = i;
+                    break;
+                case "prix":
+                    colonnePrix = i;
+                    break;
+                case "quantite":
+                    colonneQuantite = i;
+                    break;
+                case "seuil":
+                case "seuilreapprovisionnement":
+                    colonneSeuil = i;
+                    break;
+                default:
+                    // Colonne propre au fournisseur (référence, fournisseur...) : ignorée
+            }
+        }
+        if (colonneNom < 0 || colonnePrix < 0) {
+            throw new InvalidParameterException("En-tête invalide : les colonnes nom et prix sont obligatoires (lu : " + texte + ")");
+        }
+        colonnesRequises = Math.max(colonneNom, colonnePrix) + 1;
+    }
+
+    // null si la ligne est rejetée (erreur consignée)
+    private Ligne lireLigne(long numero, String texte) {
+        List<String> valeurs = decouper(texte);
+        if (valeurs == null) {
+            erreur(numero, "guillemet non fermé");
+            return null;
+        }
+        if (valeurs.size() < colonnesRequises) {
+            erreur(numero, valeurs.size() + " colonne(s), au moins " + colonnesRequises + " attendue(s)");
+            return null;
+        }
+        String nom = valeurs.get(colonneNom).trim();
+        if (nom.isEmpty()) {
+            erreur(numero, "nom manquant");
+            return null;
+        }
+        if (nom.length() > LONGUEUR_NOM_MAX) {
+            erreur(numero, "nom de plus de " + LONGUEUR_NOM_MAX + " caractères");
+            return null;
+        }
+        String prix = valeurs.get(colonnePrix);
+        double valeurPrix;
+        try {
+            valeurPrix = Double.parseDouble(nombre(prix));
+        } catch (NumberFormatException e) {
+            erreur(numero, "prix invalide « " + prix.trim() + " »");
+            return null;
+        }
+        if (valeurPrix < 0 || Double.isNaN(valeurPrix) || Double.isInfinite(valeurPrix)) {
+            erreur(numero, "prix invalide « " + prix.trim() + " »");
+            return null;
+        }
+        Integer quantite;
+        Integer seuil;
+        try {
+            quantite = entier(valeurs, colonneQuantite);
+            seuil = entier(valeurs, colonneSeuil);
+        } catch (NumberFormatException e) {
+            erreur(numero, "quantité ou seuil invalide (entier positif attendu)");
+            return null;
+        }
+        return new Ligne(numero, nom, valeurPrix, quantite, seuil);
+    }
+
+    private void traiterLot(List<Ligne> lot) throws DatabaseException {
+        RuntimeException echec;
+        try {
+            ecrire(lot);
+            return;
+        } catch (RuntimeException e) {
+            echec = e;
+        }
+        if (lot.size() == 1) {
+            erreur(lot.get(0).numero, "refusée par la base : " + motif(echec));
+            return;
+        }
+        // Rejouer le lot ligne par ligne : seules les lignes fautives sont écartées
+        long erreursAvant = nombreErreurs;
+        for (Ligne ligne : lot) {
+            traiterLot(Collections.singletonList(ligne));
+        }
+        if (nombreErreurs - erreursAvant == lot.size()) {
+            throw new DatabaseException(String.format(
+                "Import interrompu à la ligne %d (%d composant(s) créé(s), %d mis à jour avant l'arrêt)",
+                lot.get(0).numero, ajoutes, modifies), echec);
+        }
+    }
+
+    private void ecrire(List<Ligne> lot) {
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+
+            Set<String> noms = new LinkedHashSet<>();
+            for (Ligne ligne : lot) {
+                noms.add(ligne.nom);
+            }
+            // Nom présent plusieurs fois en base : le composant le plus ancien est retenu.
+            // Lignes verrouillées à la lecture (dans l'ordre des identifiants) : les quantités
+            // réécrites avec le prix sont celles validées, pas celles d'avant une réservation
+            Map<String, Composant> parNom = new HashMap<>();
+            for (Composant composant : em.createQuery(
+                    "SELECT c FROM Composant c WHERE c.nom IN :noms ORDER BY c.idComposant", Composant.class)
+                    .setParameter("noms", noms)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList()) {
+                parNom.putIfAbsent(cle(composant.getNom()), composant);
+            }
+
+            int crees = 0;
+            int misAJour = 0;
+            LocalDateTime maintenant = LocalDateTime.now();
+            List<PrixComposant> nouveauxPrix = new ArrayList<>();
+            for (Ligne ligne : lot) {
+                Composant composant = parNom.get(cle(ligne.nom));
+                boolean nouveau = composant == null;
+                if (nouveau) {
+                    composant = Composant.builder().nom(ligne.nom).build();
+                    em.persist(composant);
+                    parNom.put(cle(ligne.nom), composant);
+                    crees++;
+                } else {
+                    misAJour++;
+                }
+                // Prix inchangé (cas courant d'un tarif réimporté) : rien n'est ajouté à l'historique
+                if (nouveau || HistoriquesPrix.centimes(composant.getPrix()) != HistoriquesPrix.centimes(ligne.prix)) {
+                    nouveauxPrix.add(HistoriquesPrix.enregistrer(em, composant.getIdComposant(), maintenant, ligne.prix));
+                }
+                composant.setPrix(ligne.prix);
+                if (ligne.quantite != null) {
+                    composant.setQuantite(ligne.quantite);
+                }
+                if (ligne.seuil != null) {
+                    composant.setSeuilReapprovisionnement(ligne.seuil);
+                }
+            }
+            em.flush();
+            // Lignes verrouillées jusqu'au commit, comme pour les mouvements de stock
+            for (Composant composant : parNom.values()) {
+                AlertesStock.composantModifie(composant.getIdComposant(), composant.getNom(),
+                    composant.getQuantite(), composant.getSeuilReapprovisionnement());
+            }
+            tx.commit();
+            ajoutes += crees;
+            modifies += misAJour;
+            for (PrixComposant prix : nouveauxPrix) {
+                HistoriquesPrix.prixModifie(prix.getIdComposant(), prix.getDateEffet(), prix.getCentimes());
+            }
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            AlertesStock.invalider();
+            throw e;
+        } finally {
+            em.clear();
+        }
+    }
+
+    // Découpe une ligne selon le séparateur ; null si un guillemet n'est pas fermé
+    private List<String> decouper(String texte) {
+        List<String> valeurs = new ArrayList<>();
+        StringBuilder valeur = new StringBuilder();
+        boolean entreGuillemets = false;
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (entreGuillemets) {
+                if (c == '"' && i + 1 < texte.length() && texte.charAt(i + 1) == '"') {
+                    valeur.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreGuillemets = false;
+                } else {
+                    valeur.append(c);
+                }
+            } else if (c == '"') {
+                entreGuillemets = true;
+            } else if (c == separateur) {
+                valeurs.add(valeur.toString());
+                valeur.setLength(0);
+            } else {
+                valeur.append(c);
+            }
+        }
+        if (entreGuillemets) {
+            return null;
+        }
+        valeurs.add(valeur.toString());
+        return valeurs;
+    }
+
+    // Cellule vide ou colonne absente : valeur inchangée
+    private static Integer entier(List<String> valeurs, int colonne) {
+        if (colonne < 0 || colonne >= valeurs.size() || valeurs.get(colonne).trim().isEmpty()) {
+            return null;
+        }
+        int valeur = Integer.parseInt(nombre(valeurs.get(colonne)));
+        if (valeur < 0) {
+            throw new NumberFormatException("négatif");
+        }
+        return valeur;
+    }
+
+    // « 1 234,50 » -> « 1234.50 » : séparateurs de milliers et virgule décimale des tarifs français
+    private static String nombre(String valeur) {
+        return valeur.trim().replace(" ", "").replace("\u00A0", "").replace("\u202F", "").replace(',', '.');
+    }
+
+    private static String normaliserEntete(String colonne) {
+        return Normalizer.normalize(colonne.trim(), Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .replaceAll("[\\s_]", "")
+            .toLowerCase(Locale.ROOT);
+    }
+
+    // Même règle que la collation de la colonne nom : comparaison insensible à la casse et aux accents
+    private static String cle(String nom) {
+        return Normalizer.normalize(nom.trim(), Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT);
+    }
+
+    private static String motif(Throwable erreur) {
+        Throwable cause = erreur;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private void erreur(long numero, String message) {
+        nombreErreurs++;
+        if (erreurs.size() < ERREURS_DETAILLEES_MAX) {
+            erreurs.add("Ligne " + numero + " : " + message);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package metier;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Collecteur de métriques branché sur HikariCP via la propriété
+ * hibernate.hikari.metricsTrackerFactory de persistence.xml.
+ * HikariCP instancie cette classe lui-même : les compteurs sont donc statiques
+ * et lus par {@link PersistenceManager#getStatistiquesPool()}.
+ */
+public class MetriquesPoolConnexions implements MetricsTrackerFactory {
+
+    private static final LongAdder acquisitions = new LongAdder();
+    private static final LongAdder attenteTotaleNanos = new LongAdder();
+    private static final AtomicLong attenteMaxNanos = new AtomicLong();
+    private static final LongAdder utilisations = new LongAdder();
+    private static final LongAdder utilisationTotaleMillis = new LongAdder();
+    private static final LongAdder timeouts = new LongAdder();
+    private static final LongAdder connexionsCreees = new LongAdder();
+
+    private static volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats stats) {
+        poolStats = stats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                connexionsCreees.increment();
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitions.increment();
+                attenteTotaleNanos.add(elapsedAcquiredNanos);
+                attenteMaxNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                utilisations.increment();
+                utilisationTotaleMillis.add(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    static StatistiquesPool capturer() {
+        PoolStats stats = poolStats;
+        long nbAcquisitions = acquisitions.sum();
+        long nbUtilisations = utilisations.sum();
+
+        StatistiquesPool.StatistiquesPoolBuilder builder = StatistiquesPool.builder()
+            .acquisitions(nbAcquisitions)
+            .attenteMoyenneMicros(nbAcquisitions == 0 ? 0 : attenteTotaleNanos.sum() / nbAcquisitions / 1000)
+            .attenteMaxMicros(attenteMaxNanos.get() / 1000)
+            .utilisationMoyenneMillis(nbUtilisations == 0 ? 0 : utilisationTotaleMillis.sum() / nbUtilisations)
+            .timeouts(timeouts.sum())
+            .connexionsCreees(connexionsCreees.sum());
+
+        if (stats != null) {
+            builder.connexionsActives(stats.getActiveConnections())
+                .connexionsInactives(stats.getIdleConnections())
+                .connexionsTotales(stats.getTotalConnections())
+                .threadsEnAttente(stats.getPendingThreads())
+                .tailleMax(stats.getMaxConnections())
+                .tailleMin(stats.getMinConnections());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,301 @@
+package metier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Applique, avant la création de l'EntityManagerFactory, les scripts SQL versionnés
+ * de db/migration (listés dans migrations.txt) et les enregistre dans la table
+ * schema_historique. Hibernate ne fait ensuite que valider le schéma.
+ * Un verrou MySQL (GET_LOCK) évite que deux postes migrent la base en même temps.
+ */
+final class MigrationsSchema {
+
+    private static final String DOSSIER = "db/migration/";
+    private static final String INDEX = DOSSIER + "migrations.txt";
+    private static final String TABLE_HISTORIQUE = "schema_historique";
+    private static final String VERROU = "fastrepair_migrations";
+    private static final int ATTENTE_VERROU_SECONDES = 60;
+    private static final Pattern NOM_SCRIPT = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private MigrationsSchema() {
+    }
+
+    /**
+     * @param surcharges propriétés passées au lancement, prioritaires sur persistence.xml
+     */
+    static void appliquer(Map<String, Object> surcharges) {
+        Map<String, String> configuration = lireConfiguration(surcharges);
+        List<Migration> migrations = lireMigrations();
+
+        try {
+            String pilote = configuration.get("javax.persistence.jdbc.driver");
+            if (pilote != null) {
+                Class.forName(pilote);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Pilote JDBC introuvable pour les migrations", e);
+        }
+
+        try (Connection connexion = DriverManager.getConnection(
+                configuration.get("javax.persistence.jdbc.url"),
+                configuration.get("javax.persistence.jdbc.user"),
+                configuration.get("javax.persistence.jdbc.password"))) {
+            verrouiller(connexion);
+            try {
+                migrer(connexion, migrations);
+            } finally {
+                deverrouiller(connexion);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Échec de la migration du schéma: " + e.getMessage(), e);
+        }
+    }
+
+    private static void migrer(Connection connexion, List<Migration> migrations) throws SQLException {
+        try (Statement statement = connexion.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE_HISTORIQUE + " ("
+                + "version INTEGER NOT NULL, "
+                + "description VARCHAR(200) NOT NULL, "
+                + "script VARCHAR(255) NOT NULL, "
+                + "somme_controle CHAR(64) NOT NULL, "
+                + "date_application DATETIME NOT NULL, "
+                + "duree_ms BIGINT NOT NULL, "
+                + "executee BOOLEAN NOT NULL, "
+                + "PRIMARY KEY (version)) ENGINE=InnoDB");
+        }
+
+        Map<Integer, String> appliquees = new HashMap<>();
+        try (Statement statement = connexion.createStatement();
+             ResultSet resultat = statement.executeQuery("SELECT version, somme_controle FROM " + TABLE_HISTORIQUE)) {
+            while (resultat.next()) {
+                appliquees.put(resultat.getInt(1), resultat.getString(2));
+            }
+        }
+
+        // Base créée avant les migrations (hbm2ddl) : le schéma initial est déjà en place
+        boolean baseExistante = appliquees.isEmpty() && tableExiste(connexion, "Reparation");
+
+        for (Migration migration : migrations) {
+            String sommeControle = appliquees.get(migration.version);
+            if (sommeControle != null) {
+                if (!sommeControle.equals(migration.sommeControle)) {
+                    throw new IllegalStateException("Le script " + migration.script
+                        + " a été modifié après son application ; ajouter une nouvelle version à la place");
+                }
+                continue;
+            }
+
+            long debut = System.nanoTime();
+            boolean executee = !(baseExistante && migration.version == 1);
+            if (executee) {
+                executer(connexion, migration);
+            }
+            long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+            enregistrer(connexion, migration, dureeMs, executee);
+            System.out.println("MIGRATIONS - V" + migration.version + " (" + migration.description + ") "
+                + (executee ? "appliquée en " + dureeMs + " ms" : "marquée comme appliquée (base existante)"));
+        }
+    }
+
+    private static void executer(Connection connexion, Migration migration) throws SQLException {
+        try (Statement statement = connexion.createStatement()) {
+            for (String instruction : decouper(migration.contenu)) {
+                try {
+                    statement.execute(instruction);
+                } catch (SQLException e) {
+                    throw new SQLException(migration.script + " : " + e.getMessage() + " [" + instruction + "]",
+                        e.getSQLState(), e.getErrorCode(), e);
+                }
+            }
+        }
+    }
+
+    private static void enregistrer(Connection connexion, Migration migration, long dureeMs, boolean executee)
+            throws SQLException {
+        try (PreparedStatement statement = connexion.prepareStatement("INSERT INTO " + TABLE_HISTORIQUE
+                + " (version, description, script, somme_controle, date_application, duree_ms, executee) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setInt(1, migration.version);
+            statement.setString(2, migration.description);
+            statement.setString(3, migration.script);
+            statement.setString(4, migration.sommeControle);
+            statement.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+            statement.setLong(6, dureeMs);
+            statement.setBoolean(7, executee);
+            statement.executeUpdate();
+        }
+    }
+
+    private static boolean tableExiste(Connection connexion, String table) throws SQLException {
+        DatabaseMetaData metaDonnees = connexion.getMetaData();
+        try (ResultSet resultat = metaDonnees.getTables(connexion.getCatalog(), null, table, new String[]{"TABLE"})) {
+            return resultat.next();
+        }
+    }
+
+    private static void verrouiller(Connection connexion) throws SQLException {
+        try (PreparedStatement statement = connexion.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, VERROU);
+            statement.setInt(2, ATTENTE_VERROU_SECONDES);
+            try (ResultSet resultat = statement.executeQuery()) {
+                if (!resultat.next() || resultat.getInt(1) != 1) {
+                    throw new SQLException("Verrou de migration non obtenu après " + ATTENTE_VERROU_SECONDES + " s");
+                }
+            }
+        }
+    }
+
+    private static void deverrouiller(Connection connexion) throws SQLException {
+        try (PreparedStatement statement = connexion.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, VERROU);
+            statement.executeQuery().close();
+        }
+    }
+
+    /**
+     * Découpe un script en instructions (séparateur ";" ; commentaires "--" ignorés).
+     */
+    private static List<String> decouper(String contenu) {
+        StringBuilder sansCommentaires = new StringBuilder();
+        for (String ligne : contenu.split("\\R")) {
+            if (!ligne.trim().startsWith("--")) {
+                sansCommentaires.append(ligne).append('\n');
+            }
+        }
+        List<String> instructions = new ArrayList<>();
+        for (String instruction : sansCommentaires.toString().split(";")) {
+            if (!instruction.trim().isEmpty()) {
+                instructions.add(instruction.trim());
+            }
+        }
+        return instructions;
+    }
+
+    private static List<Migration> lireMigrations() {
+        List<Migration> migrations = new ArrayList<>();
+        int versionPrecedente = 0;
+        for (String ligne : lireRessource(INDEX).split("\\R")) {
+            String script = ligne.trim();
+            if (script.isEmpty() || script.startsWith("#")) {
+                continue;
+            }
+            Matcher matcher = NOM_SCRIPT.matcher(script);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Nom de script de migration invalide: " + script);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (version <= versionPrecedente) {
+                throw new IllegalStateException("Les migrations doivent être listées par version croissante: " + script);
+            }
+            versionPrecedente = version;
+            String contenu = lireRessource(DOSSIER + script);
+            migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), script, contenu, sha256(contenu)));
+        }
+        return migrations;
+    }
+
+    private static String lireRessource(String chemin) {
+        InputStream flux = MigrationsSchema.class.getClassLoader().getResourceAsStream(chemin);
+        if (flux == null) {
+            throw new IllegalStateException("Ressource de migration introuvable: " + chemin);
+        }
+        StringBuilder contenu = new StringBuilder();
+        try (BufferedReader lecteur = new BufferedReader(new InputStreamReader(flux, StandardCharsets.UTF_8))) {
+            String ligne;
+            while ((ligne = lecteur.readLine()) != null) {
+                contenu.append(ligne).append('\n');
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Lecture impossible de " + chemin, e);
+        }
+        return contenu.toString();
+    }
+
+    private static String sha256(String contenu) {
+        try {
+            byte[] empreinte = MessageDigest.getInstance("SHA-256").digest(contenu.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte octet : empreinte) {
+                hex.append(String.format("%02x", octet));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Propriétés javax.persistence.jdbc.* de l'unité dans persistence.xml, surchargées
+     * par celles passées au lancement. Les migrations s'exécutent avant Hibernate et
+     * ne peuvent donc pas les obtenir de l'EntityManagerFactory.
+     */
+    private static Map<String, String> lireConfiguration(Map<String, Object> surcharges) {
+        Map<String, String> configuration = new HashMap<>();
+        try (InputStream flux = MigrationsSchema.class.getClassLoader().getResourceAsStream("META-INF/persistence.xml")) {
+            if (flux == null) {
+                throw new IllegalStateException("META-INF/persistence.xml introuvable");
+            }
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(flux);
+            NodeList unites = document.getElementsByTagName("persistence-unit");
+            for (int i = 0; i < unites.getLength(); i++) {
+                Element unite = (Element) unites.item(i);
+                if (!PersistenceManager.PERSISTENCE_UNIT.equals(unite.getAttribute("name"))) {
+                    continue;
+                }
+                NodeList proprietes = unite.getElementsByTagName("property");
+                for (int j = 0; j < proprietes.getLength(); j++) {
+                    Element propriete = (Element) proprietes.item(j);
+                    configuration.put(propriete.getAttribute("name"), propriete.getAttribute("value"));
+                }
+            }
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Lecture impossible de persistence.xml", e);
+        }
+        surcharges.forEach((nom, valeur) -> configuration.put(nom, String.valueOf(valeur)));
+        return configuration;
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final String script;
+        private final String contenu;
+        private final String sommeControle;
+
+        private Migration(int version, String description, String script, String contenu, String sommeControle) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.contenu = contenu;
+            this.sommeControle = sommeControle;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package metier;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Empreintes de mots de passe PBKDF2-HMAC-SHA256 salées, stockées dans la colonne mdp
+ * sous la forme "pbkdf2$iterations$sel$empreinte" (Base64). Le nombre d'itérations
+ * (fastrepair.auth.iterations) fixe le coût d'une vérification ; il est conservé dans
+ * chaque empreinte, ce qui permet de l'augmenter sans invalider les comptes existants.
+ */
+final class MotDePasse {
+
+    private static final String PREFIXE = "pbkdf2$";
+    private static final String ALGORITHME = "PBKDF2WithHmacSHA256";
+    private static final int TAILLE_SEL = 16;
+    private static final int TAILLE_EMPREINTE_BITS = 256;
+    private static final SecureRandom ALEA = new SecureRandom();
+
+    private MotDePasse() {
+    }
+
+    /**
+     * Affiche l'empreinte d'un mot de passe, par exemple pour fastrepair.admin.mdp :
+     * java -cp <classpath> metier.MotDePasse <mot de passe> [itérations].
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage : metier.MotDePasse <mot de passe> [itérations]");
+            System.exit(1);
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : PersistenceManager.ITERATIONS_MOT_DE_PASSE_DEFAUT;
+        System.out.println(hacher(args[0], iterations));
+    }
+
+    static String hacher(String motDePasse, int iterations) {
+        byte[] sel = new byte[TAILLE_SEL];
+        ALEA.nextBytes(sel);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIXE + iterations + "$" + base64.encodeToString(sel) + "$"
+            + base64.encodeToString(deriver(motDePasse, sel, iterations));
+    }
+
+    static String hacher(String motDePasse) {
+        return hacher(motDePasse, PersistenceManager.getIterationsMotDePasse());
+    }
+
+    /**
+     * Empreinte à enregistrer : une valeur déjà hachée (profil réenregistré tel quel) est conservée.
+     */
+    static String hacherSiNecessaire(String motDePasse) {
+        if (motDePasse == null || motDePasse.isEmpty() || estHache(motDePasse)) {
+            return motDePasse;
+        }
+        return hacher(motDePasse);
+    }
+
+    static boolean estHache(String stocke) {
+        return stocke != null && stocke.startsWith(PREFIXE);
+    }
+
+    /**
+     * Vérifie un mot de passe saisi ; une valeur stockée en clair (comptes antérieurs au
+     * hachage) est comparée en temps constant et doit ensuite être remplacée par une empreinte.
+     */
+    static boolean verifier(String motDePasse, String stocke) {
+        if (motDePasse == null || stocke == null) {
+            return false;
+        }
+        if (!estHache(stocke)) {
+            return MessageDigest.isEqual(motDePasse.getBytes(java.nio.charset.StandardCharsets.UTF_8),
+                stocke.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        }
+        String[] parties = stocke.split("\\$");
+        if (parties.length != 4) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parties[1]);
+            byte[] sel = Base64.getDecoder().decode(parties[2]);
+            byte[] attendue = Base64.getDecoder().decode(parties[3]);
+            return MessageDigest.isEqual(attendue, deriver(motDePasse, sel, iterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Vrai si la valeur stockée est en clair ou a été calculée avec moins d'itérations que demandé.
+     */
+    static boolean doitEtreRehache(String stocke, int iterations) {
+        if (!estHache(stocke)) {
+            return true;
+        }
+        String[] parties = stocke.split("\\$");
+        try {
+            return parties.length != 4 || Integer.parseInt(parties[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] deriver(String motDePasse, byte[] sel, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(motDePasse.toCharArray(), sel, iterations, TAILLE_EMPREINTE_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHME).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Algorithme " + ALGORITHME + " indisponible", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
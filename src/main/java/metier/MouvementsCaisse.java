@@ -0,0 +1,227 @@
+package metier;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+
+import dao.ArreteCaisse;
+import dao.Caisse;
+import dao.EcritureCaisse;
+import exception.DatabaseException;
+import exception.InvalidParameterException;
+
+/**
+ * Mouvements de solde d'une caisse, appliqués par un UPDATE conditionnel en base
+ * (solde = solde + delta, version + 1) au lieu d'un calcul en Java suivi d'un merge :
+ * deux postes qui mouvementent la même caisse ne peuvent plus écraser le solde l'un
+ * de l'autre, et le contrôle de solde suffisant est fait par la même instruction.
+ * Chaque mouvement est inscrit au journal de la caisse (EcritureCaisse), avec un
+ * arrêté du solde (ArreteCaisse) toutes les fastrepair.caisse.intervalle_arretes écritures.
+ * Les conflits transitoires (interblocage, délai de verrou, version) sont rejoués
+ * un nombre limité de fois.
+ */
+final class MouvementsCaisse {
+
+    static final int TENTATIVES_MAX = 5;
+    private static final long ATTENTE_INITIALE_MS = 5;
+
+    // Date du mouvement jamais antérieure à la précédente (horloges des postes décalées) :
+    // les dates du journal d'une caisse croissent avec les numéros d'écriture
+    private static final String MOUVEMENT =
+        "UPDATE Caisse c SET c.soldeActuel = c.soldeActuel + :delta, c.dernierMouvement = "
+        + "CASE WHEN c.dernierMouvement > :date THEN c.dernierMouvement ELSE :date END, "
+        + "c.nombreEcritures = c.nombreEcritures + :nombre, c.version = c.version + 1 WHERE c.idCaisse = :id";
+    private static final String MOUVEMENT_PROVISIONNE = MOUVEMENT + " AND c.soldeActuel + :delta >= 0";
+
+    /** Travail exécuté dans une transaction ouverte par {@link #executer}. */
+    interface Operation<T> {
+        T executer(EntityManager em) throws InvalidParameterException, DatabaseException;
+    }
+
+    private MouvementsCaisse() {
+    }
+
+    /**
+     * Ajoute delta (négatif pour une sortie) au solde de la caisse dans la transaction
+     * courante, l'inscrit au journal et retourne la caisse gérée, relue après la mise à jour.
+     *
+     * @param soldeSuffisantRequis refuse le mouvement s'il rendait le solde négatif
+     * @param origine              EcritureCaisse.ORIGINE_*, idOrigine l'objet concerné (0 si aucun)
+     * @throws InvalidParameterException caisse introuvable ou solde insuffisant
+     */
+    static Caisse appliquer(EntityManager em, int idCaisse, double delta, boolean soldeSuffisantRequis,
+            String origine, int idOrigine) throws InvalidParameterException {
+        List<EcritureCaisse> ecritures = new ArrayList<>();
+        ecritures.add(EcritureCaisse.builder().montant(delta).origine(origine).idOrigine(idOrigine).build());
+        return appliquer(em, idCaisse, ecritures, soldeSuffisantRequis);
+    }
+
+    /**
+     * Comme {@link #appliquer(EntityManager, int, double, boolean, String, int)} pour un objet
+     * d'origine pas encore persisté : le solde est mis à jour avant que persisterOrigine
+     * persiste l'objet et retourne son identifiant, inscrit au journal. L'INSERT d'un objet
+     * qui référence la caisse y prend un verrou partagé (clé étrangère) ; fait avant l'UPDATE,
+     * ce verrou devrait ensuite devenir exclusif et deux postes s'interbloqueraient.
+     */
+    static Caisse appliquerAvantOrigine(EntityManager em, int idCaisse, double delta, boolean soldeSuffisantRequis,
+            String origine, IntSupplier persisterOrigine) throws InvalidParameterException {
+        Caisse caisse = mouvementer(em, idCaisse, delta, 1, soldeSuffisantRequis);
+        List<EcritureCaisse> ecritures = new ArrayList<>();
+        ecritures.add(EcritureCaisse.builder().montant(delta).origine(origine).idOrigine(persisterOrigine.getAsInt()).build());
+        journaliser(em, caisse, ecritures);
+        return caisse;
+    }
+
+    /**
+     * Applique plusieurs écritures (montant, origine, idOrigine renseignés) à une caisse en
+     * une seule mise à jour ; elles sont numérotées et persistées dans l'ordre de la liste.
+     */
+    static Caisse appliquer(EntityManager em, int idCaisse, List<EcritureCaisse> ecritures, boolean soldeSuffisantRequis)
+            throws InvalidParameterException {
+        double delta = 0;
+        for (EcritureCaisse ecriture : ecritures) {
+            delta += ecriture.getMontant();
+        }
+        Caisse caisse = mouvementer(em, idCaisse, delta, ecritures.size(), soldeSuffisantRequis);
+        journaliser(em, caisse, ecritures);
+        return caisse;
+    }
+
+    // UPDATE conditionnel du solde (la caisse reste verrouillée jusqu'à la fin de la transaction), caisse relue
+    private static Caisse mouvementer(EntityManager em, int idCaisse, double delta, int nombreEcritures,
+            boolean soldeSuffisantRequis) throws InvalidParameterException {
+        int lignes = em.createQuery(soldeSuffisantRequis ? MOUVEMENT_PROVISIONNE : MOUVEMENT)
+            .setParameter("delta", delta)
+            .setParameter("date", LocalDateTime.now())
+            .setParameter("nombre", (long) nombreEcritures)
+            .setParameter("id", idCaisse)
+            .executeUpdate();
+        Caisse caisse = em.find(Caisse.class, idCaisse);
+        if (caisse == null) {
+            throw new InvalidParameterException("Caisse introuvable");
+        }
+        // L'UPDATE ne passe pas par le contexte de persistance : relire solde, version et numéro
+        em.refresh(caisse);
+        if (lignes == 0) {
+            throw new InvalidParameterException("Solde insuffisant dans la caisse");
+        }
+        return caisse;
+    }
+
+    /**
+     * Ouvre le journal d'une caisse qui vient d'être persistée : arrêté n° 0 à son solde initial.
+     */
+    static void ouvrirJournal(EntityManager em, Caisse caisse) {
+        em.persist(ArreteCaisse.builder()
+            .idCaisse(caisse.getIdCaisse())
+            .numero(caisse.getNombreEcritures())
+            .date(caisse.getDernierMouvement() != null ? caisse.getDernierMouvement() : LocalDateTime.now())
+            .solde(caisse.getSoldeActuel())
+            .build());
+    }
+
+    // La caisse est verrouillée par l'UPDATE jusqu'à la fin de la transaction : numéros et soldes
+    // des écritures suivent l'ordre réel des mouvements, sans trou ni doublon
+    private static void journaliser(EntityManager em, Caisse caisse, List<EcritureCaisse> ecritures) {
+        int intervalle = PersistenceManager.getIntervalleArretesCaisse();
+        long numero = caisse.getNombreEcritures() - ecritures.size();
+        double solde = caisse.getSoldeActuel();
+        for (EcritureCaisse ecriture : ecritures) {
+            solde -= ecriture.getMontant();
+        }
+        for (EcritureCaisse ecriture : ecritures) {
+            numero++;
+            solde += ecriture.getMontant();
+            ecriture.setIdCaisse(caisse.getIdCaisse());
+            ecriture.setNumero(numero);
+            ecriture.setDate(caisse.getDernierMouvement());
+            ecriture.setSoldeApres(solde);
+            em.persist(ecriture);
+            if (numero % intervalle == 0) {
+                em.persist(ArreteCaisse.builder()
+                    .idCaisse(caisse.getIdCaisse())
+                    .numero(numero)
+                    .date(ecriture.getDate())
+                    .solde(solde)
+                    .build());
+            }
+        }
+    }
+
+    /**
+     * Exécute l'opération dans sa propre transaction (EntityManager dédié), en la
+     * rejouant si elle échoue sur un conflit transitoire avec un autre poste.
+     */
+    static <T> T executer(Operation<T> operation, String messageErreur)
+            throws InvalidParameterException, DatabaseException {
+        long attente = ATTENTE_INITIALE_MS;
+        for (int tentative = 1; ; tentative++) {
+            EntityManager em = PersistenceManager.creerEntityManager();
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                T resultat = operation.executer(em);
+                tx.commit();
+                return resultat;
+            } catch (InvalidParameterException | DatabaseException e) {
+                annuler(tx);
+                throw e;
+            } catch (RuntimeException e) {
+                annuler(tx);
+                if (tentative >= TENTATIVES_MAX || !estConflitTransitoire(e)) {
+                    throw new DatabaseException(messageErreur, e);
+                }
+            } finally {
+                em.close();
+            }
+            pause(attente);
+            attente *= 2;
+        }
+    }
+
+    /**
+     * Vrai si l'échec vient d'une concurrence avec une autre transaction et peut être rejoué.
+     */
+    static boolean estConflitTransitoire(Throwable erreur) {
+        for (Throwable cause = erreur; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof PessimisticLockException
+                    || cause instanceof LockTimeoutException || cause instanceof SQLTransactionRollbackException
+                    || cause instanceof org.hibernate.StaleStateException
+                    || cause instanceof org.hibernate.exception.LockAcquisitionException) {
+                return true;
+            }
+            // MariaDB/MySQL : 1213 (40001) interblocage, 1205 délai d'attente de verrou dépassé
+            if (cause instanceof SQLException) {
+                SQLException sql = (SQLException) cause;
+                if ("40001".equals(sql.getSQLState()) || sql.getErrorCode() == 1205 || sql.getErrorCode() == 1213) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void annuler(EntityTransaction tx) {
+        if (tx.isActive()) {
+            tx.rollback();
+        }
+    }
+
+    private static void pause(long millis) throws DatabaseException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Mouvement de caisse interrompu", e);
+        }
+    }
+}
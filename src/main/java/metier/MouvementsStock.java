@@ -0,0 +1,80 @@
+package metier;
+
+import javax.persistence.EntityManager;
+
+import dao.Composant;
+import exception.InvalidParameterException;
+
+/**
+ * Mouvements de stock d'un composant, appliqués par un UPDATE conditionnel en base :
+ * le contrôle de quantité et la mise à jour sont une seule instruction, deux postes ne
+ * peuvent pas prendre les mêmes pièces. Les pièces réservées quittent la quantité
+ * disponible (quantite) et restent comptées dans quantiteReservee jusqu'à leur
+ * consommation ou leur libération.
+ */
+final class MouvementsStock {
+
+    enum Mouvement {
+        // Mise de côté : disponible -> réservé
+        RESERVATION("c.quantite = c.quantite - :quantite, c.quantiteReservee = c.quantiteReservee + :quantite",
+            "c.quantite >= :quantite"),
+        // Sortie définitive de pièces réservées
+        CONSOMMATION("c.quantiteReservee = c.quantiteReservee - :quantite", "c.quantiteReservee >= :quantite"),
+        // Retour en stock de pièces réservées
+        LIBERATION("c.quantite = c.quantite + :quantite, c.quantiteReservee = c.quantiteReservee - :quantite",
+            "c.quantiteReservee >= :quantite"),
+        // Sortie définitive sans réservation préalable (pièce posée sur une réparation)
+        SORTIE("c.quantite = c.quantite - :quantite", "c.quantite >= :quantite"),
+        // Retour en stock d'une pièce sortie (ligne de réparation retirée)
+        RETOUR("c.quantite = c.quantite + :quantite", null),
+        // Correction d'inventaire (réception, casse, comptage) : quantité signée, disponible jamais négatif
+        AJUSTEMENT("c.quantite = c.quantite + :quantite", "c.quantite + :quantite >= 0");
+
+        private final String jpql;
+        private final boolean surDisponible;
+
+        Mouvement(String affectations, String condition) {
+            this.jpql = "UPDATE Composant c SET " + affectations + " WHERE c.idComposant = :id"
+                + (condition != null ? " AND " + condition : "");
+            this.surDisponible = condition == null || condition.startsWith("c.quantite ");
+        }
+    }
+
+    private MouvementsStock() {
+    }
+
+    /**
+     * Applique le mouvement dans la transaction courante et retourne la quantité
+     * disponible qui en résulte, à transmettre à AlertesStock avant le commit.
+     *
+     * @throws InvalidParameterException composant introuvable, ou quantité disponible
+     *                                   (ou réservée) insuffisante
+     */
+    static int appliquer(EntityManager em, Mouvement mouvement, int idComposant, int quantite)
+            throws InvalidParameterException {
+        int lignes = em.createQuery(mouvement.jpql)
+            .setParameter("quantite", quantite)
+            .setParameter("id", idComposant)
+            .executeUpdate();
+        if (lignes == 0) {
+            throw refus(em, mouvement, idComposant, quantite);
+        }
+        // Ligne verrouillée par l'UPDATE jusqu'au commit : la valeur relue est celle qui sera validée
+        return em.createQuery("SELECT c.quantite FROM Composant c WHERE c.idComposant = :id", Integer.class)
+            .setParameter("id", idComposant)
+            .getSingleResult();
+    }
+
+    private static InvalidParameterException refus(EntityManager em, Mouvement mouvement, int idComposant, int quantite) {
+        Composant composant = em.find(Composant.class, idComposant);
+        if (composant == null) {
+            return new InvalidParameterException("Composant " + idComposant + " introuvable");
+        }
+        if (mouvement.surDisponible) {
+            return new InvalidParameterException(String.format("Stock insuffisant pour %s : %d disponible(s), %d demandé(s)",
+                composant.getNom(), composant.getQuantite(), Math.abs(quantite)));
+        }
+        return new InvalidParameterException(String.format("Réservation insuffisante pour %s : %d réservé(s), %d demandé(s)",
+            composant.getNom(), composant.getQuantiteReservee(), quantite));
+    }
+}
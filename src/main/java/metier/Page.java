@@ -0,0 +1,33 @@
+package metier;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Une page de résultats de listerPage(), avec le nombre total de lignes
+ * pour permettre la navigation dans les tables Swing.
+ */
+@Value
+public class Page<T> {
+	private List<T> contenu;
+	private int offset;
+	private int limite;
+	private long total;
+
+	public int getNumeroPage() {
+		return offset / limite;
+	}
+
+	public int getNombrePages() {
+		return (int) Math.max(1, (total + limite - 1) / limite);
+	}
+
+	public boolean aPagePrecedente() {
+		return offset > 0;
+	}
+
+	public boolean aPageSuivante() {
+		return offset + contenu.size() < total;
+	}
+}
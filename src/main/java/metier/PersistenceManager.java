@@ -0,0 +1,417 @@
+package metier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Point d'accès unique à l'unité de persistance FastRepairPU.
+ * L'EntityManagerFactory est créée une seule fois par processus et partagée
+ * par tous les services Gestion*. Le démarrage peut être lancé en arrière-plan
+ * (pendant l'affichage de l'écran de connexion) ; le premier accès attend alors
+ * la fin de l'initialisation au lieu de relancer Hibernate.
+ */
+public final class PersistenceManager {
+
+    public static final String PERSISTENCE_UNIT = "FastRepairPU";
+
+    private static final int TAILLE_LOT_DEFAUT = 50;
+    private static final int TAILLE_FETCH_DEFAUT = 500;
+    private static final int TAILLE_LOT_IMPORT_DEFAUT = 1000;
+    private static final int DUREE_CACHE_STATISTIQUES_DEFAUT_MS = 30_000;
+    private static final int TAILLE_BLOC_CODES_SUIVI_DEFAUT = 1000;
+    private static final int TAILLE_CACHE_CODES_SUIVI_DEFAUT = 10_000;
+    private static final int DUREE_CACHE_CODES_SUIVI_DEFAUT_MS = 60_000;
+    private static final int INTERVALLE_ARRETES_CAISSE_DEFAUT = 200;
+    private static final int DUREE_INDEX_ALERTES_STOCK_DEFAUT_MS = 300_000;
+    private static final int TAILLE_HISTORIQUES_PRIX_DEFAUT = 50_000;
+    private static final int DUREE_HISTORIQUES_PRIX_DEFAUT_MS = 600_000;
+    static final int ITERATIONS_MOT_DE_PASSE_DEFAUT = 120_000;
+    private static final int DUREE_CACHE_AUTHENTIFICATION_NEGATIF_DEFAUT_MS = 60_000;
+    private static final int DUREE_SESSION_DEFAUT_MS = 60_000;
+    private static final String EMAIL_ADMIN_DEFAUT = "admin@fastrepair.com";
+    // Empreinte de "admin123" livrée dans persistence.xml par les versions précédentes
+    private static final String EMPREINTE_ADMIN_PUBLIEE =
+        "pbkdf2$120000$YdazjDZ7RMq1wMdX2z/ZGA$RdvpVRVriMGaF9bmNpZ4bloacpYJiNuT702GqmdeIOE";
+    private static final int ALLOCATION_IDENTIFIANTS = 50;
+
+    // Table d'entité -> colonne d'identifiant, pour les générateurs de la table id_generateurs
+    private static final String[][] GENERATEURS = {
+        {"Appareil", "idAppareil"},
+        {"Boutique", "idBoutique"},
+        {"Caisse", "idCaisse"},
+        {"Composant", "idComposant"},
+        {"Emprunt", "idEmprunt"},
+        {"Recu", "idRecu"},
+        {"Reparation", "idReparation"},
+        {"Personne", "id"},
+        {"EcritureCaisse", "idEcriture"},
+        {"ArreteCaisse", "idArrete"},
+        {"LigneReparation", "idLigne"},
+        {"PrixComposant", "idPrix"}
+    };
+
+    private static volatile CompletableFuture<EntityManagerFactory> demarrage;
+    private static volatile long dureeDemarrageMs = -1;
+
+    private PersistenceManager() {
+    }
+
+    /**
+     * Lance l'initialisation de Hibernate dans un thread dédié si elle n'a pas
+     * encore commencé. Sans effet si le démarrage est déjà en cours ou terminé.
+     */
+    public static void demarrerEnArrierePlan() {
+        demarrer(true);
+    }
+
+    /**
+     * Retourne la fabrique partagée, en la créant (ou en attendant la fin du
+     * démarrage en arrière-plan) si nécessaire.
+     */
+    public static EntityManagerFactory getEntityManagerFactory() {
+        try {
+            return demarrer(false).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Initialisation de la persistance interrompue", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IllegalStateException("Impossible d'initialiser l'unité de persistance " + PERSISTENCE_UNIT, cause);
+        }
+    }
+
+    public static EntityManager creerEntityManager() {
+        return getEntityManagerFactory().createEntityManager();
+    }
+
+    /**
+     * État courant du pool de connexions (connexions actives/inactives, attente, timeouts).
+     */
+    public static StatistiquesPool getStatistiquesPool() {
+        getEntityManagerFactory();
+        return MetriquesPoolConnexions.capturer();
+    }
+
+    /**
+     * Succès/échecs du cache de second niveau et du cache de requêtes, par région.
+     */
+    public static StatistiquesCache getStatistiquesCache() {
+        Statistics statistiques = getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        List<StatistiquesCache.Region> regions = new ArrayList<>();
+        for (String nom : statistiques.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistiques.getCacheRegionStatistics(nom);
+            if (region == null) {
+                continue;
+            }
+            regions.add(new StatistiquesCache.Region(nom, region.getHitCount(), region.getMissCount(),
+                region.getPutCount()));
+        }
+        return StatistiquesCache.builder()
+            .succes(statistiques.getSecondLevelCacheHitCount())
+            .echecs(statistiques.getSecondLevelCacheMissCount())
+            .insertions(statistiques.getSecondLevelCachePutCount())
+            .requetesSucces(statistiques.getQueryCacheHitCount())
+            .requetesEchecs(statistiques.getQueryCacheMissCount())
+            .regions(regions)
+            .build();
+    }
+
+    /**
+     * Vide le cache de second niveau pour une entité, après une écriture faite
+     * hors des services (SQL natif, autre application...).
+     */
+    public static void evincerDuCache(Class<?> entite) {
+        getEntityManagerFactory().getCache().evict(entite);
+    }
+
+    /**
+     * Nombre d'entités envoyées par lot JDBC (hibernate.jdbc.batch_size), utilisé
+     * par les méthodes ajouterEnLot pour vider et libérer le contexte de persistance.
+     */
+    public static int getTailleLot() {
+        return lireEntier("hibernate.jdbc.batch_size", TAILLE_LOT_DEFAUT, 1);
+    }
+
+    /**
+     * Nombre de lignes lues par aller-retour sur les curseurs serveur des méthodes
+     * streamer*() (fastrepair.streaming.fetch_size), et fréquence de vidage du
+     * contexte de persistance pendant le parcours.
+     */
+    public static int getTailleFetch() {
+        return lireEntier("fastrepair.streaming.fetch_size", TAILLE_FETCH_DEFAUT, 1);
+    }
+
+    /**
+     * Nombre de lignes d'un fichier importé écrites par transaction
+     * (fastrepair.import.taille_lot) ; une ligne rejetée ne fait rejouer que son lot.
+     */
+    public static int getTailleLotImport() {
+        return lireEntier("fastrepair.import.taille_lot", TAILLE_LOT_IMPORT_DEFAUT, 1);
+    }
+
+    /**
+     * Durée de conservation des résultats de GestionStatistiques
+     * (fastrepair.statistiques.ttl_ms) ; 0 désactive ce cache.
+     */
+    public static long getDureeCacheStatistiquesMs() {
+        return lireEntier("fastrepair.statistiques.ttl_ms", DUREE_CACHE_STATISTIQUES_DEFAUT_MS, 0);
+    }
+
+    /**
+     * Nombre de codes de suivi réservés en base à chaque fois que GenerateurCodeSuivi
+     * épuise son bloc (fastrepair.codes_suivi.taille_bloc).
+     */
+    public static int getTailleBlocCodesSuivi() {
+        return lireEntier("fastrepair.codes_suivi.taille_bloc", TAILLE_BLOC_CODES_SUIVI_DEFAUT, 1);
+    }
+
+    /**
+     * Nombre de réparations gardées par CacheCodesSuivi pour la recherche par code
+     * (fastrepair.suivi.cache_taille) ; 0 désactive ce cache.
+     */
+    public static int getTailleCacheCodesSuivi() {
+        return lireEntier("fastrepair.suivi.cache_taille", TAILLE_CACHE_CODES_SUIVI_DEFAUT, 0);
+    }
+
+    /**
+     * Durée de vie d'une entrée de CacheCodesSuivi (fastrepair.suivi.cache_ttl_ms) : borne
+     * le retard sur les modifications faites depuis un autre poste.
+     */
+    public static long getDureeCacheCodesSuiviMs() {
+        return lireEntier("fastrepair.suivi.cache_ttl_ms", DUREE_CACHE_CODES_SUIVI_DEFAUT_MS, 0);
+    }
+
+    /**
+     * Nombre d'écritures du journal d'une caisse entre deux arrêtés de solde
+     * (fastrepair.caisse.intervalle_arretes) : borne le nombre d'écritures relues
+     * pour calculer un solde à une date passée.
+     */
+    public static int getIntervalleArretesCaisse() {
+        return lireEntier("fastrepair.caisse.intervalle_arretes", INTERVALLE_ARRETES_CAISSE_DEFAUT, 1);
+    }
+
+    /**
+     * Intervalle entre deux relectures complètes de l'index des alertes de stock
+     * (fastrepair.stock.alertes_resync_ms) : borne le retard sur les mouvements faits
+     * depuis un autre poste ; 0 garde l'index chargé au premier appel.
+     */
+    public static long getDureeIndexAlertesStockMs() {
+        return lireEntier("fastrepair.stock.alertes_resync_ms", DUREE_INDEX_ALERTES_STOCK_DEFAUT_MS, 0);
+    }
+
+    /**
+     * Nombre de composants dont l'historique des prix est gardé en mémoire
+     * (fastrepair.prix.historique_taille) ; les moins récemment consultés sont relâchés.
+     */
+    public static int getTailleHistoriquesPrix() {
+        return lireEntier("fastrepair.prix.historique_taille", TAILLE_HISTORIQUES_PRIX_DEFAUT, 0);
+    }
+
+    /**
+     * Durée après laquelle un historique de prix gardé en mémoire est relu
+     * (fastrepair.prix.historique_ttl_ms) : borne le retard sur les changements de prix
+     * faits depuis un autre poste.
+     */
+    public static long getDureeHistoriquesPrixMs() {
+        return lireEntier("fastrepair.prix.historique_ttl_ms", DUREE_HISTORIQUES_PRIX_DEFAUT_MS, 0);
+    }
+
+    /**
+     * Nombre d'itérations PBKDF2 des nouvelles empreintes de mots de passe
+     * (fastrepair.auth.iterations) ; les empreintes plus faibles sont recalculées à la connexion.
+     */
+    public static int getIterationsMotDePasse() {
+        return lireEntier("fastrepair.auth.iterations", ITERATIONS_MOT_DE_PASSE_DEFAUT, 10_000);
+    }
+
+    /**
+     * Durée pendant laquelle un email inconnu est refusé sans interroger la base
+     * (fastrepair.auth.cache_negatif_ms) ; 0 désactive ce cache.
+     */
+    public static long getDureeCacheAuthentificationNegatifMs() {
+        return lireEntier("fastrepair.auth.cache_negatif_ms", DUREE_CACHE_AUTHENTIFICATION_NEGATIF_DEFAUT_MS, 0);
+    }
+
+    /**
+     * Durée après laquelle SessionUtilisateur relit l'utilisateur connecté, ses boutiques et
+     * ses caisses (fastrepair.session.ttl_ms) : borne le retard sur une réaffectation faite
+     * depuis un autre poste ; 0 relit à chaque accès.
+     */
+    public static long getDureeSessionMs() {
+        return lireEntier("fastrepair.session.ttl_ms", DUREE_SESSION_DEFAUT_MS, 0);
+    }
+
+    /**
+     * Email du compte administrateur (fastrepair.admin.email).
+     */
+    public static String getEmailAdmin() {
+        return lireTexte("fastrepair.admin.email", EMAIL_ADMIN_DEFAUT);
+    }
+
+    /**
+     * Empreinte du mot de passe administrateur (fastrepair.admin.mdp), au format de
+     * MotDePasse, ou null : aucune n'est livrée, et une valeur en clair ou l'empreinte
+     * de démonstration publiée avec les anciennes versions sont ignorées. Sans
+     * empreinte, la connexion administrateur est refusée.
+     */
+    public static String getMotDePasseAdmin() {
+        String empreinte = lireTexte("fastrepair.admin.mdp", null);
+        if (empreinte == null || !MotDePasse.estHache(empreinte) || EMPREINTE_ADMIN_PUBLIEE.equals(empreinte)) {
+            return null;
+        }
+        return empreinte;
+    }
+
+    /**
+     * Durée du démarrage de Hibernate en millisecondes, ou -1 s'il n'est pas terminé.
+     */
+    public static long getDureeDemarrageMs() {
+        return dureeDemarrageMs;
+    }
+
+    public static synchronized void fermer() {
+        if (demarrage == null) {
+            return;
+        }
+        CompletableFuture<EntityManagerFactory> courant = demarrage;
+        demarrage = null;
+        dureeDemarrageMs = -1;
+        if (courant.isDone() && !courant.isCompletedExceptionally()) {
+            EntityManagerFactory emf = courant.join();
+            if (emf.isOpen()) {
+                emf.close();
+            }
+        }
+    }
+
+    private static synchronized CompletableFuture<EntityManagerFactory> demarrer(boolean enArrierePlan) {
+        CompletableFuture<EntityManagerFactory> courant = demarrage;
+        // Un échec précédent (base injoignable...) ne doit pas bloquer les tentatives suivantes
+        if (courant != null && !courant.isCompletedExceptionally()) {
+            return courant;
+        }
+
+        courant = new CompletableFuture<>();
+        demarrage = courant;
+        if (enArrierePlan) {
+            final CompletableFuture<EntityManagerFactory> cible = courant;
+            Thread thread = new Thread(() -> initialiser(cible), "fastrepair-persistence-init");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            initialiser(courant);
+        }
+        return courant;
+    }
+
+    private static void initialiser(CompletableFuture<EntityManagerFactory> cible) {
+        long debut = System.nanoTime();
+        try {
+            Map<String, Object> proprietes = proprietesSurchargees();
+            // Le schéma est mis à jour par les scripts versionnés ; Hibernate ne fait que le valider
+            MigrationsSchema.appliquer(proprietes);
+            EntityManagerFactory emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, proprietes);
+            initialiserGenerateurs(emf);
+            dureeDemarrageMs = (System.nanoTime() - debut) / 1_000_000;
+            System.out.println("PERSISTENCE - Unité " + PERSISTENCE_UNIT + " initialisée en " + dureeDemarrageMs + " ms");
+            cible.complete(emf);
+            // Lu après complete : les propriétés fastrepair.* passent par la fabrique
+            if (getMotDePasseAdmin() == null) {
+                System.err.println("PERSISTENCE - ATTENTION : aucune empreinte valide dans fastrepair.admin.mdp, "
+                    + "connexion administrateur désactivée (java -cp <classpath> metier.MotDePasse <mot de passe> "
+                    + "puis -Dfastrepair.admin.mdp=<empreinte>)");
+            }
+        } catch (Throwable t) {
+            System.err.println("PERSISTENCE - Échec de l'initialisation: " + t.getMessage());
+            cible.completeExceptionally(t);
+        }
+    }
+
+    /**
+     * Les identifiants sont alloués par blocs depuis la table id_generateurs (ce qui
+     * permet à Hibernate de regrouper les INSERT). Sur une base existante, chaque
+     * générateur est relevé au-delà du plus grand identifiant déjà présent ; il n'est
+     * jamais abaissé, un autre poste pouvant déjà utiliser le bloc courant.
+     */
+    private static void initialiserGenerateurs(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            for (String[] generateur : GENERATEURS) {
+                // Optimiseur "pooled" : le prochain bloc alloué se termine à la valeur stockée,
+                // elle doit donc dépasser le plus grand identifiant d'au moins un bloc.
+                // La ligne est créée au premier démarrage, puis seulement relevée.
+                String minimum = "(SELECT COALESCE(MAX(" + generateur[1] + "), 0) + " + ALLOCATION_IDENTIFIANTS
+                    + " FROM " + generateur[0] + ")";
+                em.createNativeQuery(
+                    "INSERT IGNORE INTO id_generateurs (sequence_name, next_val) "
+                    + "SELECT '" + generateur[0] + "', " + minimum)
+                    .executeUpdate();
+                em.createNativeQuery(
+                    "UPDATE id_generateurs SET next_val = GREATEST(next_val, " + minimum + ") "
+                    + "WHERE sequence_name = '" + generateur[0] + "'")
+                    .executeUpdate();
+            }
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static int lireEntier(String propriete, int defaut, int minimum) {
+        Object valeur = getEntityManagerFactory().getProperties().get(propriete);
+        if (valeur == null) {
+            return defaut;
+        }
+        try {
+            return Math.max(minimum, Integer.parseInt(valeur.toString().trim()));
+        } catch (NumberFormatException e) {
+            return defaut;
+        }
+    }
+
+    private static String lireTexte(String propriete, String defaut) {
+        Object valeur = getEntityManagerFactory().getProperties().get(propriete);
+        if (valeur == null || valeur.toString().trim().isEmpty()) {
+            return defaut;
+        }
+        return valeur.toString().trim();
+    }
+
+    /**
+     * Les propriétés système hibernate.*, javax.persistence.* et fastrepair.* passées au lancement
+     * (ex. -Dhibernate.hikari.maximumPoolSize=40) priment sur persistence.xml.
+     */
+    private static Map<String, Object> proprietesSurchargees() {
+        Map<String, Object> proprietes = new HashMap<>();
+        for (String nom : System.getProperties().stringPropertyNames()) {
+            if (nom.startsWith("hibernate.") || nom.startsWith("javax.persistence.") || nom.startsWith("fastrepair.")) {
+                proprietes.put(nom, System.getProperty(nom));
+            }
+        }
+        return proprietes;
+    }
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(PersistenceManager::fermer, "fastrepair-persistence-shutdown"));
+    }
+}
@@ -0,0 +1,26 @@
+package metier;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Bilan d'un import du catalogue de composants : lignes lues, composants créés ou mis
+ * à jour, lignes rejetées. Toutes les lignes rejetées sont comptées, seules les
+ * premières sont détaillées (numéro de ligne et motif) dans erreurs.
+ */
+@Value
+@Builder
+public class RapportImport {
+	private long lignesLues;
+	private long ajoutes;
+	private long modifies;
+	private long nombreErreurs;
+	private List<String> erreurs;
+	private long dureeMs;
+
+	public boolean isComplet() {
+		return nombreErreurs == 0;
+	}
+}
@@ -0,0 +1,29 @@
+package metier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Rapprochement d'une journée du journal d'une caisse : solde d'ouverture (dernier
+ * arrêté + écritures antérieures), totaux du jour, solde de clôture et écarts relevés
+ * (numéro d'écriture manquant, solde enregistré incohérent, emprunt absent du journal).
+ */
+@Value
+@Builder
+public class RapprochementCaisse {
+	private int idCaisse;
+	private LocalDate jour;
+	private double soldeOuverture;
+	private double entrees;
+	private double sorties;
+	private double soldeCloture;
+	private int nombreEcritures;
+	private List<String> anomalies;
+
+	public boolean isConforme() {
+		return anomalies.isEmpty();
+	}
+}
@@ -0,0 +1,47 @@
+package metier;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Critères combinables de recherche des reçus ; un critère null est ignoré.
+ */
+@Value
+@Builder(toBuilder = true)
+public class RecuCriteria {
+	private LocalDateTime debut;
+	private LocalDateTime fin;
+	private Double montantMin;
+	private Double montantMax;
+
+	@Builder.Default
+	private Tri tri = Tri.ID;
+	private boolean decroissant;
+	private int offset;
+	// 0 = sans limite
+	private int limite;
+
+	public enum Tri {
+		ID("idRecu"), DATE("date"), MONTANT("montant");
+
+		private final String champ;
+
+		Tri(String champ) {
+			this.champ = champ;
+		}
+
+		String getChamp() {
+			return champ;
+		}
+	}
+
+	RequeteCriteres versRequete() {
+		return new RequeteCriteres("Recu", "r", "idRecu")
+			.auMoins("date", debut)
+			.avant("date", fin)
+			.auMoins("montant", montantMin)
+			.auPlus("montant", montantMax);
+	}
+}
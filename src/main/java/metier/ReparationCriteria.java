@@ -0,0 +1,64 @@
+package metier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Critères combinables de recherche des réparations ; un critère null est ignoré.
+ * Exemple : ReparationCriteria.builder().idBoutique(3).idReparateur(7).etat("En cours")
+ *     .depotDebut(debutSemaine).tri(Tri.DATE_DEPOT).decroissant(true).limite(20).build()
+ */
+@Value
+@Builder(toBuilder = true)
+public class ReparationCriteria {
+	private Integer idBoutique;
+	private List<Integer> idsBoutiques;
+	private Integer idReparateur;
+	private Integer idAppareil;
+	private String etat;
+	private List<String> etatsExclus;
+	private String codeSuivi;
+	private LocalDateTime depotDebut;
+	private LocalDateTime depotFin;
+	private Double prixMin;
+	private Double prixMax;
+
+	@Builder.Default
+	private Tri tri = Tri.ID;
+	private boolean decroissant;
+	private int offset;
+	// 0 = sans limite
+	private int limite;
+
+	public enum Tri {
+		ID("idReparation"), DATE_DEPOT("dateDepot"), PRIX_TOTAL("prixTotal"), ETAT("etat");
+
+		private final String champ;
+
+		Tri(String champ) {
+			this.champ = champ;
+		}
+
+		String getChamp() {
+			return champ;
+		}
+	}
+
+	RequeteCriteres versRequete() {
+		return new RequeteCriteres("Reparation", "r", "idReparation")
+			.egal("idBoutique", idBoutique)
+			.dans("idBoutique", idsBoutiques)
+			.egal("idReparateur", idReparateur)
+			.egal("idAppareil", idAppareil)
+			.egal("etat", etat)
+			.horsDe("etat", etatsExclus)
+			.egal("codeSuivi", codeSuivi)
+			.auMoins("dateDepot", depotDebut)
+			.avant("dateDepot", depotFin)
+			.auMoins("prixTotal", prixMin)
+			.auPlus("prixTotal", prixMax);
+	}
+}
@@ -0,0 +1,21 @@
+package metier;
+
+import java.time.LocalDateTime;
+
+import lombok.Value;
+
+/**
+ * Ligne de tableau pour une réparation : seules les colonnes affichées sont
+ * lues (requête SELECT NEW), sans entité gérée ni instantané de dirty-checking.
+ */
+@Value
+public class ReparationVue {
+	private int idReparation;
+	private int idAppareil;
+	private int idBoutique;
+	private int idReparateur;
+	private String codeSuivi;
+	private LocalDateTime dateDepot;
+	private String etat;
+	private double prixTotal;
+}
@@ -0,0 +1,122 @@
+package metier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+/**
+ * Assemble la requête JPQL d'un objet *Criteria : une condition par critère
+ * renseigné, toujours dans le même ordre et avec les mêmes noms de paramètres.
+ * Deux critères de même forme produisent donc exactement le même texte JPQL et
+ * réutilisent le plan compilé du cache de requêtes Hibernate
+ * (hibernate.query.plan_cache_max_size) au lieu de ré-analyser le HQL.
+ */
+final class RequeteCriteres {
+
+    private final String entite;
+    private final String alias;
+    private final String identifiant;
+    private final List<String> conditions = new ArrayList<>();
+    private final Map<String, Object> parametres = new LinkedHashMap<>();
+
+    RequeteCriteres(String entite, String alias, String identifiant) {
+        this.entite = entite;
+        this.alias = alias;
+        this.identifiant = identifiant;
+    }
+
+    RequeteCriteres egal(String champ, Object valeur) {
+        if (valeur != null) {
+            ajouter(champ, " = ", "", valeur);
+        }
+        return this;
+    }
+
+    RequeteCriteres dans(String champ, Collection<?> valeurs) {
+        if (valeurs != null) {
+            // Liste vide : aucun résultat possible, sans envoyer un IN () invalide
+            if (valeurs.isEmpty()) {
+                conditions.add("1 = 0");
+            } else {
+                String parametre = nomParametre(champ) + "Liste";
+                conditions.add(alias + "." + champ + " IN (:" + parametre + ")");
+                parametres.put(parametre, valeurs);
+            }
+        }
+        return this;
+    }
+
+    RequeteCriteres horsDe(String champ, Collection<?> valeurs) {
+        if (valeurs != null && !valeurs.isEmpty()) {
+            String parametre = nomParametre(champ) + "Exclus";
+            conditions.add("(" + alias + "." + champ + " IS NULL OR " + alias + "." + champ + " NOT IN (:" + parametre + "))");
+            parametres.put(parametre, valeurs);
+        }
+        return this;
+    }
+
+    RequeteCriteres auMoins(String champ, Object valeur) {
+        if (valeur != null) {
+            ajouter(champ, " >= ", "Min", valeur);
+        }
+        return this;
+    }
+
+    RequeteCriteres auPlus(String champ, Object valeur) {
+        if (valeur != null) {
+            ajouter(champ, " <= ", "Max", valeur);
+        }
+        return this;
+    }
+
+    RequeteCriteres avant(String champ, Object valeur) {
+        if (valeur != null) {
+            ajouter(champ, " < ", "Fin", valeur);
+        }
+        return this;
+    }
+
+    <T> TypedQuery<T> creer(EntityManager em, Class<T> type, String tri, boolean decroissant, int offset, int limite) {
+        String direction = decroissant ? " DESC" : "";
+        TypedQuery<T> query = em.createQuery("SELECT " + alias + " FROM " + entite + " " + alias + clauseWhere()
+            + " ORDER BY " + alias + "." + tri + direction + ", " + alias + "." + identifiant + direction, type);
+        lier(query);
+        if (offset > 0) {
+            query.setFirstResult(offset);
+        }
+        if (limite > 0) {
+            query.setMaxResults(limite);
+        }
+        return query;
+    }
+
+    TypedQuery<Long> creerComptage(EntityManager em) {
+        TypedQuery<Long> query = em.createQuery(
+            "SELECT COUNT(" + alias + ") FROM " + entite + " " + alias + clauseWhere(), Long.class);
+        lier(query);
+        return query;
+    }
+
+    private String clauseWhere() {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private void lier(TypedQuery<?> query) {
+        parametres.forEach(query::setParameter);
+    }
+
+    private void ajouter(String champ, String operateur, String suffixe, Object valeur) {
+        String parametre = nomParametre(champ) + suffixe;
+        conditions.add(alias + "." + champ + operateur + ":" + parametre);
+        parametres.put(parametre, valeur);
+    }
+
+    private static String nomParametre(String champ) {
+        return champ.replace('.', '_');
+    }
+}
@@ -0,0 +1,220 @@
+package metier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+
+import dao.Boutique;
+import dao.Caisse;
+import dao.Personne;
+import dao.Proprietaire;
+import dao.Reparateur;
+import exception.DatabaseException;
+import exception.EntityNotFoundException;
+
+/**
+ * Utilisateur connecté, résolu une seule fois à la connexion : la personne, ses
+ * boutiques (celle du réparateur, ou toutes celles du propriétaire) et leurs caisses.
+ * Les écrans lisent ce contexte au lieu de parcourir les tables pour retrouver "moi".
+ *
+ * Les services qui créent, suppriment ou rattachent ailleurs personnes, boutiques ou
+ * caisses appellent {@link #signalerModification()} ; le contexte est alors relu au
+ * prochain accès. Ce signal ne sort pas du processus : une modification faite depuis un
+ * autre poste n'est vue qu'après fastrepair.session.ttl_ms, ou par {@link #rafraichir()}.
+ * Les mouvements de caisse ne le font pas : la session ne garde pas les soldes.
+ * Les entités retournées sont détachées : un solde affiché doit être relu via GestionCaisse.
+ */
+public final class SessionUtilisateur {
+
+    public static final String ADMIN = "ADMIN";
+    public static final String REPARATEUR = "REPARATEUR";
+    public static final String PROPRIETAIRE = "PROPRIETAIRE";
+
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private final String role;
+    private final String email;
+
+    private long generation;
+    private long chargeeLe;
+    private Personne personne;
+    private List<Boutique> boutiques = Collections.emptyList();
+    private Map<Integer, Caisse> caissesParBoutique = Collections.emptyMap();
+
+    private SessionUtilisateur(String role, String email) {
+        this.role = role;
+        this.email = email;
+    }
+
+    /**
+     * Ouvre la session d'un utilisateur authentifié.
+     *
+     * @throws EntityNotFoundException si aucun réparateur/propriétaire ne correspond à l'email
+     */
+    public static SessionUtilisateur ouvrir(String role, String email) throws EntityNotFoundException, DatabaseException {
+        if (role == null || email == null) {
+            throw new EntityNotFoundException("Rôle et email requis pour ouvrir une session");
+        }
+        SessionUtilisateur session = new SessionUtilisateur(role.toUpperCase(), GestionAuthentification.normaliserEmail(email));
+        session.charger();
+        return session;
+    }
+
+    /**
+     * Signale qu'une personne, une boutique ou une caisse a été modifiée : les sessions
+     * ouvertes se rechargeront au prochain accès.
+     */
+    static void signalerModification() {
+        GENERATION.incrementAndGet();
+    }
+
+    /** Compteur incrémenté par {@link #signalerModification()}, pour les caches qui en dépendent. */
+    static long generation() {
+        return GENERATION.get();
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public synchronized Personne getPersonne() {
+        verifierFraicheur();
+        return personne;
+    }
+
+    /** Réparateur connecté, ou null pour un autre rôle. */
+    public Reparateur getReparateur() {
+        Personne courante = getPersonne();
+        return courante instanceof Reparateur ? (Reparateur) courante : null;
+    }
+
+    /** Propriétaire connecté, ou null pour un autre rôle. */
+    public Proprietaire getProprietaire() {
+        Personne courante = getPersonne();
+        return courante instanceof Proprietaire ? (Proprietaire) courante : null;
+    }
+
+    /** Boutiques de l'utilisateur : celle du réparateur (s'il est assigné) ou celles du propriétaire. */
+    public synchronized List<Boutique> getBoutiques() {
+        verifierFraicheur();
+        return boutiques;
+    }
+
+    public List<Integer> getIdsBoutiques() {
+        List<Integer> ids = new ArrayList<>();
+        for (Boutique boutique : getBoutiques()) {
+            ids.add(boutique.getIdBoutique());
+        }
+        return ids;
+    }
+
+    /** Boutique du réparateur connecté (première boutique pour un propriétaire), ou null. */
+    public Boutique getBoutique() {
+        List<Boutique> courantes = getBoutiques();
+        return courantes.isEmpty() ? null : courantes.get(0);
+    }
+
+    /** Caisse de {@link #getBoutique()}, ou null. */
+    public Caisse getCaisse() {
+        Boutique boutique = getBoutique();
+        return boutique != null ? getCaisse(boutique.getIdBoutique()) : null;
+    }
+
+    /** Caisse d'une des boutiques de l'utilisateur, ou null si la boutique n'est pas la sienne. */
+    public synchronized Caisse getCaisse(int idBoutique) {
+        verifierFraicheur();
+        return caissesParBoutique.get(idBoutique);
+    }
+
+    /**
+     * Relit immédiatement la personne, ses boutiques et ses caisses.
+     */
+    public synchronized void rafraichir() throws DatabaseException {
+        try {
+            charger();
+        } catch (EntityNotFoundException e) {
+            personne = null;
+            boutiques = Collections.emptyList();
+            caissesParBoutique = Collections.emptyMap();
+        }
+    }
+
+    private void verifierFraicheur() {
+        if (generation == GENERATION.get()
+                && System.currentTimeMillis() - chargeeLe < PersistenceManager.getDureeSessionMs()) {
+            return;
+        }
+        try {
+            rafraichir();
+        } catch (DatabaseException e) {
+            // Base momentanément indisponible : garder le contexte connu
+            System.err.println("SESSION - Rechargement impossible: " + e.getMessage());
+        }
+    }
+
+    // Une requête pour un réparateur, deux pour un propriétaire (boutiques et caisses jointes)
+    private void charger() throws EntityNotFoundException, DatabaseException {
+        long generationLue = GENERATION.get();
+        EntityManager em = PersistenceManager.creerEntityManager();
+        try {
+            Personne trouvee = null;
+            List<Boutique> boutiquesTrouvees = new ArrayList<>();
+            if (REPARATEUR.equals(role)) {
+                Reparateur reparateur = premier(em.createQuery(
+                    "SELECT r FROM Reparateur r LEFT JOIN FETCH r.boutique b LEFT JOIN FETCH b.caisse "
+                    + "LEFT JOIN FETCH b.proprietaire WHERE r.email = :email", Reparateur.class)
+                    .setParameter("email", email).getResultList());
+                if (reparateur != null && reparateur.getBoutique() != null) {
+                    boutiquesTrouvees.add(reparateur.getBoutique());
+                }
+                trouvee = reparateur;
+            } else if (PROPRIETAIRE.equals(role)) {
+                Proprietaire proprietaire = premier(em.createQuery(
+                    "SELECT p FROM Proprietaire p WHERE p.email = :email", Proprietaire.class)
+                    .setParameter("email", email).getResultList());
+                if (proprietaire != null) {
+                    boutiquesTrouvees.addAll(em.createQuery(
+                        "SELECT b FROM Boutique b LEFT JOIN FETCH b.caisse WHERE b.proprietaire.id = :id ORDER BY b.idBoutique",
+                        Boutique.class)
+                        .setParameter("id", proprietaire.getId()).getResultList());
+                }
+                trouvee = proprietaire;
+            }
+            if (trouvee == null && !ADMIN.equals(role)) {
+                throw new EntityNotFoundException("Aucun compte " + role + " pour l'email " + email);
+            }
+
+            Map<Integer, Caisse> caisses = new HashMap<>();
+            for (Boutique boutique : boutiquesTrouvees) {
+                if (boutique.getCaisse() != null) {
+                    caisses.put(boutique.getIdBoutique(), boutique.getCaisse());
+                }
+            }
+
+            personne = trouvee;
+            boutiques = Collections.unmodifiableList(boutiquesTrouvees);
+            caissesParBoutique = caisses;
+            generation = generationLue;
+            chargeeLe = System.currentTimeMillis();
+        } catch (EntityNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DatabaseException("Erreur lors du chargement de la session de " + email, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static <T> T premier(List<T> resultats) {
+        return resultats.isEmpty() ? null : resultats.get(0);
+    }
+}
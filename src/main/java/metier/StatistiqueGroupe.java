@@ -0,0 +1,14 @@
+package metier;
+
+import lombok.Value;
+
+/**
+ * Une ligne d'agrégat calculée en base : clé du groupe (boutique, état, mois
+ * "aaaa-mm"...), nombre de lignes et somme des montants du groupe.
+ */
+@Value
+public class StatistiqueGroupe {
+	private String cle;
+	private long nombre;
+	private double total;
+}
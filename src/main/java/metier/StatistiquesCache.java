@@ -0,0 +1,33 @@
+package metier;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Photographie instantanée du cache de second niveau : totaux et détail par région.
+ */
+@Value
+@Builder
+public class StatistiquesCache {
+	private long succes;
+	private long echecs;
+	private long insertions;
+	private long requetesSucces;
+	private long requetesEchecs;
+	private List<Region> regions;
+
+	public double getTauxSucces() {
+		long total = succes + echecs;
+		return total == 0 ? 0 : (double) succes / total;
+	}
+
+	@Value
+	public static class Region {
+		private String nom;
+		private long succes;
+		private long echecs;
+		private long insertions;
+	}
+}
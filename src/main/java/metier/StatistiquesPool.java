@@ -0,0 +1,26 @@
+package metier;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Photographie instantanée de l'état du pool de connexions FastRepairPool.
+ * Les temps d'attente sont cumulés depuis le démarrage du pool.
+ */
+@Value
+@Builder
+public class StatistiquesPool {
+	private int connexionsActives;
+	private int connexionsInactives;
+	private int connexionsTotales;
+	private int threadsEnAttente;
+	private int tailleMax;
+	private int tailleMin;
+
+	private long acquisitions;
+	private long attenteMoyenneMicros;
+	private long attenteMaxMicros;
+	private long utilisationMoyenneMillis;
+	private long timeouts;
+	private long connexionsCreees;
+}
@@ -7,7 +7,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import dao.*;
 
@@ -28,11 +30,18 @@ public class AdminPanel extends JPanel {
     private metier.GestionComposant gestionComposant;
     private metier.GestionEmprunt gestionEmprunt;
     private metier.GestionRecu gestionRecu;
+    private metier.GestionStatistiques gestionStatistiques;
 
     // Composants UI
     private JTabbedPane tabbedPane;
     private JButton logoutButton;
 
+    // Pagination des tables volumineuses (réparations, emprunts, reçus)
+    private static final int TAILLE_PAGE = 100;
+    private final Map<String, Integer> pagesCourantes = new HashMap<>();
+    private final Map<String, JLabel> labelsPages = new HashMap<>();
+    private final Map<String, JButton[]> boutonsPages = new HashMap<>();
+
     public AdminPanel(MainWindow mainWindow) {
         this.mainWindow = mainWindow;
 
@@ -54,6 +63,7 @@ public class AdminPanel extends JPanel {
         gestionComposant = new metier.GestionComposant();
         gestionEmprunt = new metier.GestionEmprunt();
         gestionRecu = new metier.GestionRecu();
+        gestionStatistiques = new metier.GestionStatistiques();
     }
 
     private void initializeComponents() {
@@ -161,9 +171,76 @@ public class AdminPanel extends JPanel {
     private void createComposantTab() {
         JPanel composantPanel = new JPanel(new BorderLayout());
         composantPanel.add(createCrudPanel("Composant", new String[]{"ID Composant", "Nom", "Prix", "Quantité"}), BorderLayout.CENTER);
+
+        // Import d'un tarif fournisseur
+        JPanel importPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton btnImporter = new JButton("📥 Importer un tarif CSV");
+        btnImporter.setBackground(new Color(23, 162, 184));
+        btnImporter.setForeground(Color.WHITE);
+        btnImporter.setFocusPainted(false);
+        importPanel.add(btnImporter);
+        importPanel.add(new JLabel("Colonnes : nom ; prix [; quantite ; seuil] — un composant existant est mis à jour par son nom"));
+        composantPanel.add(importPanel, BorderLayout.SOUTH);
+        btnImporter.addActionListener(e -> importerComposantsCsv(btnImporter));
+
         tabbedPane.addTab("🔩 Composants", composantPanel);
     }
 
+    private void importerComposantsCsv(JButton btnImporter) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Fichiers CSV", "csv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.io.File fichier = chooser.getSelectedFile();
+
+        // Un tarif complet prend plusieurs secondes : import hors du thread de l'interface
+        btnImporter.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<metier.RapportImport, Void>() {
+            @Override
+            protected metier.RapportImport doInBackground() throws Exception {
+                try (java.io.Reader lecteur = new java.io.InputStreamReader(
+                        new java.io.FileInputStream(fichier), java.nio.charset.StandardCharsets.UTF_8)) {
+                    return gestionComposant.importerCsv(lecteur);
+                }
+            }
+
+            @Override
+            protected void done() {
+                btnImporter.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    metier.RapportImport rapport = get();
+                    StringBuilder texte = new StringBuilder();
+                    texte.append(String.format("Lignes lues: %d%nComposants créés: %d%nComposants mis à jour: %d%nLignes rejetées: %d%nDurée: %.1f s%n",
+                        rapport.getLignesLues(), rapport.getAjoutes(), rapport.getModifies(),
+                        rapport.getNombreErreurs(), rapport.getDureeMs() / 1000.0));
+                    if (!rapport.isComplet()) {
+                        texte.append("\nLignes rejetées");
+                        if (rapport.getNombreErreurs() > rapport.getErreurs().size()) {
+                            texte.append(" (").append(rapport.getErreurs().size()).append(" premières)");
+                        }
+                        texte.append(":\n");
+                        for (String erreur : rapport.getErreurs()) {
+                            texte.append(erreur).append('\n');
+                        }
+                    }
+                    JTextArea rapportArea = new JTextArea(texte.toString(), 15, 60);
+                    rapportArea.setEditable(false);
+                    JOptionPane.showMessageDialog(AdminPanel.this, new JScrollPane(rapportArea),
+                        "Import de " + fichier.getName(),
+                        rapport.isComplet() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    JOptionPane.showMessageDialog(AdminPanel.this, "Erreur lors de l'import: " + ex.getCause().getMessage(),
+                        "Erreur", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
     private void createEmpruntTab() {
         JPanel empruntPanel = new JPanel(new BorderLayout());
         empruntPanel.add(createCrudPanel("Emprunt", new String[]{"ID Emprunt", "Date", "Montant", "Type", "Commentaire"}), BorderLayout.CENTER);
@@ -225,23 +302,80 @@ public class AdminPanel extends JPanel {
         JScrollPane scrollPane = new JScrollPane(table);
         panel.add(scrollPane, BorderLayout.CENTER);
 
+        if (isPagine(entityName)) {
+            panel.add(createPaginationPanel(entityName, table), BorderLayout.SOUTH);
+        }
+
         // Ajouter les listeners aux boutons
         addCrudListeners(btnAjouter, btnModifier, btnSupprimer, btnRechercher, btnLister, entityName, table);
 
         return panel;
     }
 
+    private boolean isPagine(String entityName) {
+        return "Reparation".equals(entityName) || "Emprunt".equals(entityName) || "Recu".equals(entityName);
+    }
+
+    private JPanel createPaginationPanel(String entityName, JTable table) {
+        JPanel paginationPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        JButton btnPrecedent = new JButton("◀ Précédent");
+        JButton btnSuivant = new JButton("Suivant ▶");
+        JLabel labelPage = new JLabel("Page 1 / 1");
+        btnPrecedent.setEnabled(false);
+        btnSuivant.setEnabled(false);
+
+        btnPrecedent.addActionListener(e -> changerPage(table, entityName, -1));
+        btnSuivant.addActionListener(e -> changerPage(table, entityName, 1));
+
+        paginationPanel.add(btnPrecedent);
+        paginationPanel.add(labelPage);
+        paginationPanel.add(btnSuivant);
+
+        pagesCourantes.put(entityName, 0);
+        labelsPages.put(entityName, labelPage);
+        boutonsPages.put(entityName, new JButton[]{btnPrecedent, btnSuivant});
+        return paginationPanel;
+    }
+
+    private void changerPage(JTable table, String entityName, int decalage) {
+        pagesCourantes.put(entityName, Math.max(0, pagesCourantes.getOrDefault(entityName, 0) + decalage));
+        try {
+            refreshTableData(table, entityName);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Erreur lors du changement de page: " + ex.getMessage(),
+                "Erreur", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private int offsetPage(String entityName) {
+        return pagesCourantes.getOrDefault(entityName, 0) * TAILLE_PAGE;
+    }
+
+    private void majPagination(String entityName, metier.Page<?> page) {
+        pagesCourantes.put(entityName, page.getNumeroPage());
+        JLabel labelPage = labelsPages.get(entityName);
+        if (labelPage != null) {
+            labelPage.setText("Page " + (page.getNumeroPage() + 1) + " / " + page.getNombrePages()
+                + " (" + page.getTotal() + " éléments)");
+        }
+        JButton[] boutons = boutonsPages.get(entityName);
+        if (boutons != null) {
+            boutons[0].setEnabled(page.aPagePrecedente());
+            boutons[1].setEnabled(page.aPageSuivante());
+        }
+    }
+
     private JPanel createDashboardContent() {
         JPanel panel = new JPanel(new GridLayout(2, 3, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
         // Statistiques générales
         try {
-            int nbAppareils = gestionAppareil.lister().size();
-            int nbReparations = gestionReparation.lister().size();
-            int nbReparateurs = gestionReparateur.lister().size();
-            int nbProprietaires = gestionProprietaire.lister().size();
-            int nbBoutiques = gestionBoutique.lister().size();
+            long nbAppareils = gestionStatistiques.compterAppareils();
+            long nbReparations = gestionStatistiques.compterReparations();
+            long nbReparateurs = gestionStatistiques.compterReparateurs();
+            long nbProprietaires = gestionStatistiques.compterProprietaires();
+            long nbBoutiques = gestionStatistiques.compterBoutiques();
             double soldeTotal = calculerSoldeTotal();
 
             panel.add(createStatCard("📱 Appareils", String.valueOf(nbAppareils), new Color(155, 89, 182)));
@@ -469,9 +603,7 @@ public class AdminPanel extends JPanel {
 
     private double calculerSoldeTotal() {
         try {
-            return gestionCaisse.lister().stream()
-                    .mapToDouble(dao.Caisse::getSoldeActuel)
-                    .sum();
+            return gestionStatistiques.soldeTotalCaisses();
         } catch (Exception e) {
             return 0.0;
         }
@@ -482,6 +614,9 @@ public class AdminPanel extends JPanel {
 
         btnLister.addActionListener(e -> {
             try {
+                if (isPagine(entityName)) {
+                    pagesCourantes.put(entityName, 0);
+                }
                 refreshTableData(table, entityName);
                 int rowCount = table.getRowCount();
                 JOptionPane.showMessageDialog(this, 
@@ -1247,14 +1382,16 @@ public class AdminPanel extends JPanel {
 
             JTextField codeField = new JTextField(reparation.getCodeSuivi());
             JTextField etatField = new JTextField(reparation.getEtat());
-            JTextField prixField = new JTextField(String.valueOf(reparation.getPrixTotal()));
+            // Le prix total suit les pièces posées : seul un ajustement (main-d'œuvre, remise) est saisi
+            JTextField ajustementField = new JTextField("0.0");
 
             Object[] message = {
                 "ID Boutique:", boutiqueCombo,
                 "ID Réparateur:", reparateurCombo,
                 "Code Suivi:", codeField,
                 "État:", etatField,
-                "Prix Total:", prixField
+                "Prix Total actuel: " + String.format("%.2f €", reparation.getPrixTotal()),
+                "Ajustement du prix (+/- €):", ajustementField
             };
 
             int option = JOptionPane.showConfirmDialog(this, message, "Modifier Réparation",
@@ -1268,8 +1405,11 @@ public class AdminPanel extends JPanel {
                 reparation.setIdReparateur(idReparateur);
                 reparation.setCodeSuivi(codeField.getText());
                 reparation.setEtat(etatField.getText());
-                reparation.setPrixTotal(Double.parseDouble(prixField.getText()));
+                double ajustement = Double.parseDouble(ajustementField.getText().trim().replace(',', '.'));
                 gestionReparation.modifer(reparation);
+                if (ajustement != 0) {
+                    gestionReparation.ajusterPrixTotal(reparation.getIdReparation(), ajustement);
+                }
                 refreshTableData(table, "Reparation");
                 JOptionPane.showMessageDialog(this, "Réparation modifiée avec succès!");
             }
@@ -1463,12 +1603,14 @@ public class AdminPanel extends JPanel {
 
             JTextField nomField = new JTextField(composant.getNom());
             JTextField prixField = new JTextField(String.valueOf(composant.getPrix()));
-            JTextField quantiteField = new JTextField(String.valueOf(composant.getQuantite()));
+            // Le stock bouge aussi depuis les autres postes : seule une correction (+/-) est saisie
+            JTextField ajustementField = new JTextField("0");
 
             Object[] message = {
                 "Nom:", nomField,
                 "Prix:", prixField,
-                "Quantité:", quantiteField
+                "Quantité disponible actuelle: " + composant.getQuantite(),
+                "Ajustement du stock (+/-):", ajustementField
             };
 
             int option = JOptionPane.showConfirmDialog(this, message, "Modifier Composant",
@@ -1477,8 +1619,11 @@ public class AdminPanel extends JPanel {
             if (option == JOptionPane.OK_OPTION) {
                 composant.setNom(nomField.getText());
                 composant.setPrix(Double.parseDouble(prixField.getText()));
-                composant.setQuantite(Integer.parseInt(quantiteField.getText()));
+                int ajustement = Integer.parseInt(ajustementField.getText().trim());
                 gestionComposant.modifer(composant);
+                if (ajustement != 0) {
+                    gestionComposant.ajusterStock(id, ajustement);
+                }
                 refreshTableData(table, "Composant");
                 JOptionPane.showMessageDialog(this, "Composant modifié avec succès!");
             }
@@ -1499,6 +1644,9 @@ public class AdminPanel extends JPanel {
 
             JTextField montantField = new JTextField(String.valueOf(emprunt.getMontant()));
             JTextField typeField = new JTextField(emprunt.getType());
+            // Emprunt inscrit au journal de sa caisse : montant et type ne sont plus modifiables
+            montantField.setEditable(emprunt.getCaisse() == null);
+            typeField.setEditable(emprunt.getCaisse() == null);
             JTextArea commentaireArea = new JTextArea(emprunt.getCommentaire(), 3, 20);
 
             Object[] message = {
@@ -1556,13 +1704,23 @@ public class AdminPanel extends JPanel {
 
     // === MÉTHODES DE CHARGEMENT DES DONNÉES DANS LES TABLES ===
     private void loadReparations(DefaultTableModel model) throws Exception {
-        List<Reparation> reparations = gestionReparation.lister();
-        for (Reparation r : reparations) {
+        metier.Page<metier.ReparationVue> page = gestionReparation.listerVuesPage(offsetPage("Reparation"), TAILLE_PAGE);
+        if (page.getContenu().isEmpty() && page.aPagePrecedente()) {
+            // Page devenue vide (suppressions) : recharger la dernière page
+            page = gestionReparation.listerVuesPage((page.getNombrePages() - 1) * TAILLE_PAGE, TAILLE_PAGE);
+        }
+        for (metier.ReparationVue r : page.getContenu()) {
             loadReparationInTable(model, r);
         }
+        majPagination("Reparation", page);
     }
 
     private void loadReparationInTable(DefaultTableModel model, Reparation r) {
+        loadReparationInTable(model, new metier.ReparationVue(r.getIdReparation(), r.getIdAppareil(),
+            r.getIdBoutique(), r.getIdReparateur(), r.getCodeSuivi(), r.getDateDepot(), r.getEtat(), r.getPrixTotal()));
+    }
+
+    private void loadReparationInTable(DefaultTableModel model, metier.ReparationVue r) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
         model.addRow(new Object[]{
             r.getIdReparation(),
@@ -1608,18 +1766,23 @@ public class AdminPanel extends JPanel {
     }
 
     private void loadCaisses(DefaultTableModel model) throws Exception {
-        List<Caisse> caisses = gestionCaisse.lister();
-        for (Caisse c : caisses) {
+        List<metier.CaisseVue> caisses = gestionCaisse.listerVues();
+        for (metier.CaisseVue c : caisses) {
             loadCaisseInTable(model, c);
         }
     }
 
     private void loadCaisseInTable(DefaultTableModel model, Caisse c) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
         int idBoutique = (c.getBoutique() != null) ? c.getBoutique().getIdBoutique() : 0;
+        loadCaisseInTable(model, new metier.CaisseVue(c.getIdCaisse(), idBoutique, c.getSoldeActuel(),
+            c.getDernierMouvement()));
+    }
+
+    private void loadCaisseInTable(DefaultTableModel model, metier.CaisseVue c) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
         model.addRow(new Object[]{
             c.getIdCaisse(),
-            idBoutique,
+            c.getIdBoutique(),
             c.getSoldeActuel(),
             c.getDernierMouvement() != null ? c.getDernierMouvement().format(formatter) : "N/A"
         });
@@ -1635,13 +1798,23 @@ public class AdminPanel extends JPanel {
     }
 
     private void loadEmprunts(DefaultTableModel model) throws Exception {
-        List<Emprunt> emprunts = gestionEmprunt.lister();
-        for (Emprunt e : emprunts) {
+        metier.Page<metier.EmpruntVue> page = gestionEmprunt.listerVuesPage(offsetPage("Emprunt"), TAILLE_PAGE);
+        if (page.getContenu().isEmpty() && page.aPagePrecedente()) {
+            // Page devenue vide (suppressions) : recharger la dernière page
+            page = gestionEmprunt.listerVuesPage((page.getNombrePages() - 1) * TAILLE_PAGE, TAILLE_PAGE);
+        }
+        for (metier.EmpruntVue e : page.getContenu()) {
             loadEmpruntInTable(model, e);
         }
+        majPagination("Emprunt", page);
     }
 
     private void loadEmpruntInTable(DefaultTableModel model, Emprunt e) {
+        loadEmpruntInTable(model, new metier.EmpruntVue(e.getIdEmprunt(), e.getDate(), e.getMontant(),
+            e.getType(), e.getCommentaire()));
+    }
+
+    private void loadEmpruntInTable(DefaultTableModel model, metier.EmpruntVue e) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
         model.addRow(new Object[]{
             e.getIdEmprunt(),
@@ -1654,10 +1827,15 @@ public class AdminPanel extends JPanel {
     }
 
     private void loadRecus(DefaultTableModel model) throws Exception {
-        List<Recu> recus = gestionRecu.lister();
-        for (Recu r : recus) {
+        metier.Page<Recu> page = gestionRecu.listerPage(offsetPage("Recu"), TAILLE_PAGE);
+        if (page.getContenu().isEmpty() && page.aPagePrecedente()) {
+            // Page devenue vide (suppressions) : recharger la dernière page
+            page = gestionRecu.listerPage((page.getNombrePages() - 1) * TAILLE_PAGE, TAILLE_PAGE);
+        }
+        for (Recu r : page.getContenu()) {
             loadRecuInTable(model, r);
         }
+        majPagination("Recu", page);
     }
 
     private void loadRecuInTable(DefaultTableModel model, Recu r) {
@@ -11,6 +11,9 @@ import exception.DatabaseException;
  */
 public class AuthentificationPanel extends JPanel {
 
+    // Premier choix de la liste : le rôle est déduit du compte trouvé
+    private static final String ROLE_AUTOMATIQUE = "Rôle (automatique)";
+
     private MainWindow mainWindow;
     private JTextField emailField;
     private JPasswordField passwordField;
@@ -18,14 +21,12 @@ public class AuthentificationPanel extends JPanel {
     private JButton loginButton;
     private JButton guestButton;
 
-    // Gestionnaires métier
-    private metier.GestionReparateur gestionReparateur;
-    private metier.GestionProprietaire gestionProprietaire;
+    // Gestionnaire métier
+    private metier.IGestionAuthentification gestionAuthentification;
 
     public AuthentificationPanel(MainWindow mainWindow) {
         this.mainWindow = mainWindow;
-        this.gestionReparateur = new metier.GestionReparateur();
-        this.gestionProprietaire = new metier.GestionProprietaire();
+        this.gestionAuthentification = new metier.GestionAuthentification();
 
         initializeComponents();
         setupLayout();
@@ -35,7 +36,7 @@ public class AuthentificationPanel extends JPanel {
     private void initializeComponents() {
         emailField = new JTextField(20);
         passwordField = new JPasswordField(20);
-        roleComboBox = new JComboBox<>(new String[]{"Sélectionnez un rôle", "ADMIN", "REPARATEUR", "PROPRIETAIRE"});
+        roleComboBox = new JComboBox<>(new String[]{ROLE_AUTOMATIQUE, "ADMIN", "REPARATEUR", "PROPRIETAIRE"});
         loginButton = new JButton("Se connecter");
         guestButton = new JButton("Suivre une réparation (sans connexion)");
 
@@ -125,30 +126,6 @@ public class AuthentificationPanel extends JPanel {
                 mainWindow.showPanel("SUIVI");
             }
         });
-
-        roleComboBox.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                updateFieldsVisibility();
-            }
-        });
-    }
-
-    private void updateFieldsVisibility() {
-        String selectedRole = (String) roleComboBox.getSelectedItem();
-
-        if ("ADMIN".equals(selectedRole)) {
-            // Pour l'admin, on peut utiliser des credentials par défaut
-            emailField.setText("admin@fastrepair.com");
-            passwordField.setText("admin123");
-            emailField.setEditable(false);
-            passwordField.setEditable(false);
-        } else {
-            emailField.setText("");
-            passwordField.setText("");
-            emailField.setEditable(true);
-            passwordField.setEditable(true);
-        }
     }
 
     private void authenticateUser() {
@@ -157,11 +134,6 @@ public class AuthentificationPanel extends JPanel {
         String password = new String(passwordField.getPassword());
 
         // Validation des champs
-        if (role == null || role.equals("Sélectionnez un rôle")) {
-            JOptionPane.showMessageDialog(this, "Veuillez sélectionner un rôle.", "Erreur", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
         if (email.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Veuillez saisir votre email.", "Erreur", JOptionPane.ERROR_MESSAGE);
             return;
@@ -173,45 +145,15 @@ public class AuthentificationPanel extends JPanel {
         }
 
         try {
-            boolean authenticated = false;
-
-            switch (role) {
-                case "ADMIN":
-                    // Pour l'admin, vérification simple (en production, utiliser une vraie authentification)
-                    if ("admin@fastrepair.com".equals(email) && "admin123".equals(password)) {
-                        authenticated = true;
-                    }
-                    break;
-
-                case "REPARATEUR":
-                    // Vérifier dans la base de données
-                    try {
-                        dao.Reparateur reparateur = gestionReparateur.rechercherParEmail(email);
-                        if (reparateur != null && password.equals(reparateur.getMdp())) {
-                            authenticated = true;
-                        }
-                    } catch (DatabaseException ex) {
-                        // Reparateur non trouvé, continuer
-                    }
-                    break;
-
-                case "PROPRIETAIRE":
-                    // Vérifier dans la base de données
-                    try {
-                        dao.Proprietaire proprietaire = gestionProprietaire.rechercherParEmail(email);
-                        if (proprietaire != null && password.equals(proprietaire.getMdp())) {
-                            authenticated = true;
-                        }
-                    } catch (DatabaseException ex) {
-                        // Proprietaire non trouvé, continuer
-                    }
-                    break;
-            }
+            String roleDemande = ROLE_AUTOMATIQUE.equals(role) ? null : role;
+            metier.Authentification authentification =
+                gestionAuthentification.authentifier(email, password, roleDemande);
+            passwordField.setText("");
 
-            if (authenticated) {
-                mainWindow.setCurrentUser(role, email);
+            if (authentification != null) {
+                mainWindow.setCurrentUser(authentification.getRole(), authentification.getEmail());
                 JOptionPane.showMessageDialog(this,
-                    "Connexion réussie en tant que " + role + "!",
+                    "Connexion réussie en tant que " + authentification.getRole() + "!",
                     "Succès",
                     JOptionPane.INFORMATION_MESSAGE);
             } else {
@@ -221,7 +163,7 @@ public class AuthentificationPanel extends JPanel {
                     JOptionPane.ERROR_MESSAGE);
             }
 
-        } catch (Exception ex) {
+        } catch (DatabaseException ex) {
             JOptionPane.showMessageDialog(this,
                 "Erreur lors de l'authentification:\n" + ex.getMessage(),
                 "Erreur",
@@ -229,5 +171,3 @@ public class AuthentificationPanel extends JPanel {
         }
     }
 }
-
-
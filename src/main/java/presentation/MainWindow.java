@@ -21,9 +21,8 @@ public class MainWindow extends JFrame {
     private ProprietairePanel proprietairePanel;
     private SuiviReparationPanel suiviPanel;
 
-    // État de l'utilisateur connecté
-    private String currentUserRole = null;
-    private String currentUserEmail = null;
+    // Utilisateur connecté (personne, boutiques et caisses résolues à la connexion)
+    private metier.SessionUtilisateur session = null;
 
     public MainWindow() {
         initializeComponents();
@@ -47,12 +46,40 @@ public class MainWindow extends JFrame {
         navigationPanel = new JPanel();
         contentPanel = new JPanel(cardLayout);
 
-        // Initialiser les panels
+        // Seul l'écran de connexion est construit au lancement : les autres panels créent
+        // leurs services (qui attendent Hibernate) à leur premier affichage, cf. creerPanel
         authPanel = new AuthentificationPanel(this);
-        adminPanel = new AdminPanel(this);
-        reparateurPanel = new ReparateurPanel(this);
-        proprietairePanel = new ProprietairePanel(this);
-        suiviPanel = new SuiviReparationPanel(this);
+    }
+
+    // Construit le panel à son premier affichage et l'ajoute au CardLayout
+    private void creerPanel(String panelName) {
+        switch (panelName) {
+            case "ADMIN":
+                if (adminPanel == null) {
+                    adminPanel = new AdminPanel(this);
+                    contentPanel.add(adminPanel, panelName);
+                }
+                break;
+            case "REPARATEUR":
+                if (reparateurPanel == null) {
+                    reparateurPanel = new ReparateurPanel(this);
+                    contentPanel.add(reparateurPanel, panelName);
+                }
+                break;
+            case "PROPRIETAIRE":
+                if (proprietairePanel == null) {
+                    proprietairePanel = new ProprietairePanel(this);
+                    contentPanel.add(proprietairePanel, panelName);
+                }
+                break;
+            case "SUIVI":
+                if (suiviPanel == null) {
+                    suiviPanel = new SuiviReparationPanel(this);
+                    contentPanel.add(suiviPanel, panelName);
+                }
+                break;
+            default:
+        }
     }
 
     private void setupLayout() {
@@ -66,12 +93,8 @@ public class MainWindow extends JFrame {
         mainPanel.add(navigationPanel, BorderLayout.NORTH);
         mainPanel.add(contentPanel, BorderLayout.CENTER);
 
-        // Ajouter les panels au CardLayout
+        // Les autres panels sont ajoutés au CardLayout à leur premier affichage
         contentPanel.add(authPanel, "AUTH");
-        contentPanel.add(adminPanel, "ADMIN");
-        contentPanel.add(reparateurPanel, "REPARATEUR");
-        contentPanel.add(proprietairePanel, "PROPRIETAIRE");
-        contentPanel.add(suiviPanel, "SUIVI");
 
         add(mainPanel);
     }
@@ -152,6 +175,7 @@ public class MainWindow extends JFrame {
     }
 
     public void showPanel(String panelName) {
+        creerPanel(panelName);
         cardLayout.show(contentPanel, panelName);
         updateNavigationVisibility();
 
@@ -179,7 +203,7 @@ public class MainWindow extends JFrame {
 
     private void updateNavigationVisibility() {
         // Masquer/afficher les boutons selon l'état de connexion
-        boolean isLoggedIn = currentUserRole != null;
+        boolean isLoggedIn = session != null;
 
         // Le bouton "Connexion" n'est visible que si non connecté
         getNavigationButton("🔐 Connexion").setVisible(!isLoggedIn);
@@ -198,7 +222,7 @@ public class MainWindow extends JFrame {
         navigationPanel.repaint();
     }
 
-    // Getters pour les panels
+    // Getters pour les panels (null tant qu'un panel n'a pas été affiché)
     public AuthentificationPanel getAuthPanel() { return authPanel; }
     public AdminPanel getAdminPanel() { return adminPanel; }
     public ReparateurPanel getReparateurPanel() { return reparateurPanel; }
@@ -207,11 +231,18 @@ public class MainWindow extends JFrame {
 
     // Gestion de l'état de connexion
     public void setCurrentUser(String role, String email) {
-        this.currentUserRole = role;
-        this.currentUserEmail = email;
+        try {
+            this.session = metier.SessionUtilisateur.ouvrir(role, email);
+        } catch (Exception e) {
+            this.session = null;
+            JOptionPane.showMessageDialog(this, "Impossible d'ouvrir la session: " + e.getMessage(),
+                "Erreur", JOptionPane.ERROR_MESSAGE);
+            showPanel("AUTH");
+            return;
+        }
 
         // Afficher le panel approprié selon le rôle
-        switch (role.toUpperCase()) {
+        switch (session.getRole()) {
             case "ADMIN":
                 showPanel("ADMIN");
                 break;
@@ -229,24 +260,30 @@ public class MainWindow extends JFrame {
     }
 
     public void logout() {
-        this.currentUserRole = null;
-        this.currentUserEmail = null;
+        this.session = null;
         showPanel("AUTH");
     }
 
-    public String getCurrentUserRole() { return currentUserRole; }
-    public String getCurrentUserEmail() { return currentUserEmail; }
+    public metier.SessionUtilisateur getSession() { return session; }
+    public String getCurrentUserRole() { return session != null ? session.getRole() : null; }
+    public String getCurrentUserEmail() { return session != null ? session.getEmail() : null; }
 
     // Méthode principale pour lancer l'application
     public static void main(String[] args) {
         System.out.println("🚀 Démarrage de Fast-Repair...");
 
+        // Démarrer Hibernate pendant que l'utilisateur saisit ses identifiants : l'écran de
+        // connexion n'en dépend pas, les services des autres panels attendront cette initialisation
+        metier.PersistenceManager.demarrerEnArrierePlan();
+
         // Lancer l'interface graphique dans l'EDT
         SwingUtilities.invokeLater(() -> {
             try {
                 System.out.println("📱 Initialisation de l'interface graphique...");
+                long debut = System.currentTimeMillis();
                 new MainWindow().setVisible(true);
-                System.out.println("✅ Interface graphique lancée avec succès!");
+                System.out.println("✅ Interface graphique lancée avec succès en "
+                    + (System.currentTimeMillis() - debut) + " ms!");
             } catch (Exception e) {
                 System.err.println("❌ Erreur lors du démarrage de l'interface: " + e.getMessage());
                 e.printStackTrace();
@@ -6,7 +6,6 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -26,6 +25,8 @@ public class ProprietairePanel extends JPanel {
     private metier.GestionAppareil gestionAppareil;
     private metier.GestionReparation gestionReparation;
     private metier.GestionProprietaire gestionProprietaire;
+    private metier.GestionStatistiques gestionStatistiques;
+    private metier.GestionComposant gestionComposant;
 
     // Composants UI
     private JTabbedPane tabbedPane;
@@ -44,6 +45,8 @@ public class ProprietairePanel extends JPanel {
         gestionAppareil = new metier.GestionAppareil();
         gestionReparation = new metier.GestionReparation();
         gestionProprietaire = new metier.GestionProprietaire();
+        gestionStatistiques = new metier.GestionStatistiques();
+        gestionComposant = new metier.GestionComposant();
 
         initializeComponents();
         setupLayout();
@@ -70,6 +73,7 @@ public class ProprietairePanel extends JPanel {
         createBoutiquesTab();
         createReparateursTab();
         createReparationsTab();
+        createStockTab();
         createCRUDTab();
         createRapportsTab();
         createProfileTab();
@@ -133,6 +137,7 @@ public class ProprietairePanel extends JPanel {
         createFinancesTab();
         createBoutiquesTab();
         createReparateursTab();
+        createStockTab();
         createCRUDTab();
         createRapportsTab();
         createProfileTab();
@@ -142,19 +147,19 @@ public class ProprietairePanel extends JPanel {
     }
 
     /**
-     * Méthode utilitaire pour récupérer le propriétaire connecté
+     * Propriétaire connecté, résolu une fois à la connexion (cf. MainWindow.getSession())
      */
     private dao.Proprietaire getProprietaireConnecte() {
-        String email = mainWindow.getCurrentUserEmail();
-        if (email == null || email.trim().isEmpty()) {
-            return null;
-        }
+        metier.SessionUtilisateur session = mainWindow.getSession();
+        return session != null ? session.getProprietaire() : null;
+    }
 
-        try {
-            return gestionProprietaire.rechercherParEmail(email);
-        } catch (Exception e) {
-            return null;
-        }
+    /**
+     * Boutiques du propriétaire connecté, tenues à jour par la session
+     */
+    private List<dao.Boutique> getMesBoutiques() {
+        metier.SessionUtilisateur session = mainWindow.getSession();
+        return session != null ? session.getBoutiques() : java.util.Collections.emptyList();
     }
 
     private void createDashboardTab() {
@@ -184,10 +189,10 @@ public class ProprietairePanel extends JPanel {
         try {
             // Calculer les statistiques financières
             double soldeTotal = calculerSoldeTotal();
-            int nbRecus = gestionRecu.lister().size();
-            int nbEmprunts = gestionEmprunt.lister().size();
-            double totalRecus = gestionRecu.lister().stream().mapToDouble(dao.Recu::getMontant).sum();
-            double totalEmprunts = gestionEmprunt.lister().stream().mapToDouble(dao.Emprunt::getMontant).sum();
+            long nbRecus = gestionStatistiques.compterRecus();
+            long nbEmprunts = gestionStatistiques.compterEmprunts();
+            double totalRecus = gestionStatistiques.totalRecus();
+            double totalEmprunts = gestionStatistiques.totalEmprunts();
 
             // Ajouter les cartes de statistiques financières
             statsPanel.add(createStatCard("💰 Solde Total", String.format("%.2f €", soldeTotal), new Color(46, 204, 113)));
@@ -219,9 +224,7 @@ public class ProprietairePanel extends JPanel {
         try {
             dao.Proprietaire proprietaire = getProprietaireConnecte();
             if (proprietaire != null) {
-                List<dao.Boutique> boutiques = gestionBoutique.lister().stream()
-                    .filter(b -> b.getProprietaire() != null && b.getProprietaire().getId() == proprietaire.getId())
-                    .collect(Collectors.toList());
+                List<dao.Boutique> boutiques = getMesBoutiques();
 
                 String[] columns = {"Nom", "Adresse", "Réparateurs", "État"};
                 DefaultTableModel tableModel = new DefaultTableModel(columns, 0) {
@@ -233,11 +236,9 @@ public class ProprietairePanel extends JPanel {
                 boutiquesTable.setRowHeight(25);
                 boutiquesTable.getTableHeader().setReorderingAllowed(false);
 
+                java.util.Map<Integer, Long> reparateursParBoutique = gestionStatistiques.compterReparateursParBoutique();
                 for (dao.Boutique b : boutiques) {
-                    // Compter les réparateurs assignés (approximation)
-                    long nbReparateurs = gestionReparateur.lister().stream()
-                        .filter(r -> r.getBoutique() != null && r.getBoutique().getIdBoutique() == b.getIdBoutique())
-                        .count();
+                    long nbReparateurs = reparateursParBoutique.getOrDefault(b.getIdBoutique(), 0L);
 
                     String etat = nbReparateurs > 0 ? "Active" : "Sans personnel";
                     Color etatColor = nbReparateurs > 0 ? new Color(46, 204, 113) : new Color(231, 76, 60);
@@ -376,11 +377,10 @@ public class ProprietairePanel extends JPanel {
             activities.append("=== DERNIÈRES ACTIVITÉS ===\n\n");
 
             // Dernières réparations
-            List<dao.Reparation> dernieresReparations = gestionReparation.lister().stream()
-                .filter(r -> r.getDateDepot() != null) // Filtrer les réparations avec date
-                .sorted((r1, r2) -> r2.getDateDepot().compareTo(r1.getDateDepot()))
-                .limit(5)
-                .collect(Collectors.toList());
+            List<dao.Reparation> dernieresReparations = gestionReparation.rechercherParCriteres(
+                metier.ReparationCriteria.builder()
+                    .tri(metier.ReparationCriteria.Tri.DATE_DEPOT).decroissant(true).limite(5)
+                    .build());
 
             if (!dernieresReparations.isEmpty()) {
                 activities.append("🔧 DERNIÈRES RÉPARATIONS:\n");
@@ -390,7 +390,7 @@ public class ProprietairePanel extends JPanel {
                     activities.append(String.format("• %s - %.2f€ (%s)\n",
                         descriptionCourte,
                         r.getPrixTotal(),
-                        r.getDateDepot().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"))
+                        r.getDateDepot() != null ? r.getDateDepot().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) : "N/A"
                     ));
                 }
                 activities.append("\n");
@@ -398,10 +398,8 @@ public class ProprietairePanel extends JPanel {
 
             // Derniers mouvements de caisse
             activities.append("💰 DERNIERS MOUVEMENTS:\n");
-            List<dao.Recu> derniersRecus = gestionRecu.lister().stream()
-                .sorted((r1, r2) -> r2.getDate().compareTo(r1.getDate()))
-                .limit(3)
-                .collect(Collectors.toList());
+            List<dao.Recu> derniersRecus = gestionRecu.rechercherParCriteres(
+                metier.RecuCriteria.builder().tri(metier.RecuCriteria.Tri.DATE).decroissant(true).limite(3).build());
 
             for (dao.Recu r : derniersRecus) {
                 activities.append(String.format("• Reçu: +%.2f€ (%s)\n",
@@ -410,10 +408,8 @@ public class ProprietairePanel extends JPanel {
                 ));
             }
 
-            List<dao.Emprunt> derniersEmprunts = gestionEmprunt.lister().stream()
-                .sorted((e1, e2) -> e2.getDate().compareTo(e1.getDate()))
-                .limit(2)
-                .collect(Collectors.toList());
+            List<dao.Emprunt> derniersEmprunts = gestionEmprunt.rechercherParCriteres(
+                metier.EmpruntCriteria.builder().tri(metier.EmpruntCriteria.Tri.DATE).decroissant(true).limite(2).build());
 
             for (dao.Emprunt e : derniersEmprunts) {
                 activities.append(String.format("• Emprunt: -%.2f€ (%s)\n",
@@ -449,6 +445,7 @@ public class ProprietairePanel extends JPanel {
 
         refreshButton.addActionListener(e -> {
             // Recréer le dashboard pour actualiser les données
+            gestionStatistiques.viderCache();
             tabbedPane.remove(0);
             createDashboardTab();
             JOptionPane.showMessageDialog(this, "Données actualisées!");
@@ -689,20 +686,18 @@ public class ProprietairePanel extends JPanel {
             dao.Proprietaire proprietaire = getProprietaireConnecte();
 
             if (proprietaire != null) {
-                List<dao.Boutique> boutiques = gestionBoutique.lister();
+                List<dao.Boutique> boutiques = getMesBoutiques();
+                java.util.Map<Integer, Long> reparateursParBoutique = gestionStatistiques.compterReparateursParBoutique();
                 for (dao.Boutique b : boutiques) {
-                    if (b.getProprietaire() != null && b.getProprietaire().getId() == proprietaire.getId()) {
-                        // Compter les réparateurs assignés (approximation)
-                        int nbReparateurs = 0; // TODO: implémenter le comptage
-                        tableModel.addRow(new Object[]{
-                            b.getIdBoutique(),
-                            b.getNom(),
-                            b.getAdresse(),
-                            b.getNumTel(),
-                            b.getNumP(),
-                            nbReparateurs + " réparateur(s)"
-                        });
-                    }
+                    long nbReparateurs = reparateursParBoutique.getOrDefault(b.getIdBoutique(), 0L);
+                    tableModel.addRow(new Object[]{
+                        b.getIdBoutique(),
+                        b.getNom(),
+                        b.getAdresse(),
+                        b.getNumTel(),
+                        b.getNumP(),
+                        nbReparateurs + " réparateur(s)"
+                    });
                 }
             }
         } catch (Exception e) {
@@ -899,11 +894,8 @@ public class ProprietairePanel extends JPanel {
             dao.Proprietaire proprietaire = getProprietaireConnecte();
 
             if (proprietaire != null) {
-                List<dao.Boutique> boutiques = gestionBoutique.lister();
-                for (dao.Boutique b : boutiques) {
-                    if (b.getProprietaire() != null && b.getProprietaire().getId() == proprietaire.getId()) {
-                        combo.addItem(b.getIdBoutique() + " - " + b.getNom());
-                    }
+                for (dao.Boutique b : getMesBoutiques()) {
+                    combo.addItem(b.getIdBoutique() + " - " + b.getNom());
                 }
             }
 
@@ -1376,14 +1368,12 @@ public class ProprietairePanel extends JPanel {
                 return;
             }
 
-            List<dao.Boutique> boutiques = gestionBoutique.lister();
+            List<dao.Boutique> boutiques = getMesBoutiques();
             int count = 0;
 
             for (dao.Boutique b : boutiques) {
-                if (b.getProprietaire() != null && b.getProprietaire().getId() == proprietaire.getId()) {
-                    combo.addItem(b.getIdBoutique() + " - " + b.getNom());
-                    count++;
-                }
+                combo.addItem(b.getIdBoutique() + " - " + b.getNom());
+                count++;
             }
 
             if (count == 0) {
@@ -1454,14 +1444,7 @@ public class ProprietairePanel extends JPanel {
             tableModel.setRowCount(0);
 
             // Récupérer le propriétaire connecté pour filtrer les réparateurs de ses boutiques
-            dao.Proprietaire proprietaire = null;
-            List<dao.Proprietaire> proprietaires = gestionProprietaire.lister();
-            for (dao.Proprietaire p : proprietaires) {
-                if (p.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    proprietaire = p;
-                    break;
-                }
-            }
+            dao.Proprietaire proprietaire = getProprietaireConnecte();
 
             if (proprietaire != null) {
                 // Afficher tous les réparateurs avec leur assignation
@@ -1527,6 +1510,198 @@ public class ProprietairePanel extends JPanel {
         }
     }
 
+    private void createStockTab() {
+        JPanel stockPanel = new JPanel(new BorderLayout());
+        stockPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // Boutons d'action
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+
+        JButton btnRafraichir = new JButton("🔄 Rafraîchir");
+        JButton btnSeuil = new JButton("📏 Définir un seuil");
+        JButton btnHistorique = new JButton("📈 Historique des prix");
+
+        btnRafraichir.setBackground(new Color(52, 152, 219));
+        btnSeuil.setBackground(new Color(230, 126, 34));
+        btnHistorique.setBackground(new Color(155, 89, 182));
+
+        for (JButton btn : new JButton[]{btnRafraichir, btnSeuil, btnHistorique}) {
+            btn.setForeground(Color.WHITE);
+            btn.setFocusPainted(false);
+            btn.setPreferredSize(new Dimension(160, 35));
+            buttonPanel.add(btn);
+        }
+
+        // Marge 0 : composants au seuil ou en dessous ; au-delà, ceux qui s'en approchent
+        JSpinner margeSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 10_000, 1));
+        buttonPanel.add(new JLabel("Marge ≤"));
+        buttonPanel.add(margeSpinner);
+
+        stockPanel.add(buttonPanel, BorderLayout.NORTH);
+
+        // Table des alertes, la plus urgente en premier
+        String[] columns = {"ID", "Composant", "Quantité", "Seuil", "Marge", "État"};
+        DefaultTableModel tableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(tableModel);
+        stockPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JLabel resumeLabel = new JLabel();
+        resumeLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        stockPanel.add(resumeLabel, BorderLayout.SOUTH);
+
+        rafraichirAlertesStock(tableModel, resumeLabel, 0);
+
+        // Listeners
+        btnRafraichir.addActionListener(e -> rafraichirAlertesStock(tableModel, resumeLabel, (Integer) margeSpinner.getValue()));
+        margeSpinner.addChangeListener(e -> rafraichirAlertesStock(tableModel, resumeLabel, (Integer) margeSpinner.getValue()));
+        btnSeuil.addActionListener(e -> {
+            definirSeuilComposant(table);
+            rafraichirAlertesStock(tableModel, resumeLabel, (Integer) margeSpinner.getValue());
+        });
+        btnHistorique.addActionListener(e -> voirHistoriquePrix(table));
+
+        tabbedPane.addTab("📦 Stock", stockPanel);
+    }
+
+    private void rafraichirAlertesStock(DefaultTableModel tableModel, JLabel resumeLabel, int marge) {
+        try {
+            tableModel.setRowCount(0);
+
+            int enAlerte = 0;
+            for (metier.AlerteStock alerte : gestionComposant.listerSousMarge(marge)) {
+                String etat;
+                if (alerte.getQuantite() <= 0) {
+                    etat = "🔴 Rupture";
+                } else if (alerte.isEnAlerte()) {
+                    etat = "🟠 À réapprovisionner";
+                } else {
+                    etat = "🟡 Proche du seuil";
+                }
+                if (alerte.isEnAlerte()) {
+                    enAlerte++;
+                }
+                tableModel.addRow(new Object[]{
+                    alerte.getIdComposant(),
+                    alerte.getNom(),
+                    alerte.getQuantite(),
+                    alerte.getSeuil(),
+                    alerte.getMarge(),
+                    etat
+                });
+            }
+            resumeLabel.setText(enAlerte == 0
+                ? "✅ Aucun composant sous son seuil de réapprovisionnement"
+                : "⚠️ " + enAlerte + " composant(s) à réapprovisionner");
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this, "Erreur lors du chargement des alertes de stock: " + e.getMessage(),
+                "Erreur", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void definirSeuilComposant(JTable table) {
+        try {
+            List<dao.Composant> composants = gestionComposant.lister();
+            if (composants.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Aucun composant dans le catalogue.",
+                    "Information", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            // Composant de la ligne sélectionnée proposé par défaut
+            int idSelectionne = table.getSelectedRow() != -1 ? (Integer) table.getValueAt(table.getSelectedRow(), 0) : -1;
+            JComboBox<String> composantCombo = new JComboBox<>();
+            for (dao.Composant c : composants) {
+                composantCombo.addItem(c.getIdComposant() + " - " + c.getNom()
+                    + " (stock: " + c.getQuantite() + ", seuil: " + c.getSeuilReapprovisionnement() + ")");
+                if (c.getIdComposant() == idSelectionne) {
+                    composantCombo.setSelectedIndex(composantCombo.getItemCount() - 1);
+                }
+            }
+            JTextField seuilField = new JTextField();
+
+            Object[] message = {
+                "Composant:", composantCombo,
+                "Seuil de réapprovisionnement (0 = pas d'alerte):", seuilField
+            };
+
+            int option = JOptionPane.showConfirmDialog(this, message, "Définir un seuil",
+                JOptionPane.OK_CANCEL_OPTION);
+
+            if (option == JOptionPane.OK_OPTION) {
+                dao.Composant composant = composants.get(composantCombo.getSelectedIndex());
+                int seuil = Integer.parseInt(seuilField.getText().trim());
+                gestionComposant.definirSeuil(composant.getIdComposant(), seuil);
+
+                JOptionPane.showMessageDialog(this, "Seuil de " + composant.getNom() + " fixé à " + seuil + ".");
+            }
+
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Le seuil doit être un nombre entier.",
+                "Erreur", JOptionPane.ERROR_MESSAGE);
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this, "Erreur lors de la définition du seuil: " + e.getMessage(),
+                "Erreur", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void voirHistoriquePrix(JTable table) {
+        try {
+            List<dao.Composant> composants = gestionComposant.lister();
+            if (composants.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Aucun composant dans le catalogue.",
+                    "Information", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            // Composant de la ligne sélectionnée proposé par défaut
+            int idSelectionne = table.getSelectedRow() != -1 ? (Integer) table.getValueAt(table.getSelectedRow(), 0) : -1;
+            JComboBox<String> composantCombo = new JComboBox<>();
+            for (dao.Composant c : composants) {
+                composantCombo.addItem(c.getIdComposant() + " - " + c.getNom() + " (" + String.format("%.2f €", c.getPrix()) + ")");
+                if (c.getIdComposant() == idSelectionne) {
+                    composantCombo.setSelectedIndex(composantCombo.getItemCount() - 1);
+                }
+            }
+
+            int option = JOptionPane.showConfirmDialog(this, new Object[]{"Composant:", composantCombo},
+                "Historique des prix", JOptionPane.OK_CANCEL_OPTION);
+            if (option != JOptionPane.OK_OPTION) {
+                return;
+            }
+
+            dao.Composant composant = composants.get(composantCombo.getSelectedIndex());
+            List<dao.PrixComposant> historique = gestionComposant.listerHistoriquePrix(composant.getIdComposant());
+
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+            String[] columns = {"Depuis le", "Prix", "Variation"};
+            DefaultTableModel model = new DefaultTableModel(columns, 0);
+            dao.PrixComposant precedent = null;
+            for (dao.PrixComposant prix : historique) {
+                // Prix repris à la création de l'historique : date d'origine inconnue
+                String depuis = prix.getDateEffet().getYear() <= 1970 ? "Avant l'historique" : prix.getDateEffet().format(formatter);
+                String variation = precedent == null || precedent.getCentimes() == 0 ? ""
+                    : String.format("%+.1f %%", 100.0 * (prix.getCentimes() - precedent.getCentimes()) / precedent.getCentimes());
+                model.addRow(new Object[]{depuis, String.format("%.2f €", prix.getPrix()), variation});
+                precedent = prix;
+            }
+            JScrollPane scrollPane = new JScrollPane(new JTable(model));
+            scrollPane.setPreferredSize(new Dimension(450, 250));
+
+            JOptionPane.showMessageDialog(this,
+                new Object[]{composant.getNom() + " : " + historique.size() + " prix enregistré(s)", scrollPane},
+                "Historique des prix", JOptionPane.INFORMATION_MESSAGE);
+
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this, "Erreur lors du chargement de l'historique des prix: " + e.getMessage(),
+                "Erreur", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void createCRUDTab() {
         JPanel crudPanel = new JPanel(new BorderLayout());
         crudPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -1669,18 +1844,16 @@ public class ProprietairePanel extends JPanel {
         dao.Proprietaire proprietaireConnecte = getProprietaireConnecte();
 
         if (proprietaireConnecte != null) {
-            List<dao.Boutique> boutiques = gestionBoutique.lister();
+            List<dao.Boutique> boutiques = getMesBoutiques();
             for (dao.Boutique b : boutiques) {
-                if (b.getProprietaire() != null && b.getProprietaire().getId() == proprietaireConnecte.getId()) {
-                    model.addRow(new Object[]{
-                        b.getIdBoutique(),
-                        b.getNom(),
-                        b.getAdresse(),
-                        b.getNumTel(),
-                        b.getNumP(),
-                        proprietaireConnecte.getNom() + " " + proprietaireConnecte.getPrenom()
-                    });
-                }
+                model.addRow(new Object[]{
+                    b.getIdBoutique(),
+                    b.getNom(),
+                    b.getAdresse(),
+                    b.getNumTel(),
+                    b.getNumP(),
+                    proprietaireConnecte.getNom() + " " + proprietaireConnecte.getPrenom()
+                });
             }
         }
     }
@@ -1708,24 +1881,15 @@ public class ProprietairePanel extends JPanel {
                 }
                 break;
             case "Caisse":
-                // Afficher les caisses des boutiques du propriétaire
-                List<dao.Caisse> caisses = gestionCaisse.lister();
-                List<dao.Boutique> mesBoutiques = gestionBoutique.lister().stream()
-                    .filter(b -> b.getProprietaire() != null && b.getProprietaire().getId() == proprietaireId)
-                    .collect(Collectors.toList());
-
-                for (dao.Caisse c : caisses) {
-                    final int boutiqueId = c.getBoutique().getIdBoutique();
-                    boolean isMyBoutique = mesBoutiques.stream()
-                        .anyMatch(b -> b.getIdBoutique() == boutiqueId);
-                    if (isMyBoutique) {
-                        model.addRow(new Object[]{
-                            c.getIdCaisse(),
-                            c.getBoutique().getIdBoutique(),
-                            c.getSoldeActuel(),
-                            c.getDernierMouvement() != null ? c.getDernierMouvement().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) : "N/A"
-                        });
-                    }
+                // Afficher les caisses des boutiques du propriétaire (filtrées en base)
+                List<metier.CaisseVue> caisses = gestionCaisse.listerVuesParProprietaire(proprietaireId);
+                for (metier.CaisseVue c : caisses) {
+                    model.addRow(new Object[]{
+                        c.getIdCaisse(),
+                        c.getIdBoutique(),
+                        c.getSoldeActuel(),
+                        c.getDernierMouvement() != null ? c.getDernierMouvement().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) : "N/A"
+                    });
                 }
                 break;
             case "Recu":
@@ -1741,8 +1905,8 @@ public class ProprietairePanel extends JPanel {
                 break;
             case "Emprunt":
                 // Afficher tous les emprunts (transactions globales)
-                List<dao.Emprunt> emprunts = gestionEmprunt.lister();
-                for (dao.Emprunt e : emprunts) {
+                List<metier.EmpruntVue> emprunts = gestionEmprunt.listerVues();
+                for (metier.EmpruntVue e : emprunts) {
                     model.addRow(new Object[]{
                         e.getIdEmprunt(),
                         e.getDate() != null ? e.getDate().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) : "N/A",
@@ -1824,20 +1988,12 @@ public class ProprietairePanel extends JPanel {
             tableModel.setRowCount(0);
 
             // Récupérer le propriétaire connecté
-            dao.Proprietaire proprietaireConnecte = null;
-            List<dao.Proprietaire> proprietaires = gestionProprietaire.lister();
-            for (dao.Proprietaire p : proprietaires) {
-                if (p.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    proprietaireConnecte = p;
-                    break;
-                }
-            }
+            dao.Proprietaire proprietaireConnecte = getProprietaireConnecte();
 
             if (proprietaireConnecte != null) {
-                List<dao.Boutique> boutiques = gestionBoutique.lister();
+                List<dao.Boutique> boutiques = getMesBoutiques();
                 for (dao.Boutique b : boutiques) {
-                    if (b.getProprietaire() != null && b.getProprietaire().getId() == proprietaireConnecte.getId() &&
-                        b.getNom().toLowerCase().contains(nomStr.toLowerCase())) {
+                    if (b.getNom().toLowerCase().contains(nomStr.toLowerCase())) {
                         tableModel.addRow(new Object[]{
                             b.getIdBoutique(),
                             b.getNom(),
@@ -1888,14 +2044,7 @@ public class ProprietairePanel extends JPanel {
                 }
 
                 // Récupérer le propriétaire connecté
-                dao.Proprietaire proprietaire = null;
-                List<dao.Proprietaire> proprietaires = gestionProprietaire.lister();
-                for (dao.Proprietaire p : proprietaires) {
-                    if (p.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                        proprietaire = p;
-                        break;
-                    }
-                }
+                dao.Proprietaire proprietaire = getProprietaireConnecte();
 
                 if (proprietaire == null) {
                     JOptionPane.showMessageDialog(this, "Propriétaire non trouvé.",
@@ -2115,16 +2264,7 @@ public class ProprietairePanel extends JPanel {
     private void voirStatistiques() {
         try {
             // Récupérer le propriétaire connecté
-            final dao.Proprietaire proprietaireConnecte;
-            List<dao.Proprietaire> proprietaires = gestionProprietaire.lister();
-            dao.Proprietaire tempProprietaire = null;
-            for (dao.Proprietaire p : proprietaires) {
-                if (p.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    tempProprietaire = p;
-                    break;
-                }
-            }
-            proprietaireConnecte = tempProprietaire;
+            final dao.Proprietaire proprietaireConnecte = getProprietaireConnecte();
 
             if (proprietaireConnecte == null) {
                 JOptionPane.showMessageDialog(this, "Propriétaire non trouvé.",
@@ -2133,36 +2273,24 @@ public class ProprietairePanel extends JPanel {
             }
 
             // Calculer les statistiques du propriétaire
-            List<dao.Boutique> boutiques = gestionBoutique.lister();
-            List<dao.Boutique> mesBoutiques = boutiques.stream()
-                .filter(b -> b.getProprietaire() != null && b.getProprietaire().getId() == proprietaireConnecte.getId())
-                .collect(Collectors.toList());
+            List<dao.Boutique> mesBoutiques = getMesBoutiques();
 
             int nbBoutiques = mesBoutiques.size();
-            int nbReparationsTotal = 0;
+            long nbReparationsTotal = 0;
             double chiffreAffairesTotal = 0.0;
 
-            // Calculer pour chaque boutique
-            for (dao.Boutique boutique : mesBoutiques) {
-                final int boutiqueId = boutique.getIdBoutique();
-                // Compter les réparations de cette boutique
-                List<dao.Reparation> reparationsBoutique = gestionReparation.lister().stream()
-                    .filter(r -> r.getIdBoutique() == boutiqueId)
-                    .collect(Collectors.toList());
-                nbReparationsTotal += reparationsBoutique.size();
-
-                // Calculer le CA de cette boutique
-                chiffreAffairesTotal += reparationsBoutique.stream()
-                    .mapToDouble(dao.Reparation::getPrixTotal)
-                    .sum();
+            // Réparations et CA regroupés par boutique en base
+            for (metier.StatistiqueGroupe groupe : gestionStatistiques.reparationsParBoutiqueProprietaire(proprietaireConnecte.getId())) {
+                nbReparationsTotal += groupe.getNombre();
+                chiffreAffairesTotal += groupe.getTotal();
             }
 
             // Statistiques des caisses
             double soldeTotalCaisses = calculerSoldeTotal();
 
             // Statistiques des reçus et emprunts
-            double totalRecus = gestionRecu.lister().stream().mapToDouble(dao.Recu::getMontant).sum();
-            double totalEmprunts = gestionEmprunt.lister().stream().mapToDouble(dao.Emprunt::getMontant).sum();
+            double totalRecus = gestionStatistiques.totalRecus();
+            double totalEmprunts = gestionStatistiques.totalEmprunts();
 
             // Créer le message des statistiques
             StringBuilder stats = new StringBuilder();
@@ -2216,9 +2344,7 @@ public class ProprietairePanel extends JPanel {
 
     private double calculerSoldeTotal() {
         try {
-            return gestionCaisse.lister().stream()
-                    .mapToDouble(dao.Caisse::getSoldeActuel)
-                    .sum();
+            return gestionStatistiques.soldeTotalCaisses();
         } catch (Exception e) {
             return 0.0;
         }
@@ -2231,7 +2357,10 @@ public class ProprietairePanel extends JPanel {
                 StringBuilder sb = new StringBuilder();
                 sb.append("=== ÉTAT DES CAISSES ===\n\n");
 
-                java.util.List<dao.Caisse> caisses = gestionCaisse.lister();
+                // Caisses des boutiques du propriétaire connecté uniquement
+                dao.Proprietaire proprietaire = getProprietaireConnecte();
+                java.util.List<dao.Caisse> caisses = proprietaire != null
+                    ? gestionCaisse.listerParProprietaire(proprietaire.getId()) : java.util.Collections.emptyList();
                 for (dao.Caisse caisse : caisses) {
                     sb.append(String.format("Caisse ID %d: %.2f € (Dernier mouvement: %s)\n",
                         caisse.getIdCaisse(),
@@ -2300,8 +2429,8 @@ public class ProprietairePanel extends JPanel {
                 sb.append("=== RAPPORT FINANCIER GLOBAL ===\n\n");
 
                 double soldeTotal = calculerSoldeTotal();
-                double totalRecus = gestionRecu.lister().stream().mapToDouble(dao.Recu::getMontant).sum();
-                double totalEmprunts = gestionEmprunt.lister().stream().mapToDouble(dao.Emprunt::getMontant).sum();
+                double totalRecus = gestionStatistiques.totalRecus();
+                double totalEmprunts = gestionStatistiques.totalEmprunts();
 
                 sb.append(String.format("Solde total des caisses: %.2f €\n", soldeTotal));
                 sb.append(String.format("Total des recettes: %.2f €\n", totalRecus));
@@ -2374,45 +2503,13 @@ public class ProprietairePanel extends JPanel {
                 return;
             }
 
-            // Récupérer les IDs des boutiques du propriétaire
-            List<dao.Boutique> boutiquesProprietaire = gestionBoutique.lister().stream()
-                .filter(b -> b.getProprietaire() != null && b.getProprietaire().getId() == proprietaire.getId())
-                .collect(Collectors.toList());
-
-            List<Integer> idsBoutiques = boutiquesProprietaire.stream()
-                .map(dao.Boutique::getIdBoutique)
-                .collect(Collectors.toList());
-
-            // Récupérer toutes les réparations et filtrer par boutiques du propriétaire
-            List<dao.Reparation> reparations = gestionReparation.lister().stream()
-                .filter(r -> idsBoutiques.contains(r.getIdBoutique()))
-                .collect(Collectors.toList());
+            // Réparations des boutiques du propriétaire, avec appareil et boutique, en une requête
+            List<dao.Reparation> reparations = gestionReparation.listerParProprietaireAvecDetails(proprietaire.getId());
 
             for (dao.Reparation reparation : reparations) {
-                // Récupérer le nom de l'appareil
-                String nomAppareil = "Inconnu";
-                try {
-                    dao.Appareil appareil = gestionAppareil.rechercher(reparation.getIdAppareil());
-                    if (appareil != null) {
-                        nomAppareil = appareil.getMarque() + " " + appareil.getModele();
-                    }
-                } catch (Exception e) {
-                    // Garder "Inconnu" en cas d'erreur
-                }
-
-                // Récupérer le nom de la boutique
-                String nomBoutique = "Inconnue";
-                try {
-                    dao.Boutique boutique = boutiquesProprietaire.stream()
-                        .filter(b -> b.getIdBoutique() == reparation.getIdBoutique())
-                        .findFirst()
-                        .orElse(null);
-                    if (boutique != null) {
-                        nomBoutique = boutique.getNom();
-                    }
-                } catch (Exception e) {
-                    // Garder "Inconnue" en cas d'erreur
-                }
+                String nomAppareil = reparation.getAppareil() != null
+                    ? reparation.getAppareil().getMarque() + " " + reparation.getAppareil().getModele() : "Inconnu";
+                String nomBoutique = reparation.getBoutique() != null ? reparation.getBoutique().getNom() : "Inconnue";
 
                 tableModel.addRow(new Object[]{
                     reparation.getIdReparation(),
@@ -2449,13 +2546,13 @@ public class ProprietairePanel extends JPanel {
 
         try {
             int idReparation = (Integer) table.getValueAt(selectedRow, 0);
-            dao.Reparation reparation = gestionReparation.rechercher(idReparation);
+            dao.Reparation reparation = gestionReparation.rechercherAvecDetails(idReparation);
 
             if (reparation != null) {
                 // Récupérer les détails de l'appareil
                 String detailsAppareil = "Informations non disponibles";
                 try {
-                    dao.Appareil appareil = gestionAppareil.rechercher(reparation.getIdAppareil());
+                    dao.Appareil appareil = reparation.getAppareil();
                     if (appareil != null) {
                         detailsAppareil = String.format("%s %s (IMEI: %s)",
                             appareil.getMarque(), appareil.getModele(),
@@ -2468,7 +2565,7 @@ public class ProprietairePanel extends JPanel {
                 // Récupérer les détails de la boutique
                 String detailsBoutique = "Informations non disponibles";
                 try {
-                    dao.Boutique boutique = gestionBoutique.rechercher(reparation.getIdBoutique());
+                    dao.Boutique boutique = reparation.getBoutique();
                     if (boutique != null) {
                         detailsBoutique = String.format("%s - %s, %s",
                             boutique.getNom(), boutique.getAdresse(), boutique.getNumP());
@@ -2477,6 +2574,16 @@ public class ProprietairePanel extends JPanel {
                     // Garder le message par défaut
                 }
 
+                // Pièces posées (une requête sur l'index de la réparation)
+                StringBuilder pieces = new StringBuilder();
+                for (dao.LigneReparation ligne : gestionReparation.listerLignes(idReparation)) {
+                    pieces.append(String.format("- %d x %s à %.2f € = %.2f €\n",
+                        ligne.getQuantite(), ligne.getNomComposant(), ligne.getPrixUnitaire(), ligne.getMontant()));
+                }
+                if (pieces.length() == 0) {
+                    pieces.append("Aucune pièce\n");
+                }
+
                 String details = String.format(
                     "DÉTAILS DE LA RÉPARATION\n\n" +
                     "ID Réparation: %d\n" +
@@ -2484,6 +2591,7 @@ public class ProprietairePanel extends JPanel {
                     "Date de dépôt: %s\n" +
                     "État: %s\n" +
                     "Prix total: %.2f €\n\n" +
+                    "PIÈCES:\n%s\n" +
                     "APPAREIL:\n%s\n\n" +
                     "BOUTIQUE:\n%s\n\n" +
                     "COMMENTAIRE:\n%s",
@@ -2493,6 +2601,7 @@ public class ProprietairePanel extends JPanel {
                         reparation.getDateDepot().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : "N/A",
                     reparation.getEtat(),
                     reparation.getPrixTotal(),
+                    pieces,
                     detailsAppareil,
                     detailsBoutique,
                     reparation.getCommentaire() != null ? reparation.getCommentaire() : "Aucun commentaire"
@@ -2538,6 +2647,8 @@ public class ProprietairePanel extends JPanel {
                 // Marquer la réparation comme terminée
                 reparation.setEtat("Terminée");
                 gestionReparation.modifer(reparation);
+                // Montant encaissé relu en base : des pièces ont pu être posées depuis la lecture
+                reparation = gestionReparation.rechercher(idReparation);
 
                 // Ajouter automatiquement le montant à la caisse
                 try {
@@ -2583,9 +2694,7 @@ public class ProprietairePanel extends JPanel {
             }
 
             // Récupérer les boutiques du propriétaire
-            List<dao.Boutique> boutiquesProprietaire = gestionBoutique.lister().stream()
-                .filter(b -> b.getProprietaire() != null && b.getProprietaire().getId() == proprietaire.getId())
-                .collect(Collectors.toList());
+            List<dao.Boutique> boutiquesProprietaire = getMesBoutiques();
 
             if (boutiquesProprietaire.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Vous n'avez aucune boutique. Créez d'abord une boutique.",
@@ -2613,7 +2722,9 @@ public class ProprietairePanel extends JPanel {
             JComboBox<String> appareilCombo = new JComboBox<>(appareilOptions);
             JComboBox<String> boutiqueCombo = new JComboBox<>(boutiqueOptions);
             JComboBox<String> reparateurCombo = new JComboBox<>(reparateurOptions);
-            JTextField codeField = new JTextField("REP-" + System.currentTimeMillis());
+            // Code généré (unique, avec caractère de contrôle) : à communiquer au client
+            JTextField codeField = new JTextField(metier.GenerateurCodeSuivi.getInstance().generer());
+            codeField.setEditable(false);
             JTextField prixField = new JTextField("0.0");
 
             Object[] message = {
@@ -2706,28 +2817,17 @@ public class ProprietairePanel extends JPanel {
         }
 
         // Trouver la caisse de cette boutique
-        List<dao.Caisse> caisses = gestionCaisse.lister();
-        dao.Caisse caisseBoutique = null;
-        for (dao.Caisse caisse : caisses) {
-            if (caisse.getBoutique() != null && caisse.getBoutique().getIdBoutique() == boutique.getIdBoutique()) {
-                caisseBoutique = caisse;
-                break;
-            }
-        }
+        dao.Caisse caisseBoutique = gestionCaisse.rechercherCaisseParBoutique(boutique.getIdBoutique());
 
         if (caisseBoutique == null) {
             throw new Exception("Aucune caisse trouvée pour la boutique '" + boutique.getNom() + "'");
         }
 
-        // Calculer le nouveau solde
-        double ancienSolde = caisseBoutique.getSoldeActuel();
+        // Encaisser en base : un autre poste peut mouvementer la même caisse au même moment
         double montantAjoute = reparation.getPrixTotal();
-        double nouveauSolde = ancienSolde + montantAjoute;
-
-        // Mettre à jour la caisse
-        caisseBoutique.setSoldeActuel(nouveauSolde);
-        caisseBoutique.setDernierMouvement(java.time.LocalDateTime.now());
-        gestionCaisse.modifer(caisseBoutique);
+        double nouveauSolde = gestionCaisse.encaisser(caisseBoutique.getIdCaisse(), montantAjoute,
+            reparation.getIdReparation());
+        double ancienSolde = nouveauSolde - montantAjoute;
 
         System.out.println("✅ PAIEMENT PROPRIÉTAIRE - Réparation ID " + reparation.getIdReparation() +
                           " | Boutique: " + boutique.getNom() +
@@ -6,7 +6,6 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Panel pour les réparateurs - Gestion des réparations
@@ -23,6 +22,11 @@ public class ReparateurPanel extends JPanel {
     private metier.GestionReparateur gestionReparateur;
     private metier.GestionEmprunt gestionEmprunt;
     private metier.GestionCaisse gestionCaisse;
+    private metier.GestionStatistiques gestionStatistiques;
+
+    private static final metier.ReparationCriteria REPARATIONS_EN_COURS = metier.ReparationCriteria.builder()
+        .etatsExclus(java.util.Arrays.asList("Terminée", "Annulée"))
+        .build();
 
     // Composants UI
     private JTabbedPane tabbedPane;
@@ -40,6 +44,8 @@ public class ReparateurPanel extends JPanel {
         gestionReparateur = new metier.GestionReparateur();
         gestionEmprunt = new metier.GestionEmprunt();
         gestionCaisse = new metier.GestionCaisse();
+        // Pas de cache : le réparateur consulte ses statistiques juste après avoir modifié ses réparations
+        gestionStatistiques = new metier.GestionStatistiques(0);
 
         initializeComponents();
         setupLayout();
@@ -122,6 +128,27 @@ public class ReparateurPanel extends JPanel {
         // Pour l'instant, les données se rafraîchissent automatiquement quand les onglets sont sélectionnés
     }
 
+    /**
+     * Réparateur connecté, résolu une fois à la connexion (cf. MainWindow.getSession())
+     */
+    private dao.Reparateur getReparateurConnecte() {
+        metier.SessionUtilisateur session = mainWindow.getSession();
+        return session != null ? session.getReparateur() : null;
+    }
+
+    /**
+     * Réparateur connecté relu en base avant un mouvement de fonds : une réaffectation faite
+     * depuis un autre poste ne doit pas envoyer l'argent vers la caisse de l'ancienne boutique
+     */
+    private dao.Reparateur getReparateurRelu() throws exception.DatabaseException {
+        metier.SessionUtilisateur session = mainWindow.getSession();
+        if (session == null) {
+            return null;
+        }
+        session.rafraichir();
+        return session.getReparateur();
+    }
+
     private void createReparationsTab() {
         JPanel reparationPanel = new JPanel(new BorderLayout());
         reparationPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -176,29 +203,21 @@ public class ReparateurPanel extends JPanel {
             tableModel.setRowCount(0);
 
             // Récupérer le réparateur connecté
-            dao.Reparateur reparateurConnecte = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateurConnecte = r;
-                    break;
-                }
-            }
+            dao.Reparateur reparateurConnecte = getReparateurConnecte();
 
             if (reparateurConnecte != null) {
-                // Filtrer les réparations par réparateur connecté
-                List<dao.Reparation> reparations = gestionReparation.lister();
+                // Réparations du réparateur connecté, filtrées en base
+                List<dao.Reparation> reparations = gestionReparation.rechercherParCriteres(
+                    metier.ReparationCriteria.builder().idReparateur(reparateurConnecte.getId()).build());
                 for (dao.Reparation r : reparations) {
-                    if (r.getIdReparateur() == reparateurConnecte.getId()) {
-                        tableModel.addRow(new Object[]{
-                            r.getIdReparation(),
-                            r.getIdAppareil(),
-                            r.getCodeSuivi(),
-                            r.getDateDepot() != null ? r.getDateDepot().toString() : "N/A",
-                            r.getEtat(),
-                            r.getPrixTotal()
-                        });
-                    }
+                    tableModel.addRow(new Object[]{
+                        r.getIdReparation(),
+                        r.getIdAppareil(),
+                        r.getCodeSuivi(),
+                        r.getDateDepot() != null ? r.getDateDepot().toString() : "N/A",
+                        r.getEtat(),
+                        r.getPrixTotal()
+                    });
                 }
             }
 
@@ -219,14 +238,7 @@ public class ReparateurPanel extends JPanel {
             }
 
             // Récupérer le réparateur connecté et sa boutique
-            dao.Reparateur reparateurConnecte = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateurConnecte = r;
-                    break;
-                }
-            }
+            dao.Reparateur reparateurConnecte = getReparateurConnecte();
 
             if (reparateurConnecte == null) {
                 JOptionPane.showMessageDialog(this, "Réparateur non trouvé.",
@@ -239,14 +251,6 @@ public class ReparateurPanel extends JPanel {
                 .map(a -> a.getIdAppareil() + " - " + a.getMarque() + " " + a.getModele() + " (IMEI: " + a.getImei() + ")")
                 .toArray(String[]::new);
 
-            // Récupérer les boutiques disponibles pour ce réparateur
-            List<dao.Boutique> boutiques = gestionBoutique.lister();
-            if (boutiques.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "Aucune boutique disponible. Le propriétaire doit d'abord créer des boutiques.",
-                    "Boutiques manquantes", JOptionPane.WARNING_MESSAGE);
-                return;
-            }
-
             // Utiliser automatiquement la boutique assignée au réparateur
             dao.Boutique boutiqueAssignee = reparateurConnecte.getBoutique();
             if (boutiqueAssignee == null) {
@@ -256,7 +260,9 @@ public class ReparateurPanel extends JPanel {
             }
 
             JComboBox<String> appareilCombo = new JComboBox<>(appareilOptions);
-            JTextField codeField = new JTextField("REP-" + System.currentTimeMillis());
+            // Code généré (unique, avec caractère de contrôle) : à communiquer au client
+            JTextField codeField = new JTextField(metier.GenerateurCodeSuivi.getInstance().generer());
+            codeField.setEditable(false);
             JTextField prixField = new JTextField("0.0");
 
             Object[] message = {
@@ -323,14 +329,16 @@ public class ReparateurPanel extends JPanel {
             // Formulaire de mise à jour
             JTextField etatField = new JTextField(reparation.getEtat());
             JTextArea commentaireArea = new JTextArea(reparation.getCommentaire(), 3, 20);
-            JTextField prixField = new JTextField(String.valueOf(reparation.getPrixTotal()));
+            // Le prix total suit les pièces posées : seul un ajustement (main-d'œuvre, remise) est saisi
+            JTextField ajustementField = new JTextField("0.0");
 
             JScrollPane scrollPane = new JScrollPane(commentaireArea);
 
             Object[] message = {
                 "Nouvel état:", etatField,
                 "Commentaire:", scrollPane,
-                "Prix total:", prixField
+                "Prix total actuel: " + String.format("%.2f €", reparation.getPrixTotal()),
+                "Ajustement du prix (+/- €):", ajustementField
             };
 
             int option = JOptionPane.showConfirmDialog(this, message, "Mettre à Jour Réparation",
@@ -339,9 +347,12 @@ public class ReparateurPanel extends JPanel {
             if (option == JOptionPane.OK_OPTION) {
                 reparation.setEtat(etatField.getText());
                 reparation.setCommentaire(commentaireArea.getText());
-                reparation.setPrixTotal(Double.parseDouble(prixField.getText()));
+                double ajustement = Double.parseDouble(ajustementField.getText().trim().replace(',', '.'));
 
                 gestionReparation.modifer(reparation);
+                if (ajustement != 0) {
+                    gestionReparation.ajusterPrixTotal(idReparation, ajustement);
+                }
                 rafraichirMesReparations(tableModel);
 
                 JOptionPane.showMessageDialog(this, "Réparation mise à jour avec succès !");
@@ -375,6 +386,8 @@ public class ReparateurPanel extends JPanel {
                 // Marquer la réparation comme terminée
                 reparation.setEtat("Terminée");
                 gestionReparation.modifer(reparation);
+                // Montant encaissé relu en base : des pièces ont pu être posées depuis la lecture
+                reparation = gestionReparation.rechercher(idReparation);
 
                 // Ajouter automatiquement le montant à la caisse de la boutique
                 try {
@@ -426,28 +439,17 @@ public class ReparateurPanel extends JPanel {
         }
 
         // Trouver la caisse de cette boutique
-        List<dao.Caisse> caisses = gestionCaisse.lister();
-        dao.Caisse caisseBoutique = null;
-        for (dao.Caisse caisse : caisses) {
-            if (caisse.getBoutique() != null && caisse.getBoutique().getIdBoutique() == boutique.getIdBoutique()) {
-                caisseBoutique = caisse;
-                break;
-            }
-        }
+        dao.Caisse caisseBoutique = gestionCaisse.rechercherCaisseParBoutique(boutique.getIdBoutique());
 
         if (caisseBoutique == null) {
             throw new Exception("Aucune caisse trouvée pour la boutique '" + boutique.getNom() + "'");
         }
 
-        // Calculer le nouveau solde
-        double ancienSolde = caisseBoutique.getSoldeActuel();
+        // Encaisser en base : un autre poste peut mouvementer la même caisse au même moment
         double montantAjoute = reparation.getPrixTotal();
-        double nouveauSolde = ancienSolde + montantAjoute;
-
-        // Mettre à jour la caisse
-        caisseBoutique.setSoldeActuel(nouveauSolde);
-        caisseBoutique.setDernierMouvement(java.time.LocalDateTime.now());
-        gestionCaisse.modifer(caisseBoutique);
+        double nouveauSolde = gestionCaisse.encaisser(caisseBoutique.getIdCaisse(), montantAjoute,
+            reparation.getIdReparation());
+        double ancienSolde = nouveauSolde - montantAjoute;
 
         System.out.println("✅ PAIEMENT AUTO - Réparation ID " + reparation.getIdReparation() +
                           " | Boutique: " + boutique.getNom() +
@@ -664,10 +666,7 @@ public class ReparateurPanel extends JPanel {
     private void associerAppareilAReparation() {
         try {
             // Récupérer les réparations en cours
-            List<dao.Reparation> reparations = gestionReparation.lister();
-            reparations = reparations.stream()
-                .filter(r -> !"Terminée".equals(r.getEtat()) && !"Annulée".equals(r.getEtat()))
-                .collect(Collectors.toList());
+            List<dao.Reparation> reparations = gestionReparation.rechercherParCriteres(REPARATIONS_EN_COURS);
 
             if (reparations.isEmpty()) {
                 JOptionPane.showMessageDialog(this,
@@ -732,12 +731,14 @@ public class ReparateurPanel extends JPanel {
         JButton btnVoirComposants = new JButton("🔩 Voir Composants");
         JButton btnCreerComposant = new JButton("➕ Créer Composant");
         JButton btnUtiliserComposant = new JButton("⚙️ Assigner à Réparation");
+        JButton btnAlertesStock = new JButton("⚠️ Alertes stock");
 
         btnVoirComposants.setBackground(new Color(230, 126, 34));
         btnCreerComposant.setBackground(new Color(40, 167, 69));
         btnUtiliserComposant.setBackground(new Color(231, 76, 60));
+        btnAlertesStock.setBackground(new Color(255, 193, 7));
 
-        for (JButton btn : new JButton[]{btnVoirComposants, btnCreerComposant, btnUtiliserComposant}) {
+        for (JButton btn : new JButton[]{btnVoirComposants, btnCreerComposant, btnUtiliserComposant, btnAlertesStock}) {
             btn.setForeground(Color.WHITE);
             btn.setFocusPainted(false);
             btn.setPreferredSize(new Dimension(150, 35));
@@ -759,6 +760,44 @@ public class ReparateurPanel extends JPanel {
         btnVoirComposants.addActionListener(e -> voirComposants(table));
         btnCreerComposant.addActionListener(e -> creerNouveauComposant(table));
         btnUtiliserComposant.addActionListener(e -> assignerComposantAReparation());
+        btnAlertesStock.addActionListener(e -> voirAlertesStock());
+    }
+
+    private void voirAlertesStock() {
+        try {
+            List<metier.AlerteStock> alertes = gestionComposant.listerAlertes();
+
+            if (alertes.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                    "Aucun composant sous son seuil de réapprovisionnement.",
+                    "Alertes stock", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            // Les plus urgents (marge la plus faible) en premier
+            String[] columns = {"ID Composant", "Nom", "Quantité", "Seuil", "Marge"};
+            DefaultTableModel model = new DefaultTableModel(columns, 0);
+            for (metier.AlerteStock alerte : alertes) {
+                model.addRow(new Object[]{
+                    alerte.getIdComposant(),
+                    alerte.getNom(),
+                    alerte.getQuantite(),
+                    alerte.getSeuil(),
+                    alerte.getMarge()
+                });
+            }
+            JScrollPane scrollPane = new JScrollPane(new JTable(model));
+            scrollPane.setPreferredSize(new Dimension(500, 250));
+
+            JOptionPane.showMessageDialog(this,
+                new Object[]{alertes.size() + " composant(s) à réapprovisionner :", scrollPane},
+                "Alertes stock", JOptionPane.WARNING_MESSAGE);
+
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this,
+                "Erreur lors du chargement des alertes de stock: " + ex.getMessage(),
+                "Erreur", JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     private void voirComposants(JTable table) {
@@ -796,11 +835,8 @@ public class ReparateurPanel extends JPanel {
 
     private void assignerComposantAReparation() {
         try {
-            // Récupérer les composants disponibles
-            List<dao.Composant> composants = gestionComposant.lister();
-            composants = composants.stream()
-                .filter(c -> c.getQuantite() > 0)
-                .collect(Collectors.toList());
+            // Récupérer les composants disponibles (filtrés en base)
+            List<dao.Composant> composants = gestionComposant.listerDisponibles();
 
             if (composants.isEmpty()) {
                 JOptionPane.showMessageDialog(this,
@@ -810,10 +846,7 @@ public class ReparateurPanel extends JPanel {
             }
 
             // Récupérer les réparations en cours
-            List<dao.Reparation> reparations = gestionReparation.lister();
-            reparations = reparations.stream()
-                .filter(r -> !"Terminée".equals(r.getEtat()) && !"Annulée".equals(r.getEtat()))
-                .collect(Collectors.toList());
+            List<dao.Reparation> reparations = gestionReparation.rechercherParCriteres(REPARATIONS_EN_COURS);
 
             if (reparations.isEmpty()) {
                 JOptionPane.showMessageDialog(this,
@@ -854,23 +887,16 @@ public class ReparateurPanel extends JPanel {
 
                 int quantiteUtilisee = Integer.parseInt(quantiteField.getText());
 
-                // Vérifier la quantité disponible
-                if (quantiteUtilisee > composant.getQuantite()) {
-                    JOptionPane.showMessageDialog(this,
-                        "Quantité insuffisante en stock. Stock disponible: " + composant.getQuantite(),
-                        "Erreur", JOptionPane.ERROR_MESSAGE);
-                    return;
+                // Ligne de réparation : stock, nomenclature et prix total mis à jour ensemble en base,
+                // refusé si le stock ne suffit plus (autre poste entre-temps)
+                dao.LigneReparation ligne = gestionReparation.ajouterLigne(
+                    reparation.getIdReparation(), composant.getIdComposant(), quantiteUtilisee);
+                double coutComposant = ligne.getMontant();
+                dao.Reparation reparationAJour = gestionReparation.rechercher(reparation.getIdReparation());
+                if (reparationAJour != null) {
+                    reparation = reparationAJour;
                 }
 
-                // Mettre à jour le stock du composant
-                composant.setQuantite(composant.getQuantite() - quantiteUtilisee);
-                gestionComposant.modifer(composant);
-
-                // Ajouter le coût du composant au prix total de la réparation
-                double coutComposant = composant.getPrix() * quantiteUtilisee;
-                reparation.setPrixTotal(reparation.getPrixTotal() + coutComposant);
-                gestionReparation.modifer(reparation);
-
                 JOptionPane.showMessageDialog(this,
                     String.format("Composant utilisé avec succès!\n" +
                         "Quantité utilisée: %d\n" +
@@ -878,12 +904,24 @@ public class ReparateurPanel extends JPanel {
                         "Nouveau prix total de la réparation: %.2f €",
                         quantiteUtilisee, coutComposant, reparation.getPrixTotal()),
                     "Succès", JOptionPane.INFORMATION_MESSAGE);
+
+                // Cette sortie a pu faire passer le composant sous son seuil de réapprovisionnement
+                metier.AlerteStock alerte = gestionComposant.rechercherAlerte(composant.getIdComposant());
+                if (alerte != null && alerte.isEnAlerte()) {
+                    JOptionPane.showMessageDialog(this,
+                        String.format("%s : plus que %d en stock (seuil de réapprovisionnement : %d).",
+                            alerte.getNom(), alerte.getQuantite(), alerte.getSeuil()),
+                        "Alerte stock", JOptionPane.WARNING_MESSAGE);
+                }
             }
 
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this,
                 "Veuillez saisir une quantité valide.",
                 "Erreur de format", JOptionPane.ERROR_MESSAGE);
+        } catch (exception.InvalidParameterException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(),
+                "Utilisation refusée", JOptionPane.WARNING_MESSAGE);
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this,
                 "Erreur lors de l'utilisation du composant: " + ex.getMessage(),
@@ -1026,29 +1064,21 @@ public class ReparateurPanel extends JPanel {
 
     private void loadReparateurReparations(DefaultTableModel model) throws Exception {
         // Récupérer le réparateur connecté
-        dao.Reparateur reparateurConnecte = null;
-        List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-        for (dao.Reparateur r : reparateurs) {
-            if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                reparateurConnecte = r;
-                break;
-            }
-        }
+        dao.Reparateur reparateurConnecte = getReparateurConnecte();
 
         if (reparateurConnecte != null) {
-            List<dao.Reparation> reparations = gestionReparation.lister();
+            List<dao.Reparation> reparations = gestionReparation.rechercherParCriteres(
+                metier.ReparationCriteria.builder().idReparateur(reparateurConnecte.getId()).build());
             for (dao.Reparation r : reparations) {
-                if (r.getIdReparateur() == reparateurConnecte.getId()) {
-                    model.addRow(new Object[]{
-                        r.getIdReparation(),
-                        r.getIdAppareil(),
-                        r.getIdBoutique(),
-                        r.getCodeSuivi(),
-                        r.getDateDepot() != null ? r.getDateDepot().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) : "N/A",
-                        r.getEtat(),
-                        r.getPrixTotal()
-                    });
-                }
+                model.addRow(new Object[]{
+                    r.getIdReparation(),
+                    r.getIdAppareil(),
+                    r.getIdBoutique(),
+                    r.getCodeSuivi(),
+                    r.getDateDepot() != null ? r.getDateDepot().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) : "N/A",
+                    r.getEtat(),
+                    r.getPrixTotal()
+                });
             }
         }
     }
@@ -1150,14 +1180,7 @@ public class ReparateurPanel extends JPanel {
             List<dao.Reparation> reparations = gestionReparation.filtrerParCodeSuivi(codeStr);
 
             // Récupérer le réparateur connecté pour filtrer
-            dao.Reparateur reparateurConnecte = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateurConnecte = r;
-                    break;
-                }
-            }
+            dao.Reparateur reparateurConnecte = getReparateurConnecte();
 
             if (reparateurConnecte != null) {
                 for (dao.Reparation r : reparations) {
@@ -1246,14 +1269,7 @@ public class ReparateurPanel extends JPanel {
     private void modifierProfilReparateur() {
         try {
             // Récupérer le réparateur connecté
-            dao.Reparateur reparateur = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateur = r;
-                    break;
-                }
-            }
+            dao.Reparateur reparateur = getReparateurConnecte();
 
             if (reparateur == null) {
                 JOptionPane.showMessageDialog(this, "Réparateur non trouvé.",
@@ -1328,16 +1344,7 @@ public class ReparateurPanel extends JPanel {
     private void voirStatistiquesReparateur() {
         try {
             // Récupérer le réparateur connecté
-            final dao.Reparateur reparateurConnecte;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            dao.Reparateur tempReparateur = null;
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    tempReparateur = r;
-                    break;
-                }
-            }
-            reparateurConnecte = tempReparateur;
+            final dao.Reparateur reparateurConnecte = getReparateurConnecte();
 
             if (reparateurConnecte == null) {
                 JOptionPane.showMessageDialog(this, "Réparateur non trouvé.",
@@ -1347,23 +1354,20 @@ public class ReparateurPanel extends JPanel {
 
             final int reparateurId = reparateurConnecte.getId();
 
-            // Calculer les statistiques du réparateur
-            List<dao.Reparation> toutesReparations = gestionReparation.lister();
-            List<dao.Reparation> mesReparations = toutesReparations.stream()
-                .filter(r -> r.getIdReparateur() == reparateurId)
-                .collect(java.util.stream.Collectors.toList());
-
-            int nbReparationsTotal = mesReparations.size();
-            int nbReparationsTerminees = (int) mesReparations.stream()
-                .filter(r -> "Terminée".equals(r.getEtat()))
-                .count();
-            int nbReparationsEnCours = (int) mesReparations.stream()
-                .filter(r -> !"Terminée".equals(r.getEtat()) && !"Annulée".equals(r.getEtat()))
-                .count();
-
-            double revenuTotal = mesReparations.stream()
-                .mapToDouble(dao.Reparation::getPrixTotal)
-                .sum();
+            // Statistiques du réparateur regroupées par état en base
+            long nbReparationsTotal = 0;
+            long nbReparationsTerminees = 0;
+            long nbReparationsEnCours = 0;
+            double revenuTotal = 0.0;
+            for (metier.StatistiqueGroupe groupe : gestionStatistiques.reparationsParEtatReparateur(reparateurId)) {
+                nbReparationsTotal += groupe.getNombre();
+                revenuTotal += groupe.getTotal();
+                if ("Terminée".equals(groupe.getCle())) {
+                    nbReparationsTerminees += groupe.getNombre();
+                } else if (!"Annulée".equals(groupe.getCle())) {
+                    nbReparationsEnCours += groupe.getNombre();
+                }
+            }
 
             double gainPersonnel = revenuTotal * (reparateurConnecte.getPourcentageGain() / 100.0);
 
@@ -1396,14 +1400,7 @@ public class ReparateurPanel extends JPanel {
     private void voirMaBoutique() {
         try {
             // Récupérer le réparateur connecté
-            dao.Reparateur reparateur = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateur = r;
-                    break;
-                }
-            }
+            dao.Reparateur reparateur = getReparateurConnecte();
 
             if (reparateur == null) {
                 JOptionPane.showMessageDialog(this, "Réparateur non trouvé.",
@@ -1436,8 +1433,8 @@ public class ReparateurPanel extends JPanel {
                 infoBoutique.append("📧 Email: ").append(proprietaire.getEmail()).append("\n\n");
             }
 
-            // Informations de la caisse
-            dao.Caisse caisse = boutique.getCaisse();
+            // Informations de la caisse (solde relu : la session ne suit pas les mouvements)
+            dao.Caisse caisse = boutique.getCaisse() != null ? gestionCaisse.rechercher(boutique.getCaisse().getIdCaisse()) : null;
             if (caisse != null) {
                 infoBoutique.append("💰 CAISSE\n\n");
                 infoBoutique.append("💵 Solde actuel: ").append(String.format("%.2f €", caisse.getSoldeActuel())).append("\n");
@@ -1519,14 +1516,7 @@ public class ReparateurPanel extends JPanel {
     private void voirSoldeCaisse() {
         try {
             // Récupérer le réparateur connecté et sa boutique
-            dao.Reparateur reparateur = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateur = r;
-                    break;
-                }
-            }
+            dao.Reparateur reparateur = getReparateurConnecte();
 
             if (reparateur == null || reparateur.getBoutique() == null) {
                 JOptionPane.showMessageDialog(this, "Vous n'êtes pas assigné à une boutique.",
@@ -1534,22 +1524,9 @@ public class ReparateurPanel extends JPanel {
                 return;
             }
 
-            // Récupérer la caisse en cherchant dans toutes les caisses de la boutique
+            // Caisse relue en base à chaque appel : le solde est celui du dernier mouvement, quel que soit le poste
             System.out.println("DEBUG: Recherche caisse pour boutique ID: " + reparateur.getBoutique().getIdBoutique());
-            List<dao.Caisse> toutesCaisses = gestionCaisse.lister();
-            System.out.println("DEBUG: Nombre total de caisses: " + toutesCaisses.size());
-
-            dao.Caisse caisse = null;
-            for (dao.Caisse c : toutesCaisses) {
-                System.out.println("DEBUG: Caisse ID: " + c.getIdCaisse() +
-                                 ", Boutique ID: " + (c.getBoutique() != null ? c.getBoutique().getIdBoutique() : "null") +
-                                 ", Solde: " + c.getSoldeActuel());
-                if (c.getBoutique() != null && c.getBoutique().getIdBoutique() == reparateur.getBoutique().getIdBoutique()) {
-                    caisse = c;
-                    System.out.println("DEBUG: Caisse trouvée ! Solde: " + caisse.getSoldeActuel());
-                    break;
-                }
-            }
+            dao.Caisse caisse = gestionCaisse.rechercherCaisseParBoutique(reparateur.getBoutique().getIdBoutique());
 
             if (caisse == null) {
                 System.out.println("DEBUG: Aucune caisse trouvée pour la boutique !");
@@ -1558,25 +1535,6 @@ public class ReparateurPanel extends JPanel {
                 return;
             }
 
-            // Forcer le rafraîchissement des données depuis la base
-            try {
-                gestionCaisse.rechercher(caisse.getIdCaisse());
-                List<dao.Caisse> caissesFraiches = gestionCaisse.lister();
-                dao.Caisse caisseFraiche = null;
-                for (dao.Caisse c : caissesFraiches) {
-                    if (c.getIdCaisse() == caisse.getIdCaisse()) {
-                        caisseFraiche = c;
-                        break;
-                    }
-                }
-                if (caisseFraiche != null) {
-                    caisse = caisseFraiche;
-                    System.out.println("DEBUG: Caisse rafraîchie - Solde actuel: " + caisse.getSoldeActuel() + "€");
-                }
-            } catch (Exception refreshError) {
-                System.out.println("DEBUG: Impossible de rafraîchir la caisse: " + refreshError.getMessage());
-            }
-
             String message = String.format(
                 "État de la caisse de %s:\n\n" +
                 "Solde actuel: %.2f €\n" +
@@ -1598,15 +1556,8 @@ public class ReparateurPanel extends JPanel {
 
     private void ajouterFondsCaisse(DefaultTableModel tableModel) {
         try {
-            // Récupérer le réparateur connecté et sa boutique
-            dao.Reparateur reparateur = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateur = r;
-                    break;
-                }
-            }
+            // Récupérer le réparateur connecté et sa boutique actuelle
+            dao.Reparateur reparateur = getReparateurRelu();
 
             if (reparateur == null || reparateur.getBoutique() == null) {
                 JOptionPane.showMessageDialog(this, "Vous n'êtes pas assigné à une boutique.",
@@ -1614,7 +1565,8 @@ public class ReparateurPanel extends JPanel {
                 return;
             }
 
-            dao.Caisse caisse = reparateur.getBoutique().getCaisse();
+            // Caisse relue (solde affiché à jour) : la session ne suit pas les mouvements de caisse
+            dao.Caisse caisse = gestionCaisse.rechercherCaisseParBoutique(reparateur.getBoutique().getIdBoutique());
             if (caisse == null) {
                 JOptionPane.showMessageDialog(this, "Aucune caisse trouvée pour votre boutique.",
                     "Caisse introuvable", JOptionPane.WARNING_MESSAGE);
@@ -1666,15 +1618,8 @@ public class ReparateurPanel extends JPanel {
 
     private void retirerFondsCaisse(DefaultTableModel tableModel) {
         try {
-            // Récupérer le réparateur connecté et sa boutique
-            dao.Reparateur reparateur = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateur = r;
-                    break;
-                }
-            }
+            // Récupérer le réparateur connecté et sa boutique actuelle
+            dao.Reparateur reparateur = getReparateurRelu();
 
             if (reparateur == null || reparateur.getBoutique() == null) {
                 JOptionPane.showMessageDialog(this, "Vous n'êtes pas assigné à une boutique.",
@@ -1682,7 +1627,8 @@ public class ReparateurPanel extends JPanel {
                 return;
             }
 
-            dao.Caisse caisse = reparateur.getBoutique().getCaisse();
+            // Caisse relue (solde affiché à jour) : la session ne suit pas les mouvements de caisse
+            dao.Caisse caisse = gestionCaisse.rechercherCaisseParBoutique(reparateur.getBoutique().getIdBoutique());
             if (caisse == null) {
                 JOptionPane.showMessageDialog(this, "Aucune caisse trouvée pour votre boutique.",
                     "Caisse introuvable", JOptionPane.WARNING_MESSAGE);
@@ -1738,14 +1684,7 @@ public class ReparateurPanel extends JPanel {
             tableModel.setRowCount(0);
 
             // Récupérer le réparateur connecté et sa boutique
-            dao.Reparateur reparateur = null;
-            List<dao.Reparateur> reparateurs = gestionReparateur.lister();
-            for (dao.Reparateur r : reparateurs) {
-                if (r.getEmail().equals(mainWindow.getCurrentUserEmail())) {
-                    reparateur = r;
-                    break;
-                }
-            }
+            dao.Reparateur reparateur = getReparateurConnecte();
 
             if (reparateur == null || reparateur.getBoutique() == null) {
                 return;
@@ -1755,6 +1694,11 @@ public class ReparateurPanel extends JPanel {
             if (caisse == null) {
                 return;
             }
+            // Solde relu : la session ne suit pas les mouvements de caisse
+            caisse = gestionCaisse.rechercher(caisse.getIdCaisse());
+            if (caisse == null) {
+                return;
+            }
 
             // Récupérer l'historique des emprunts pour cette caisse
             List<dao.Emprunt> emprunts = gestionEmprunt.listerEmpruntsParCaisse(caisse.getIdCaisse());
@@ -5,6 +5,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import exception.DatabaseException;
+import exception.InvalidParameterException;
 
 /**
  * Panel de suivi de réparation pour les clients (sans authentification)
@@ -139,23 +140,28 @@ public class SuiviReparationPanel extends JPanel {
         }
 
         try {
-            // Rechercher la réparation par code de suivi
-            java.util.List<dao.Reparation> reparations = gestionReparation.filtrerParCodeSuivi(codeSuivi);
+            // Recherche exacte par code de suivi (index unique + cache des codes récents),
+            // tolérante aux confusions de saisie d'un code généré
+            dao.Reparation reparation = gestionReparation.rechercherParCodeSuivi(codeSuivi);
 
-            if (reparations.isEmpty()) {
+            if (reparation == null) {
                 resultArea.setText(
                     "❌ Aucune réparation trouvée pour le code: " + codeSuivi + "\n\n" +
                     "Vérifiez que le code saisi est correct.\n" +
-                    "Le code de suivi est sensible à la casse.\n\n" +
                     "Si le problème persiste, contactez le service client."
                 );
                 return;
             }
 
             // Afficher les informations de la réparation
-            dao.Reparation reparation = reparations.get(0);
             afficherDetailsReparation(reparation);
 
+        } catch (InvalidParameterException ex) {
+            resultArea.setText(
+                "❌ Code de suivi invalide: " + codeSuivi + "\n\n" +
+                "Un caractère a probablement été mal recopié.\n" +
+                "Vérifiez le code indiqué sur votre bon de dépôt."
+            );
         } catch (DatabaseException ex) {
             resultArea.setText(
                 "❌ Erreur lors de la recherche:\n" +
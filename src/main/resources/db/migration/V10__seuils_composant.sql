@@ -0,0 +1,4 @@
+-- Seuils de réapprovisionnement : un composant dont la quantité disponible descend
+-- au niveau de son seuil est signalé en alerte. 0 : composant non suivi.
+
+ALTER TABLE Composant ADD COLUMN seuilReapprovisionnement INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,4 @@
+-- Clé naturelle des composants pour l'import des tarifs fournisseurs : les noms d'un lot
+-- de lignes sont retrouvés par une seule requête IN sur cet index.
+
+CREATE INDEX idx_composant_nom ON Composant (nom);
@@ -0,0 +1,18 @@
+-- Historique des prix des composants (ajout seul) : prix en centimes valable à partir de
+-- dateEffet. L'index (idComposant, dateEffet) sert la relecture de l'historique d'un
+-- ensemble de composants, dans l'ordre chronologique.
+-- Les prix en place sont repris avec une date d'effet au 1er janvier 1970 : leur date
+-- réelle n'est pas connue, ils valent pour tout le passé jusqu'au prochain changement.
+
+CREATE TABLE PrixComposant (
+    idPrix INTEGER NOT NULL,
+    idComposant INTEGER NOT NULL,
+    dateEffet DATETIME(6) NOT NULL,
+    centimes BIGINT NOT NULL,
+    PRIMARY KEY (idPrix)
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_prix_composant ON PrixComposant (idComposant, dateEffet, idPrix);
+
+INSERT INTO PrixComposant (idPrix, idComposant, dateEffet, centimes)
+SELECT idComposant, idComposant, '1970-01-01 00:00:00', ROUND(prix * 100) FROM Composant;
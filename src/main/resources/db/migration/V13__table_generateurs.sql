@@ -0,0 +1,9 @@
+-- Générateurs d'identifiants (@TableGenerator), relevés au démarrage par PersistenceManager.
+-- Script à part, et non dans V1 : une base créée avant les migrations n'exécute pas V1
+-- (il y est seulement enregistré) et n'a pas encore cette table.
+
+CREATE TABLE IF NOT EXISTS id_generateurs (
+    sequence_name VARCHAR(255) NOT NULL,
+    next_val BIGINT,
+    PRIMARY KEY (sequence_name)
+) ENGINE=InnoDB;
@@ -0,0 +1,109 @@
+-- Schéma de référence, identique à celui que générait hibernate.hbm2ddl.auto=update.
+-- Sur une base existante (tables déjà créées par Hibernate), cette version est
+-- seulement enregistrée dans l'historique sans être exécutée.
+
+CREATE TABLE Personne (
+    role VARCHAR(31) NOT NULL,
+    id INTEGER NOT NULL,
+    nom VARCHAR(255),
+    prenom VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE Proprietaire (
+    email VARCHAR(255),
+    mdp VARCHAR(255),
+    id INTEGER NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE Client (
+    adresse VARCHAR(255),
+    telephone INTEGER NOT NULL,
+    id INTEGER NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE Boutique (
+    idBoutique INTEGER NOT NULL,
+    adresse VARCHAR(255),
+    nom VARCHAR(255),
+    numP INTEGER NOT NULL,
+    numTel INTEGER NOT NULL,
+    idProprietaire INTEGER,
+    PRIMARY KEY (idBoutique)
+) ENGINE=InnoDB;
+
+CREATE TABLE Reparateur (
+    email VARCHAR(255),
+    mdp VARCHAR(255),
+    pourcentageGain DOUBLE PRECISION NOT NULL,
+    id INTEGER NOT NULL,
+    idBoutique INTEGER,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE Caisse (
+    idCaisse INTEGER NOT NULL,
+    dernierMouvement DATETIME(6),
+    soldeActuel DOUBLE PRECISION NOT NULL,
+    idBoutique INTEGER,
+    PRIMARY KEY (idCaisse)
+) ENGINE=InnoDB;
+
+CREATE TABLE Appareil (
+    idAppareil INTEGER NOT NULL,
+    imei VARCHAR(255),
+    marque VARCHAR(255),
+    modele VARCHAR(255),
+    typeAppareil VARCHAR(255),
+    PRIMARY KEY (idAppareil)
+) ENGINE=InnoDB;
+
+CREATE TABLE Composant (
+    idComposant INTEGER NOT NULL,
+    nom VARCHAR(255),
+    prix DOUBLE PRECISION NOT NULL,
+    quantite INTEGER NOT NULL,
+    PRIMARY KEY (idComposant)
+) ENGINE=InnoDB;
+
+CREATE TABLE Emprunt (
+    idEmprunt INTEGER NOT NULL,
+    commentaire VARCHAR(255),
+    date DATETIME(6),
+    montant DOUBLE PRECISION NOT NULL,
+    type VARCHAR(255),
+    idCaisse INTEGER,
+    idReparateur INTEGER,
+    PRIMARY KEY (idEmprunt)
+) ENGINE=InnoDB;
+
+CREATE TABLE Recu (
+    idRecu INTEGER NOT NULL,
+    date DATETIME(6),
+    montant DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (idRecu)
+) ENGINE=InnoDB;
+
+CREATE TABLE Reparation (
+    idReparation INTEGER NOT NULL,
+    codeSuivi VARCHAR(255),
+    commentaire VARCHAR(255),
+    dateDepot DATETIME(6),
+    etat VARCHAR(255),
+    idAppareil INTEGER NOT NULL,
+    idBoutique INTEGER NOT NULL,
+    idReparateur INTEGER NOT NULL,
+    prixTotal DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (idReparation)
+) ENGINE=InnoDB;
+
+ALTER TABLE Proprietaire ADD CONSTRAINT FK_proprietaire_personne FOREIGN KEY (id) REFERENCES Personne (id);
+ALTER TABLE Client ADD CONSTRAINT FK_client_personne FOREIGN KEY (id) REFERENCES Personne (id);
+ALTER TABLE Reparateur ADD CONSTRAINT FK_reparateur_personne FOREIGN KEY (id) REFERENCES Personne (id);
+ALTER TABLE Boutique ADD CONSTRAINT FK_boutique_proprietaire FOREIGN KEY (idProprietaire) REFERENCES Proprietaire (id);
+ALTER TABLE Reparateur ADD CONSTRAINT FK_reparateur_boutique FOREIGN KEY (idBoutique) REFERENCES Boutique (idBoutique);
+ALTER TABLE Caisse ADD CONSTRAINT FK_caisse_boutique FOREIGN KEY (idBoutique) REFERENCES Boutique (idBoutique);
+ALTER TABLE Emprunt ADD CONSTRAINT FK_emprunt_caisse FOREIGN KEY (idCaisse) REFERENCES Caisse (idCaisse);
+ALTER TABLE Emprunt ADD CONSTRAINT FK_emprunt_reparateur FOREIGN KEY (idReparateur) REFERENCES Reparateur (id);
@@ -0,0 +1,19 @@
+-- Index des prédicats utilisés par la couche métier (recherches, filtres, curseurs).
+-- Emprunt.idCaisse est couvert par idx_emprunt_caisse_date (caisse puis date).
+
+CREATE INDEX idx_reparation_code_suivi ON Reparation (codeSuivi);
+CREATE INDEX idx_reparation_boutique ON Reparation (idBoutique, dateDepot);
+CREATE INDEX idx_reparation_reparateur ON Reparation (idReparateur, etat);
+CREATE INDEX idx_reparation_etat ON Reparation (etat);
+CREATE INDEX idx_reparation_appareil ON Reparation (idAppareil);
+CREATE INDEX idx_reparation_date_depot ON Reparation (dateDepot);
+
+CREATE INDEX idx_emprunt_date ON Emprunt (date);
+CREATE INDEX idx_emprunt_caisse_date ON Emprunt (idCaisse, date);
+
+CREATE INDEX idx_recu_date ON Recu (date);
+
+CREATE INDEX idx_appareil_imei ON Appareil (imei);
+
+CREATE INDEX idx_reparateur_email ON Reparateur (email);
+CREATE INDEX idx_proprietaire_email ON Proprietaire (email);
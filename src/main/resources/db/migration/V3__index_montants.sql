@@ -0,0 +1,6 @@
+-- Index des filtres par intervalle de montant et de date (filtrerPar*Entre, filtrerParPeriode*).
+
+CREATE INDEX idx_recu_montant ON Recu (montant);
+CREATE INDEX idx_emprunt_montant ON Emprunt (montant);
+CREATE INDEX idx_reparation_prix_total ON Reparation (prixTotal);
+CREATE INDEX idx_caisse_dernier_mouvement ON Caisse (dernierMouvement);
@@ -0,0 +1,17 @@
+-- Un code de suivi identifie une seule réparation (recherche exacte de SuiviReparationPanel).
+-- Les codes vides deviennent NULL ; en cas de doublon, la plus ancienne réparation garde
+-- le code et les suivantes reçoivent le suffixe "-<idReparation>".
+
+UPDATE Reparation SET codeSuivi = NULL WHERE TRIM(codeSuivi) = '';
+
+UPDATE Reparation r
+    JOIN (SELECT codeSuivi, MIN(idReparation) AS premier
+          FROM Reparation
+          WHERE codeSuivi IS NOT NULL
+          GROUP BY codeSuivi
+          HAVING COUNT(*) > 1) doublons ON r.codeSuivi = doublons.codeSuivi
+SET r.codeSuivi = CONCAT(r.codeSuivi, '-', r.idReparation)
+WHERE r.idReparation <> doublons.premier;
+
+DROP INDEX idx_reparation_code_suivi ON Reparation;
+CREATE UNIQUE INDEX uk_reparation_code_suivi ON Reparation (codeSuivi);
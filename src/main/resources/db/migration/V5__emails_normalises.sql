@@ -0,0 +1,6 @@
+-- Les emails sont comparés tels qu'enregistrés (égalité sur idx_reparateur_email et
+-- idx_proprietaire_email) : ils sont désormais stockés sans espaces et en minuscules.
+-- Les mots de passe restent en clair ici ; ils sont hachés à la première connexion.
+
+UPDATE Reparateur SET email = LOWER(TRIM(email)) WHERE email IS NOT NULL;
+UPDATE Proprietaire SET email = LOWER(TRIM(email)) WHERE email IS NOT NULL;
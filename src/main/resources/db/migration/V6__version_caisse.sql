@@ -0,0 +1,4 @@
+-- Verrouillage optimiste des caisses : chaque mouvement de solde incrémente la version,
+-- une modification faite à partir d'une caisse lue avant ce mouvement est refusée.
+
+ALTER TABLE Caisse ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,36 @@
+-- Journal des mouvements de caisse (écritures immuables, numérotées par caisse) et
+-- arrêtés périodiques du solde. Le solde à une date se calcule à partir du dernier
+-- arrêté antérieur et des quelques écritures qui le suivent.
+
+ALTER TABLE Caisse ADD COLUMN nombreEcritures BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE EcritureCaisse (
+    idEcriture BIGINT NOT NULL,
+    idCaisse INTEGER NOT NULL,
+    numero BIGINT NOT NULL,
+    date DATETIME(6),
+    montant DOUBLE PRECISION NOT NULL,
+    soldeApres DOUBLE PRECISION NOT NULL,
+    origine VARCHAR(20),
+    idOrigine INTEGER NOT NULL,
+    PRIMARY KEY (idEcriture)
+) ENGINE=InnoDB;
+
+CREATE UNIQUE INDEX uk_ecriture_caisse_numero ON EcritureCaisse (idCaisse, numero);
+CREATE INDEX idx_ecriture_caisse_date ON EcritureCaisse (idCaisse, date);
+
+CREATE TABLE ArreteCaisse (
+    idArrete BIGINT NOT NULL,
+    idCaisse INTEGER NOT NULL,
+    numero BIGINT NOT NULL,
+    date DATETIME(6),
+    solde DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (idArrete)
+) ENGINE=InnoDB;
+
+CREATE UNIQUE INDEX uk_arrete_caisse_numero ON ArreteCaisse (idCaisse, numero);
+CREATE INDEX idx_arrete_caisse_date ON ArreteCaisse (idCaisse, date);
+
+-- Ouverture du journal des caisses existantes : leur solde actuel, sans historique antérieur
+INSERT INTO ArreteCaisse (idArrete, idCaisse, numero, date, solde)
+    SELECT idCaisse, idCaisse, 0, NOW(6), soldeActuel FROM Caisse;
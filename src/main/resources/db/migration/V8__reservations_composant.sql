@@ -0,0 +1,5 @@
+-- Réservations de stock : les pièces mises de côté pour une réparation quittent la
+-- quantité disponible (quantite) et restent comptées dans quantiteReservee jusqu'à
+-- leur consommation ou leur libération.
+
+ALTER TABLE Composant ADD COLUMN quantiteReservee INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,15 @@
+-- Pièces posées sur chaque réparation (nomenclature), au prix relevé lors de l'ajout.
+-- L'index sur (idReparation, idLigne) sert la liste des pièces d'une réparation, dans l'ordre d'ajout.
+
+CREATE TABLE LigneReparation (
+    idLigne INTEGER NOT NULL,
+    idReparation INTEGER NOT NULL,
+    idComposant INTEGER NOT NULL,
+    nomComposant VARCHAR(255),
+    quantite INTEGER NOT NULL,
+    prixUnitaire DOUBLE PRECISION NOT NULL,
+    dateAjout DATETIME(6),
+    PRIMARY KEY (idLigne)
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_ligne_reparation ON LigneReparation (idReparation, idLigne);
@@ -0,0 +1,96 @@
+package metier;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import dao.Client;
+import dao.Composant;
+
+/**
+ * Lignes insérées par seconde : ajouter() ligne à ligne (une transaction par ligne)
+ * contre ajouterEnLot() (une transaction, INSERT groupés par hibernate.jdbc.batch_size).
+ * Taille : -Dbench.lot.lignes (5000 par défaut).
+ */
+public class AjouterEnLotBenchmark {
+
+    private final String prefixe = Banc.prefixe("lot");
+    private final int lignes = Banc.parametre("lot.lignes", 5000);
+
+    @After
+    public void nettoyer() {
+        Banc.executerSql(new Object[] { prefixe + "%" },
+            "DELETE FROM PrixComposant WHERE idComposant IN (SELECT idComposant FROM Composant WHERE nom LIKE ?1)",
+            "DELETE FROM Composant WHERE nom LIKE ?1",
+            "DELETE FROM Client WHERE id IN (SELECT id FROM Personne WHERE nom LIKE ?1)",
+            "DELETE FROM Personne WHERE nom LIKE ?1");
+    }
+
+    @Test
+    public void composants() throws Exception {
+        GestionComposant gestion = new GestionComposant();
+
+        List<Composant> unitaires = composants("unitaire");
+        long debut = System.nanoTime();
+        for (Composant composant : unitaires) {
+            gestion.ajouter(composant);
+        }
+        double avant = debit(debut);
+
+        List<Composant> lot = composants("lot");
+        debut = System.nanoTime();
+        gestion.ajouterEnLot(lot);
+        double apres = debit(debut);
+
+        Banc.afficher("Composant : ajouter %.0f lignes/s, ajouterEnLot %.0f lignes/s (x%.1f)", avant, apres, apres / avant);
+        assertEquals(lignes, Banc.compter("SELECT COUNT(*) FROM Composant WHERE nom LIKE ?1", prefixe + "unitaire-%"));
+        assertEquals(lignes, Banc.compter("SELECT COUNT(*) FROM Composant WHERE nom LIKE ?1", prefixe + "lot-%"));
+        assertEquals(2L * lignes, Banc.compter("SELECT COUNT(*) FROM PrixComposant p JOIN Composant c "
+            + "ON c.idComposant = p.idComposant WHERE c.nom LIKE ?1", prefixe + "%"));
+    }
+
+    @Test
+    public void clients() throws Exception {
+        GestionClient gestion = new GestionClient();
+
+        List<Client> unitaires = clients("unitaire");
+        long debut = System.nanoTime();
+        for (Client client : unitaires) {
+            gestion.ajouter(client);
+        }
+        double avant = debit(debut);
+
+        List<Client> lot = clients("lot");
+        debut = System.nanoTime();
+        gestion.ajouterEnLot(lot);
+        double apres = debit(debut);
+
+        Banc.afficher("Client : ajouter %.0f lignes/s, ajouterEnLot %.0f lignes/s (x%.1f)", avant, apres, apres / avant);
+        assertEquals(2L * lignes, Banc.compter("SELECT COUNT(*) FROM Client c JOIN Personne p ON p.id = c.id "
+            + "WHERE p.nom LIKE ?1", prefixe + "%"));
+    }
+
+    private List<Composant> composants(String mode) {
+        List<Composant> composants = new ArrayList<>(lignes);
+        for (int i = 0; i < lignes; i++) {
+            composants.add(Composant.builder().nom(prefixe + mode + "-" + i).prix(1 + i % 100).quantite(i % 20).build());
+        }
+        return composants;
+    }
+
+    private List<Client> clients(String mode) {
+        List<Client> clients = new ArrayList<>(lignes);
+        for (int i = 0; i < lignes; i++) {
+            clients.add(Client.builder().nom(prefixe + mode + "-" + i).prenom("Banc").adresse("Rue " + i).telephone(600000000 + i).build());
+        }
+        return clients;
+    }
+
+    private double debit(long debut) {
+        return lignes / ((System.nanoTime() - debut) / 1e9);
+    }
+}
@@ -0,0 +1,94 @@
+package metier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dao.Proprietaire;
+import dao.Reparateur;
+
+/**
+ * Connexions par seconde de plusieurs postes simultanés sur des comptes réparateur et
+ * propriétaire (empreintes PBKDF2 au coût fastrepair.auth.iterations), puis refus
+ * d'emails inconnus : servis par le cache négatif sans requête, mais au même coût PBKDF2
+ * qu'un compte existant. Chaque connexion doit aboutir au bon rôle.
+ * Paramètres : -Dbench.auth.comptes (20), -Dbench.auth.postes (8),
+ * -Dbench.auth.connexions (25 par poste).
+ */
+public class AuthentificationBenchmark {
+
+    private static final String MOT_DE_PASSE = "banc-mdp";
+
+    private final String prefixe = Banc.prefixe("auth");
+    private final int comptes = Banc.parametre("auth.comptes", 20);
+    private final int postes = Banc.parametre("auth.postes", 8);
+    private final int connexions = Banc.parametre("auth.connexions", 25);
+
+    private final List<String> emails = new ArrayList<>();
+    private final List<String> roles = new ArrayList<>();
+
+    @Before
+    public void creerComptes() throws Exception {
+        List<Reparateur> reparateurs = new ArrayList<>();
+        List<Proprietaire> proprietaires = new ArrayList<>();
+        for (int i = 0; i < comptes; i++) {
+            String email = prefixe + i + "@banc.fr";
+            if (i % 2 == 0) {
+                reparateurs.add(Reparateur.builder().nom(prefixe + i).prenom("Banc").email(email).mdp(MOT_DE_PASSE).build());
+                roles.add(SessionUtilisateur.REPARATEUR);
+            } else {
+                proprietaires.add(Proprietaire.builder().nom(prefixe + i).prenom("Banc").email(email).mdp(MOT_DE_PASSE).build());
+                roles.add(SessionUtilisateur.PROPRIETAIRE);
+            }
+            emails.add(email);
+        }
+        new GestionReparateur().ajouterEnLot(reparateurs);
+        new GestionProprietaire().ajouterEnLot(proprietaires);
+    }
+
+    @After
+    public void nettoyer() {
+        Banc.executerSql(new Object[] { prefixe + "%" },
+            "DELETE FROM Reparateur WHERE email LIKE ?1",
+            "DELETE FROM Proprietaire WHERE email LIKE ?1",
+            "DELETE FROM Personne WHERE nom LIKE ?1");
+    }
+
+    @Test
+    public void connexionsConcurrentes() throws Exception {
+        GestionAuthentification authentification = new GestionAuthentification();
+        Banc.Resultat resultat = Banc.concurrence(postes, connexions, (poste, i) -> {
+            int compte = (poste * connexions + i) % comptes;
+            // Casse et espaces de saisie : l'email est normalisé avant la recherche indexée
+            Authentification connexion = authentification.authentifier(" " + emails.get(compte).toUpperCase() + " ", MOT_DE_PASSE);
+            if (connexion == null || !roles.get(compte).equals(connexion.getRole())) {
+                throw new IllegalStateException("Connexion refusée ou mauvais rôle pour " + emails.get(compte) + " : " + connexion);
+            }
+        });
+        Banc.afficher("Connexions valides, %d postes : %s", postes, resultat);
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+        assertEquals(postes * connexions, resultat.reussites);
+
+        assertNull(authentification.authentifier(emails.get(0), "mauvais"));
+        assertNull(authentification.authentifier(emails.get(0), MOT_DE_PASSE, SessionUtilisateur.PROPRIETAIRE));
+    }
+
+    @Test
+    public void emailsInconnus() throws Exception {
+        GestionAuthentification authentification = new GestionAuthentification();
+        Banc.Resultat resultat = Banc.concurrence(postes, connexions, (poste, i) -> {
+            // Peu d'emails distincts : après le premier refus, la base n'est plus interrogée
+            if (authentification.authentifier(prefixe + "inconnu" + (i % 5) + "@banc.fr", MOT_DE_PASSE) != null) {
+                throw new IllegalStateException("Email inconnu accepté");
+            }
+        });
+        Banc.afficher("Emails inconnus, %d postes : %s", postes, resultat);
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+    }
+}
@@ -0,0 +1,158 @@
+package metier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import exception.InvalidParameterException;
+
+/**
+ * Outils communs aux bancs de mesure (*Benchmark, profil Maven bench) : paramètres
+ * -Dbench.*, préfixe unique des données créées, nettoyage en SQL et exécution d'une
+ * même opération par plusieurs postes simultanés.
+ */
+final class Banc {
+
+    /** Opération numéro i du poste donné. */
+    interface Operation {
+        void executer(int poste, int i) throws Exception;
+    }
+
+    /** Bilan d'une exécution concurrente. */
+    static final class Resultat {
+        final int reussites;
+        final int refus;
+        final int echecs;
+        final Throwable premierEchec;
+        final long dureeNs;
+
+        Resultat(int reussites, int refus, int echecs, Throwable premierEchec, long dureeNs) {
+            this.reussites = reussites;
+            this.refus = refus;
+            this.echecs = echecs;
+            this.premierEchec = premierEchec;
+            this.dureeNs = dureeNs;
+        }
+
+        double parSeconde() {
+            return (reussites + refus) / (dureeNs / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d réussite(s), %d refus, %d échec(s) en %d ms (%.0f op/s)",
+                reussites, refus, echecs, dureeNs / 1_000_000, parSeconde());
+        }
+    }
+
+    private Banc() {
+    }
+
+    static int parametre(String nom, int defaut) {
+        return Integer.getInteger("bench." + nom, defaut);
+    }
+
+    // Préfixe des noms et emails créés par un banc, pour les retrouver et les supprimer
+    static String prefixe(String banc) {
+        return "bench-" + banc + "-" + System.currentTimeMillis() + "-";
+    }
+
+    static void afficher(String format, Object... arguments) {
+        System.out.printf("[bench] " + format + "%n", arguments);
+    }
+
+    /**
+     * Lance postes fils qui exécutent chacun operationsParPoste fois l'opération, tous
+     * partis en même temps. Un refus métier (InvalidParameterException) est compté à
+     * part : c'est la réponse attendue quand le stock ou le solde est épuisé.
+     */
+    static Resultat concurrence(int postes, int operationsParPoste, Operation operation) throws Exception {
+        ExecutorService executeur = Executors.newFixedThreadPool(postes);
+        CountDownLatch depart = new CountDownLatch(1);
+        AtomicInteger reussites = new AtomicInteger();
+        AtomicInteger refus = new AtomicInteger();
+        AtomicInteger echecs = new AtomicInteger();
+        AtomicReference<Throwable> premierEchec = new AtomicReference<>();
+        List<Future<?>> postesLances = new ArrayList<>();
+        try {
+            for (int p = 0; p < postes; p++) {
+                int poste = p;
+                postesLances.add(executeur.submit(() -> {
+                    depart.await();
+                    for (int i = 0; i < operationsParPoste; i++) {
+                        try {
+                            operation.executer(poste, i);
+                            reussites.incrementAndGet();
+                        } catch (InvalidParameterException e) {
+                            refus.incrementAndGet();
+                        } catch (Exception e) {
+                            echecs.incrementAndGet();
+                            premierEchec.compareAndSet(null, e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long debut = System.nanoTime();
+            depart.countDown();
+            for (Future<?> poste : postesLances) {
+                poste.get();
+            }
+            return new Resultat(reussites.get(), refus.get(), echecs.get(), premierEchec.get(), System.nanoTime() - debut);
+        } finally {
+            executeur.shutdownNow();
+        }
+    }
+
+    /** Résultat numérique d'une requête SQL (COUNT, SUM...) à paramètres ?1, ?2... */
+    static long compter(String requete, Object... parametres) {
+        EntityManager em = PersistenceManager.creerEntityManager();
+        try {
+            javax.persistence.Query q = em.createNativeQuery(requete);
+            for (int i = 0; i < parametres.length; i++) {
+                q.setParameter(i + 1, parametres[i]);
+            }
+            Object valeur = q.getSingleResult();
+            return valeur != null ? ((Number) valeur).longValue() : 0;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Exécute des instructions SQL (paramètres ?1, ?2...) dans une même transaction,
+     * pour supprimer les données d'un banc sans passer par les contrôles des services.
+     */
+    static void executerSql(Object[] parametres, String... instructions) {
+        EntityManager em = PersistenceManager.creerEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            for (String instruction : instructions) {
+                javax.persistence.Query requete = em.createNativeQuery(instruction);
+                for (int i = 0; i < parametres.length; i++) {
+                    if (instruction.contains("?" + (i + 1))) {
+                        requete.setParameter(i + 1, parametres[i]);
+                    }
+                }
+                requete.executeUpdate();
+            }
+            tx.commit();
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            em.close();
+        }
+        // Les suppressions natives ne passent pas par le cache de second niveau
+        PersistenceManager.getEntityManagerFactory().getCache().evictAll();
+    }
+}
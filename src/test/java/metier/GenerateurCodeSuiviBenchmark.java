@@ -0,0 +1,76 @@
+package metier;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Codes de suivi par seconde, sans base de données : plusieurs postes (générateurs de
+ * même clé partageant la même source de blocs, comme id_generateurs) génèrent en même
+ * temps depuis plusieurs fils. Chaque code doit passer estValide et tous doivent être
+ * distincts. Paramètres : -Dbench.codes.postes (8 fils), -Dbench.codes.generateurs (4),
+ * -Dbench.codes.nombre (500 000 par fil), -Dbench.codes.bloc (1000).
+ */
+public class GenerateurCodeSuiviBenchmark {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    private final int postes = Banc.parametre("codes.postes", 8);
+    private final int nombreGenerateurs = Banc.parametre("codes.generateurs", 4);
+    private final int parPoste = Banc.parametre("codes.nombre", 500_000);
+    private final int bloc = Banc.parametre("codes.bloc", 1000);
+
+    @Test
+    public void codesDistinctsEtValides() throws Exception {
+        AtomicLong suivant = new AtomicLong();
+        AtomicInteger blocs = new AtomicInteger();
+        GenerateurCodeSuivi[] generateurs = new GenerateurCodeSuivi[nombreGenerateurs];
+        for (int g = 0; g < nombreGenerateurs; g++) {
+            generateurs[g] = new GenerateurCodeSuivi(0xC0DEL, bloc, taille -> {
+                blocs.incrementAndGet();
+                return suivant.getAndAdd(taille);
+            });
+        }
+        // Corps de 8 caractères base 32 gardé sur 40 bits : des millions de codes sans millions de chaînes
+        long[][] valeurs = new long[postes][parPoste];
+
+        Banc.Resultat resultat = Banc.concurrence(postes, parPoste, (poste, i) -> {
+            String code = generateurs[poste % nombreGenerateurs].generer();
+            if (!GenerateurCodeSuivi.estValide(code)) {
+                throw new IllegalStateException("Code généré invalide : " + code);
+            }
+            valeurs[poste][i] = valeur(code);
+        });
+        Banc.afficher("Codes de suivi, %d postes sur %d générateurs, %d blocs de %d : %s",
+            postes, nombreGenerateurs, blocs.get(), bloc, resultat);
+
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+        assertEquals((long) postes * parPoste, resultat.reussites);
+        long[] tous = new long[postes * parPoste];
+        for (int p = 0; p < postes; p++) {
+            System.arraycopy(valeurs[p], 0, tous, p * parPoste, parPoste);
+        }
+        Arrays.sort(tous);
+        for (int i = 1; i < tous.length; i++) {
+            if (tous[i] == tous[i - 1]) {
+                throw new AssertionError("Code de suivi généré deux fois : " + Long.toString(tous[i], 32));
+            }
+        }
+    }
+
+    private static long valeur(String code) {
+        long valeur = 0;
+        for (int i = 0, lus = 0; lus < 8; i++) {
+            char c = code.charAt(i);
+            if (c != '-') {
+                valeur = valeur << 5 | ALPHABET.indexOf(c);
+                lus++;
+            }
+        }
+        return valeur;
+    }
+}
@@ -0,0 +1,71 @@
+package metier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Caractère de contrôle des codes de suivi, sans base de données (blocs de numéros
+ * distribués depuis la mémoire) : lancé par mvn test.
+ */
+public class GenerateurCodeSuiviTest {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    private final AtomicLong suivant = new AtomicLong();
+    private final GenerateurCodeSuivi generateur =
+        new GenerateurCodeSuivi(0x5EEDL, 100, taille -> suivant.getAndAdd(taille));
+
+    @Test
+    public void codesGeneresValides() {
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String code = generateur.generer();
+            assertTrue(code, code.matches("[" + ALPHABET + "]{4}-[" + ALPHABET + "]{5}"));
+            assertTrue(code, GenerateurCodeSuivi.estValide(code));
+            assertEquals(code, GenerateurCodeSuivi.canonique(code));
+            assertTrue(code, codes.add(code));
+        }
+    }
+
+    @Test
+    public void saisieToleree() {
+        String code = generateur.generer();
+        String saisie = " " + code.replace("-", "").toLowerCase().replace('0', 'o').replace('1', 'l') + " ";
+        assertTrue(saisie, GenerateurCodeSuivi.estValide(saisie));
+        assertEquals(code, GenerateurCodeSuivi.canonique(saisie));
+    }
+
+    @Test
+    public void toutCaractereRemplaceEstRefuse() {
+        for (int n = 0; n < 2_000; n++) {
+            String code = generateur.generer().replace("-", "");
+            for (int position = 0; position < code.length(); position++) {
+                for (char remplacant : ALPHABET.toCharArray()) {
+                    if (remplacant == code.charAt(position)) {
+                        continue;
+                    }
+                    String faute = code.substring(0, position) + remplacant + code.substring(position + 1);
+                    assertTrue(faute, GenerateurCodeSuivi.aLaFormeGeneree(faute));
+                    assertFalse(code + " -> " + faute, GenerateurCodeSuivi.estValide(faute));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formesInvalides() {
+        assertFalse(GenerateurCodeSuivi.estValide(null));
+        assertFalse(GenerateurCodeSuivi.estValide(""));
+        assertFalse(GenerateurCodeSuivi.estValide("K7PD-3XQ9"));
+        assertFalse(GenerateurCodeSuivi.estValide("K7PD-3XQ9MM"));
+        assertFalse(GenerateurCodeSuivi.aLaFormeGeneree("K7PD-3XQ9U"));
+        assertEquals(null, GenerateurCodeSuivi.canonique("K7PD-3XQ9U"));
+    }
+}
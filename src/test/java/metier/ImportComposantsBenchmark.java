@@ -0,0 +1,115 @@
+package metier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.BufferedWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Test;
+
+import dao.Composant;
+
+/**
+ * Import d'un tarif fournisseur de -Dbench.import.lignes lignes (500 000 par défaut) :
+ * création du catalogue, puis mise à jour des prix du même fichier (upsert par nom).
+ * Une ligne sur -Dbench.import.erreur_tous_les (10 000) a un prix illisible et doit être
+ * rejetée seule, sans interrompre l'import.
+ */
+public class ImportComposantsBenchmark {
+
+    private final String prefixe = Banc.prefixe("import");
+    private final int lignes = Banc.parametre("import.lignes", 500_000);
+    private final int erreurTousLes = Banc.parametre("import.erreur_tous_les", 10_000);
+
+    private Path fichier;
+
+    @After
+    public void nettoyer() throws Exception {
+        if (fichier != null) {
+            Files.deleteIfExists(fichier);
+        }
+        Banc.executerSql(new Object[] { prefixe + "%" },
+            "DELETE FROM PrixComposant WHERE idComposant IN (SELECT idComposant FROM Composant WHERE nom LIKE ?1)",
+            "DELETE FROM Composant WHERE nom LIKE ?1");
+    }
+
+    @Test
+    public void creationPuisMiseAJour() throws Exception {
+        GestionComposant gestion = new GestionComposant();
+        long rejetees = lignes / erreurTousLes;
+        long valides = lignes - rejetees;
+
+        ecrireTarif(true, 0);
+        RapportImport creation = importer(gestion);
+        Banc.afficher("Création : %s", resume(creation));
+        assertEquals(lignes, creation.getLignesLues());
+        assertEquals(valides, creation.getAjoutes());
+        assertEquals(0, creation.getModifies());
+        assertEquals(rejetees, creation.getNombreErreurs());
+        assertEquals(valides, Banc.compter("SELECT COUNT(*) FROM Composant WHERE nom LIKE ?1", prefixe + "%"));
+
+        // Même fichier, prix augmentés et sans colonne quantite : les stocks restent en place
+        ecrireTarif(false, 1);
+        RapportImport miseAJour = importer(gestion);
+        Banc.afficher("Mise à jour : %s", resume(miseAJour));
+        assertEquals(lignes, miseAJour.getLignesLues());
+        assertEquals(0, miseAJour.getAjoutes());
+        assertEquals(valides, miseAJour.getModifies());
+        assertEquals(rejetees, miseAJour.getNombreErreurs());
+
+        Composant composant = null;
+        for (Composant trouve : gestion.filtrerParNom(prefixe + 7)) {
+            if (trouve.getNom().equals(prefixe + 7)) {
+                composant = trouve;
+            }
+        }
+        assertNotNull(composant);
+        assertEquals(prix(7) + 1, composant.getPrix(), 1e-9);
+        assertEquals(7 % 50, composant.getQuantite());
+        assertEquals(2L * valides, Banc.compter("SELECT COUNT(*) FROM PrixComposant p JOIN Composant c "
+            + "ON c.idComposant = p.idComposant WHERE c.nom LIKE ?1", prefixe + "%"));
+    }
+
+    private RapportImport importer(GestionComposant gestion) throws Exception {
+        try (Reader source = Files.newBufferedReader(fichier, StandardCharsets.UTF_8)) {
+            return gestion.importerCsv(source);
+        }
+    }
+
+    private void ecrireTarif(boolean avecQuantite, double hausse) throws Exception {
+        if (fichier == null) {
+            fichier = Files.createTempFile("tarif-banc", ".csv");
+        }
+        try (BufferedWriter sortie = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8)) {
+            sortie.write(avecQuantite ? "nom;prix;quantite" : "nom;prix");
+            sortie.newLine();
+            for (int i = 0; i < lignes; i++) {
+                sortie.write(prefixe + i);
+                sortie.write(';');
+                sortie.write((i + 1) % erreurTousLes == 0 ? "n/a" : String.valueOf(prix(i) + hausse).replace('.', ','));
+                if (avecQuantite) {
+                    sortie.write(';');
+                    sortie.write(String.valueOf(i % 50));
+                }
+                sortie.newLine();
+            }
+        }
+    }
+
+    private static double prix(int ligne) {
+        return 1 + ligne % 1000 / 4.0;
+    }
+
+    private String resume(RapportImport rapport) {
+        Runtime jvm = Runtime.getRuntime();
+        return String.format("%d lignes en %d ms (%.0f lignes/s), %d ajoutée(s), %d modifiée(s), %d rejetée(s), tas utilisé %d Mo",
+            rapport.getLignesLues(), rapport.getDureeMs(), rapport.getLignesLues() * 1000.0 / Math.max(1, rapport.getDureeMs()),
+            rapport.getAjoutes(), rapport.getModifies(), rapport.getNombreErreurs(),
+            (jvm.totalMemory() - jvm.freeMemory()) / (1024 * 1024));
+    }
+}
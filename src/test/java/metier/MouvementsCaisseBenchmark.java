@@ -0,0 +1,160 @@
+package metier;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dao.Boutique;
+import dao.Caisse;
+import dao.Emprunt;
+import dao.Proprietaire;
+import dao.Reparateur;
+
+/**
+ * Contention sur le solde d'une caisse : plusieurs postes ajoutent et retirent des
+ * fonds en même temps (ajouterFondsCaisse, retirerFondsCaisse, ajouter, ajouterEnLot).
+ * Aucun mouvement ne doit être perdu ni échouer, le solde final et le journal doivent
+ * correspondre exactement aux mouvements acceptés, et un retrait ne doit jamais rendre
+ * le solde négatif. Paramètres : -Dbench.caisse.postes (8), -Dbench.caisse.operations
+ * (100 par poste).
+ */
+public class MouvementsCaisseBenchmark {
+
+    private final String prefixe = Banc.prefixe("caisse");
+    private final int postes = Banc.parametre("caisse.postes", 8);
+    private final int operations = Banc.parametre("caisse.operations", 100);
+
+    private final List<Integer> caisses = new ArrayList<>();
+    private Proprietaire proprietaire;
+    private Reparateur reparateur;
+
+    @Before
+    public void creerPersonnes() throws Exception {
+        proprietaire = Proprietaire.builder().nom(prefixe + "p").prenom("Banc").email(prefixe + "p@banc.fr").mdp("banc").build();
+        new GestionProprietaire().ajouter(proprietaire);
+        reparateur = Reparateur.builder().nom(prefixe + "r").prenom("Banc").email(prefixe + "r@banc.fr").mdp("banc").build();
+        new GestionReparateur().ajouter(reparateur);
+    }
+
+    @After
+    public void nettoyer() {
+        for (int idCaisse : caisses) {
+            Banc.executerSql(new Object[] { idCaisse },
+                "DELETE FROM Emprunt WHERE idCaisse = ?1",
+                "DELETE FROM EcritureCaisse WHERE idCaisse = ?1",
+                "DELETE FROM ArreteCaisse WHERE idCaisse = ?1",
+                "DELETE FROM Caisse WHERE idCaisse = ?1");
+        }
+        Banc.executerSql(new Object[] { prefixe + "%" },
+            "DELETE FROM Boutique WHERE nom LIKE ?1",
+            "DELETE FROM Reparateur WHERE email LIKE ?1",
+            "DELETE FROM Proprietaire WHERE email LIKE ?1",
+            "DELETE FROM Personne WHERE nom LIKE ?1");
+    }
+
+    @Test
+    public void mouvementsConcurrents() throws Exception {
+        Caisse initiale = creerCaisse(1_000_000);
+        int idCaisse = initiale.getIdCaisse();
+        long empruntsInitiaux = Banc.compter("SELECT COUNT(*) FROM Emprunt WHERE idCaisse = ?1", idCaisse);
+        long sommeInitiale = Banc.compter("SELECT ROUND(SUM(montant)) FROM EcritureCaisse WHERE idCaisse = ?1", idCaisse);
+        GestionEmprunt gestion = new GestionEmprunt();
+        AtomicLong variation = new AtomicLong();
+        AtomicLong ecritures = new AtomicLong();
+
+        Banc.Resultat resultat = Banc.concurrence(postes, operations, (poste, i) -> {
+            switch (i % 10) {
+                case 0:
+                    List<Emprunt> lot = new ArrayList<>();
+                    for (int k = 0; k < 5; k++) {
+                        lot.add(emprunt(idCaisse, "Dépôt", 1));
+                    }
+                    gestion.ajouterEnLot(lot);
+                    variation.addAndGet(5);
+                    ecritures.addAndGet(5);
+                    break;
+                case 1:
+                case 2:
+                    gestion.ajouter(emprunt(idCaisse, "Prêt", 4));
+                    variation.addAndGet(-4);
+                    ecritures.incrementAndGet();
+                    break;
+                case 3:
+                case 4:
+                case 5:
+                    gestion.retirerFondsCaisse(idCaisse, reparateur.getId(), 2, "banc");
+                    variation.addAndGet(-2);
+                    ecritures.incrementAndGet();
+                    break;
+                default:
+                    gestion.ajouterFondsCaisse(idCaisse, reparateur.getId(), 3, "banc");
+                    variation.addAndGet(3);
+                    ecritures.incrementAndGet();
+            }
+        });
+        Banc.afficher("Mouvements de caisse, %d postes : %s", postes, resultat);
+
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+        assertEquals(0, resultat.refus);
+        assertEquals(postes * operations, resultat.reussites);
+
+        Caisse caisse = new GestionCaisse().rechercher(idCaisse);
+        assertEquals("solde final", initiale.getSoldeActuel() + variation.get(), caisse.getSoldeActuel(), 1e-6);
+        assertEquals(initiale.getNombreEcritures() + ecritures.get(), caisse.getNombreEcritures());
+        assertEquals(empruntsInitiaux + ecritures.get(), Banc.compter("SELECT COUNT(*) FROM Emprunt WHERE idCaisse = ?1", idCaisse));
+        assertEquals(caisse.getNombreEcritures(), Banc.compter("SELECT COUNT(*) FROM EcritureCaisse WHERE idCaisse = ?1", idCaisse));
+        assertEquals(sommeInitiale + variation.get(), Banc.compter("SELECT ROUND(SUM(montant)) FROM EcritureCaisse WHERE idCaisse = ?1", idCaisse));
+        // Dernière écriture du journal : solde après mouvement égal au solde de la caisse
+        assertEquals((long) caisse.getSoldeActuel(), Banc.compter("SELECT ROUND(soldeApres) FROM EcritureCaisse "
+            + "WHERE idCaisse = ?1 ORDER BY numero DESC LIMIT 1", idCaisse));
+    }
+
+    @Test
+    public void retraitsSansDecouvert() throws Exception {
+        int solde = postes * operations / 2;
+        int idCaisse = creerCaisse(solde).getIdCaisse();
+        long empruntsInitiaux = Banc.compter("SELECT COUNT(*) FROM Emprunt WHERE idCaisse = ?1", idCaisse);
+        GestionEmprunt gestion = new GestionEmprunt();
+
+        Banc.Resultat resultat = Banc.concurrence(postes, operations,
+            (poste, i) -> gestion.retirerFondsCaisse(idCaisse, reparateur.getId(), 1, "banc"));
+        Banc.afficher("Retraits au-delà du solde, %d postes : %s", postes, resultat);
+
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+        assertEquals(solde, resultat.reussites);
+        assertEquals(postes * operations - solde, resultat.refus);
+        assertEquals(0, new GestionCaisse().rechercher(idCaisse).getSoldeActuel(), 1e-6);
+        assertEquals(empruntsInitiaux + solde, Banc.compter("SELECT COUNT(*) FROM Emprunt WHERE idCaisse = ?1", idCaisse));
+    }
+
+    // Caisse ouverte avec la boutique, approvisionnée par un premier ajout de fonds
+    private Caisse creerCaisse(double solde) throws Exception {
+        Boutique boutique = Boutique.builder().nom(prefixe + "b" + caisses.size()).adresse("Banc").proprietaire(proprietaire).build();
+        new GestionBoutique().ajouter(boutique);
+        GestionCaisse gestionCaisse = new GestionCaisse();
+        int idCaisse = gestionCaisse.rechercherCaisseParBoutique(boutique.getIdBoutique()).getIdCaisse();
+        caisses.add(idCaisse);
+        if (solde > 0) {
+            new GestionEmprunt().ajouterFondsCaisse(idCaisse, reparateur.getId(), solde, "banc");
+        }
+        return gestionCaisse.rechercher(idCaisse);
+    }
+
+    private Emprunt emprunt(int idCaisse, String type, double montant) {
+        return Emprunt.builder()
+            .date(LocalDateTime.now())
+            .montant(montant)
+            .type(type)
+            .commentaire("banc")
+            .caisse(Caisse.builder().idCaisse(idCaisse).build())
+            .reparateur(reparateur)
+            .build();
+    }
+}
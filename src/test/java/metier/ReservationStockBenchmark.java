@@ -0,0 +1,114 @@
+package metier;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import dao.Composant;
+
+/**
+ * Contention sur le stock d'un composant : plusieurs postes réservent, consomment et
+ * libèrent les mêmes pièces en même temps. Aucune pièce ne doit être vendue deux fois
+ * (exactement le stock disponible est réservé, le reste est refusé), les compteurs
+ * quantite / quantiteReservee doivent correspondre aux mouvements acceptés (même si
+ * modifer enregistre en même temps une fiche lue avant), et un lot refusé ne doit rien
+ * réserver. Paramètres : -Dbench.stock.postes (8), -Dbench.stock.operations
+ * (100 par poste).
+ */
+public class ReservationStockBenchmark {
+
+    private final String prefixe = Banc.prefixe("stock");
+    private final int postes = Banc.parametre("stock.postes", 8);
+    private final int operations = Banc.parametre("stock.operations", 100);
+
+    private final GestionComposant gestion = new GestionComposant();
+
+    @After
+    public void nettoyer() {
+        Banc.executerSql(new Object[] { prefixe + "%" },
+            "DELETE FROM PrixComposant WHERE idComposant IN (SELECT idComposant FROM Composant WHERE nom LIKE ?1)",
+            "DELETE FROM Composant WHERE nom LIKE ?1");
+    }
+
+    @Test
+    public void reservationsAuDelaDuStock() throws Exception {
+        int stock = postes * operations / 2;
+        int idComposant = creerComposant("a", stock);
+
+        Banc.Resultat resultat = Banc.concurrence(postes, operations, (poste, i) -> gestion.reserver(idComposant, 1));
+        Banc.afficher("Réservations au-delà du stock, %d postes : %s", postes, resultat);
+
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+        assertEquals("pièces réservées", stock, resultat.reussites);
+        assertEquals(postes * operations - stock, resultat.refus);
+        Composant composant = gestion.rechercher(idComposant);
+        assertEquals(0, composant.getQuantite());
+        assertEquals(stock, composant.getQuantiteReservee());
+    }
+
+    @Test
+    public void reserverPuisConsommerOuLiberer() throws Exception {
+        int stock = postes * operations;
+        int idComposant = creerComposant("b", stock);
+        AtomicInteger consommees = new AtomicInteger();
+        // Fiche lue avant les mouvements : modifer ne doit pas réécrire sa quantité périmée
+        Composant fiche = gestion.rechercher(idComposant);
+
+        Banc.Resultat resultat = Banc.concurrence(postes, operations, (poste, i) -> {
+            if (poste == 0 && i % 10 == 0) {
+                fiche.setPrix(10 + i);
+                gestion.modifer(fiche);
+            }
+            gestion.reserver(idComposant, 1);
+            if (i % 2 == 0) {
+                gestion.consommer(idComposant, 1);
+                consommees.incrementAndGet();
+            } else {
+                gestion.liberer(idComposant, 1);
+            }
+        });
+        Banc.afficher("Réserver puis consommer ou libérer, %d postes : %s", postes, resultat);
+
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+        assertEquals(0, resultat.refus);
+        Composant composant = gestion.rechercher(idComposant);
+        assertEquals(stock - consommees.get(), composant.getQuantite());
+        assertEquals(0, composant.getQuantiteReservee());
+    }
+
+    @Test
+    public void lotsConcurrents() throws Exception {
+        int stock = postes * operations / 2;
+        int abondant = creerComposant("c", postes * operations);
+        int rare = creerComposant("d", stock);
+
+        Banc.Resultat resultat = Banc.concurrence(postes, operations, (poste, i) -> {
+            // Ordre des pièces inversé d'un poste à l'autre : le service verrouille par identifiant
+            Map<Integer, Integer> pieces = new LinkedHashMap<>();
+            pieces.put(poste % 2 == 0 ? abondant : rare, 1);
+            pieces.put(poste % 2 == 0 ? rare : abondant, 1);
+            gestion.reserverEnLot(pieces);
+        });
+        Banc.afficher("Lots de pièces, %d postes : %s", postes, resultat);
+
+        assertEquals(String.valueOf(resultat.premierEchec), 0, resultat.echecs);
+        assertEquals(stock, resultat.reussites);
+        assertEquals(postes * operations - stock, resultat.refus);
+        assertEquals(0, gestion.rechercher(rare).getQuantite());
+        // Un lot refusé faute de pièce rare ne garde pas la pièce abondante
+        Composant composant = gestion.rechercher(abondant);
+        assertEquals(stock, composant.getQuantiteReservee());
+        assertEquals(postes * operations - stock, composant.getQuantite());
+    }
+
+    private int creerComposant(String suffixe, int quantite) throws Exception {
+        Composant composant = Composant.builder().nom(prefixe + suffixe).prix(10).quantite(quantite).build();
+        gestion.ajouter(composant);
+        return composant.getIdComposant();
+    }
+}